@@ -0,0 +1,45 @@
+package com.example.footie.newSimulator;
+
+import java.util.Map;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+import com.example.footie.newSimulator.constraint.TopSeedsBracketSeparation;
+
+/**
+ * The constraint sets the benchmarks are run under. Arc consistency is
+ * group-local unless a constraint links slots of different groups, as the
+ * bracket separation does; its pairs are only revised with all pairs.
+ */
+public enum BenchmarkConstraints {
+    /** All-different and pot separation only. */
+    POTS,
+    /** The draw as DrawService configures it. */
+    DRAW,
+    /** The draw plus the bracket separation of the top four seeds, with all-pairs arc consistency. */
+    DRAW_WITH_BRACKET;
+
+    ConstraintManager build(boolean compiled) {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        if (this != POTS) {
+            cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+            cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        }
+        if (this == DRAW_WITH_BRACKET) {
+            cm.addConstraint(new TopSeedsBracketSeparation(Map.of(
+                    "Argentina", 1,
+                    "Spain", 2,
+                    "France", 3,
+                    "England", 4)));
+        }
+        cm.setArcConsistency(this == DRAW_WITH_BRACKET ? ArcConsistency.ALL_PAIRS : ArcConsistency.GROUP_LOCAL);
+        cm.setCompiled(compiled);
+        return cm;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.footie.newSimulator;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Complete {@link Simulator#solveWorldCup2026Draw()} runs, configured as
+ * DrawService does apart from the two knobs tuned so far by hand: the depth
+ * from which the global checks run ({@code onlyCheckDomainAfter}) and the
+ * node budget of a restart run ({@code runNodes}, the Luby unit, which took
+ * over from a single {@code maxNodes} cap). Each trial draws from the same
+ * fixed seed sequence, so runs on different commits solve the same draws.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class DrawBenchmark {
+
+    @Param({ "POTS", "DRAW", "DRAW_WITH_BRACKET" })
+    public BenchmarkConstraints constraints;
+
+    @Param({ "0", "28", "48" })
+    public int onlyCheckDomainAfter;
+
+    @Param({ "50", "100", "400" })
+    public int runNodes;
+
+    private List<GroupSlot> slots;
+    private List<Team> teams;
+    private Random seeds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        slots = DrawFixture.worldCupSlots();
+        teams = TeamFactory.createWorldCupTeams(4);
+        seeds = new Random(DrawFixture.SEED);
+    }
+
+    @Benchmark
+    public boolean solveWorldCup2026Draw() {
+        Simulator simulator = DrawFixture.configure(new Simulator(slots, constraints.build(true), teams),
+                new Random(seeds.nextLong()));
+        simulator.setOnlyCheckDomainAfter(onlyCheckDomainAfter);
+        simulator.setRestartPolicy(RestartPolicy.luby(runNodes, 64));
+        try {
+            return simulator.solveWorldCup2026Draw();
+        } catch (RuntimeException e) {
+            // every run spent its budget; counted as a (slow) failed draw
+            return false;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+
+/**
+ * A World Cup draw part-way through, for the benchmarks of single search
+ * steps. A reference draw is solved with a fixed seed under the constraint
+ * set, then its first {@code placed} teams (the hosts, then by pot and id)
+ * are placed again on a fresh state with forward checking; the step
+ * measured is placing the next team where the reference draw has it.
+ */
+@State(Scope.Thread)
+public class DrawFixture {
+
+    static final long SEED = 2026L;
+
+    @Param({ "POTS", "DRAW", "DRAW_WITH_BRACKET" })
+    public BenchmarkConstraints constraints;
+
+    @Param({ "true", "false" })
+    public boolean compiled;
+
+    @Param({ "3", "24", "40" })
+    public int placed;
+
+    ConstraintManager constraintManager;
+    AssignmentState state;
+    // the next placement of the reference draw
+    int slot;
+    int team;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<GroupSlot> slots = worldCupSlots();
+        List<Team> teams = TeamFactory.createWorldCupTeams(4);
+
+        Simulator reference = configure(new Simulator(slots, constraints.build(compiled), teams), new Random(SEED));
+        if (!reference.solveWorldCup2026Draw())
+            throw new IllegalStateException("no reference draw under " + constraints);
+        AssignmentState solved = reference.getState();
+
+        constraintManager = constraints.build(compiled);
+        state = new Simulator(slots, constraintManager, teams).getState();
+        List<Integer> order = placementOrder(state.model());
+        for (int i = 0; i < placed; i++) {
+            int t = order.get(i);
+            int s = solved.assignedSlot(t);
+            state.assign(s, t);
+            constraintManager.forwardCheck(state, s, t);
+        }
+        if (!constraintManager.checkGlobalConsistency(state))
+            throw new IllegalStateException("replayed draw is inconsistent");
+        team = order.get(placed);
+        slot = solved.assignedSlot(team);
+    }
+
+    /** A simulator configured as DrawService's, drawing with the given random source. */
+    static Simulator configure(Simulator simulator, Random random) {
+        simulator.setRandom(random);
+        simulator.setOnlyCheckDomainAfter(28);
+        simulator.setMaxNodes(0);
+        simulator.setRestartPolicy(RestartPolicy.luby(100, 64));
+        simulator.setBackjumping(true);
+        return simulator;
+    }
+
+    static List<GroupSlot> worldCupSlots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'L'; g++)
+            for (int pos = 1; pos <= 4; pos++)
+                slots.add(new GroupSlot(String.valueOf(g), pos));
+        return slots;
+    }
+
+    /** Team ids, the hosts first, then by pot and id. */
+    private static List<Integer> placementOrder(DrawModel model) {
+        List<Integer> order = new ArrayList<>();
+        for (String host : List.of("Mexico", "Canada", "USA"))
+            order.add(model.teamId(host));
+        for (int pot = 1; pot <= 4; pot++) {
+            for (int t = 0; t < model.teamCount(); t++) {
+                if (model.teamPot(t) == pot && !order.contains(t))
+                    order.add(t);
+            }
+        }
+        return order;
+    }
+}
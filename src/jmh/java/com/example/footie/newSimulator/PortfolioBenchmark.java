@@ -0,0 +1,67 @@
+package com.example.footie.newSimulator;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tail latency of {@link PortfolioSolver} against portfolio size: complete
+ * draws raced by {@code size} members on a pool with one thread per member,
+ * each configured as DrawService's. Sampled, so the percentiles of the draw
+ * time are reported along with the mean.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class PortfolioBenchmark {
+
+    @Param({ "1", "2", "4", "8" })
+    public int size;
+
+    private List<GroupSlot> slots;
+    private List<Team> teams;
+    private Random seeds;
+    private ExecutorService executor;
+    private PortfolioSolver portfolio;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        slots = DrawFixture.worldCupSlots();
+        teams = TeamFactory.createWorldCupTeams(4);
+        seeds = new Random(DrawFixture.SEED);
+        executor = Executors.newFixedThreadPool(size);
+        portfolio = new PortfolioSolver(executor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Simulator solveWorldCup2026Draw() throws InterruptedException {
+        // the portfolio reseeds every member from the draw's seed
+        return portfolio.solve(size, m -> DrawFixture.configure(
+                new Simulator(slots, BenchmarkConstraints.DRAW.build(true), teams), new Random(DrawFixture.SEED)),
+                Simulator::solveWorldCup2026Draw, seeds.nextLong());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.footie.newSimulator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The steps of a search node on a {@link DrawFixture}. Every benchmark but
+ * the snapshot one makes the fixture's next placement and rolls it back, so
+ * the state is the same at every invocation; {@link #assign} is that
+ * baseline, and each later step adds one stage of what the solver does
+ * after placing a team.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SearchStepBenchmark {
+
+    @Benchmark
+    public long assign(DrawFixture f) {
+        AssignmentState state = f.state;
+        int checkpoint = state.checkpoint();
+        state.assign(f.slot, f.team);
+        long free = state.unassignedSlotBits();
+        state.rollbackTo(checkpoint);
+        return free;
+    }
+
+    @Benchmark
+    public long forwardCheck(DrawFixture f) {
+        AssignmentState state = f.state;
+        int checkpoint = state.checkpoint();
+        state.assign(f.slot, f.team);
+        f.constraintManager.forwardCheck(state, f.slot, f.team);
+        long pruned = state.prunedValues();
+        state.rollbackTo(checkpoint);
+        return pruned;
+    }
+
+    @Benchmark
+    public boolean hasPerfectMatching(DrawFixture f) {
+        AssignmentState state = f.state;
+        int checkpoint = state.checkpoint();
+        state.assign(f.slot, f.team);
+        f.constraintManager.forwardCheck(state, f.slot, f.team);
+        boolean matched = state.hasPerfectMatchingForUnassignedSlots();
+        state.rollbackTo(checkpoint);
+        return matched;
+    }
+
+    @Benchmark
+    public boolean checkGlobalConsistency(DrawFixture f) {
+        AssignmentState state = f.state;
+        int checkpoint = state.checkpoint();
+        state.assign(f.slot, f.team);
+        f.constraintManager.forwardCheck(state, f.slot, f.team);
+        boolean consistent = f.constraintManager.checkGlobalConsistency(state);
+        state.rollbackTo(checkpoint);
+        return consistent;
+    }
+
+    /** Copy of the assignments and domains, restored right away; allocates the copy. */
+    @Benchmark
+    public AssignmentSnapshot snapshotAndRestore(DrawFixture f) {
+        AssignmentSnapshot snapshot = f.state.createSnapshot();
+        snapshot.restore();
+        return snapshot;
+    }
+}
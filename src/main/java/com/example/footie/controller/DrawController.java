@@ -1,16 +1,25 @@
 package com.example.footie.controller;
 
+import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
+import org.springframework.http.HttpStatus;
+
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import com.example.footie.newSimulator.Team;
+import com.example.footie.newSimulator.ValueOrdering;
+import com.example.footie.newSimulator.VariableOrdering;
 import com.example.footie.service.DrawService;
 import com.example.footie.service.TeamService;
 
@@ -34,17 +43,127 @@ public class DrawController {
         this.teamService = teamService;
     }
 
+    /**
+     * Optional body keys: {@code random} (boolean), {@code variableOrdering}
+     * and {@code valueOrdering} (names of the solver heuristics),
+     * {@code portfolio} (number of solvers to race, 1 by default) and
+     * {@code seed} (a long; the same seed gives the same draw, answered from
+     * the cache once solved). A seed with a portfolio above 1 is rejected
+     * with 400, since the race's winner depends on timing.
+     */
     @PostMapping("/draw")
     public Mono<Map<String, List<Team>>> runDraw(@RequestBody(required = false) Map<String, Object> body) {
+        VariableOrdering variables = option(body, "variableOrdering", VariableOrdering.class,
+                VariableOrdering.INPUT_ORDER);
+        ValueOrdering values = option(body, "valueOrdering", ValueOrdering.class, ValueOrdering.GROUP_ORDER);
+        int portfolio = portfolio(body);
+        Long seed = seed(body, portfolio);
         if (body != null && body.get("random") == Boolean.TRUE) {
-            return drawService.runDrawRandomTeams(List.of());
+            return drawService.runDrawRandomTeams(List.of(), variables, values, portfolio, seed);
         }
-        return drawService.runDraw();
+        return drawService.runDraw(variables, values, portfolio, seed);
+    }
+
+    /**
+     * A ceremony draw as {@code POST /draw} makes it, with the solver's
+     * statistics: {@code groups} and {@code stats}. Takes the same body keys
+     * apart from {@code random}; {@code trace} (boolean) also records the
+     * search and answers it under {@code trace}.
+     */
+    @PostMapping("/draw/stats")
+    public Mono<Map<String, Object>> runDrawWithStats(@RequestBody(required = false) Map<String, Object> body) {
+        return drawService.runDrawWithStats(
+                option(body, "variableOrdering", VariableOrdering.class, VariableOrdering.INPUT_ORDER),
+                option(body, "valueOrdering", ValueOrdering.class, ValueOrdering.GROUP_ORDER),
+                portfolio(body),
+                body != null && Boolean.TRUE.equals(body.get("trace")));
     }
 
     @GetMapping("/draw")
-    public Mono<Map<String, List<Team>>> getRunDraw() {
-        return drawService.runDraw();
+    public Mono<Map<String, List<Team>>> getRunDraw(
+            @RequestParam(required = false) String variableOrdering,
+            @RequestParam(required = false) String valueOrdering,
+            @RequestParam(required = false) String portfolio,
+            @RequestParam(required = false) String seed) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("variableOrdering", variableOrdering);
+        params.put("valueOrdering", valueOrdering);
+        params.put("portfolio", portfolio);
+        params.put("seed", seed);
+        int size = portfolio(params);
+        return drawService.runDraw(
+                option(params, "variableOrdering", VariableOrdering.class, VariableOrdering.INPUT_ORDER),
+                option(params, "valueOrdering", ValueOrdering.class, ValueOrdering.GROUP_ORDER),
+                size,
+                seed(params, size));
+    }
+
+    /**
+     * Team-in-group and same-group probabilities estimated from
+     * {@code draws} simulated draws (100,000 by default).
+     */
+    @GetMapping("/draw/probabilities")
+    public Mono<Map<String, Object>> getDrawProbabilities(@RequestParam(required = false) Long draws) {
+        long n = draws != null ? draws : 100_000L;
+        if (n < 1 || n > DrawService.MAX_MONTE_CARLO_DRAWS)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "draws must be between 1 and " + DrawService.MAX_MONTE_CARLO_DRAWS + ": " + draws);
+        return drawService.runMonteCarlo(n);
+    }
+
+    /** Case-insensitive enum option; unknown names are rejected with 400. */
+    private static <E extends Enum<E>> E option(Map<String, Object> body, String key, Class<E> type, E fallback) {
+        Object value = body != null ? body.get(key) : null;
+        if (value == null)
+            return fallback;
+        try {
+            return Enum.valueOf(type, value.toString().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown " + key + ": " + value);
+        }
+    }
+
+    /**
+     * Portfolio size, a whole number between 1 and
+     * {@link DrawService#MAX_PORTFOLIO}; anything else, fractions and
+     * numbers beyond int range included, is rejected with 400.
+     */
+    private static int portfolio(Map<String, Object> body) {
+        Object value = body != null ? body.get("portfolio") : null;
+        if (value == null)
+            return 1;
+        int size;
+        try {
+            // exact, so 2.7 or 2^32 + 2 are not read as 2
+            size = value instanceof Number n ? new BigDecimal(n.toString()).intValueExact()
+                    : Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException | ArithmeticException e) {
+            size = 0;
+        }
+        if (size < 1 || size > DrawService.MAX_PORTFOLIO)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "portfolio must be between 1 and " + DrawService.MAX_PORTFOLIO + ": " + value);
+        return size;
+    }
+
+    /**
+     * Draw seed, null when absent; anything but a whole number, or a seed
+     * with a portfolio above 1, is rejected with 400.
+     */
+    private static Long seed(Map<String, Object> body, int portfolio) {
+        Object value = body != null ? body.get("seed") : null;
+        if (value == null)
+            return null;
+        if (portfolio > 1)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "seed needs a portfolio of 1, the winner of a race is not reproducible: " + portfolio);
+        if (value instanceof Integer || value instanceof Long)
+            return ((Number) value).longValue();
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "seed must be a whole number: " + value);
+        }
     }
 
     @GetMapping("/teams")
@@ -0,0 +1,130 @@
+package com.example.footie.controller;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Actuator endpoint {@code /actuator/flightrecorder} that runs one JDK
+ * Flight Recorder recording at a time on the live process, with the JDK's
+ * low-overhead {@code default} settings plus the draw and match events
+ * (footie.*), so a misbehaving node can be profiled without a restart or
+ * an agent.
+ * <ul>
+ * <li>{@code GET} the current recording, if any, and the last dump;</li>
+ * <li>{@code POST {"durationSeconds": 60, "maxSizeMb": 64}} starts a
+ * recording that stops by itself after the duration and keeps at most that
+ * much data, both capped;</li>
+ * <li>{@code DELETE} stops it and dumps it to a file in the temp
+ * directory, whose path is answered; only the last few dumps are kept,
+ * older ones are deleted.</li>
+ * </ul>
+ * Not exposed over the web by default: a recording reads the process's
+ * internals and fills the disk, so only add {@code flightrecorder} to
+ * {@code management.endpoints.web.exposure.include} behind authentication.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "flightrecorder")
+public class FlightRecordingEndpoint {
+
+    static final int MAX_DURATION_SECONDS = 600;
+    static final int MAX_SIZE_MB = 256;
+    static final int MAX_DUMPS = 5;
+    private static final List<String> EVENTS = List.of("footie.DrawRequested", "footie.DrawCompleted",
+            "footie.SearchNode", "footie.Backtrack", "footie.ConsistencyCheck", "footie.MatchTick");
+
+    private Recording recording;
+    // oldest first, at most MAX_DUMPS
+    private final Deque<Path> dumps = new ArrayDeque<>();
+
+    @ReadOperation
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording != null) {
+            status.put("id", recording.getId());
+            status.put("state", recording.getState().name());
+            status.put("startTime", String.valueOf(recording.getStartTime()));
+            status.put("durationSeconds", recording.getDuration().toSeconds());
+            status.put("maxSizeMb", recording.getMaxSize() >> 20);
+        } else {
+            status.put("state", "NONE");
+        }
+        status.put("lastDump", dumps.isEmpty() ? null : dumps.peekLast().toString());
+        return status;
+    }
+
+    /** Start a recording unless one is running already; answers its status. */
+    @WriteOperation
+    public synchronized Map<String, Object> start(int durationSeconds, int maxSizeMb) {
+        if (recording != null && recording.getState() == RecordingState.RUNNING)
+            return status();
+        if (recording != null)
+            recording.close();
+
+        Recording r;
+        try {
+            r = new Recording(Configuration.getConfiguration("default"));
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Cannot read the default recording settings", e);
+        }
+        for (String event : EVENTS)
+            r.enable(event);
+        r.setName("footie");
+        r.setToDisk(true);
+        r.setDuration(Duration.ofSeconds(Math.max(1, Math.min(durationSeconds, MAX_DURATION_SECONDS))));
+        r.setMaxSize((long) Math.max(1, Math.min(maxSizeMb, MAX_SIZE_MB)) << 20);
+        r.start();
+        recording = r;
+        return status();
+    }
+
+    /** Stop the recording, also when its duration already stopped it, and dump it. */
+    @DeleteOperation
+    public synchronized Map<String, Object> stop() {
+        if (recording == null)
+            return status();
+        try {
+            if (recording.getState() == RecordingState.RUNNING)
+                recording.stop();
+            Path file = Files.createTempFile("footie-" + recording.getId() + "-", ".jfr");
+            recording.dump(file);
+            dumps.addLast(file);
+            while (dumps.size() > MAX_DUMPS)
+                delete(dumps.removeFirst());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        return status();
+    }
+
+    private static void delete(Path dump) {
+        try {
+            Files.deleteIfExists(dump);
+        } catch (IOException e) {
+            log.warn("Cannot delete old flight recording {}", dump, e);
+        }
+    }
+}
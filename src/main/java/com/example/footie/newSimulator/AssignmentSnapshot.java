@@ -1,5 +1,6 @@
 package com.example.footie.newSimulator;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -7,49 +8,69 @@ import java.util.Set;
 
 public class AssignmentSnapshot {
     private final AssignmentState state;
-    private final Map<GroupSlot, Set<Team>> domainsSnapshot;
-    private final Map<GroupSlot, Team> assignmentsSnapshot;
+    private final long[] domainWords;
+    private final int[] assignedTeams;
 
     public AssignmentSnapshot(AssignmentState state, Map<GroupSlot, Set<Team>> domainsSnapshot,
             Map<GroupSlot, Team> assignmentsSnapshot) {
         this.state = state;
-        // defensive copies
-        this.domainsSnapshot = new HashMap<>();
+        // defensive copies, converted to the state's word layout
+        this.domainWords = new long[state.slotCount()];
         for (Map.Entry<GroupSlot, Set<Team>> e : domainsSnapshot.entrySet()) {
-            this.domainsSnapshot.put(e.getKey(), new HashSet<>(e.getValue()));
+            int s = state.slotId(e.getKey());
+            if (s < 0)
+                continue;
+            for (Team t : e.getValue()) {
+                int id = state.teamId(t);
+                if (id >= 0)
+                    domainWords[s] |= 1L << id;
+            }
+        }
+        this.assignedTeams = new int[state.slotCount()];
+        Arrays.fill(assignedTeams, -1);
+        for (Map.Entry<GroupSlot, Team> e : assignmentsSnapshot.entrySet()) {
+            int s = state.slotId(e.getKey());
+            if (s >= 0 && e.getValue() != null)
+                assignedTeams[s] = state.teamId(e.getValue());
         }
-        this.assignmentsSnapshot = new HashMap<>(assignmentsSnapshot);
     }
 
     /**
      * Construct a snapshot by copying data from the provided state.
      */
     public AssignmentSnapshot(AssignmentState state) {
+        this(state, state.copyDomainWords(), state.copyAssignedTeams());
+    }
+
+    /** Wrap word copies already taken by the state; no further copying. */
+    AssignmentSnapshot(AssignmentState state, long[] domainWords, int[] assignedTeams) {
         this.state = state;
-        this.domainsSnapshot = new HashMap<>();
-        for (Map.Entry<GroupSlot, Set<Team>> e : state.getDomains().entrySet()) {
-            this.domainsSnapshot.put(e.getKey(), new HashSet<>(e.getValue()));
-        }
-        this.assignmentsSnapshot = new HashMap<>();
-        this.assignmentsSnapshot.putAll(state.getAssignments());
+        this.domainWords = domainWords;
+        this.assignedTeams = assignedTeams;
     }
 
     public Map<GroupSlot, Set<Team>> getDomainsSnapshot() {
-        return domainsSnapshot;
+        Map<GroupSlot, Set<Team>> domains = new HashMap<>();
+        for (int s = 0; s < domainWords.length; s++) {
+            Set<Team> dom = new HashSet<>();
+            for (long m = domainWords[s]; m != 0; m &= m - 1)
+                dom.add(state.teamById(Long.numberOfTrailingZeros(m)));
+            domains.put(state.slotById(s), dom);
+        }
+        return domains;
     }
 
     public Map<GroupSlot, Team> getAssignmentsSnapshot() {
-        return assignmentsSnapshot;
+        Map<GroupSlot, Team> assignments = new HashMap<>();
+        for (int s = 0; s < assignedTeams.length; s++)
+            assignments.put(state.slotById(s), assignedTeams[s] >= 0 ? state.teamById(assignedTeams[s]) : null);
+        return assignments;
     }
 
     /**
      * Restore the saved assignments and domains into the original state.
      */
     public void restore() {
-        // restore assignments first
-        state.getAssignments().clear();
-        state.getAssignments().putAll(assignmentsSnapshot);
-        // restore domains and rebuild indexes
-        state.restoreDomains(domainsSnapshot);
+        state.restoreWords(domainWords, assignedTeams);
     }
 }
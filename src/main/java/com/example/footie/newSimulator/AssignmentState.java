@@ -5,152 +5,477 @@
 
 package com.example.footie.newSimulator;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+/**
+ * Search state for the draw. Domains are stored as bitsets: one {@code long}
+ * per slot holding the candidate team ids, plus the transposed {@code long}
+ * per team holding its candidate slot ids. The {@code Set}/{@code Map}
+ * accessors are live views over those words.
+ */
 public class AssignmentState {
-    private final List<GroupSlot> slots;
+    /** Upper bound imposed by the single-word domain representation. */
+    public static final int MAX_SIZE = DrawModel.MAX_SIZE;
+
+    private final DrawModel model;
     private final Map<String, Team> allTeams;
-    private final SortedMap<GroupSlot, Team> assignments = new TreeMap<>();
-    private final SortedMap<GroupSlot, Set<Team>> domains = new TreeMap<>();
 
-    // fast lookup structures
-    private final Set<String> unassignedTeamNames = new HashSet<>();
-    private final Map<String, Set<GroupSlot>> teamToCandidateSlots = new HashMap<>();
+    // assignments by dense id: slot -> team and team -> slot, -1 when free
+    private final int[] slotTeam;
+    private final int[] teamSlot;
+
+    // bitset domains: slotDomains[s] has bit t set when team t is a candidate
+    // for slot s; teamCandidates[t] is the transposed view
+    private final long[] slotDomains;
+    private final long[] teamCandidates;
+    private long assignedSlotBits;
+    private long unassignedTeamBits;
+
+    // undo log: every domain-word or assignment change pushes the previous
+    // value so the search can roll back to a checkpoint in O(changes)
+    private static final int TRAIL_ASSIGNMENT = 1 << 30;
+    private int[] trailSlots = new int[256];
+    private long[] trailValues = new long[256];
+    private int trailSize;
+    // values ever removed by removeFromDomain, never rolled back
+    private long prunedValues;
+    // receives a record per removed value while a traced solve runs
+    private SearchTrace.Ring traceRing;
+
+    // per-group aggregates of the assigned teams: pot and continent counts
+    // (row-major by group) and the masks of the non-zero ones. Assign,
+    // unassign and rollback all go through writeAssigned, which keeps them in step
+    private final int[] groupPotCounts;
+    private final long[] groupPotMask;
+    private final int[] groupContinentCounts;
+    private final long[] groupContinentMask;
+
+    // slots whose domain or assignment changed since the last arc-consistency
+    // fixpoint, so propagation can start from the changes only
+    private long changedDomainSlots;
+    private long grownDomainSlots;
+    private long changedAssignmentSlots;
+
+    // Hall-check matching, repaired lazily from the current domains
+    private final SlotTeamMatching matching;
+
+    private final SortedMap<GroupSlot, Set<Team>> domainViews = new TreeMap<>();
     private final Map<String, Team> currentPotTeams = new HashMap<>();
 
     public AssignmentState(List<GroupSlot> slots, List<Team> teams) {
-        this.slots = new ArrayList<>(slots);
-        this.allTeams = teams.stream().collect(Collectors.toMap(Team::getName, t -> t));
+        this(new DrawModel(slots, teams));
+    }
+
+    /** Create an empty state over a prebuilt model (shared, never mutated). */
+    public AssignmentState(DrawModel model) {
+        this.model = model;
+        this.allTeams = model.getTeams().stream().collect(Collectors.toMap(Team::getName, t -> t));
+
+        int slotCount = model.slotCount();
+        int teamCount = model.teamCount();
+        this.slotTeam = new int[slotCount];
+        this.teamSlot = new int[teamCount];
+        Arrays.fill(slotTeam, -1);
+        Arrays.fill(teamSlot, -1);
 
-        for (GroupSlot slot : slots) {
-            assignments.put(slot, null);
-            domains.put(slot, new HashSet<>(teams));
-        }
-        // initialize indexes
-        for (Team t : teams) {
-            unassignedTeamNames.add(t.getName());
-            teamToCandidateSlots.put(t.getName(), new HashSet<>());
-        }
         // each slot initially can accept all teams
-        for (GroupSlot s : slots) {
-            for (Team t : teams) {
-                teamToCandidateSlots.get(t.getName()).add(s);
-            }
-        }
+        this.slotDomains = new long[slotCount];
+        this.teamCandidates = new long[teamCount];
+        Arrays.fill(slotDomains, model.allTeams());
+        Arrays.fill(teamCandidates, model.allSlots());
+        this.unassignedTeamBits = model.allTeams();
+        this.groupPotCounts = new int[model.groupCount() * model.potCount()];
+        this.groupPotMask = new long[model.groupCount()];
+        this.groupContinentCounts = new int[model.groupCount() * model.continentCount()];
+        this.groupContinentMask = new long[model.groupCount()];
+        this.changedDomainSlots = model.allSlots();
+        this.grownDomainSlots = model.allSlots();
+        this.matching = new SlotTeamMatching(this, slotCount, teamCount);
+
+        for (int s = 0; s < slotCount; s++)
+            domainViews.put(model.slot(s), new DomainView(s));
     }
 
+    /**
+     * Independent copy of the current assignments, domains and group
+     * aggregates over the same model, for searching a subtree on another
+     * thread. The copy starts with an empty trail, so it cannot be rolled
+     * back past the point it was taken at, and reports every slot as
+     * changed so propagation on it starts from scratch.
+     */
     public AssignmentState copyForSearch() {
-        return new AssignmentState(getSlots(), getAllTeams().values().stream().collect(Collectors.toList()));
+        return new AssignmentState(this);
+    }
+
+    private AssignmentState(AssignmentState other) {
+        this.model = other.model;
+        this.allTeams = other.allTeams;
+        this.slotTeam = other.slotTeam.clone();
+        this.teamSlot = other.teamSlot.clone();
+        this.slotDomains = other.slotDomains.clone();
+        this.teamCandidates = other.teamCandidates.clone();
+        this.assignedSlotBits = other.assignedSlotBits;
+        this.unassignedTeamBits = other.unassignedTeamBits;
+        this.groupPotCounts = other.groupPotCounts.clone();
+        this.groupPotMask = other.groupPotMask.clone();
+        this.groupContinentCounts = other.groupContinentCounts.clone();
+        this.groupContinentMask = other.groupContinentMask.clone();
+        this.changedDomainSlots = model.allSlots();
+        this.grownDomainSlots = model.allSlots();
+        this.matching = new SlotTeamMatching(this, model.slotCount(), model.teamCount());
+        this.currentPotTeams.putAll(other.currentPotTeams);
+
+        for (int s = 0; s < model.slotCount(); s++)
+            domainViews.put(model.slot(s), new DomainView(s));
+    }
+
+    public DrawModel model() {
+        return model;
     }
 
     public List<GroupSlot> getSlots() {
-        return Collections.unmodifiableList(slots);
+        return model.getSlots();
     }
 
     public Map<String, Team> getAllTeams() {
         return Collections.unmodifiableMap(allTeams);
     }
 
+    // --- Dense id accessors ---
+
+    public int slotCount() {
+        return model.slotCount();
+    }
+
+    public int teamCount() {
+        return model.teamCount();
+    }
+
+    /** Dense id of the slot, or -1 when the slot is not part of this state. */
+    public int slotId(GroupSlot slot) {
+        return model.slotId(slot);
+    }
+
+    /** Dense id of the team, or -1 when the team is not part of this state. */
+    public int teamId(String teamName) {
+        return model.teamId(teamName);
+    }
+
+    /** Dense id of the team, or -1 when the team is not part of this state. */
+    public int teamId(Team team) {
+        return model.teamId(team);
+    }
+
+    public GroupSlot slotById(int slotId) {
+        return model.slot(slotId);
+    }
+
+    public Team teamById(int teamId) {
+        return model.team(teamId);
+    }
+
+    /** Bitset of candidate team ids for the slot. */
+    public long domainBits(int slotId) {
+        return slotDomains[slotId];
+    }
+
+    /** Bitset of candidate slot ids for the team. */
+    public long candidateSlotBits(int teamId) {
+        return teamCandidates[teamId];
+    }
+
+    public long assignedSlotBits() {
+        return assignedSlotBits;
+    }
+
+    public long unassignedSlotBits() {
+        return ~assignedSlotBits & model.allSlots();
+    }
+
+    public long unassignedTeamBits() {
+        return unassignedTeamBits;
+    }
+
+    /** Team id assigned to the slot, or -1. */
+    public int assignedTeam(int slotId) {
+        return slotTeam[slotId];
+    }
+
+    /** Slot id the team is assigned to, or -1. */
+    public int assignedSlot(int teamId) {
+        return teamSlot[teamId];
+    }
+
+    // --- Assignment ---
+
     public void assign(GroupSlot slot, Team team) {
-        assignments.put(slot, team);
-        // update domains/indexes: slot domain becomes the singleton team
-        Set<Team> old = domains.get(slot);
-        if (old != null) {
-            for (Team t : new HashSet<>(old)) {
-                if (!t.getName().equals(team.getName())) {
-                    // remove slot from candidate list of t
-                    Set<GroupSlot> sset = teamToCandidateSlots.get(t.getName());
-                    if (sset != null)
-                        sset.remove(slot);
-                }
-            }
-        }
-        domains.put(slot, new HashSet<>(Collections.singleton(team)));
-        // mark team as assigned
-        unassignedTeamNames.remove(team.getName());
+        assign(requireSlot(slot), requireTeam(team));
+    }
+
+    public void assign(int slotId, int teamId) {
+        setAssigned(slotId, teamId);
+        // slot domain becomes the singleton team
+        setDomain(slotId, 1L << teamId);
     }
 
     public void unassign(GroupSlot slot, List<Team> originalDomain) {
-        assignments.put(slot, null);
+        int s = requireSlot(slot);
+        setAssigned(s, -1);
         // restore domain
-        Set<Team> newDom = new HashSet<>(originalDomain);
-        domains.put(slot, newDom);
-        // update candidate index
-        for (Team t : newDom) {
-            teamToCandidateSlots.computeIfAbsent(t.getName(), k -> new HashSet<>()).add(slot);
-            unassignedTeamNames.add(t.getName());
+        long bits = 0L;
+        for (Team t : originalDomain) {
+            int id = model.teamId(t);
+            if (id >= 0)
+                bits |= 1L << id;
+        }
+        setDomain(s, bits);
+    }
+
+    private int requireSlot(GroupSlot slot) {
+        int s = model.slotId(slot);
+        if (s < 0)
+            throw new IllegalArgumentException("Unknown slot: " + slot);
+        return s;
+    }
+
+    private int requireTeam(Team team) {
+        int t = model.teamId(team);
+        if (t < 0)
+            throw new IllegalArgumentException("Unknown team: " + team.getName());
+        return t;
+    }
+
+    // --- Trail ---
+
+    /**
+     * Mark the current position of the undo trail. Pass the returned value to
+     * {@link #rollbackTo(int)} to undo every change made after this call.
+     */
+    public int checkpoint() {
+        return trailSize;
+    }
+
+    /**
+     * Undo all domain removals and (un)assignments recorded since the given
+     * checkpoint, newest first. Costs O(number of changes undone).
+     */
+    public void rollbackTo(int checkpoint) {
+        while (trailSize > checkpoint) {
+            trailSize--;
+            int entry = trailSlots[trailSize];
+            long previous = trailValues[trailSize];
+            if ((entry & TRAIL_ASSIGNMENT) != 0)
+                writeAssigned(entry & ~TRAIL_ASSIGNMENT, (int) previous);
+            else
+                writeDomain(entry, previous);
+        }
+    }
+
+    private void record(int entry, long previous) {
+        if (trailSize == trailSlots.length) {
+            trailSlots = Arrays.copyOf(trailSlots, trailSize * 2);
+            trailValues = Arrays.copyOf(trailValues, trailSize * 2);
+        }
+        trailSlots[trailSize] = entry;
+        trailValues[trailSize] = previous;
+        trailSize++;
+    }
+
+    /** Set (or clear, with -1) the team assigned to a slot, recording the change. */
+    private void setAssigned(int s, int t) {
+        int previous = slotTeam[s];
+        if (previous == t)
+            return;
+        record(s | TRAIL_ASSIGNMENT, previous);
+        writeAssigned(s, t);
+    }
+
+    private void writeAssigned(int s, int t) {
+        int previous = slotTeam[s];
+        changedAssignmentSlots |= 1L << s;
+        if (previous >= 0) {
+            teamSlot[previous] = -1;
+            unassignedTeamBits |= 1L << previous;
+            countInGroup(model.slotGroup(s), previous, -1);
+        }
+        slotTeam[s] = t;
+        if (t >= 0) {
+            teamSlot[t] = s;
+            assignedSlotBits |= 1L << s;
+            unassignedTeamBits &= ~(1L << t);
+            countInGroup(model.slotGroup(s), t, 1);
+        } else {
+            assignedSlotBits &= ~(1L << s);
+        }
+    }
+
+    /** Add (+1) or remove (-1) a team from its group's pot and continent aggregates. */
+    private void countInGroup(int g, int t, int delta) {
+        int pot = Long.numberOfTrailingZeros(model.teamPotBit(t));
+        int at = g * model.potCount() + pot;
+        groupPotCounts[at] += delta;
+        if (groupPotCounts[at] == 0)
+            groupPotMask[g] &= ~(1L << pot);
+        else
+            groupPotMask[g] |= 1L << pot;
+
+        int base = g * model.continentCount();
+        for (long m = model.teamContinents(t); m != 0; m &= m - 1) {
+            int c = Long.numberOfTrailingZeros(m);
+            groupContinentCounts[base + c] += delta;
+            if (groupContinentCounts[base + c] == 0)
+                groupContinentMask[g] &= ~(1L << c);
+            else
+                groupContinentMask[g] |= 1L << c;
+        }
+    }
+
+    // --- Group aggregates ---
+
+    /** Pots of the teams assigned to the group, as a mask of {@link DrawModel#teamPotBit} bits. */
+    public long groupPotMask(int groupId) {
+        return groupPotMask[groupId];
+    }
+
+    /** Continents of the teams assigned to the group, as a continent-id bitmask. */
+    public long groupContinentMask(int groupId) {
+        return groupContinentMask[groupId];
+    }
+
+    /** Number of teams assigned to the group that play in the continent. */
+    public int groupContinentCount(int groupId, int continentId) {
+        return groupContinentCounts[groupId * model.continentCount() + continentId];
+    }
+
+    /** Replace a slot's domain word, recording the previous word on the trail. */
+    private void setDomain(int s, long bits) {
+        if (slotDomains[s] == bits)
+            return;
+        record(s, slotDomains[s]);
+        writeDomain(s, bits);
+    }
+
+    /** Replace a slot's domain word and keep the transposed index in sync. */
+    private void writeDomain(int s, long bits) {
+        long changed = slotDomains[s] ^ bits;
+        long slotBit = 1L << s;
+        for (long m = changed; m != 0; m &= m - 1) {
+            int t = Long.numberOfTrailingZeros(m);
+            teamCandidates[t] ^= slotBit;
         }
+        if ((changed & bits) != 0)
+            grownDomainSlots |= slotBit;
+        changedDomainSlots |= slotBit;
+        slotDomains[s] = bits;
+    }
+
+    // --- Change tracking ---
+
+    /**
+     * Slots whose domain changed (shrunk, or grew on rollback) since the last
+     * {@link #clearChangedSlots()}. A fresh state reports every slot.
+     */
+    public long changedDomainSlots() {
+        return changedDomainSlots;
+    }
+
+    /** Slots whose domain gained values (rollback, restore) since the last {@link #clearChangedSlots()}. */
+    public long grownDomainSlots() {
+        return grownDomainSlots;
+    }
+
+    /** Slots assigned or unassigned since the last {@link #clearChangedSlots()}. */
+    public long changedAssignmentSlots() {
+        return changedAssignmentSlots;
+    }
+
+    /** Forget recorded changes; called once propagation reached a fixpoint. */
+    public void clearChangedSlots() {
+        changedDomainSlots = 0L;
+        grownDomainSlots = 0L;
+        changedAssignmentSlots = 0L;
     }
 
     public boolean isTeamAssigned(Team team) {
-        return !unassignedTeamNames.contains(team.getName());
+        return !isTeamUnassigned(team.getName());
     }
 
     public boolean isAssigned(GroupSlot slot) {
-        return assignments.get(slot) != null;
+        return getAssigned(slot) != null;
     }
 
     public Team getAssigned(GroupSlot slot) {
-        return assignments.get(slot);
+        int s = model.slotId(slot);
+        return s >= 0 && slotTeam[s] >= 0 ? model.team(slotTeam[s]) : null;
     }
 
+    /**
+     * Snapshot of the current assignments in slot order; unassigned slots map
+     * to null. Not used by the search itself, which reads the id arrays.
+     */
     public SortedMap<GroupSlot, Team> getAssignments() {
-        return assignments;
+        SortedMap<GroupSlot, Team> assignments = new TreeMap<>();
+        for (int s = 0; s < slotTeam.length; s++)
+            assignments.put(model.slot(s), slotTeam[s] >= 0 ? model.team(slotTeam[s]) : null);
+        return Collections.unmodifiableSortedMap(assignments);
     }
 
+    /** Live, read-only view of every slot's domain. */
     public Map<GroupSlot, Set<Team>> getDomains() {
-        return domains;
+        return Collections.unmodifiableSortedMap(domainViews);
     }
 
     public Set<Team> getDomains(String slotString) {
         String group = slotString.substring(0, 1);
         int position = Integer.parseInt(slotString.substring(1));
         GroupSlot targetSlot = new GroupSlot(group, position);
-        return domains.get(targetSlot);
+        return domainViews.get(targetSlot);
     }
 
     public Set<Team> getDomains(GroupSlot slot) {
-        return domains.get(slot);
+        return domainViews.get(slot);
     }
 
     public List<GroupSlot> getUnassignedSlots() {
         List<GroupSlot> unassigned = new ArrayList<>();
-        for (Map.Entry<GroupSlot, Team> entry : assignments.entrySet()) {
-            if (entry.getValue() == null)
-                unassigned.add(entry.getKey());
-        }
+        for (long m = unassignedSlotBits(); m != 0; m &= m - 1)
+            unassigned.add(model.slot(Long.numberOfTrailingZeros(m)));
         return unassigned;
     }
 
     public List<String> getNextGroupsToAssign() {
-        // Group slots by group name and count how many assignments each group already
-        // has.
-        Map<String, Integer> counts = assignments.keySet().stream()
-                .collect(Collectors.groupingBy(GroupSlot::getGroupName,
-                        Collectors.summingInt(s -> assignments.get(s) != null ? 1 : 0)));
-
-        // Find minimum assigned count (default to 0 when no groups present)
-        int min = counts.values().stream().min((o1, o2) -> Integer.compare(o1, o2)).orElse(0);
-
-        // Return alphabetically sorted group names that have the minimal count
-        return counts.entrySet().stream()
-                .filter(e -> e.getValue() == min)
-                .map(Map.Entry::getKey)
-                .sorted()
-                .collect(Collectors.toList());
+        // count how many assignments each group already has; group ids follow
+        // alphabetical order so the result is sorted
+        int min = Integer.MAX_VALUE;
+        int[] counts = new int[model.groupCount()];
+        for (int g = 0; g < counts.length; g++) {
+            counts[g] = Long.bitCount(model.groupSlots(g) & assignedSlotBits);
+            min = Math.min(min, counts[g]);
+        }
+
+        List<String> groups = new ArrayList<>();
+        for (int g = 0; g < counts.length; g++) {
+            if (counts[g] == min)
+                groups.add(model.groupName(g));
+        }
+        return groups;
     }
 
     public List<GroupSlot> nextSlotsToTry() {
@@ -178,62 +503,76 @@ public class AssignmentState {
     }
 
     public List<GroupSlot> nextSlots() {
-        Map<String, PriorityQueue<GroupSlot>> slotsByGroup = getUnassignedSlots().stream()
-                .collect(Collectors.groupingBy(GroupSlot::getGroupName,
-                        Collectors.toCollection(
-                                () -> new PriorityQueue<>(Comparator.comparingInt(GroupSlot::getPosition)))));
-
         List<GroupSlot> result = new ArrayList<>();
-        int maxPosition = slotsByGroup.values().stream()
-                .mapToInt(q -> q.size())
-                .max().orElse(0);
-
-        for (int pos = 0; pos < maxPosition; pos++) {
-            for (PriorityQueue<GroupSlot> pq : slotsByGroup.values()) {
-                if (!pq.isEmpty()) {
-                    result.add(pq.poll());
-                }
+        for (int s : nextSlotIds(model.allSlots()))
+            result.add(model.slot(s));
+        return result;
+    }
+
+    /**
+     * Unassigned slot ids interleaved across groups: the lowest free position
+     * of every group (in group order), then the next one, and so on. Only ids
+     * contained in {@code filter} are returned, but ranks are taken over all
+     * unassigned slots.
+     */
+    public int[] nextSlotIds(long filter) {
+        long unassigned = unassignedSlotBits();
+        int groups = model.groupCount();
+        long[] remaining = new long[groups];
+        for (int g = 0; g < groups; g++)
+            remaining[g] = model.groupSlots(g) & unassigned;
+
+        int[] result = new int[Long.bitCount(unassigned & filter)];
+        int n = 0;
+        for (long left = unassigned; left != 0;) {
+            for (int g = 0; g < groups; g++) {
+                if (remaining[g] == 0)
+                    continue;
+                long lowest = remaining[g] & -remaining[g];
+                remaining[g] ^= lowest;
+                left ^= lowest;
+                if ((filter & lowest) != 0)
+                    result[n++] = Long.numberOfTrailingZeros(lowest);
             }
         }
-
         return result;
-
     }
 
     public List<GroupSlot> nextSlotsByLeastDomainSize() {
         List<GroupSlot> unassigned = getUnassignedSlots();
-        unassigned.sort(Comparator.comparingInt(s -> domains.get(s).size()));
+        unassigned.sort(Comparator.comparingInt(s -> Long.bitCount(slotDomains[model.slotId(s)])));
         return unassigned;
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (Map.Entry<GroupSlot, Team> entry : assignments.entrySet()) {
-            sb.append(entry.getKey()).append(" -> ").append(entry.getValue()).append("\n");
+        for (int s = 0; s < slotTeam.length; s++) {
+            sb.append(model.slot(s)).append(" -> ").append(slotTeam[s] >= 0 ? model.team(slotTeam[s]) : null)
+                    .append("\n");
         }
         return sb.toString();
     }
 
     public SortedMap<GroupSlot, Set<Team>> getUnassignedDomains() {
         SortedMap<GroupSlot, Set<Team>> result = new TreeMap<>();
-        for (Map.Entry<GroupSlot, Team> e : assignments.entrySet()) {
-            if (e.getValue() == null) {
-                GroupSlot s = e.getKey();
-                Set<Team> dom = domains.get(s);
-                result.put(s, dom != null ? new HashSet<>(dom) : new HashSet<>());
-            }
+        for (long m = unassignedSlotBits(); m != 0; m &= m - 1) {
+            int s = Long.numberOfTrailingZeros(m);
+            result.put(model.slot(s), new HashSet<>(domainViews.get(model.slot(s))));
         }
         return result;
     }
 
     // --- Index helpers ---
     public boolean isTeamUnassigned(String teamName) {
-        return unassignedTeamNames.contains(teamName);
+        int t = model.teamId(teamName);
+        return t >= 0 && (unassignedTeamBits & (1L << t)) != 0;
     }
 
+    /** Live, read-only view of the slots whose domain still contains the team. */
     public Set<GroupSlot> getCandidateSlotsForTeam(String teamName) {
-        return teamToCandidateSlots.getOrDefault(teamName, new HashSet<>());
+        int t = model.teamId(teamName);
+        return t >= 0 ? new CandidateView(t) : Collections.emptySet();
     }
 
     /**
@@ -241,25 +580,22 @@ public class AssignmentState {
      * to the solver's `nextSlots()` ordering.
      */
     public List<GroupSlot> candidateSlots(Team team) {
-        Set<GroupSlot> candidates = getCandidateSlotsForTeam(team.getName());
-        List<GroupSlot> ordered = nextSlots();
-        return ordered.stream()
-                .filter(candidates::contains)
-                .collect(Collectors.toList());
+        int t = model.teamId(team);
+        List<GroupSlot> ordered = new ArrayList<>();
+        if (t < 0)
+            return ordered;
+        for (int s : nextSlotIds(teamCandidates[t]))
+            ordered.add(model.slot(s));
+        return ordered;
     }
 
     /** Remove a single team (by name) from a slot's domain and update indexes. */
     public boolean removeTeamFromDomain(GroupSlot slot, String teamName) {
-        Set<Team> dom = domains.get(slot);
-        if (dom == null)
+        int s = model.slotId(slot);
+        int t = model.teamId(teamName);
+        if (s < 0 || t < 0)
             return false;
-        boolean removed = dom.removeIf(t -> t.getName().equals(teamName));
-        if (removed) {
-            Set<GroupSlot> sset = teamToCandidateSlots.get(teamName);
-            if (sset != null)
-                sset.remove(slot);
-        }
-        return removed;
+        return removeFromDomain(s, 1L << t) != 0;
     }
 
     /**
@@ -267,46 +603,89 @@ public class AssignmentState {
      * removed.
      */
     public int removeIfFromDomain(GroupSlot slot, Predicate<Team> pred) {
-        Set<Team> dom = domains.get(slot);
-        if (dom == null)
+        int s = model.slotId(slot);
+        if (s < 0)
             return 0;
-        int removed = 0;
-        for (Team t : new HashSet<>(dom)) {
-            if (pred.test(t)) {
-                dom.remove(t);
-                Set<GroupSlot> sset = teamToCandidateSlots.get(t.getName());
-                if (sset != null)
-                    sset.remove(slot);
-                removed++;
-            }
+        long toRemove = 0L;
+        for (long m = slotDomains[s]; m != 0; m &= m - 1) {
+            int t = Long.numberOfTrailingZeros(m);
+            if (pred.test(model.team(t)))
+                toRemove |= 1L << t;
+        }
+        return Long.bitCount(removeFromDomain(s, toRemove));
+    }
+
+    /**
+     * Remove every team in {@code teamMask} from the slot's domain. Returns the
+     * bits that were actually removed.
+     */
+    public long removeFromDomain(int slotId, long teamMask) {
+        long removed = slotDomains[slotId] & teamMask;
+        if (removed != 0) {
+            setDomain(slotId, slotDomains[slotId] & ~removed);
+            prunedValues += Long.bitCount(removed);
+            if (traceRing != null)
+                traceRing.prunes(slotId, removed, Long.bitCount(slotDomains[slotId]));
         }
         return removed;
     }
 
+    /** Record every removal into the ring; null stops recording. */
+    void setTraceRing(SearchTrace.Ring traceRing) {
+        this.traceRing = traceRing;
+    }
+
+    SearchTrace.Ring traceRing() {
+        return traceRing;
+    }
+
+    /**
+     * Values removed by {@link #removeFromDomain} over the life of the
+     * state, rollbacks included; the difference across a call is what it
+     * pruned.
+     */
+    public long prunedValues() {
+        return prunedValues;
+    }
+
     /** Replace all domains from the provided snapshot and rebuild indexes. */
     public void restoreDomains(Map<GroupSlot, Set<Team>> snapshot) {
-        domains.clear();
+        long[] words = new long[slotDomains.length];
         for (Map.Entry<GroupSlot, Set<Team>> e : snapshot.entrySet()) {
-            domains.put(e.getKey(), new HashSet<>(e.getValue()));
-        }
-        // rebuild candidate index
-        teamToCandidateSlots.clear();
-        unassignedTeamNames.clear();
-        for (Team t : allTeams.values()) {
-            unassignedTeamNames.add(t.getName());
-            teamToCandidateSlots.put(t.getName(), new HashSet<>());
-        }
-        for (Map.Entry<GroupSlot, Set<Team>> e : domains.entrySet()) {
-            GroupSlot s = e.getKey();
+            int s = model.slotId(e.getKey());
+            if (s < 0)
+                continue;
             for (Team t : e.getValue()) {
-                teamToCandidateSlots.computeIfAbsent(t.getName(), k -> new HashSet<>()).add(s);
+                int id = model.teamId(t);
+                if (id >= 0)
+                    words[s] |= 1L << id;
             }
         }
-        // remove assigned teams from unassigned set
-        for (Team assigned : assignments.values()) {
-            if (assigned != null)
-                unassignedTeamNames.remove(assigned.getName());
-        }
+        restoreDomainWords(words);
+    }
+
+    /**
+     * Replace all domain words. Changes are recorded on the trail, so an
+     * absolute restore can itself be rolled back.
+     */
+    void restoreDomainWords(long[] words) {
+        for (int s = 0; s < slotDomains.length; s++)
+            setDomain(s, words[s]);
+    }
+
+    long[] copyDomainWords() {
+        return slotDomains.clone();
+    }
+
+    int[] copyAssignedTeams() {
+        return slotTeam.clone();
+    }
+
+    /** Restore assignments and domain words captured by an {@link AssignmentSnapshot}. */
+    void restoreWords(long[] words, int[] assignedTeams) {
+        for (int s = 0; s < slotTeam.length; s++)
+            setAssigned(s, assignedTeams[s]);
+        restoreDomainWords(words);
     }
 
     /**
@@ -315,11 +694,7 @@ public class AssignmentState {
      * callers can simply call `restoreFromSnapshot(snapshot)`.
      */
     public DomainsSnapshot snapshotDomains(GroupSlot slotToUnassign) {
-        Map<GroupSlot, Set<Team>> copy = new HashMap<>();
-        for (Map.Entry<GroupSlot, Set<Team>> e : domains.entrySet()) {
-            copy.put(e.getKey(), new HashSet<>(e.getValue()));
-        }
-        return new DomainsSnapshot(copy, slotToUnassign);
+        return new DomainsSnapshot(copyDomainWords(), slotToUnassign);
     }
 
     /**
@@ -327,33 +702,26 @@ public class AssignmentState {
      * the snapshot.
      */
     public void restoreFromSnapshot(DomainsSnapshot snap) {
-        restoreDomains(snap.getMap());
         GroupSlot slotToUnassign = snap.getSlotToUnassign();
-        if (slotToUnassign != null) {
-            Set<Team> slotDomain = snap.getMap().get(slotToUnassign);
-            List<Team> originalDomainForSlot = slotDomain != null ? new ArrayList<>(slotDomain) : new ArrayList<>();
-            unassign(slotToUnassign, originalDomainForSlot);
-        }
+        if (slotToUnassign != null)
+            setAssigned(requireSlot(slotToUnassign), -1);
+        restoreDomainWords(snap.getWords());
     }
 
     /**
-     * Simple container for a snapshot of domains with the slot-to-unassign.
+     * Simple container for a snapshot of domain words with the slot-to-unassign.
      */
     public static class DomainsSnapshot {
-        private final Map<GroupSlot, Set<Team>> domains;
+        private final long[] words;
         private final GroupSlot slotToUnassign;
 
-        DomainsSnapshot(Map<GroupSlot, Set<Team>> domains, GroupSlot slotToUnassign) {
-            Map<GroupSlot, Set<Team>> copy = new HashMap<>();
-            for (Map.Entry<GroupSlot, Set<Team>> e : domains.entrySet()) {
-                copy.put(e.getKey(), new HashSet<>(e.getValue()));
-            }
-            this.domains = copy;
+        DomainsSnapshot(long[] words, GroupSlot slotToUnassign) {
+            this.words = words;
             this.slotToUnassign = slotToUnassign;
         }
 
-        Map<GroupSlot, Set<Team>> getMap() {
-            return domains;
+        long[] getWords() {
+            return words;
         }
 
         GroupSlot getSlotToUnassign() {
@@ -366,19 +734,13 @@ public class AssignmentState {
      * unassigned slot domain (i.e. cannot be placed anywhere).
      */
     public List<String> findUnassignedTeamsWithNoUnassignedDomain() {
-        List<String> missing = new ArrayList<>();
-        Set<String> teamsInUnassignedDomains = new HashSet<>();
-        for (Map.Entry<GroupSlot, Set<Team>> e : getUnassignedDomains().entrySet()) {
-            for (Team t : e.getValue()) {
-                teamsInUnassignedDomains.add(t.getName());
-            }
-        }
+        long inUnassignedDomains = 0L;
+        for (long m = unassignedSlotBits(); m != 0; m &= m - 1)
+            inUnassignedDomains |= slotDomains[Long.numberOfTrailingZeros(m)];
 
-        for (String teamName : getAllTeams().keySet()) {
-            if (isTeamUnassigned(teamName) && !teamsInUnassignedDomains.contains(teamName)) {
-                missing.add(teamName);
-            }
-        }
+        List<String> missing = new ArrayList<>();
+        for (long m = unassignedTeamBits & ~inUnassignedDomains; m != 0; m &= m - 1)
+            missing.add(model.team(Long.numberOfTrailingZeros(m)).getName());
         return missing;
     }
 
@@ -388,84 +750,58 @@ public class AssignmentState {
      */
     public List<String> findUnassignedTeamsWithNoUnassignedCandidateSlot() {
         List<String> missing = new ArrayList<>();
-        Set<GroupSlot> unassignedSlots = new HashSet<>(getUnassignedSlots());
-
-        for (String teamName : getAllTeams().keySet()) {
-            if (!isTeamUnassigned(teamName))
-                continue;
-            Set<GroupSlot> candidates = getCandidateSlotsForTeam(teamName);
-            boolean hasUnassigned = candidates.stream().anyMatch(unassignedSlots::contains);
-            if (!hasUnassigned)
-                missing.add(teamName);
+        long unassignedSlots = unassignedSlotBits();
+        for (long m = unassignedTeamBits; m != 0; m &= m - 1) {
+            int t = Long.numberOfTrailingZeros(m);
+            if ((teamCandidates[t] & unassignedSlots) == 0)
+                missing.add(model.team(t).getName());
         }
         return missing;
     }
 
-    /**
-     * Check whether there exists a matching that assigns every unassigned slot
-     * to a distinct unassigned team from its domain. Returns true if such a
-     * perfect matching exists (i.e. no Hall violation detected).
-     */
-    public boolean hasPerfectMatchingForUnassignedSlots() {
-        List<GroupSlot> unassignedSlots = getUnassignedSlots();
-        int n = unassignedSlots.size();
-        if (n == 0) return true;
-
-        // build index of unassigned teams that appear in any unassigned slot domain
-        Map<String, Integer> teamIndex = new HashMap<>();
-        for (GroupSlot s : unassignedSlots) {
-            Set<Team> dom = getDomains(s);
-            if (dom == null)
-                continue;
-            for (Team t : dom) {
-                if (!isTeamUnassigned(t.getName()))
-                    continue;
-                if (!teamIndex.containsKey(t.getName()))
-                    teamIndex.put(t.getName(), teamIndex.size());
-            }
+    /** True when some unassigned team has no unassigned candidate slot left. */
+    public boolean hasUnassignedTeamWithoutCandidateSlot() {
+        long unassignedSlots = unassignedSlotBits();
+        for (long m = unassignedTeamBits; m != 0; m &= m - 1) {
+            if ((teamCandidates[Long.numberOfTrailingZeros(m)] & unassignedSlots) == 0)
+                return true;
         }
+        return false;
+    }
 
-        int m = teamIndex.size();
-        if (m < n)
-            return false; // not enough teams to cover slots
-
-        List<List<Integer>> adj = new ArrayList<>(n);
-        for (GroupSlot s : unassignedSlots) {
-            List<Integer> edges = new ArrayList<>();
-            Set<Team> dom = getDomains(s);
-            if (dom != null) {
-                for (Team t : dom) {
-                    Integer idx = teamIndex.get(t.getName());
-                    if (idx != null)
-                        edges.add(idx);
-                }
-            }
-            adj.add(edges);
+    /** True when some unassigned slot has an empty domain. */
+    public boolean hasEmptyUnassignedDomain() {
+        for (long m = unassignedSlotBits(); m != 0; m &= m - 1) {
+            if (slotDomains[Long.numberOfTrailingZeros(m)] == 0)
+                return true;
         }
+        return false;
+    }
 
-        int[] matchTeam = new int[m];
-        Arrays.fill(matchTeam, -1);
-
-        for (int slot = 0; slot < n; slot++) {
-            boolean[] seen = new boolean[m];
-            if (!dfsMatch(slot, adj, matchTeam, seen))
-                return false;
-        }
+    /**
+     * Check whether the unassigned slots and unassigned teams admit a matching
+     * that saturates the smaller side (a perfect matching when, as in a full
+     * draw, both sides have the same size). Returns false on a Hall violation.
+     * The matching is maintained incrementally across calls.
+     */
+    public boolean hasPerfectMatchingForUnassignedSlots() {
+        return matching.saturates();
+    }
 
-        return true;
+    /**
+     * Team matched to an unassigned slot by the last
+     * {@link #hasPerfectMatchingForUnassignedSlots()} call, or -1.
+     */
+    public int matchedTeam(int slotId) {
+        return matching.slotMate(slotId);
     }
 
-    private boolean dfsMatch(int slot, List<List<Integer>> adj, int[] matchTeam, boolean[] seen) {
-        for (int team : adj.get(slot)) {
-            if (seen[team])
-                continue;
-            seen[team] = true;
-            if (matchTeam[team] == -1 || dfsMatch(matchTeam[team], adj, matchTeam, seen)) {
-                matchTeam[team] = slot;
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Slot matched to an unassigned team by the last
+     * {@link #hasPerfectMatchingForUnassignedSlots()} call, or -1.
+     */
+    public int matchedSlot(int teamId) {
+        return matching.teamMate(teamId);
     }
 
     public Map<String, Team> currentPotTeams() {
@@ -474,13 +810,7 @@ public class AssignmentState {
 
     /** Create a snapshot object capturing current assignments and domains. */
     public AssignmentSnapshot createSnapshot() {
-        Map<GroupSlot, Set<Team>> domainsCopy = new HashMap<>();
-        for (Map.Entry<GroupSlot, Set<Team>> e : domains.entrySet()) {
-            domainsCopy.put(e.getKey(), new HashSet<>(e.getValue()));
-        }
-        Map<GroupSlot, Team> assignmentsCopy = new HashMap<>();
-        assignmentsCopy.putAll(assignments);
-        return new AssignmentSnapshot(this, domainsCopy, assignmentsCopy);
+        return new AssignmentSnapshot(this, copyDomainWords(), copyAssignedTeams());
     }
 
     /** Restore state from an AssignmentSnapshot produced by this state. */
@@ -488,4 +818,114 @@ public class AssignmentState {
         if (snapshot == null) return;
         snapshot.restore();
     }
+
+    /** Set view over one slot's domain word. */
+    private final class DomainView extends AbstractSet<Team> {
+        private final int slot;
+
+        DomainView(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Team))
+                return false;
+            int t = model.teamId((Team) o);
+            return t >= 0 && (slotDomains[slot] & (1L << t)) != 0;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Team))
+                return false;
+            int t = model.teamId((Team) o);
+            return t >= 0 && removeFromDomain(slot, 1L << t) != 0;
+        }
+
+        @Override
+        public int size() {
+            return Long.bitCount(slotDomains[slot]);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return slotDomains[slot] == 0;
+        }
+
+        @Override
+        public Iterator<Team> iterator() {
+            return new BitIterator<>(slotDomains[slot], model::team,
+                    t -> removeFromDomain(slot, 1L << t));
+        }
+    }
+
+    /** Set view over one team's candidate-slot word. */
+    private final class CandidateView extends AbstractSet<GroupSlot> {
+        private final int team;
+
+        CandidateView(int team) {
+            this.team = team;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof GroupSlot))
+                return false;
+            int s = model.slotId((GroupSlot) o);
+            return s >= 0 && (teamCandidates[team] & (1L << s)) != 0;
+        }
+
+        @Override
+        public int size() {
+            return Long.bitCount(teamCandidates[team]);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return teamCandidates[team] == 0;
+        }
+
+        @Override
+        public Iterator<GroupSlot> iterator() {
+            return new BitIterator<>(teamCandidates[team], model::slot,
+                    s -> removeFromDomain(s, 1L << team));
+        }
+    }
+
+    /** Iterates the set bits of a word captured at creation time. */
+    private static final class BitIterator<E> implements Iterator<E> {
+        private long remaining;
+        private int last = -1;
+        private final IntFunction<E> lookup;
+        private final IntConsumer remover;
+
+        BitIterator(long word, IntFunction<E> lookup, IntConsumer remover) {
+            this.remaining = word;
+            this.lookup = lookup;
+            this.remover = remover;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining != 0;
+        }
+
+        @Override
+        public E next() {
+            if (remaining == 0)
+                throw new NoSuchElementException();
+            last = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            return lookup.apply(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            remover.accept(last);
+            last = -1;
+        }
+    }
 }
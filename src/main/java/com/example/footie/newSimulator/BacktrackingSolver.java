@@ -1,12 +1,15 @@
 package com.example.footie.newSimulator;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 
 import com.example.footie.newSimulator.constraint.ConstraintManager;
 
@@ -19,9 +22,73 @@ public class BacktrackingSolver {
     // Node counting for search-limits
     private final AtomicLong nodesVisited = new AtomicLong(0);
     private volatile long maxNodes = 125L; // default: no limit
+    // polled once per node; true stops the search
+    private volatile BooleanSupplier cancellation = () -> false;
+
+    private VariableOrdering variableOrdering = VariableOrdering.INPUT_ORDER;
+    private ValueOrdering valueOrdering = ValueOrdering.GROUP_ORDER;
+    // dom/wdeg: failed propagations per team id, starting at 1
+    private final int[] conflictWeights = new int[DrawModel.MAX_SIZE];
+
+    private RestartPolicy restartPolicy = RestartPolicy.none();
+    private Random random = new Random();
+    private long restarts;
+    private long backtracks;
+    // per run: node count at which the run is abandoned, and the slot shuffle
+    // (null on the first run, which keeps the configured value order)
+    private long runLimit = Long.MAX_VALUE;
+    private Random runRandom;
+
+    private boolean symmetryBreaking = true;
+    private boolean groupRelabelling;
+    // per solve: group id -> lowest group id of its symmetry class, while
+    // symmetric slots are skipped
+    private int[] groupClasses;
+    private long symmetryPrunes;
+
+    private boolean backjumping;
+    // team left without a working slot by the last wipeout, and the depth it
+    // failed at; -1 while no jump is under way
+    private int deadTeam = -1;
+    private int deadDepth;
+    private long backjumps;
+    // failed states, kept across restarts; null while nogoods are off for
+    // the current solve
+    private final NogoodStore nogoods = new NogoodStore(1 << 16);
+    private NogoodStore activeNogoods;
+    // shared with other solvers; null when none is set or it does not apply
+    // to the current solve
+    private volatile FeasibilityCache feasibilityCache;
+    private FeasibilityCache activeCache;
+
+    // chooses the consistency level per search node; null keeps onlyCheckDomainAfter
+    private ConsistencyPolicy consistencyPolicy;
+
+    // filled by every solve while set; see SolverStats
+    private SolverStats stats;
+    // records the search while set, into the solving thread's ring
+    private SearchTrace trace;
+    private SearchTrace.Ring traceRing;
+    // per solve: a flight recording has the solver events enabled; see SolverEvents
+    private boolean flightRecorded;
+
+    // parallel search: placements below the root that still fork a task per child
+    private int splitDepth = 2;
+
+    /** Unwinds the search when a run's budget is spent; carries no stack trace. */
+    private static final class RestartSignal extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        RestartSignal() {
+            super("restart", null, false, false);
+        }
+    }
+
+    private static final RestartSignal RESTART = new RestartSignal();
 
     public BacktrackingSolver(ConstraintManager constraintManager) {
         this.constraintManager = constraintManager;
+        Arrays.fill(conflictWeights, 1);
     }
 
     /** Set a maximum number of search nodes to explore. Use <=0 to disable. */
@@ -30,10 +97,33 @@ public class BacktrackingSolver {
         this.nodesVisited.set(0);
     }
 
+    /**
+     * Polled at every search node; once it returns true the search throws
+     * {@link CancellationException} and the state is rolled back to where it
+     * was on entry. Lets another thread stop a solve cooperatively.
+     */
+    public void setCancellation(BooleanSupplier cancellation) {
+        this.cancellation = cancellation != null ? cancellation : () -> false;
+    }
+
     public void setOnlyCheckDomainAfter(int onlyCheckDomainAfter) {
         this.onlyCheckDomainAfter = onlyCheckDomainAfter;
     }
 
+    /**
+     * Choose the consistency level of each search node by depth from what
+     * each level is measured to save; null (the default) keeps the
+     * {@code onlyCheckDomainAfter} threshold. Manual placements and the
+     * parallel search keep the threshold either way.
+     */
+    public void setConsistencyPolicy(ConsistencyPolicy consistencyPolicy) {
+        this.consistencyPolicy = consistencyPolicy;
+    }
+
+    public ConsistencyPolicy getConsistencyPolicy() {
+        return consistencyPolicy;
+    }
+
     public long getNodesVisited() {
         return nodesVisited.get();
     }
@@ -42,110 +132,953 @@ public class BacktrackingSolver {
         return nodesVisited.get() >= maxNodes;
     }
 
+    public void setVariableOrdering(VariableOrdering variableOrdering) {
+        this.variableOrdering = variableOrdering;
+    }
+
+    public VariableOrdering getVariableOrdering() {
+        return variableOrdering;
+    }
+
+    public void setValueOrdering(ValueOrdering valueOrdering) {
+        this.valueOrdering = valueOrdering;
+    }
+
+    public ValueOrdering getValueOrdering() {
+        return valueOrdering;
+    }
+
+    /** Restart schedule; {@code maxNodes} still caps the nodes of all runs together. */
+    public void setRestartPolicy(RestartPolicy restartPolicy) {
+        this.restartPolicy = restartPolicy;
+    }
+
+    public RestartPolicy getRestartPolicy() {
+        return restartPolicy;
+    }
+
+    /** Source of the restart seeds; pass a seeded instance to replay a draw. */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    /** Number of restarts made so far. */
+    public long getRestarts() {
+        return restarts;
+    }
+
+    /** Number of placements undone so far because the search below them failed. */
+    public long getBacktracks() {
+        return backtracks;
+    }
+
     /**
-     * Team-first backtracking: place the given list of teams (order will be
-     * chosen with MRV-on-teams) into the state. Returns true if a complete
+     * Add the nodes, backtracks and restarts of every following solve to
+     * {@code stats}, and let the constraint manager time its checks in it;
+     * null, the default, stops measuring.
+     */
+    public void setStats(SolverStats stats) {
+        this.stats = stats;
+        constraintManager.setStats(stats);
+    }
+
+    public SolverStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Record the placements, prunes, backtracks and restarts of the
+     * following solves and manual placements in {@code trace}; null, the
+     * default, records nothing. The parallel search is not recorded.
+     */
+    public void setTrace(SearchTrace trace) {
+        this.trace = trace;
+    }
+
+    public SearchTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Skip groups that are interchangeable with one already tried at the same
+     * node. The skipped subtrees fail exactly when the tried one did, so the
+     * draw found does not change. On by default.
+     */
+    public void setSymmetryBreaking(boolean symmetryBreaking) {
+        this.symmetryBreaking = symmetryBreaking;
+    }
+
+    public boolean isSymmetryBreaking() {
+        return symmetryBreaking;
+    }
+
+    /**
+     * Relabel the groups that were interchangeable on entry at random once a
+     * solution is found, spreading the teams evenly over them. That changes
+     * the draw distribution: the ceremony fills the first group that keeps
+     * the draw completable, which favours the earlier groups. Off by
+     * default; only for value orderings that do not follow the ceremony.
+     */
+    public void setGroupRelabelling(boolean groupRelabelling) {
+        this.groupRelabelling = groupRelabelling;
+    }
+
+    public boolean isGroupRelabelling() {
+        return groupRelabelling;
+    }
+
+    /** Number of slots skipped as symmetric to one already tried. */
+    public long getSymmetryPrunes() {
+        return symmetryPrunes;
+    }
+
+    /**
+     * Conflict-directed backjumping. When every slot of a team fails at
+     * once, the search unwinds to the placement that left the team without
+     * a working slot instead of trying the alternatives of every placement
+     * in between. States proved to have no completion are remembered as
+     * nogoods and cut on sight, also after a restart. Off by default.
+     */
+    public void setBackjumping(boolean backjumping) {
+        this.backjumping = backjumping;
+    }
+
+    public boolean isBackjumping() {
+        return backjumping;
+    }
+
+    /** Number of search nodes abandoned by a backjump. */
+    public long getBackjumps() {
+        return backjumps;
+    }
+
+    /** Number of search nodes cut because their state was a known nogood. */
+    public long getNogoodHits() {
+        return nogoods.hits();
+    }
+
+    /** Number of nogoods currently stored. */
+    public int getNogoodCount() {
+        return nogoods.size();
+    }
+
+    /**
+     * Cache of completable and failed states shared with other solvers of the
+     * same constraints. Like nogoods it is only used when every constraint
+     * is group-local and all unplaced teams are being placed: a known failed
+     * state is cut, and every state on the way to a solution or proved to
+     * fail is recorded. Null, the default, for none.
+     */
+    public void setFeasibilityCache(FeasibilityCache feasibilityCache) {
+        this.feasibilityCache = feasibilityCache;
+    }
+
+    public FeasibilityCache getFeasibilityCache() {
+        return feasibilityCache;
+    }
+
+    /**
+     * How many placements below the root {@link #countCompletions} and
+     * {@link #solveParallel} fork a task per child before searching the
+     * subtrees sequentially; default 2.
+     */
+    public void setSplitDepth(int splitDepth) {
+        this.splitDepth = Math.max(0, splitDepth);
+    }
+
+    public int getSplitDepth() {
+        return splitDepth;
+    }
+
+    /**
+     * Team-first backtracking: place the given teams into the state, choosing
+     * the next team with the configured {@link VariableOrdering} and trying its
+     * slots in {@link ValueOrdering} order. Returns true if a complete
      * placement for those teams exists.
+     *
+     * When a run spends its {@link RestartPolicy} budget, the state is rolled
+     * back to where it was on entry and the next run starts with the slot
+     * order shuffled by a fresh seed from the solver's random. Throws when the
+     * runs or {@code maxNodes} are exhausted, leaving the state as it was.
+     *
+     * With symmetry breaking on, groups that are empty, interchangeable under
+     * every constraint and have equal domains are explored only once per
+     * node. With group relabelling on, the solution found is then relabelled
+     * by shuffling the groups that were interchangeable on entry.
+     *
+     * With backjumping on, nogoods are also learned when every constraint is
+     * group-local and all unplaced teams are being placed; they persist
+     * across runs and calls on the same model. The {@link FeasibilityCache},
+     * when set, is consulted and filled under the same conditions.
      */
     public boolean solveTeamFirst(AssignmentState state, List<Team> teamsToPlace, int depth) throws RuntimeException {
+        int[] order = new int[teamsToPlace.size()];
+        long remaining = 0L;
+        int n = 0;
+        for (Team team : teamsToPlace) {
+            int t = state.teamId(team);
+            if (t < 0)
+                return false;
+            if ((remaining & (1L << t)) == 0) {
+                order[n++] = t;
+                remaining |= 1L << t;
+            }
+        }
+        return solveTeamFirst(state, Arrays.copyOf(order, n), remaining, depth);
+    }
+
+    /**
+     * Id form of {@link #solveTeamFirst(AssignmentState, List, int)} for
+     * callers that reuse one order array across draws; the ids must be
+     * distinct.
+     */
+    boolean solveTeamFirst(AssignmentState state, int[] order, int depth) {
+        long remaining = 0L;
+        for (int t : order)
+            remaining |= 1L << t;
+        return solveTeamFirst(state, order, remaining, depth);
+    }
+
+    private boolean solveTeamFirst(AssignmentState state, int[] order, long remaining, int depth) {
+        int checkpoint = state.checkpoint();
+        int[] classes = symmetryBreaking || groupRelabelling ? constraintManager.groupClasses(state.model()) : null;
+        groupClasses = symmetryBreaking ? classes : null;
+        int[] entryClasses = groupRelabelling ? interchangeableGroups(state, classes) : null;
+        boolean memo = remaining == state.unassignedTeamBits() && constraintManager.isGroupLocal(state.model());
+        activeNogoods = memo && backjumping ? nogoods : null;
+        activeCache = memo ? feasibilityCache : null;
+        long startNodes = nodesVisited.get();
+        long startBacktracks = backtracks;
+        long startRestarts = restarts;
+        SearchTrace.Ring outerRing = attachTrace(state);
+        boolean outerFlightRecorded = flightRecorded;
+        flightRecorded = SolverEvents.enabled();
+        try {
+            for (int run = 0;; run++) {
+                long budget = restartPolicy.budget(run);
+                long visited = nodesVisited.get();
+                runLimit = budget > Long.MAX_VALUE - visited ? Long.MAX_VALUE : visited + budget;
+                runRandom = run == 0 ? null : new Random(random.nextLong());
+                deadTeam = -1;
+                try {
+                    boolean solved = search(state, order, remaining, depth);
+                    if (solved && entryClasses != null)
+                        relabelGroups(state, checkpoint, order, entryClasses);
+                    return solved;
+                } catch (RestartSignal e) {
+                    state.rollbackTo(checkpoint);
+                    if (run + 1 >= restartPolicy.maxRuns())
+                        throw new RuntimeException("Node limit reached after " + (run + 1) + " runs");
+                    restarts++;
+                    if (traceRing != null)
+                        traceRing.record(SearchTrace.Kind.RESTART, depth, -1, -1, run + 1);
+                }
+            }
+        } catch (RuntimeException e) {
+            state.rollbackTo(checkpoint);
+            throw e;
+        } finally {
+            runLimit = Long.MAX_VALUE;
+            runRandom = null;
+            groupClasses = null;
+            activeNogoods = null;
+            activeCache = null;
+            deadTeam = -1;
+            if (stats != null)
+                stats.addSearch(nodesVisited.get() - startNodes, backtracks - startBacktracks,
+                        restarts - startRestarts);
+            detachTrace(state, outerRing);
+            flightRecorded = outerFlightRecorded;
+        }
+    }
+
+    /** Point the state and the solver at this thread's ring; returns the ring they had. */
+    private SearchTrace.Ring attachTrace(AssignmentState state) {
+        SearchTrace.Ring outer = traceRing;
+        SearchTrace t = trace;
+        if (t != null) {
+            traceRing = t.ring();
+            state.setTraceRing(traceRing);
+        }
+        return outer;
+    }
+
+    private void detachTrace(AssignmentState state, SearchTrace.Ring outer) {
+        if (traceRing != outer) {
+            traceRing = outer;
+            state.setTraceRing(outer);
+        }
+    }
+
+    /**
+     * Number of complete placements of the given teams, slot by slot,
+     * reachable from the state. The tree is split into a fork-join task per
+     * child down to {@link #setSplitDepth} placements, each on its own
+     * {@link AssignmentState#copyForSearch() copy} of the state, and the
+     * pool's work stealing balances the uneven subtrees. The state is left
+     * unchanged.
+     *
+     * Every completion is counted, so restarts, symmetry breaking and
+     * nogoods are not used; the node limit and cancellation still apply.
+     */
+    public long countCompletions(AssignmentState state, List<Team> teamsToPlace, ForkJoinPool pool) {
+        ParallelRun run = parallelRun(state, teamsToPlace, false);
+        if (run == null)
+            return 0L;
+        return pool.invoke(new SubtreeTask(run, state.copyForSearch(), run.remaining, 0, 0));
+    }
+
+    /**
+     * Search the subtrees in parallel as {@link #countCompletions} does and
+     * stop every task once one finds a complete placement, which is then
+     * applied to the state. False proves that no placement exists.
+     */
+    public boolean solveParallel(AssignmentState state, List<Team> teamsToPlace, ForkJoinPool pool) {
+        ParallelRun run = parallelRun(state, teamsToPlace, true);
+        if (run == null)
+            return false;
+        pool.invoke(new SubtreeTask(run, state.copyForSearch(), run.remaining, 0, 0));
+        int[] slots = run.solution.get();
+        if (slots == null)
+            return false;
+        for (int i = 0; i < run.order.length; i++) {
+            state.assign(slots[i], run.order[i]);
+            constraintManager.forwardCheck(state, slots[i], run.order[i]);
+        }
+        return true;
+    }
+
+    private ParallelRun parallelRun(AssignmentState state, List<Team> teamsToPlace, boolean firstSolution) {
+        int[] order = new int[teamsToPlace.size()];
+        long remaining = 0L;
+        int n = 0;
+        for (Team team : teamsToPlace) {
+            int t = state.teamId(team);
+            if (t < 0)
+                return null;
+            if ((remaining & (1L << t)) == 0) {
+                order[n++] = t;
+                remaining |= 1L << t;
+            }
+        }
+        return new ParallelRun(Arrays.copyOf(order, n), remaining, firstSolution ? new AtomicReference<>() : null,
+                ThreadLocal.withInitial(constraintManager::copy));
+    }
+
+    /** What the tasks of one parallel search share; the solution is published by compare-and-set. */
+    private static final class ParallelRun {
+        final int[] order;
+        final long remaining;
+        // slot of each team in order once a task found a placement; null when counting
+        final AtomicReference<int[]> solution;
+        // the manager's working storage is per thread, the constraints are shared
+        final ThreadLocal<ConstraintManager> managers;
+
+        ParallelRun(int[] order, long remaining, AtomicReference<int[]> solution,
+                ThreadLocal<ConstraintManager> managers) {
+            this.order = order;
+            this.remaining = remaining;
+            this.solution = solution;
+            this.managers = managers;
+        }
+
+        boolean solved() {
+            return solution != null && solution.get() != null;
+        }
+    }
+
+    /**
+     * One subtree of a parallel search, owning its state. Above the split
+     * depth it forks a task per working placement of the next team; below it
+     * counts the completions sequentially, or stops at the first one found.
+     */
+    private final class SubtreeTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        // nodes are added to the shared counter in batches of this size
+        private static final int NODE_BATCH = 1024;
+
+        private final ParallelRun run;
+        private final AssignmentState state;
+        private final long remaining;
+        private final int depth;
+        private final int level;
+        private long nodes;
+
+        SubtreeTask(ParallelRun run, AssignmentState state, long remaining, int depth, int level) {
+            this.run = run;
+            this.state = state;
+            this.remaining = remaining;
+            this.depth = depth;
+            this.level = level;
+        }
+
+        @Override
+        protected Long compute() {
+            if (run.solved())
+                return 0L;
+            ConstraintManager cm = run.managers.get();
+            long count;
+            try {
+                count = level >= splitDepth || remaining == 0 ? explore(cm, remaining, depth) : split(cm);
+            } finally {
+                // cannot throw, so a cancellation or a child's failure on its
+                // way up is not replaced by the node limit
+                publish();
+            }
+            flush();
+            return count;
+        }
+
+        /** Fork a task for every placement of the next team that propagates. */
+        private long split(ConstraintManager cm) {
+            visit();
+            int team = selectTeam(state, run.order, remaining);
+            long rest = remaining & ~(1L << team);
+            List<SubtreeTask> children = new ArrayList<>();
+            for (int slot : state.nextSlotIds(state.candidateSlotBits(team))) {
+                if (!cm.isAssignmentValid(state, slot, team))
+                    continue;
+                int checkpoint = state.checkpoint();
+                if (!assignAndPropagate(cm, state, slot, team, depth, true))
+                    continue;
+                children.add(new SubtreeTask(run, state.copyForSearch(), rest, depth + 1, level + 1));
+                state.rollbackTo(checkpoint);
+            }
+            flush();
+            long count = 0L;
+            for (SubtreeTask child : invokeAll(children))
+                count += child.join();
+            return count;
+        }
+
+        private long explore(ConstraintManager cm, long remaining, int depth) {
+            visit();
+            if (run.solved())
+                return 0L;
+            if (remaining == 0) {
+                if (run.solution != null) {
+                    int[] slots = new int[run.order.length];
+                    for (int i = 0; i < slots.length; i++)
+                        slots[i] = state.assignedSlot(run.order[i]);
+                    run.solution.compareAndSet(null, slots);
+                }
+                return 1L;
+            }
+
+            int team = selectTeam(state, run.order, remaining);
+            long rest = remaining & ~(1L << team);
+            long count = 0L;
+            for (int slot : state.nextSlotIds(state.candidateSlotBits(team))) {
+                if (!cm.isAssignmentValid(state, slot, team))
+                    continue;
+                int checkpoint = state.checkpoint();
+                if (!assignAndPropagate(cm, state, slot, team, depth, true))
+                    continue;
+                count += explore(cm, rest, depth + 1);
+                state.rollbackTo(checkpoint);
+                if (run.solved())
+                    break;
+            }
+            return count;
+        }
+
+        private void visit() {
+            if (cancellation.getAsBoolean())
+                throw new CancellationException("Search cancelled");
+            if (++nodes == NODE_BATCH)
+                flush();
+        }
+
+        /** Add the nodes counted since the last call to the shared counter; the new total. */
+        private long publish() {
+            long visited = nodesVisited.addAndGet(nodes);
+            nodes = 0;
+            return visited;
+        }
+
+        /** {@link #publish()}, then stop the search past the node limit. */
+        private void flush() {
+            if (publish() > maxNodes)
+                throw new RuntimeException("Node limit reached");
+        }
+    }
+
+    /** One search node; {@code remaining} holds the ids of the teams still to place. */
+    private boolean search(AssignmentState state, int[] order, long remaining, int depth) {
         long visited = nodesVisited.incrementAndGet();
         if (visited > maxNodes) throw new RuntimeException("Node limit reached");
+        if (cancellation.getAsBoolean())
+            throw new CancellationException("Search cancelled");
+        if (visited > runLimit)
+            throw RESTART;
+        if (flightRecorded && visited % SolverEvents.NODE_SAMPLE == 0)
+            SolverEvents.searchNode(depth, visited, remaining);
 
-        if (teamsToPlace.isEmpty())
+        if (remaining == 0) {
+            if (traceRing != null)
+                traceRing.record(SearchTrace.Kind.SOLUTION, depth, -1, -1, 0);
             return true;
+        }
+
+        long[] signature = activeNogoods != null ? activeNogoods.signature(state)
+                : activeCache != null ? activeCache.key(state) : null;
+        if (signature != null && isKnownFailure(signature))
+            return false;
 
-        Team chosen = teamsToPlace.get(0);
+        int team = selectTeam(state, order, remaining);
+        long rest = remaining & ~(1L << team);
+        // slots already tried at this node
+        long tried = 0L;
+        boolean wipeout = true;
 
-        List<GroupSlot> candidates = state.candidateSlots(chosen);
-        for (GroupSlot slot : candidates) {
-            if (!constraintManager.isAssignmentValid(state, slot, chosen)) {
+        for (int slot : orderSlots(state, team)) {
+            if (groupClasses != null) {
+                if (isSymmetricToTried(state, slot, tried)) {
+                    symmetryPrunes++;
+                    continue;
+                }
+                tried |= 1L << slot;
+            }
+            if (!constraintManager.isAssignmentValid(state, slot, team)) {
                 continue;
             }
 
-            AssignmentSnapshot snapshot = assignWithSnapshot(state, slot, chosen, depth);
-            if (snapshot == null)
+            int checkpoint = state.checkpoint();
+            if (!assignAndPropagate(state, slot, team, depth, true)) {
+                conflictWeights[team]++;
                 continue;
+            }
 
-            List<Team> remaining = new ArrayList<>(teamsToPlace);
-            remaining.remove(chosen);
-            if (solveTeamFirst(state, remaining, depth + 1))
+            wipeout = false;
+            if (search(state, order, rest, depth + 1)) {
+                if (signature != null && activeCache != null)
+                    activeCache.put(signature, true);
                 return true;
+            }
+
+            // backtrack: undo only the changes made below this node
+            state.rollbackTo(checkpoint);
+            backtracks++;
+            if (traceRing != null)
+                traceRing.record(SearchTrace.Kind.BACKTRACK, depth, slot, team, 0);
+            if (flightRecorded)
+                SolverEvents.backtrack(state.model(), depth, slot, team);
 
-            // backtrack
-            state.restoreFromSnapshot(snapshot);
+            if (deadTeam >= 0) {
+                if (hasNoWorkingSlot(state, deadTeam)) {
+                    // the team fails without this node's placement too, so
+                    // no alternative here can help: keep unwinding
+                    backjumps++;
+                    fail(signature);
+                    return false;
+                }
+                // this placement was the culprit; carry on from here
+                deadTeam = -1;
+            }
         }
 
+        if (wipeout && backjumping) {
+            deadTeam = team;
+            deadDepth = depth;
+        }
+        fail(signature);
         return false;
     }
 
+    private boolean isKnownFailure(long[] signature) {
+        return activeNogoods != null && activeNogoods.contains(signature)
+                || activeCache != null && Boolean.FALSE.equals(activeCache.get(signature));
+    }
+
+    private void fail(long[] signature) {
+        if (signature == null)
+            return;
+        if (activeNogoods != null)
+            activeNogoods.add(signature);
+        if (activeCache != null)
+            activeCache.put(signature, false);
+    }
+
     /**
-     * Assign a team to a slot, perform forward checking and return a snapshot of
-     * domains before the assignment. Returns null if the assignment immediately
-     * causes a domain wipeout.
+     * Whether every candidate slot of the team is rejected or fails
+     * propagation in the current state, checked as strictly as at the depth
+     * where the team failed. Propagation only removes values, so a team
+     * without a working slot stays without one whatever is placed next.
      */
-    public AssignmentSnapshot assignWithSnapshot(AssignmentState state, GroupSlot slot, Team team, int depth) {
-        // create a snapshot from the state (captures domains + assignments)
-        AssignmentSnapshot oldSnapshot = state.createSnapshot();
+    private boolean hasNoWorkingSlot(AssignmentState state, int team) {
+        for (long m = state.candidateSlotBits(team) & state.unassignedSlotBits(); m != 0; m &= m - 1) {
+            int slot = Long.numberOfTrailingZeros(m);
+            if (!constraintManager.isAssignmentValid(state, slot, team))
+                continue;
+            int checkpoint = state.checkpoint();
+            if (assignAndPropagate(state, slot, team, deadDepth, true)) {
+                state.rollbackTo(checkpoint);
+                if (traceRing != null)
+                    traceRing.record(SearchTrace.Kind.BACKTRACK, deadDepth, slot, team, 0);
+                return false;
+            }
+        }
+        return true;
+    }
 
-        state.assign(slot, team);
-        constraintManager.forwardCheck(state, slot, team);
+    /**
+     * Whether {@code slot} is the mirror image of a tried slot: same position
+     * in a group of the same symmetry class holding the same pots and
+     * continents, with the same free slots and equal domains on them. The
+     * subtrees below both placements then succeed or fail together.
+     */
+    private boolean isSymmetricToTried(AssignmentState state, int slot, long tried) {
+        DrawModel model = state.model();
+        int group = model.slotGroup(slot);
+        for (long m = tried; m != 0; m &= m - 1) {
+            int other = Long.numberOfTrailingZeros(m);
+            int otherGroup = model.slotGroup(other);
+            if (otherGroup != group && groupClasses[otherGroup] == groupClasses[group]
+                    && model.slotPosition(other) == model.slotPosition(slot)
+                    && sameContents(state, group, otherGroup)
+                    && sameDomains(state, model.groupSlots(group), model.groupSlots(otherGroup)))
+                return true;
+        }
+        return false;
+    }
 
-        // summarize domain changes after forward-check (only show diffs)
-        // summarizeDomainChanges(oldSnapshot.getDomainsSnapshot(), stateCopy, depth);
+    private static boolean isGroupEmpty(AssignmentState state, int group) {
+        long slots = state.model().groupSlots(group);
+        return (slots & state.unassignedSlotBits()) == slots;
+    }
 
-        if (this.dontCheckConsistencyBefore(depth))
-            return oldSnapshot;
+    /** Same pots and continent counts among the assigned teams. */
+    private static boolean sameContents(AssignmentState state, int group, int otherGroup) {
+        if (state.groupPotMask(group) != state.groupPotMask(otherGroup)
+                || state.groupContinentMask(group) != state.groupContinentMask(otherGroup))
+            return false;
+        for (long m = state.groupContinentMask(group); m != 0; m &= m - 1) {
+            int c = Long.numberOfTrailingZeros(m);
+            if (state.groupContinentCount(group, c) != state.groupContinentCount(otherGroup, c))
+                return false;
+        }
+        return true;
+    }
 
-        // Run global consistency checks (AC-3, Hall/missing-team, domain wipeout)
-        if (!constraintManager.checkGlobalConsistency(state)) {
-            oldSnapshot.restore();
-            return null;
+    /**
+     * The same slots free and equal domains on them, slot for slot; both
+     * groups have the same layout.
+     */
+    private static boolean sameDomains(AssignmentState state, long slots, long otherSlots) {
+        long unassigned = state.unassignedSlotBits();
+        for (long a = slots, b = otherSlots; a != 0; a &= a - 1, b &= b - 1) {
+            long x = a & -a;
+            long y = b & -b;
+            if ((unassigned & x) == 0 ? (unassigned & y) != 0
+                    : (unassigned & y) == 0
+                            || state.domainBits(Long.numberOfTrailingZeros(x)) != state.domainBits(Long.numberOfTrailingZeros(y)))
+                return false;
         }
+        return true;
+    }
 
-        return oldSnapshot;
+    /**
+     * Groups that are empty on entry and interchangeable with each other, as
+     * group id -> lowest such group id; -1 for groups that keep their label.
+     */
+    private static int[] interchangeableGroups(AssignmentState state, int[] groupClasses) {
+        DrawModel model = state.model();
+        int[] classes = new int[model.groupCount()];
+        for (int g = 0; g < classes.length; g++) {
+            classes[g] = -1;
+            if (!isGroupEmpty(state, g))
+                continue;
+            classes[g] = g;
+            for (int h = 0; h < g; h++) {
+                if (classes[h] == h && groupClasses[h] == groupClasses[g]
+                        && sameDomains(state, model.groupSlots(g), model.groupSlots(h))) {
+                    classes[g] = h;
+                    break;
+                }
+            }
+        }
+        return classes;
     }
 
-    private boolean dontCheckConsistencyBefore(int depth) {
-        return depth < onlyCheckDomainAfter;
+    /**
+     * Shuffle the teams the search placed among the groups of each entry
+     * class: undo the search and replay its placements with the group labels
+     * permuted. A permutation of interchangeable groups maps the solution to
+     * another solution, so the replay only needs forward checking.
+     */
+    private void relabelGroups(AssignmentState state, int checkpoint, int[] order, int[] classes) {
+        DrawModel model = state.model();
+        int[] target = new int[classes.length];
+        for (int g = 0; g < classes.length; g++)
+            target[g] = g;
+        boolean moved = false;
+        for (int g = 0; g < classes.length; g++) {
+            if (classes[g] != g)
+                continue;
+            int[] members = new int[classes.length];
+            int n = 0;
+            for (int h = g; h < classes.length; h++) {
+                if (classes[h] == g)
+                    members[n++] = h;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = members[i];
+                members[i] = members[j];
+                members[j] = tmp;
+            }
+            for (int i = 0, k = 0; i < classes.length; i++) {
+                if (classes[i] == g) {
+                    target[i] = members[k++];
+                    moved |= target[i] != i;
+                }
+            }
+        }
+        if (!moved)
+            return;
+
+        int[] slots = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            int slot = state.assignedSlot(order[i]);
+            int group = model.slotGroup(slot);
+            long from = model.groupSlots(group);
+            long to = model.groupSlots(target[group]);
+            // the slot at the same index of the target group
+            for (long below = from & ((1L << slot) - 1); below != 0; below &= below - 1)
+                to &= to - 1;
+            slots[i] = Long.numberOfTrailingZeros(to);
+        }
+        state.rollbackTo(checkpoint);
+        for (int i = 0; i < order.length; i++) {
+            state.assign(slots[i], order[i]);
+            constraintManager.forwardCheck(state, slots[i], order[i]);
+        }
     }
 
+    private int selectTeam(AssignmentState state, int[] order, long remaining) {
+        int best = -1;
+        int bestDomain = 0;
+        int bestDegree = -1;
+        for (int t : order) {
+            if ((remaining & (1L << t)) == 0)
+                continue;
+            if (variableOrdering == VariableOrdering.INPUT_ORDER)
+                return t;
 
-    // Summarize domain changes: print only slots whose domain changed (removed/added)
-    @SuppressWarnings("unused")
-    private void summarizeDomainChanges(Map<GroupSlot, Set<Team>> before, AssignmentState afterState, int depth) {
-        for (GroupSlot s : before.keySet()) {
-            Set<Team> beforeSet = before.getOrDefault(s, Set.of());
-            Set<Team> afterSet = afterState.getDomains().getOrDefault(s, Set.of());
-            // compute removed and added
-            Set<Team> removed = new HashSet<>(beforeSet);
-            removed.removeAll(afterSet);
-            Set<Team> added = new HashSet<>(afterSet);
-            added.removeAll(beforeSet);
-            if (removed.isEmpty() && added.isEmpty())
+            int domain = Long.bitCount(state.candidateSlotBits(t) & state.unassignedSlotBits());
+            if (best < 0) {
+                best = t;
+                bestDomain = domain;
                 continue;
-            StringBuilder sb = new StringBuilder();
-            sb.append(s).append(": ");
-            if (!removed.isEmpty()) {
-                sb.append("removed=");
-                sb.append(removed.stream().map(Object::toString).collect(Collectors.joining(", ")));
             }
-            if (!added.isEmpty()) {
-                if (!removed.isEmpty())
-                    sb.append("; ");
-                sb.append("added=");
-                sb.append(added.stream().map(Object::toString).collect(Collectors.joining(", ")));
+            if (variableOrdering == VariableOrdering.DOM_WDEG) {
+                // domain / weight, compared without dividing
+                if ((long) domain * conflictWeights[best] < (long) bestDomain * conflictWeights[t]) {
+                    best = t;
+                    bestDomain = domain;
+                }
+            } else if (domain < bestDomain) {
+                best = t;
+                bestDomain = domain;
+                bestDegree = -1;
+            } else if (domain == bestDomain && variableOrdering == VariableOrdering.MRV_DEGREE) {
+                if (bestDegree < 0)
+                    bestDegree = degree(state, best, remaining);
+                int degree = degree(state, t, remaining);
+                if (degree > bestDegree) {
+                    best = t;
+                    bestDegree = degree;
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Number of other unplaced teams that can still take one of the team's candidate slots. */
+    private static int degree(AssignmentState state, int team, long remaining) {
+        long competitors = 0L;
+        for (long m = state.candidateSlotBits(team) & state.unassignedSlotBits(); m != 0; m &= m - 1)
+            competitors |= state.domainBits(Long.numberOfTrailingZeros(m));
+        return Long.bitCount(competitors & remaining & ~(1L << team));
+    }
+
+    private int[] orderSlots(AssignmentState state, int team) {
+        int[] slots = state.nextSlotIds(state.candidateSlotBits(team));
+        if (runRandom != null) {
+            // restarts try a different order; LCV keys then break ties randomly
+            for (int i = slots.length - 1; i > 0; i--) {
+                int j = runRandom.nextInt(i + 1);
+                int tmp = slots[i];
+                slots[i] = slots[j];
+                slots[j] = tmp;
+            }
+        }
+        if (valueOrdering != ValueOrdering.LEAST_CONSTRAINING || slots.length < 2)
+            return slots;
+
+        // probe each valid slot with a forward check and sort by the candidates
+        // left in the unassigned domains, most first; group order breaks ties
+        long[] keys = new long[slots.length];
+        int n = 0;
+        for (int i = 0; i < slots.length; i++) {
+            int slot = slots[i];
+            if (!constraintManager.isAssignmentValid(state, slot, team))
+                continue;
+            int checkpoint = state.checkpoint();
+            state.assign(slot, team);
+            constraintManager.forwardCheck(state, slot, team);
+            int left = 0;
+            for (long m = state.unassignedSlotBits(); m != 0; m &= m - 1)
+                left += Long.bitCount(state.domainBits(Long.numberOfTrailingZeros(m)));
+            state.rollbackTo(checkpoint);
+            keys[n++] = ((long) (Integer.MAX_VALUE - left) << 32) | i;
+        }
+        Arrays.sort(keys, 0, n);
+        int[] ordered = new int[n];
+        for (int k = 0; k < n; k++)
+            ordered[k] = slots[(int) keys[k]];
+        return ordered;
+    }
+
+    /**
+     * Assign a team to a slot and perform forward checking. Every change is
+     * recorded on the state's trail; if the assignment causes an inconsistency
+     * the state is rolled back and false is returned. Global checks only run
+     * from {@code onlyCheckDomainAfter} on, so manual placements are not
+     * rejected for making the rest of the draw infeasible.
+     */
+    public boolean assignWithTrail(AssignmentState state, GroupSlot slot, Team team, int depth) {
+        return assignWithTrail(state, state.slotId(slot), state.teamId(team), depth);
+    }
+
+    /** Dense-id form of {@link #assignWithTrail(AssignmentState, GroupSlot, Team, int)}. */
+    public boolean assignWithTrail(AssignmentState state, int slot, int team, int depth) {
+        SearchTrace.Ring outerRing = attachTrace(state);
+        boolean outerFlightRecorded = flightRecorded;
+        flightRecorded = SolverEvents.enabled();
+        try {
+            return assignAndPropagate(state, slot, team, depth, false);
+        } finally {
+            detachTrace(state, outerRing);
+            flightRecorded = outerFlightRecorded;
+        }
+    }
+
+    /**
+     * Assign, forward-check and check consistency. When {@code hallAtEveryDepth}
+     * is set (the search path), the incremental Hall check also runs before
+     * {@code onlyCheckDomainAfter}; the full set (AC-3, domain wipeout) only
+     * runs past it.
+     */
+    private boolean assignAndPropagate(AssignmentState state, int slot, int team, int depth,
+            boolean hallAtEveryDepth) {
+        SearchTrace.Ring ring = traceRing;
+        if (ring != null) {
+            ring.depth = depth;
+            ring.record(SearchTrace.Kind.ASSIGN, depth, slot, team, 0);
+        }
+        ConsistencyPolicy policy = consistencyPolicy;
+        boolean consistent = policy != null && hallAtEveryDepth
+                ? assignAndPropagate(policy, state, slot, team, depth)
+                : assignAndPropagate(constraintManager, state, slot, team, depth, hallAtEveryDepth);
+        if (!consistent && ring != null)
+            ring.record(SearchTrace.Kind.FAIL, depth, slot, team, 0);
+        return consistent;
+    }
+
+    /**
+     * Assign and forward-check, then run the levels the policy picks for the
+     * depth one after another, timing each and counting what it pruned.
+     */
+    private boolean assignAndPropagate(ConsistencyPolicy policy, AssignmentState state, int slot, int team,
+            int depth) {
+        ConsistencyLevel level = policy.level(depth);
+        int checkpoint = state.checkpoint();
+
+        long start = System.nanoTime();
+        state.assign(slot, team);
+        constraintManager.forwardCheck(state, slot, team);
+        long now = System.nanoTime();
+        policy.recordNode(depth, now - start);
+
+        int values = level != ConsistencyLevel.FORWARD_CHECK ? domainValues(state) : 0;
+        for (int l = 1; l <= level.ordinal(); l++) {
+            ConsistencyLevel stage = ConsistencyLevel.values()[l];
+            start = now;
+            SolverEvents.ConsistencyCheck check = flightRecorded ? SolverEvents.beginCheck() : null;
+            boolean consistent;
+            switch (stage) {
+                case HALL:
+                    consistent = constraintManager.checkMatchingConsistency(state);
+                    break;
+                case ARC:
+                    consistent = constraintManager.checkGlobalConsistency(state);
+                    break;
+                default:
+                    consistent = constraintManager.enforceSingletonArcConsistency(state);
+                    break;
+            }
+            now = System.nanoTime();
+            if (check != null)
+                SolverEvents.endCheck(check, stage, depth, consistent);
+            if (!consistent) {
+                // the subtree would have cost at least a node per team left
+                policy.recordLevel(depth, stage, now - start, Long.bitCount(state.unassignedTeamBits()));
+                state.rollbackTo(checkpoint);
+                return false;
             }
-            sb.append(" (").append(beforeSet.size()).append("->").append(afterSet.size()).append(")");
-            log(depth, sb.toString());
+            int left = domainValues(state);
+            policy.recordLevel(depth, stage, now - start, values - left);
+            values = left;
         }
+        return true;
+    }
+
+    /** Values left in the domains of the unassigned slots. */
+    private static int domainValues(AssignmentState state) {
+        int values = 0;
+        for (long m = state.unassignedSlotBits(); m != 0; m &= m - 1)
+            values += Long.bitCount(state.domainBits(Long.numberOfTrailingZeros(m)));
+        return values;
     }
 
-    // helper for visual backtrack logging
-    private void log(int depth, String msg) {
-        String indent = "";
-        if (depth > 0) {
-            indent = "  ".repeat(Math.max(0, depth));
+    private boolean assignAndPropagate(ConstraintManager cm, AssignmentState state, int slot, int team, int depth,
+            boolean hallAtEveryDepth) {
+        int checkpoint = state.checkpoint();
+
+        state.assign(slot, team);
+        cm.forwardCheck(state, slot, team);
+
+        boolean full = !this.dontCheckConsistencyBefore(depth);
+        SolverEvents.ConsistencyCheck check = flightRecorded && (full || hallAtEveryDepth)
+                ? SolverEvents.beginCheck()
+                : null;
+        boolean consistent;
+        if (full)
+            consistent = cm.checkGlobalConsistency(state);
+        else
+            consistent = !hallAtEveryDepth || cm.checkMatchingConsistency(state);
+        if (check != null)
+            SolverEvents.endCheck(check, full ? ConsistencyLevel.ARC : ConsistencyLevel.HALL, depth, consistent);
+
+        if (!consistent) {
+            state.rollbackTo(checkpoint);
+            return false;
         }
-        System.out.println(indent + msg);
+
+        return true;
+    }
+
+    /**
+     * Like {@link #assignWithTrail} but returns a snapshot of the state before
+     * the assignment (or null when the assignment caused an inconsistency).
+     */
+    public AssignmentSnapshot assignWithSnapshot(AssignmentState state, GroupSlot slot, Team team, int depth) {
+        AssignmentSnapshot oldSnapshot = state.createSnapshot();
+        return assignWithTrail(state, slot, team, depth) ? oldSnapshot : null;
+    }
+
+    private boolean dontCheckConsistencyBefore(int depth) {
+        return depth < onlyCheckDomainAfter;
     }
 }
@@ -6,6 +6,7 @@ import java.util.Set;
 public class ConcreteTeam implements Team {
     private final String name;
     private final String continent;
+    private final Set<String> continents;
     private final int pot;
     private final String code;
     private String flagUrl;
@@ -21,6 +22,7 @@ public class ConcreteTeam implements Team {
     public ConcreteTeam(String name, String continent, int pot, String code, String flagUrl) {
         this.name = name;
         this.continent = continent;
+        this.continents = continent == null || continent.isEmpty() ? Set.of() : Set.of(continent);
         this.pot = pot;
         this.code = code;
         this.flagUrl = flagUrl;
@@ -38,10 +40,7 @@ public class ConcreteTeam implements Team {
 
     @Override
     public Set<String> getContinents() {
-        if (continent == null || continent.isEmpty()) {
-            return Set.of();
-        }
-        return Set.of(continent);
+        return continents;
     }
 
     @Override
@@ -0,0 +1,17 @@
+package com.example.footie.newSimulator;
+
+/**
+ * How much reasoning {@link BacktrackingSolver} spends on a search node
+ * after forward checking, from cheapest to dearest. Every level also runs
+ * the ones before it.
+ */
+public enum ConsistencyLevel {
+    /** Only the constraints' forward checks. */
+    FORWARD_CHECK,
+    /** Every team keeps a candidate slot, the slot/team matching has no Hall violation, Régin filtering. */
+    HALL,
+    /** Arc consistency to a fixpoint with the propagators, then the domain and Hall checks. */
+    ARC,
+    /** Singleton arc consistency: every value must survive being assigned and propagated. */
+    SINGLETON_ARC
+}
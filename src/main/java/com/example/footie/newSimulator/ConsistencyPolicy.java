@@ -0,0 +1,132 @@
+package com.example.footie.newSimulator;
+
+/**
+ * Picks the {@link ConsistencyLevel} of each search node by its depth, from
+ * what every level has been measured to pay there, instead of the fixed
+ * {@code onlyCheckDomainAfter} threshold.
+ *
+ * For every depth the policy keeps what a forward-checked node costs and,
+ * per stronger level, the time it took on top of the levels below and the
+ * search nodes it saved: a pruned value saves at least the node that would
+ * have tried it, a detected wipeout at least one node per team still to
+ * place. A level is used at a depth while the nodes it saves are worth its
+ * time, and only on top of every cheaper level that pays too. The first
+ * {@value #WARMUP} nodes of a depth run every level up to the strongest
+ * allowed; after that every {@value #PROBE_EVERY}th node also runs the next
+ * level that does not pay, so a change of fortune deeper in the search is
+ * noticed. Counters are halved every {@value #HALF_LIFE} nodes of a depth,
+ * so old measurements fade.
+ *
+ * Keeps per-depth counters for one solver, so it must not be shared by
+ * solvers on different threads.
+ */
+public final class ConsistencyPolicy {
+
+    static final int WARMUP = 32;
+    static final int PROBE_EVERY = 16;
+    static final int HALF_LIFE = 1 << 12;
+
+    private static final ConsistencyLevel[] LEVELS = ConsistencyLevel.values();
+
+    private final ConsistencyLevel strongest;
+    // per depth
+    private final long[] nodes = new long[DrawModel.MAX_SIZE + 1];
+    private final long[] nodeNanos = new long[DrawModel.MAX_SIZE + 1];
+    // per depth and level above forward checking, on top of the levels below
+    private final long[][] levelRuns = new long[DrawModel.MAX_SIZE + 1][LEVELS.length];
+    private final long[][] levelNanos = new long[DrawModel.MAX_SIZE + 1][LEVELS.length];
+    private final long[][] levelSaved = new long[DrawModel.MAX_SIZE + 1][LEVELS.length];
+
+    private ConsistencyPolicy(ConsistencyLevel strongest) {
+        this.strongest = strongest;
+    }
+
+    /** Adaptive up to {@link ConsistencyLevel#ARC}. */
+    public static ConsistencyPolicy adaptive() {
+        return adaptive(ConsistencyLevel.ARC);
+    }
+
+    /** Adaptive up to {@code strongest}; {@link ConsistencyLevel#SINGLETON_ARC} also weighs SAC. */
+    public static ConsistencyPolicy adaptive(ConsistencyLevel strongest) {
+        return new ConsistencyPolicy(strongest);
+    }
+
+    public ConsistencyLevel strongest() {
+        return strongest;
+    }
+
+    /** Level for the next node at the depth, counting the node; warm-up and probes included. */
+    ConsistencyLevel level(int depth) {
+        int d = Math.min(depth, nodes.length - 1);
+        long n = ++nodes[d];
+        if (n % HALF_LIFE == 0)
+            decay(d);
+        if (n <= WARMUP)
+            return strongest;
+        ConsistencyLevel level = chosenLevel(d);
+        if (level != strongest && n % PROBE_EVERY == 0)
+            return LEVELS[level.ordinal() + 1];
+        return level;
+    }
+
+    /** What a forward-checked node cost at the depth. */
+    void recordNode(int depth, long nanos) {
+        nodeNanos[Math.min(depth, nodes.length - 1)] += nanos;
+    }
+
+    /** Time a level took on top of the cheaper ones, and the search nodes it saved. */
+    void recordLevel(int depth, ConsistencyLevel level, long nanos, long saved) {
+        int d = Math.min(depth, nodes.length - 1);
+        int l = level.ordinal();
+        levelRuns[d][l]++;
+        levelNanos[d][l] += nanos;
+        levelSaved[d][l] += saved;
+    }
+
+    /** The level the measurements favour at the depth, without warm-up or probes. */
+    public ConsistencyLevel chosenLevel(int depth) {
+        int d = Math.min(depth, nodes.length - 1);
+        ConsistencyLevel level = ConsistencyLevel.FORWARD_CHECK;
+        for (int l = 1; l <= strongest.ordinal(); l++) {
+            if (!paysOff(d, l))
+                break;
+            level = LEVELS[l];
+        }
+        return level;
+    }
+
+    private boolean paysOff(int d, int l) {
+        if (levelRuns[d][l] == 0 || nodes[d] == 0)
+            return true;
+        double nodeCost = (double) nodeNanos[d] / nodes[d];
+        return levelSaved[d][l] * nodeCost >= levelNanos[d][l];
+    }
+
+    private void decay(int d) {
+        nodes[d] >>= 1;
+        nodeNanos[d] >>= 1;
+        for (int l = 0; l < LEVELS.length; l++) {
+            levelRuns[d][l] >>= 1;
+            levelNanos[d][l] >>= 1;
+            levelSaved[d][l] >>= 1;
+        }
+    }
+
+    /** Chosen level per depth reached so far, e.g. {@code "0-11 ARC, 12-40 HALL"}. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int from = 0;
+        for (int d = 1; d <= nodes.length; d++) {
+            if (d < nodes.length && nodes[d] > 0 && chosenLevel(d) == chosenLevel(from))
+                continue;
+            if (nodes[from] > 0) {
+                if (sb.length() > 0)
+                    sb.append(", ");
+                sb.append(from).append(d - 1 > from ? "-" + (d - 1) : "").append(' ').append(chosenLevel(from));
+            }
+            from = d;
+        }
+        return sb.length() > 0 ? sb.toString() : "adaptive(" + strongest + ")";
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.footie.newSimulator;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+
+/**
+ * Exact number of ways a partial draw can be completed, counted at group
+ * level: two completions differ when some team ends up in a different group
+ * (positions inside a group are not counted).
+ *
+ * Teams are branched on pot by pot, and the count is memoised on the
+ * {@link DrawSignature} of the remaining problem: how many unplaced teams of
+ * each type (pot and continents) are left, plus the sorted multiset of open
+ * groups. Each open group is described by its pot mask, continent counts
+ * and free slots. This is exact as long as the constraints are
+ * group-local and only look at which pots a group holds and how many teams
+ * of each continent; every built-in group constraint does. Then teams of one
+ * type are interchangeable, and so are open groups with equal signatures.
+ * Constraints with wider scopes (paired groups, top-seed brackets) are
+ * rejected. The state's domains are ignored; only the constraints decide
+ * what is valid.
+ *
+ * Not thread-safe: the memo and the per-model tables are shared by every call.
+ */
+public class DrawCounter {
+
+    // transition target of an assignment the constraints reject
+    private static final long INVALID = -2L;
+
+    private final ConstraintManager constraintManager;
+    private final Map<DrawSignature.Key, BigInteger> memo = new HashMap<>();
+    // per type: group signature before -> after placing a team of the type
+    // (-1 when the group fills up, INVALID when not allowed)
+    private final List<Map<Long, Long>> transitions = new ArrayList<>();
+
+    // the model's signature layout, see bind(); its team types are ordered
+    // by pot, then continent mask
+    private DrawModel boundModel;
+    private DrawSignature signature;
+
+    // groupCounts: class of every group at the queried state, kept in the
+    // bits above the signature's group bits; null otherwise
+    private int[] groupTags;
+
+    public DrawCounter(ConstraintManager constraintManager) {
+        this.constraintManager = constraintManager;
+    }
+
+    /** Number of valid group-level completions of the state. */
+    public BigInteger countCompletions(AssignmentState state) {
+        bind(state);
+        return count(state);
+    }
+
+    /**
+     * For every team (by name), the number of completions that put it in each
+     * group. Assigned teams get the full count in their own group. Each
+     * team's counts add up to {@link #countCompletions}.
+     *
+     * Groups with equal signatures in this state are interchangeable, and so
+     * are teams of one type, so it is enough to know, per type and class of
+     * groups, how many teams of the type a completion puts into the class.
+     * The groups are tagged with their class and one forward pass over the
+     * memoised states sums that, weighting every placement by the paths
+     * leading to it and the completions after it.
+     */
+    public Map<String, Map<String, BigInteger>> groupCounts(AssignmentState state) {
+        bind(state);
+        DrawModel model = state.model();
+        long[] signatures = groupSignatures(state);
+        int[] tags = new int[signatures.length];
+        List<Long> classes = new ArrayList<>();
+        int[] classSize = new int[signatures.length];
+        for (int g = 0; g < signatures.length; g++) {
+            if (signatures[g] < 0)
+                continue;
+            if (!classes.contains(signatures[g]))
+                classes.add(signatures[g]);
+            tags[g] = classes.indexOf(signatures[g]);
+            classSize[tags[g]]++;
+        }
+        if (signature.groupBits() + Integer.SIZE - Integer.numberOfLeadingZeros(classes.size()) >= Long.SIZE)
+            throw new IllegalArgumentException("Too many groups to count this draw per team");
+
+        BigInteger total;
+        BigInteger[][] placed;
+        groupTags = tags;
+        try {
+            total = count(state);
+            placed = placementsByTypeAndClass(key(state, groupSignatures(state)), classes.size());
+        } finally {
+            groupTags = null;
+        }
+
+        Map<String, Map<String, BigInteger>> result = new LinkedHashMap<>();
+        for (int t = 0; t < model.teamCount(); t++) {
+            Map<String, BigInteger> perGroup = new TreeMap<>();
+            int assignedSlot = state.assignedSlot(t);
+            int type = signature.teamType(t);
+            long sameType = Long.bitCount(signature.typeTeams(type) & state.unassignedTeamBits());
+            for (int g = 0; g < model.groupCount(); g++) {
+                BigInteger n;
+                if (assignedSlot >= 0)
+                    n = model.slotGroup(assignedSlot) == g ? total : BigInteger.ZERO;
+                else if (signatures[g] < 0)
+                    n = BigInteger.ZERO;
+                else
+                    n = placed[type][tags[g]].divide(BigInteger.valueOf(sameType * classSize[tags[g]]));
+                perGroup.put(model.groupName(g), n);
+            }
+            result.put(model.team(t).getName(), perGroup);
+        }
+        return result;
+    }
+
+    /**
+     * {@link #groupCounts} divided by the total: the exact probability of each
+     * team landing in each group when every completion is equally likely.
+     * Empty when the state cannot be completed.
+     */
+    public Map<String, Map<String, Double>> groupProbabilities(AssignmentState state) {
+        Map<String, Map<String, BigInteger>> counts = groupCounts(state);
+        BigDecimal total = new BigDecimal(count(state));
+        Map<String, Map<String, Double>> result = new LinkedHashMap<>();
+        if (total.signum() == 0)
+            return result;
+        counts.forEach((team, perGroup) -> {
+            Map<String, Double> p = new TreeMap<>();
+            perGroup.forEach((group, n) -> p.put(group,
+                    new BigDecimal(n).divide(total, MathContext.DECIMAL64).doubleValue()));
+            result.put(team, p);
+        });
+        return result;
+    }
+
+    /**
+     * Complete the state with a draw chosen uniformly among all group-level
+     * completions. Teams are placed one at a time (by pot) into the lowest free
+     * slot of a group picked with probability proportional to the
+     * completions it leaves, and forward checked as the solver would.
+     * Returns false, leaving the state untouched, when no completion exists.
+     */
+    public boolean sampleCompletion(AssignmentState state, Random random) {
+        bind(state);
+        if (count(state).signum() == 0)
+            return false;
+
+        DrawModel model = state.model();
+        BigInteger[] weights = new BigInteger[model.groupCount()];
+        for (int team = nextTeam(state); team >= 0; team = nextTeam(state)) {
+            BigInteger total = BigInteger.ZERO;
+            for (int g = 0; g < model.groupCount(); g++) {
+                weights[g] = countWith(state, g, team);
+                total = total.add(weights[g]);
+            }
+            BigInteger pick = uniformBelow(total, random);
+            int g = 0;
+            while (pick.compareTo(weights[g]) >= 0) {
+                pick = pick.subtract(weights[g]);
+                g++;
+            }
+            int slot = freeSlot(state, g);
+            state.assign(slot, team);
+            constraintManager.forwardCheck(state, slot, team);
+        }
+        return true;
+    }
+
+    /** Number of memoised sub-problems. */
+    public int memoSize() {
+        return memo.size();
+    }
+
+    public void clearMemo() {
+        memo.clear();
+    }
+
+    private BigInteger count(AssignmentState state) {
+        int team = nextTeam(state);
+        if (team < 0)
+            return BigInteger.ONE;
+
+        long[] signatures = groupSignatures(state);
+        DrawSignature.Key key = key(state, signatures);
+        BigInteger cached = memo.get(key);
+        if (cached != null)
+            return cached;
+
+        BigInteger total = BigInteger.ZERO;
+        int groups = signatures.length;
+        for (int g = 0; g < groups; g++) {
+            if (signatures[g] < 0)
+                continue;
+            // groups with equal signatures lead to the same count: do the
+            // first one and weight it by how many there are
+            int multiplicity = 1;
+            boolean seen = false;
+            for (int h = 0; h < groups && !seen; h++) {
+                if (h != g && signatures[h] == signatures[g]) {
+                    if (h < g)
+                        seen = true;
+                    else
+                        multiplicity++;
+                }
+            }
+            if (seen)
+                continue;
+            BigInteger n = countWith(state, g, team);
+            if (n.signum() != 0)
+                total = total.add(n.multiply(BigInteger.valueOf(multiplicity)));
+        }
+        memo.put(key, total);
+        return total;
+    }
+
+    /** Completions after placing the team in the group; zero when that is invalid. */
+    private BigInteger countWith(AssignmentState state, int group, int team) {
+        int slot = freeSlot(state, group);
+        if (slot < 0)
+            return BigInteger.ZERO;
+        Map<Long, Long> byType = transitions.get(signature.teamType(team));
+        long from = signature.groupWord(state, group);
+        if (!constraintManager.isAssignmentValid(state, slot, team)) {
+            byType.put(from, INVALID);
+            return BigInteger.ZERO;
+        }
+        int checkpoint = state.checkpoint();
+        state.assign(slot, team);
+        byType.put(from, signature.groupWord(state, group));
+        BigInteger n = count(state);
+        state.rollbackTo(checkpoint);
+        return n;
+    }
+
+    /**
+     * Forward pass from the root key over the memoised states, branching on
+     * the same team types as {@link #count}: for every type and group class,
+     * the sum over completions of how many teams of the type land in the
+     * class. Every state reached here was expanded by {@code count} on the
+     * same tagged root, so its count and transitions are known.
+     */
+    private BigInteger[][] placementsByTypeAndClass(DrawSignature.Key root, int classes) {
+        BigInteger[][] placed = new BigInteger[signature.typeCount()][classes];
+        for (BigInteger[] row : placed)
+            Arrays.fill(row, BigInteger.ZERO);
+        long untagged = DrawModel.lowBits(signature.groupBits());
+        int first = signature.firstGroupWord();
+
+        // states by number of teams placed, with the paths from the root to each
+        Map<DrawSignature.Key, BigInteger> layer = new HashMap<>();
+        layer.put(root, BigInteger.ONE);
+        while (!layer.isEmpty()) {
+            Map<DrawSignature.Key, BigInteger> next = new HashMap<>();
+            for (Map.Entry<DrawSignature.Key, BigInteger> entry : layer.entrySet()) {
+                long[] words = entry.getKey().words();
+                int type = firstType(words);
+                if (type < 0)
+                    continue;
+                Map<Long, Long> byType = transitions.get(type);
+                for (int i = first; i < words.length; i++) {
+                    if (i > first && words[i] == words[i - 1])
+                        continue;
+                    int multiplicity = 1;
+                    while (i + multiplicity < words.length && words[i + multiplicity] == words[i])
+                        multiplicity++;
+
+                    long to = byType.get(words[i] & untagged);
+                    if (to == INVALID)
+                        continue;
+                    long tag = words[i] & ~untagged;
+                    DrawSignature.Key child = child(words, type, i, to < 0 ? -1L : to | tag);
+                    BigInteger completions = firstType(child.words()) < 0 ? BigInteger.ONE : memo.get(child);
+                    if (completions.signum() == 0)
+                        continue;
+                    BigInteger paths = entry.getValue().multiply(BigInteger.valueOf(multiplicity));
+                    int c = (int) (tag >>> signature.groupBits());
+                    placed[type][c] = placed[type][c].add(paths.multiply(completions));
+                    next.merge(child, paths, BigInteger::add);
+                }
+            }
+            layer = next;
+        }
+        return placed;
+    }
+
+    /** Key after placing one team of the type into the group at {@code index}; -1 closes it. */
+    private DrawSignature.Key child(long[] words, int type, int index, long groupWord) {
+        long[] child;
+        if (groupWord < 0) {
+            child = new long[words.length - 1];
+            System.arraycopy(words, 0, child, 0, index);
+            System.arraycopy(words, index + 1, child, index, words.length - index - 1);
+        } else {
+            child = words.clone();
+            child[index] = groupWord;
+            Arrays.sort(child, signature.firstGroupWord(), child.length);
+        }
+        DrawSignature.placeTeam(child, type);
+        return new DrawSignature.Key(child);
+    }
+
+    /** First type with teams left in a key, or -1. */
+    private int firstType(long[] words) {
+        for (int type = 0; type < signature.typeCount(); type++) {
+            if (DrawSignature.teamsLeft(words, type) != 0)
+                return type;
+        }
+        return -1;
+    }
+
+    /** Lowest unplaced team of the first type with any left, or -1 when all are placed. */
+    private int nextTeam(AssignmentState state) {
+        long unassigned = state.unassignedTeamBits();
+        for (int type = 0; type < signature.typeCount(); type++) {
+            long teams = signature.typeTeams(type) & unassigned;
+            if (teams != 0)
+                return Long.numberOfTrailingZeros(teams);
+        }
+        return -1;
+    }
+
+    private static int freeSlot(AssignmentState state, int group) {
+        long free = state.model().groupSlots(group) & state.unassignedSlotBits();
+        return free != 0 ? Long.numberOfTrailingZeros(free) : -1;
+    }
+
+    /** Signature word of every group, with its class tag while counting per team. */
+    private long[] groupSignatures(AssignmentState state) {
+        long[] signatures = new long[state.model().groupCount()];
+        for (int g = 0; g < signatures.length; g++) {
+            signatures[g] = signature.groupWord(state, g);
+            if (groupTags != null && signatures[g] >= 0)
+                signatures[g] |= (long) groupTags[g] << signature.groupBits();
+        }
+        return signatures;
+    }
+
+    /** The state's {@link DrawSignature} over the (tagged) group words. */
+    private DrawSignature.Key key(AssignmentState state, long[] signatures) {
+        return new DrawSignature.Key(signature.of(state, signatures));
+    }
+
+    private static BigInteger uniformBelow(BigInteger bound, Random random) {
+        BigInteger r;
+        do {
+            r = new BigInteger(bound.bitLength(), random);
+        } while (r.compareTo(bound) >= 0);
+        return r;
+    }
+
+    /** Take the model's signature layout and check a group word leaves room for the class tags. */
+    private void bind(AssignmentState state) {
+        DrawModel model = state.model();
+        if (model == boundModel)
+            return;
+        if (!constraintManager.isGroupLocal(model))
+            throw new IllegalArgumentException("Counting only supports group-local constraints");
+
+        DrawSignature layout = model.signature();
+        if (!layout.fits() || layout.groupBits() >= Long.SIZE - 1)
+            throw new IllegalArgumentException("Too many pots and continents to count this draw");
+        signature = layout;
+        transitions.clear();
+        for (int i = 0; i < layout.typeCount(); i++)
+            transitions.add(new HashMap<>());
+        memo.clear();
+        boundModel = model;
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Immutable, interned view of the draw used by the solver's inner loops.
+ * Slots get dense ids 0..slotCount-1 following {@link GroupSlot} ordering,
+ * teams get ids 0..teamCount-1 following input order, and every attribute the
+ * constraints need (group, position, pot, continents) is precomputed into
+ * plain arrays. Continents are interned case-insensitively into bit
+ * positions of a {@code long} mask.
+ */
+public final class DrawModel {
+    /** Upper bound imposed by the single-word bitset representation. */
+    public static final int MAX_SIZE = Long.SIZE;
+
+    private static final String EUROPE = "europe";
+
+    private final List<GroupSlot> slots;
+    private final GroupSlot[] slotById;
+    private final Team[] teamById;
+    private final Map<GroupSlot, Integer> slotIds = new HashMap<>();
+    private final Map<String, Integer> teamIds = new HashMap<>();
+    // identity fast path: the solver passes the same instances it was built with
+    private final Map<GroupSlot, Integer> slotIdentity = new IdentityHashMap<>();
+    private final Map<Team, Integer> teamIdentity = new IdentityHashMap<>();
+
+    private final String[] groupNames;
+    private final Map<String, Integer> groupIds = new HashMap<>();
+    private final int[] slotGroup;
+    private final int[] slotPosition;
+    private final long[] groupSlots;
+
+    private final int[] teamPot;
+    private final int minPot;
+    private final long[] potTeams;
+    private final long[] teamPotBit;
+
+    private final List<String> continentNames = new ArrayList<>();
+    private final Map<String, Integer> continentIds = new HashMap<>();
+    private final long[] teamContinents;
+    private final long[] continentTeams;
+    private final long europeMask;
+    private final int europeId;
+    // built on first use; a racing thread at worst builds an equal one
+    private volatile DrawSignature signature;
+
+    public DrawModel(List<GroupSlot> slots, List<Team> teams) {
+        this.slots = Collections.unmodifiableList(new ArrayList<>(slots));
+        this.slotById = new TreeSet<>(slots).toArray(new GroupSlot[0]);
+        this.teamById = teams.toArray(new Team[0]);
+        if (slotById.length > MAX_SIZE || teamById.length > MAX_SIZE)
+            throw new IllegalArgumentException("DrawModel supports at most " + MAX_SIZE
+                    + " slots and " + MAX_SIZE + " teams");
+
+        // groups: ids follow group-name order, so slot ids are grouped and
+        // ascending by position within a group
+        TreeSet<String> names = new TreeSet<>();
+        for (GroupSlot s : slotById)
+            names.add(s.getGroupName());
+        this.groupNames = names.toArray(new String[0]);
+        for (int g = 0; g < groupNames.length; g++)
+            groupIds.put(groupNames[g], g);
+
+        this.slotGroup = new int[slotById.length];
+        this.slotPosition = new int[slotById.length];
+        this.groupSlots = new long[groupNames.length];
+        for (int s = 0; s < slotById.length; s++) {
+            slotIds.put(slotById[s], s);
+            slotIdentity.put(slotById[s], s);
+            slotGroup[s] = groupIds.get(slotById[s].getGroupName());
+            slotPosition[s] = slotById[s].getPosition();
+            groupSlots[slotGroup[s]] |= 1L << s;
+        }
+
+        this.teamPot = new int[teamById.length];
+        this.teamContinents = new long[teamById.length];
+        int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+        for (int t = 0; t < teamById.length; t++) {
+            Team team = teamById[t];
+            teamIds.put(team.getName(), t);
+            teamIdentity.put(team, t);
+            teamPot[t] = team.pot();
+            lo = Math.min(lo, teamPot[t]);
+            hi = Math.max(hi, teamPot[t]);
+            for (String c : team.getContinents())
+                teamContinents[t] |= 1L << internContinent(c);
+        }
+
+        this.minPot = teamById.length == 0 ? 0 : lo;
+        this.potTeams = new long[teamById.length == 0 ? 0 : hi - lo + 1];
+        if (potTeams.length > MAX_SIZE)
+            throw new IllegalArgumentException("DrawModel supports at most " + MAX_SIZE + " distinct pots");
+        this.teamPotBit = new long[teamById.length];
+        for (int t = 0; t < teamById.length; t++) {
+            potTeams[teamPot[t] - minPot] |= 1L << t;
+            teamPotBit[t] = 1L << (teamPot[t] - minPot);
+        }
+
+        this.continentTeams = new long[continentNames.size()];
+        for (int t = 0; t < teamById.length; t++) {
+            for (long m = teamContinents[t]; m != 0; m &= m - 1)
+                continentTeams[Long.numberOfTrailingZeros(m)] |= 1L << t;
+        }
+
+        Integer europe = continentIds.get(EUROPE);
+        this.europeMask = europe != null ? 1L << europe : 0L;
+        this.europeId = europe != null ? europe : -1;
+    }
+
+    private int internContinent(String continent) {
+        String key = continent.toLowerCase(Locale.ROOT);
+        Integer id = continentIds.get(key);
+        if (id != null)
+            return id;
+        if (continentNames.size() == MAX_SIZE)
+            throw new IllegalArgumentException("DrawModel supports at most " + MAX_SIZE + " continents");
+        continentIds.put(key, continentNames.size());
+        continentNames.add(continent);
+        return continentNames.size() - 1;
+    }
+
+    /** Slots in the order they were supplied. */
+    public List<GroupSlot> getSlots() {
+        return slots;
+    }
+
+    public List<Team> getTeams() {
+        return List.of(teamById);
+    }
+
+    // --- Slots and groups ---
+
+    public int slotCount() {
+        return slotById.length;
+    }
+
+    public GroupSlot slot(int slotId) {
+        return slotById[slotId];
+    }
+
+    /** Dense id of the slot, or -1 when the slot is not part of this model. */
+    public int slotId(GroupSlot slot) {
+        Integer id = slotIdentity.get(slot);
+        if (id == null)
+            id = slotIds.get(slot);
+        return id != null ? id : -1;
+    }
+
+    public int groupCount() {
+        return groupNames.length;
+    }
+
+    public String groupName(int groupId) {
+        return groupNames[groupId];
+    }
+
+    /** Dense id of the group, or -1 when no slot of the model is in it. */
+    public int groupId(String groupName) {
+        Integer id = groupIds.get(groupName);
+        return id != null ? id : -1;
+    }
+
+    /** Group id of a slot, also for slots that are not part of the model. */
+    public int groupOf(GroupSlot slot) {
+        int s = slotId(slot);
+        return s >= 0 ? slotGroup[s] : groupId(slot.getGroupName());
+    }
+
+    public int slotGroup(int slotId) {
+        return slotGroup[slotId];
+    }
+
+    public int slotPosition(int slotId) {
+        return slotPosition[slotId];
+    }
+
+    /** Bitset of the slot ids belonging to the group. */
+    public long groupSlots(int groupId) {
+        return groupSlots[groupId];
+    }
+
+    /** Bitset of the slot ids of the named groups; unknown names are ignored. */
+    public long slotsInGroups(Collection<String> groupNames) {
+        long slots = 0L;
+        for (String name : groupNames) {
+            int g = groupId(name);
+            if (g >= 0)
+                slots |= groupSlots[g];
+        }
+        return slots;
+    }
+
+    /** Bitset of every slot id. */
+    public long allSlots() {
+        return lowBits(slotById.length);
+    }
+
+    // --- Teams ---
+
+    public int teamCount() {
+        return teamById.length;
+    }
+
+    public Team team(int teamId) {
+        return teamById[teamId];
+    }
+
+    /** Dense id of the team, or -1 when the team is not part of this model. */
+    public int teamId(Team team) {
+        Integer id = teamIdentity.get(team);
+        return id != null ? id : teamId(team.getName());
+    }
+
+    /** Dense id of the team, or -1 when the team is not part of this model. */
+    public int teamId(String teamName) {
+        Integer id = teamIds.get(teamName);
+        return id != null ? id : -1;
+    }
+
+    /** Bitset of every team id. */
+    public long allTeams() {
+        return lowBits(teamById.length);
+    }
+
+    public int teamPot(int teamId) {
+        return teamPot[teamId];
+    }
+
+    /** Number of pot indexes, from the lowest to the highest pot of the teams. */
+    public int potCount() {
+        return potTeams.length;
+    }
+
+    /** Pot of the team as a single bit of a pot mask. */
+    public long teamPotBit(int teamId) {
+        return teamPotBit[teamId];
+    }
+
+    /** Pot as a single bit of a pot mask, 0 when no team of the model is in it. */
+    public long potBit(int pot) {
+        int i = pot - minPot;
+        return i >= 0 && i < potTeams.length ? 1L << i : 0L;
+    }
+
+    /** Bitset of the team ids in the given pot. */
+    public long teamsInPot(int pot) {
+        int i = pot - minPot;
+        return i >= 0 && i < potTeams.length ? potTeams[i] : 0L;
+    }
+
+    // --- Continents ---
+
+    public int continentCount() {
+        return continentNames.size();
+    }
+
+    public String continentName(int continentId) {
+        return continentNames.get(continentId);
+    }
+
+    /** Case-insensitive continent id, or -1 when no team plays in it. */
+    public int continentId(String continent) {
+        Integer id = continentIds.get(continent.toLowerCase(Locale.ROOT));
+        return id != null ? id : -1;
+    }
+
+    /** Continent bitmask of the team. */
+    public long teamContinents(int teamId) {
+        return teamContinents[teamId];
+    }
+
+    /**
+     * Continent bitmask of any team; teams outside the model are mapped onto
+     * the model's continents (unknown continents cannot clash and are dropped).
+     */
+    public long continentsOf(Team team) {
+        int t = teamId(team);
+        if (t >= 0)
+            return teamContinents[t];
+        long mask = 0L;
+        for (String c : team.getContinents()) {
+            int id = continentId(c);
+            if (id >= 0)
+                mask |= 1L << id;
+        }
+        return mask;
+    }
+
+    /** Continent bitmask containing only Europe (0 when no European team). */
+    public long europeMask() {
+        return europeMask;
+    }
+
+    /** Continent id of Europe, -1 when no European team. */
+    public int europeId() {
+        return europeId;
+    }
+
+    /** Bitset of the team ids having at least one continent in the mask. */
+    public long teamsWithAnyContinent(long continentMask) {
+        long teams = 0L;
+        for (long m = continentMask; m != 0; m &= m - 1)
+            teams |= continentTeams[Long.numberOfTrailingZeros(m)];
+        return teams;
+    }
+
+    /** Canonical signature layout of this model's partial draws. */
+    DrawSignature signature() {
+        DrawSignature s = signature;
+        if (s == null)
+            signature = s = new DrawSignature(this);
+        return s;
+    }
+
+    static long lowBits(int n) {
+        return n >= Long.SIZE ? -1L : (1L << n) - 1;
+    }
+}
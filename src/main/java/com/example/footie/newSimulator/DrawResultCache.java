@@ -0,0 +1,111 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe, bounded cache of solved draws by {@link Key}: the seed of
+ * the draw, a hash of the team set and a hash of the solver configuration
+ * (see {@link com.example.footie.newSimulator.constraint.ConstraintManager#configurationKey()}).
+ * A seeded draw of the same teams under the same configuration comes out
+ * the same every time, so a repeated request can be answered from here
+ * instead of solving it again. Least recently used entries are evicted
+ * beyond the capacity.
+ */
+public final class DrawResultCache<V> {
+
+    /** What a seeded draw depends on. */
+    public record Key(long seed, long teams, long configuration) {
+    }
+
+    private final Map<Key, V> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public DrawResultCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+                if (size() <= capacity)
+                    return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /** The draw cached under the key, or null. */
+    public V get(Key key) {
+        V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+
+    public void put(Key key, V value) {
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Hash of the teams' names, pots and continents, whatever their order;
+     * the teams of a seeded draw are put in {@link #canonicalOrder} first, so
+     * equal sets give equal draws.
+     */
+    public static long teamSetHash(Collection<Team> teams) {
+        long h = Hashing.mix(0L, teams.size());
+        for (Team t : canonicalOrder(teams)) {
+            h = Hashing.mix(h, Hashing.of(t.getName()));
+            h = Hashing.mix(h, t.pot());
+            for (String continent : new TreeSet<>(t.getContinents()))
+                h = Hashing.mix(h, Hashing.of(continent));
+        }
+        return h;
+    }
+
+    /** The teams by name, the order a seeded draw is built in. */
+    public static List<Team> canonicalOrder(Collection<Team> teams) {
+        List<Team> sorted = new ArrayList<>(teams);
+        sorted.sort(Comparator.comparing(Team::getName));
+        return sorted;
+    }
+
+}
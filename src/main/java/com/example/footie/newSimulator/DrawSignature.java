@@ -0,0 +1,194 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Canonical signature of a partial draw, packed into {@code long} words, as
+ * used by {@link NogoodStore} and {@link FeasibilityCache}.
+ *
+ * Word 0 is a fingerprint of the model's layout: group sizes, continent
+ * names and team types. Then come how many unplaced teams of each type (pot
+ * and continents, ordered by pot) are left, eight bits each, and the sorted
+ * pot masks, continent counts and free slots of the open groups, a word per
+ * group. Two states with the same signature differ only by which team of a
+ * type sits where and by the group labels, so under constraints that are
+ * group-local and look at pots and continents alone they are completable
+ * alike, also across models with the same layout.
+ *
+ * The same layout is {@link DrawCounter}'s memo key. Built once per model,
+ * see {@link DrawModel#signature()}; immutable, so it is shared by every
+ * thread.
+ */
+final class DrawSignature {
+
+    private static final int TYPE_COUNT_BITS = 8;
+    private static final int TYPES_PER_WORD = Long.SIZE / TYPE_COUNT_BITS;
+
+    private final DrawModel model;
+    private final int[] teamType;
+    private final long[] typeTeams;
+    private final int typeWords;
+    private final int countBits;
+    private final int groupBits;
+    private final boolean fits;
+    private final long fingerprint;
+
+    DrawSignature(DrawModel model) {
+        this.model = model;
+        int largestGroup = 0;
+        for (int g = 0; g < model.groupCount(); g++)
+            largestGroup = Math.max(largestGroup, Long.bitCount(model.groupSlots(g)));
+        this.countBits = Integer.SIZE - Integer.numberOfLeadingZeros(largestGroup);
+        this.groupBits = model.potCount() + (model.continentCount() + 1) * countBits;
+        this.fits = groupBits < Long.SIZE;
+
+        // types by pot, then continent mask, so teams come pot by pot
+        List<long[]> types = new ArrayList<>();
+        for (int t = 0; t < model.teamCount(); t++) {
+            long[] type = { model.teamPotBit(t), model.teamContinents(t) };
+            if (types.stream().noneMatch(other -> Arrays.equals(other, type)))
+                types.add(type);
+        }
+        types.sort(Comparator.<long[]>comparingLong(type -> type[0]).thenComparingLong(type -> type[1]));
+        this.teamType = new int[model.teamCount()];
+        this.typeTeams = new long[types.size()];
+        for (int t = 0; t < model.teamCount(); t++) {
+            long[] type = { model.teamPotBit(t), model.teamContinents(t) };
+            int i = 0;
+            while (!Arrays.equals(types.get(i), type))
+                i++;
+            teamType[t] = i;
+            typeTeams[i] |= 1L << t;
+        }
+        this.typeWords = (typeTeams.length + TYPES_PER_WORD - 1) / TYPES_PER_WORD;
+
+        long h = Hashing.mix(0L, model.potCount());
+        for (int g = 0; g < model.groupCount(); g++)
+            h = Hashing.mix(h, Long.bitCount(model.groupSlots(g)));
+        for (int c = 0; c < model.continentCount(); c++)
+            h = Hashing.mix(h, model.continentName(c).toLowerCase(Locale.ROOT).hashCode());
+        for (long[] type : types)
+            h = Hashing.mix(Hashing.mix(h, type[0]), type[1]);
+        this.fingerprint = h;
+    }
+
+    /** Whether a group fits in a word; no signature is built otherwise. */
+    boolean fits() {
+        return fits;
+    }
+
+    /** Bits a group word takes; the ones above are free for callers' tags. */
+    int groupBits() {
+        return groupBits;
+    }
+
+    int typeCount() {
+        return typeTeams.length;
+    }
+
+    int teamType(int team) {
+        return teamType[team];
+    }
+
+    long typeTeams(int type) {
+        return typeTeams[type];
+    }
+
+    /** Index of the first group word of a signature. */
+    int firstGroupWord() {
+        return 1 + typeWords;
+    }
+
+    /** Signature of the state, or null when the model does not fit the layout. */
+    long[] of(AssignmentState state) {
+        if (!fits)
+            return null;
+        long[] groups = new long[model.groupCount()];
+        for (int g = 0; g < groups.length; g++)
+            groups[g] = groupWord(state, g);
+        return of(state, groups);
+    }
+
+    /**
+     * Signature of the state with the given group words, -1 for the full
+     * groups; callers may have tagged the words above {@link #groupBits()}.
+     */
+    long[] of(AssignmentState state, long[] groupWords) {
+        int open = 0;
+        for (long word : groupWords) {
+            if (word >= 0)
+                open++;
+        }
+        int first = firstGroupWord();
+        long[] words = new long[first + open];
+        words[0] = fingerprint;
+        long unassigned = state.unassignedTeamBits();
+        for (int type = 0; type < typeTeams.length; type++) {
+            long left = Long.bitCount(typeTeams[type] & unassigned);
+            words[1 + type / TYPES_PER_WORD] |= left << (type % TYPES_PER_WORD * TYPE_COUNT_BITS);
+        }
+        int at = first;
+        for (long word : groupWords) {
+            if (word >= 0)
+                words[at++] = word;
+        }
+        Arrays.sort(words, first, words.length);
+        return words;
+    }
+
+    /** Pot mask, continent counts and free slots of the group packed in a long; -1 when full. */
+    long groupWord(AssignmentState state, int group) {
+        int free = Long.bitCount(model.groupSlots(group) & state.unassignedSlotBits());
+        if (free == 0)
+            return -1L;
+        long word = state.groupPotMask(group);
+        int shift = model.potCount();
+        for (int c = 0; c < model.continentCount(); c++, shift += countBits)
+            word |= (long) state.groupContinentCount(group, c) << shift;
+        return word | (long) free << shift;
+    }
+
+    /** Teams of the type a signature has left to place. */
+    static int teamsLeft(long[] words, int type) {
+        return (int) (words[1 + type / TYPES_PER_WORD] >>> (type % TYPES_PER_WORD * TYPE_COUNT_BITS))
+                & ((1 << TYPE_COUNT_BITS) - 1);
+    }
+
+    /** Take one team of the type off a signature's counts, in place. */
+    static void placeTeam(long[] words, int type) {
+        words[1 + type / TYPES_PER_WORD] -= 1L << (type % TYPES_PER_WORD * TYPE_COUNT_BITS);
+    }
+
+    /** Map key over a signature. */
+    static final class Key {
+        private final long[] words;
+        private final int hash;
+
+        Key(long[] words) {
+            this.words = words;
+            // signatures differ in few bits; mix them so buckets spread
+            long h = 0L;
+            for (long w : words)
+                h = Hashing.mix(h, w);
+            this.hash = (int) (h ^ (h >>> 32));
+        }
+
+        long[] words() {
+            return words;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(words, ((Key) o).words);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
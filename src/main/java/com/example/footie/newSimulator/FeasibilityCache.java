@@ -0,0 +1,124 @@
+package com.example.footie.newSimulator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe, bounded memo of whether partial draws can be completed,
+ * shared by every solver, live draw and Monte Carlo worker that uses the
+ * same constraints, so each benefits from the states the others solved.
+ *
+ * States are keyed by their {@link DrawSignature}: many different partial
+ * draws, also of different team sets with the same layout, reduce to the
+ * same groups of pots and continents. That is only sound for group-local
+ * constraints on pots and continents, and a cache must not be shared across
+ * constraint sets; {@link #key} returns null when the model does not fit.
+ *
+ * The entries are spread over segments by hash, each a least recently used
+ * map behind its own lock, so threads rarely wait on each other; every
+ * segment evicts its eldest entry beyond its share of the capacity.
+ */
+public final class FeasibilityCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FeasibilityCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        int share = Math.max(1, capacity / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment(share);
+    }
+
+    /** Key of the state, or null when its model does not fit the signature layout. */
+    long[] key(AssignmentState state) {
+        return state.model().signature().of(state);
+    }
+
+    /** Whether the state of the key is completable; null when unknown. */
+    Boolean get(long[] key) {
+        DrawSignature.Key k = new DrawSignature.Key(key);
+        Segment segment = segment(k);
+        Boolean feasible;
+        synchronized (segment) {
+            feasible = segment.get(k);
+        }
+        (feasible != null ? hits : misses).increment();
+        return feasible;
+    }
+
+    void put(long[] key, boolean feasible) {
+        DrawSignature.Key k = new DrawSignature.Key(key);
+        Segment segment = segment(k);
+        synchronized (segment) {
+            segment.put(k, feasible);
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** Share of lookups answered, 0 before the first one. */
+    public double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private Segment segment(DrawSignature.Key key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /** One lock's share of the entries, in access order. */
+    private final class Segment extends LinkedHashMap<DrawSignature.Key, Boolean> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<DrawSignature.Key, Boolean> eldest) {
+            if (size() <= capacity)
+                return false;
+            evictions.increment();
+            return true;
+        }
+    }
+}
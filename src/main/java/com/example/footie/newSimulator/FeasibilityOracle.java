@@ -0,0 +1,203 @@
+package com.example.footie.newSimulator;
+
+import java.util.List;
+
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+
+/**
+ * Answers "can the draw still be completed if this team goes to this slot?"
+ * for a live, ball-by-ball draw, leaving the state as it was.
+ *
+ * Answers are tried from cheapest to dearest:
+ * <ol>
+ * <li>the last completion found (the witness) still agrees with every
+ * placement made since and puts the team in that slot;</li>
+ * <li>the witness with the team and the slot's witness occupant swapped is
+ * still a valid draw, and becomes the new witness;</li>
+ * <li>the placement is rejected by the constraints, or by the global
+ * propagators (Régin all-different, arc consistency and the Hall check)
+ * once it is made;</li>
+ * <li>the resulting state is known to be completable or not by the
+ * {@link FeasibilityCache}, which may be shared with other draws (only for
+ * group-local constraints);</li>
+ * <li>otherwise a complete search for a completion, with symmetry breaking
+ * and nogood learning; the nogoods persist across queries, the states it
+ * settles go to the cache, and a success becomes the new witness.</li>
+ * </ol>
+ * In a ceremony most balls are answered by the first step, since the
+ * witness keeps agreeing until a team is put somewhere else than it says.
+ */
+public final class FeasibilityOracle {
+
+    private final ConstraintManager constraintManager;
+    private final BacktrackingSolver solver;
+    private final FeasibilityCache cache;
+    // slot of every team in the last completion found; null before the first
+    private int[] witness;
+    private DrawModel witnessModel;
+    private long witnessHits;
+    private long repairs;
+    private long cacheHits;
+    private long searches;
+
+    public FeasibilityOracle(ConstraintManager constraintManager) {
+        this(constraintManager, new FeasibilityCache(1 << 16));
+    }
+
+    public FeasibilityOracle(ConstraintManager constraintManager, FeasibilityCache cache) {
+        this.constraintManager = constraintManager;
+        this.cache = cache;
+        this.solver = new BacktrackingSolver(constraintManager);
+        solver.setFeasibilityCache(cache);
+        // the global checks cost more than they prune near the root
+        solver.setOnlyCheckDomainAfter(28);
+        solver.setMaxNodes(0);
+        // every run is complete unless its budget runs out, and the budgets
+        // keep growing, so the search always ends with an exact answer
+        solver.setRestartPolicy(RestartPolicy.luby(100, Integer.MAX_VALUE));
+        solver.setBackjumping(true);
+    }
+
+    /** Whether the team can go to the slot with the rest of the draw still completable. */
+    public boolean isFeasible(AssignmentState state, int slot, int team) {
+        if (state.assignedTeam(slot) >= 0 || state.assignedSlot(team) >= 0
+                || !constraintManager.isAssignmentValid(state, slot, team))
+            return false;
+        boolean agrees = witnessAgrees(state);
+        if (agrees && witness[team] == slot) {
+            witnessHits++;
+            return true;
+        }
+        if (agrees && repairWitness(state, slot, team)) {
+            repairs++;
+            return true;
+        }
+
+        int checkpoint = state.checkpoint();
+        try {
+            state.assign(slot, team);
+            constraintManager.forwardCheck(state, slot, team);
+            if (!constraintManager.checkGlobalConsistency(state))
+                return false;
+            DrawModel model = state.model();
+            long[] key = constraintManager.isGroupLocal(model) ? cache.key(state) : null;
+            Boolean known = key != null ? cache.get(key) : null;
+            if (known != null) {
+                cacheHits++;
+                return known;
+            }
+
+            searches++;
+            int[] order = new int[Long.bitCount(state.unassignedTeamBits())];
+            int n = 0;
+            for (long m = state.unassignedTeamBits(); m != 0; m &= m - 1)
+                order[n++] = Long.numberOfTrailingZeros(m);
+            if (!solver.solveTeamFirst(state, order, 0))
+                return false;
+            witness = new int[model.teamCount()];
+            for (int t = 0; t < witness.length; t++)
+                witness[t] = state.assignedSlot(t);
+            witnessModel = model;
+            return true;
+        } finally {
+            state.rollbackTo(checkpoint);
+        }
+    }
+
+    /**
+     * A free slot of the group the team can take with the draw still
+     * completable: the witness's slot when it puts the team in this group,
+     * otherwise the lowest such position; -1 when there is none.
+     */
+    public int feasibleSlot(AssignmentState state, int team, int group) {
+        DrawModel model = state.model();
+        if (state.assignedSlot(team) >= 0)
+            return -1;
+        if (witnessAgrees(state) && model.slotGroup(witness[team]) == group) {
+            witnessHits++;
+            return witness[team];
+        }
+        for (long m = model.groupSlots(group) & state.unassignedSlotBits(); m != 0; m &= m - 1) {
+            int slot = Long.numberOfTrailingZeros(m);
+            if (isFeasible(state, slot, team))
+                return slot;
+        }
+        return -1;
+    }
+
+    /** Queries answered by the witness. */
+    public long getWitnessHits() {
+        return witnessHits;
+    }
+
+    /** Queries answered by swapping two teams of the witness. */
+    public long getRepairs() {
+        return repairs;
+    }
+
+    /** Queries answered by the cache. */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /** Queries that needed a search. */
+    public long getSearches() {
+        return searches;
+    }
+
+    /**
+     * Move the team to the slot in the witness and its occupant there to
+     * the team's old slot; keep the result as the witness if every team is
+     * valid in it with all the others placed. Checking the teams one by one
+     * as they are placed is not enough: a rule that only binds the teams
+     * placed after its trigger, as {@link
+     * com.example.footie.newSimulator.constraint.TriggerAnyTeamInGroupsConstraint}
+     * does, would pass a required team placed before the trigger moved in.
+     * The state is left as it was.
+     */
+    private boolean repairWitness(AssignmentState state, int slot, int team) {
+        int[] candidate = witness.clone();
+        for (int t = 0; t < candidate.length; t++) {
+            if (candidate[t] == slot) {
+                candidate[t] = witness[team];
+                break;
+            }
+        }
+        candidate[team] = slot;
+
+        int checkpoint = state.checkpoint();
+        try {
+            state.assign(slot, team);
+            for (long m = state.unassignedTeamBits(); m != 0; m &= m - 1) {
+                int t = Long.numberOfTrailingZeros(m);
+                state.assign(candidate[t], t);
+            }
+            for (long m = state.assignedSlotBits(); m != 0; m &= m - 1) {
+                int s = Long.numberOfTrailingZeros(m);
+                int t = state.assignedTeam(s);
+                int mark = state.checkpoint();
+                state.unassign(state.slotById(s), List.of(state.teamById(t)));
+                boolean valid = constraintManager.isAssignmentValid(state, s, t);
+                state.rollbackTo(mark);
+                if (!valid)
+                    return false;
+            }
+        } finally {
+            state.rollbackTo(checkpoint);
+        }
+        witness = candidate;
+        return true;
+    }
+
+    /** Whether the witness extends every placement of the state. */
+    private boolean witnessAgrees(AssignmentState state) {
+        if (witness == null || witnessModel != state.model())
+            return false;
+        for (long m = state.assignedSlotBits(); m != 0; m &= m - 1) {
+            int slot = Long.numberOfTrailingZeros(m);
+            if (witness[state.assignedTeam(slot)] != slot)
+                return false;
+        }
+        return true;
+    }
+}
@@ -24,7 +24,7 @@ public class GroupSlot implements Comparable<GroupSlot> {
 
     @Override
     public int hashCode() {
-        return java.util.Objects.hash(groupName, position);
+        return 31 * groupName.hashCode() + position;
     }
 
     @Override
@@ -32,7 +32,8 @@ public class GroupSlot implements Comparable<GroupSlot> {
 
     @Override
     public int compareTo(GroupSlot other) {
-        int groupComp = toString().compareTo(other.toString());
+        // group name first, then numeric position (no string building)
+        int groupComp = groupName.compareTo(other.groupName);
         if (groupComp != 0) return groupComp;
         return Integer.compare(this.position, other.position);
     }
@@ -0,0 +1,27 @@
+package com.example.footie.newSimulator;
+
+/**
+ * The 64-bit multiplicative mix behind the draw's hashes: signatures,
+ * team sets and solver configurations.
+ */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    public static long mix(long h, long value) {
+        return (h ^ value) * 0x9E3779B97F4A7C15L;
+    }
+
+    /** Hash of the parts, in order, by every character of their string forms. */
+    public static long of(Object... parts) {
+        long h = 0L;
+        for (Object part : parts) {
+            String s = String.valueOf(part);
+            h = mix(h, s.length());
+            for (int i = 0; i < s.length(); i++)
+                h = mix(h, s.charAt(i));
+        }
+        return h;
+    }
+}
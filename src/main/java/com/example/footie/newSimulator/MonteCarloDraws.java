@@ -0,0 +1,303 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Estimates how likely each team is to land in each group, and to share a
+ * group with each other team, by running many complete draws.
+ *
+ * The draws are split over workers on an executor. Every worker owns a
+ * solver, an {@link AssignmentState} that is rolled back to the pinned teams
+ * before each draw, and its own {@link SplittableRandom} stream split from
+ * the run's seed, so a run is reproducible for a given seed and worker
+ * count as long as the solvers share no state, such as a feasibility
+ * cache, with each other or with other searches. Teams are shuffled within their pot in one reused order array and
+ * each solved draw is counted into the worker's primitive arrays; the
+ * counters are only summed after each batch of draws, when every worker is
+ * idle.
+ */
+public final class MonteCarloDraws {
+
+    private final DrawModel model;
+    private final int[] pinnedSlots;
+    private final int[] pinnedTeams;
+    private final Supplier<BacktrackingSolver> solvers;
+    private final ExecutorService executor;
+
+    /**
+     * @param pinned  teams placed before every draw, like the hosts
+     * @param solvers a configured solver with its own constraint manager,
+     *                and its own feasibility cache if any, per call
+     */
+    public MonteCarloDraws(DrawModel model, Map<GroupSlot, Team> pinned, Supplier<BacktrackingSolver> solvers,
+            ExecutorService executor) {
+        this.model = model;
+        this.pinnedSlots = new int[pinned.size()];
+        this.pinnedTeams = new int[pinned.size()];
+        int i = 0;
+        for (Map.Entry<GroupSlot, Team> pin : pinned.entrySet()) {
+            pinnedSlots[i] = model.slotId(pin.getKey());
+            pinnedTeams[i] = model.teamId(pin.getValue());
+            if (pinnedSlots[i] < 0 || pinnedTeams[i] < 0)
+                throw new IllegalArgumentException("Unknown pin: " + pin.getKey() + " -> " + pin.getValue());
+            i++;
+        }
+        this.solvers = solvers;
+        this.executor = executor;
+    }
+
+    /**
+     * Run {@code draws} draws on {@code workers} workers and return the
+     * tallies. After about every {@code reportEvery} draws the counters so
+     * far are passed to {@code progress}, on the calling thread.
+     */
+    public Result run(long draws, int workers, long seed, long reportEvery, Consumer<Result> progress)
+            throws InterruptedException {
+        if (draws < 0 || workers <= 0 || reportEvery <= 0)
+            throw new IllegalArgumentException("draws, workers and reportEvery must be positive");
+
+        SplittableRandom root = new SplittableRandom(seed);
+        Worker[] pool = new Worker[workers];
+        for (int i = 0; i < workers; i++)
+            pool[i] = new Worker(root.split());
+
+        // each worker's share is fixed up front, so the tallies do not
+        // depend on how often progress is reported
+        long[] left = new long[workers];
+        for (int i = 0; i < workers; i++)
+            left[i] = draws / workers + (i < draws % workers ? 1 : 0);
+        long step = (reportEvery + workers - 1) / workers;
+
+        long start = System.nanoTime();
+        Result result = merge(pool, 0L);
+        while (left[0] > 0) {
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                Worker worker = pool[i];
+                long share = Math.min(step, left[i]);
+                left[i] -= share;
+                futures.add(executor.submit(() -> worker.run(share)));
+            }
+            try {
+                for (Future<?> f : futures)
+                    f.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Monte Carlo worker failed", e.getCause());
+            } finally {
+                for (Future<?> f : futures)
+                    f.cancel(true);
+            }
+            result = merge(pool, System.nanoTime() - start);
+            if (progress != null)
+                progress.accept(result);
+        }
+        return result;
+    }
+
+    private Result merge(Worker[] pool, long nanos) {
+        int teams = model.teamCount();
+        long[] teamGroup = new long[teams * model.groupCount()];
+        long[] together = new long[teams * teams];
+        long solved = 0;
+        long failed = 0;
+        for (Worker w : pool) {
+            for (int i = 0; i < teamGroup.length; i++)
+                teamGroup[i] += w.teamGroup[i];
+            for (int i = 0; i < together.length; i++)
+                together[i] += w.together[i];
+            solved += w.solved;
+            failed += w.failed;
+        }
+        return new Result(model, solved, failed, nanos, teamGroup, together);
+    }
+
+    /** One worker's solver, state, random stream and counters; used by one thread at a time. */
+    private final class Worker {
+        private final SplittableRandom random;
+        private final BacktrackingSolver solver;
+        private final AssignmentState state;
+        // the pinned teams' placements, rolled back to before every draw
+        private final int base;
+        // unpinned team ids by pot; potEnd[i] is the end of the i-th pot's run
+        private final int[] order;
+        private final int[] potEnd;
+        private final long[] groupTeams;
+        final long[] teamGroup;
+        final long[] together;
+        long solved;
+        long failed;
+
+        Worker(SplittableRandom random) {
+            this.random = random;
+            this.solver = solvers.get();
+            solver.setRandom(new Random(random.nextLong()));
+            this.state = new AssignmentState(model);
+            long pinned = 0L;
+            for (int i = 0; i < pinnedSlots.length; i++) {
+                if (!solver.assignWithTrail(state, pinnedSlots[i], pinnedTeams[i], 0))
+                    throw new IllegalArgumentException("Pinned teams are inconsistent");
+                pinned |= 1L << pinnedTeams[i];
+            }
+            this.base = state.checkpoint();
+
+            int unpinned = Long.bitCount(model.allTeams() & ~pinned);
+            this.order = new int[unpinned];
+            int[] ends = new int[model.potCount()];
+            int n = 0;
+            int pots = 0;
+            for (int p = 0; p < model.potCount(); p++) {
+                int start = n;
+                for (long m = model.allTeams() & ~pinned; m != 0; m &= m - 1) {
+                    int t = Long.numberOfTrailingZeros(m);
+                    if (model.teamPotBit(t) == 1L << p)
+                        order[n++] = t;
+                }
+                if (n > start)
+                    ends[pots++] = n;
+            }
+            this.potEnd = Arrays.copyOf(ends, pots);
+            this.groupTeams = new long[model.groupCount()];
+            this.teamGroup = new long[model.teamCount() * model.groupCount()];
+            this.together = new long[model.teamCount() * model.teamCount()];
+        }
+
+        void run(long draws) {
+            for (long i = 0; i < draws; i++)
+                draw();
+        }
+
+        private void draw() {
+            state.rollbackTo(base);
+            // shuffle within each pot, as the ceremony does
+            for (int p = 0, from = 0; p < potEnd.length; from = potEnd[p++]) {
+                for (int i = potEnd[p] - 1; i > from; i--) {
+                    int j = from + random.nextInt(i - from + 1);
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                }
+            }
+            boolean ok;
+            try {
+                ok = solver.solveTeamFirst(state, order, 0);
+            } catch (RuntimeException e) {
+                ok = false;
+            }
+            if (!ok) {
+                failed++;
+                return;
+            }
+
+            int teams = model.teamCount();
+            int groups = model.groupCount();
+            Arrays.fill(groupTeams, 0L);
+            for (int t = 0; t < teams; t++) {
+                int g = model.slotGroup(state.assignedSlot(t));
+                teamGroup[t * groups + g]++;
+                groupTeams[g] |= 1L << t;
+            }
+            for (int g = 0; g < groups; g++) {
+                for (long m = groupTeams[g]; m != 0; m &= m - 1) {
+                    int t = Long.numberOfTrailingZeros(m);
+                    for (long o = groupTeams[g] & ~(1L << t); o != 0; o &= o - 1)
+                        together[t * teams + Long.numberOfTrailingZeros(o)]++;
+                }
+            }
+            solved++;
+        }
+    }
+
+    /** Tallies of a run so far: team-in-group and same-group counts over the solved draws. */
+    public static final class Result {
+        private final DrawModel model;
+        private final long draws;
+        private final long failed;
+        private final long nanos;
+        // row-major: teamGroup[team * groupCount + group], together[team * teamCount + other]
+        private final long[] teamGroup;
+        private final long[] together;
+
+        Result(DrawModel model, long draws, long failed, long nanos, long[] teamGroup, long[] together) {
+            this.model = model;
+            this.draws = draws;
+            this.failed = failed;
+            this.nanos = nanos;
+            this.teamGroup = teamGroup;
+            this.together = together;
+        }
+
+        /** Number of solved draws counted. */
+        public long draws() {
+            return draws;
+        }
+
+        /** Number of draws the solver gave up on; they are not counted. */
+        public long failed() {
+            return failed;
+        }
+
+        public double drawsPerSecond() {
+            return nanos > 0 ? (draws + failed) / (nanos / 1e9) : 0.0;
+        }
+
+        public double groupProbability(int team, int group) {
+            return draws > 0 ? (double) teamGroup[team * model.groupCount() + group] / draws : 0.0;
+        }
+
+        public double togetherProbability(int team, int other) {
+            return draws > 0 ? (double) together[team * model.teamCount() + other] / draws : 0.0;
+        }
+
+        /**
+         * Largest standard error of a team-in-group probability,
+         * sqrt(p(1-p)/n); it shrinks with the square root of the draws.
+         */
+        public double maxStandardError() {
+            if (draws == 0)
+                return Double.NaN;
+            double max = 0.0;
+            for (long count : teamGroup) {
+                double p = (double) count / draws;
+                max = Math.max(max, p * (1 - p));
+            }
+            return Math.sqrt(max / draws);
+        }
+
+        /** Team name -> group name -> probability, in model order. */
+        public Map<String, Map<String, Double>> groupProbabilities() {
+            Map<String, Map<String, Double>> result = new LinkedHashMap<>();
+            for (int t = 0; t < model.teamCount(); t++) {
+                Map<String, Double> row = new LinkedHashMap<>();
+                for (int g = 0; g < model.groupCount(); g++)
+                    row.put(model.groupName(g), groupProbability(t, g));
+                result.put(model.team(t).getName(), row);
+            }
+            return result;
+        }
+
+        /** Team name -> other team name -> probability of sharing a group, in model order. */
+        public Map<String, Map<String, Double>> togetherProbabilities() {
+            Map<String, Map<String, Double>> result = new LinkedHashMap<>();
+            for (int t = 0; t < model.teamCount(); t++) {
+                Map<String, Double> row = new LinkedHashMap<>();
+                for (int u = 0; u < model.teamCount(); u++) {
+                    if (u != t)
+                        row.put(model.team(u).getName(), togetherProbability(t, u));
+                }
+                result.put(model.team(t).getName(), row);
+            }
+            return result;
+        }
+    }
+}
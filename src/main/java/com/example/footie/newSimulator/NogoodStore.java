@@ -0,0 +1,77 @@
+package com.example.footie.newSimulator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded set of partial draws the solver has proved cannot be completed,
+ * used by {@link BacktrackingSolver} to cut a search node as soon as it
+ * reaches one again, in the same run, after a restart or under other group
+ * labels.
+ *
+ * A failed state is stored by its {@link DrawSignature}, which is sound only
+ * while every constraint is group-local and looks at pots and continents
+ * alone, so the solver only learns nogoods for such constraint sets. The
+ * least recently used entry is evicted once {@code capacity} is reached.
+ * Not thread-safe: every solver owns one, see {@link FeasibilityCache} for
+ * the shared kind.
+ */
+final class NogoodStore {
+
+    private final int capacity;
+    private final Map<DrawSignature.Key, Boolean> failed;
+    private long hits;
+    private long evictions;
+    // nogoods of another model are dropped
+    private DrawModel boundModel;
+
+    NogoodStore(int capacity) {
+        this.capacity = capacity;
+        // access order, so the eldest entry is the least recently used one
+        this.failed = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DrawSignature.Key, Boolean> eldest) {
+                if (size() <= NogoodStore.this.capacity)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /** Signature of the state, or null when the model does not fit the layout. */
+    long[] signature(AssignmentState state) {
+        DrawModel model = state.model();
+        if (model != boundModel) {
+            failed.clear();
+            boundModel = model;
+        }
+        return model.signature().of(state);
+    }
+
+    /** Whether the signature is a known nogood; a hit also refreshes its recency. */
+    boolean contains(long[] signature) {
+        if (failed.get(new DrawSignature.Key(signature)) == null)
+            return false;
+        hits++;
+        return true;
+    }
+
+    void add(long[] signature) {
+        failed.put(new DrawSignature.Key(signature), Boolean.TRUE);
+    }
+
+    int size() {
+        return failed.size();
+    }
+
+    long hits() {
+        return hits;
+    }
+
+    long evictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Runs several independent solves of the same draw at once and keeps the
+ * first one that succeeds. Each member is its own {@link Simulator}, with its
+ * own {@link AssignmentState}, constraint manager and solver, so nothing is
+ * shared between threads but the cancellation flag.
+ *
+ * Member 0 keeps the heuristics it was built with; the others are given the
+ * next of a fixed rotation of orderings. Every member gets its own seed
+ * drawn from the portfolio's seed, so a heavy-tailed search on one seed is
+ * covered by the others. Once a member succeeds the rest stop at their next
+ * search node and roll their state back.
+ *
+ * Which member wins depends on timing, so the result is a valid draw but
+ * neither reproducible from the seed nor distributed like the ceremony.
+ */
+public final class PortfolioSolver {
+
+    // variable and value orderings of members 1, 2, ..., repeating
+    private static final VariableOrdering[] VARIABLES = { VariableOrdering.MRV_DEGREE,
+            VariableOrdering.DOM_WDEG, VariableOrdering.INPUT_ORDER, VariableOrdering.MRV };
+    private static final ValueOrdering[] VALUES = { ValueOrdering.LEAST_CONSTRAINING,
+            ValueOrdering.GROUP_ORDER, ValueOrdering.GROUP_ORDER, ValueOrdering.LEAST_CONSTRAINING };
+
+    private final ExecutorService executor;
+
+    public PortfolioSolver(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Build {@code size} members with {@code member}, run {@code solve} on
+     * each of them and return the first member it succeeded on, or null when
+     * it failed or threw on all of them. {@code member} is called on the
+     * caller's thread and must return a fresh simulator every time.
+     */
+    public Simulator solve(int size, IntFunction<Simulator> member, Predicate<Simulator> solve, long seed)
+            throws InterruptedException {
+        if (size <= 0)
+            throw new IllegalArgumentException("Portfolio size must be positive: " + size);
+
+        AtomicBoolean done = new AtomicBoolean();
+        Random seeds = new Random(seed);
+        CompletionService<Simulator> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Simulator>> futures = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Simulator simulator = member.apply(i);
+            simulator.setRandom(new Random(seeds.nextLong()));
+            if (i > 0) {
+                simulator.setVariableOrdering(VARIABLES[(i - 1) % VARIABLES.length]);
+                simulator.setValueOrdering(VALUES[(i - 1) % VALUES.length]);
+            }
+            simulator.setCancellation(done::get);
+            futures.add(completion.submit(() -> {
+                // members still queued when another one wins never start
+                if (done.get())
+                    return null;
+                try {
+                    return solve.test(simulator) ? simulator : null;
+                } catch (RuntimeException e) {
+                    // node limit or cancellation: this member has lost
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (int i = 0; i < size; i++) {
+                Simulator winner;
+                try {
+                    winner = completion.take().get();
+                } catch (ExecutionException e) {
+                    continue;
+                }
+                if (winner != null)
+                    return winner;
+            }
+            return null;
+        } finally {
+            done.set(true);
+            for (Future<Simulator> f : futures)
+                f.cancel(false);
+        }
+    }
+}
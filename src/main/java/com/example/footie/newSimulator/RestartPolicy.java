@@ -0,0 +1,66 @@
+package com.example.footie.newSimulator;
+
+/**
+ * When {@link BacktrackingSolver#solveTeamFirst} gives up on a search and
+ * starts over. Run {@code i} may visit {@code baseNodes * luby(i)} nodes
+ * (Luby et al.: 1, 1, 2, 1, 1, 2, 4, 1, ...), which is within a log factor of
+ * the best fixed cutoff without knowing the runtime distribution. Every
+ * restart rolls the state back to where the search began and re-shuffles the
+ * slot order with a fresh seed.
+ */
+public final class RestartPolicy {
+
+    private static final RestartPolicy NONE = new RestartPolicy(0L, 1);
+
+    private final long baseNodes;
+    private final int maxRuns;
+
+    private RestartPolicy(long baseNodes, int maxRuns) {
+        this.baseNodes = baseNodes;
+        this.maxRuns = maxRuns;
+    }
+
+    /** A single run, bounded only by the solver's node limit. */
+    public static RestartPolicy none() {
+        return NONE;
+    }
+
+    /** Luby-scaled budgets of {@code baseNodes}, at most {@code maxRuns} runs. */
+    public static RestartPolicy luby(long baseNodes, int maxRuns) {
+        if (baseNodes <= 0 || maxRuns <= 0)
+            throw new IllegalArgumentException("baseNodes and maxRuns must be positive");
+        return new RestartPolicy(baseNodes, maxRuns);
+    }
+
+    /** Node budget of run {@code run} (0-based). */
+    public long budget(int run) {
+        return baseNodes > 0 ? baseNodes * luby(run) : Long.MAX_VALUE;
+    }
+
+    public int maxRuns() {
+        return maxRuns;
+    }
+
+    /** The 0-based Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ... */
+    static long luby(int run) {
+        // find the smallest complete subsequence (length 2^k - 1) containing run
+        int size = 1;
+        int seq = 0;
+        while (size < run + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+        int x = run;
+        while (size - 1 != x) {
+            size = (size - 1) >> 1;
+            seq--;
+            x = x % size;
+        }
+        return 1L << seq;
+    }
+
+    @Override
+    public String toString() {
+        return baseNodes > 0 ? "luby(" + baseNodes + ", " + maxRuns + ")" : "none";
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Low-overhead recorder of what a search does, in place of printing to the
+ * console: placements, the values they prune, failed placements,
+ * backtracks, restarts and solutions.
+ *
+ * Every event is one fixed-size binary record, a {@code long} packing the
+ * {@link Kind}, the search depth, the slot and team ids and an argument
+ * (the domain size left by a prune, the run of a restart). Each thread that
+ * records gets a ring buffer of its own, so recording takes no lock; once a
+ * ring is full the oldest records are overwritten. Off unless set on a
+ * solver with {@link BacktrackingSolver#setTrace}; one trace per request,
+ * shared by the solvers of a portfolio. Read it with
+ * {@link SearchTraceDecoder} once the solve is over.
+ */
+public final class SearchTrace {
+
+    /** Records kept per thread by default. */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /** What a record stands for. */
+    public enum Kind {
+        /** The team is placed in the slot; its prunes follow. */
+        ASSIGN,
+        /** The team left the slot's domain; the argument is the domain size after. */
+        PRUNE,
+        /** The placement just recorded failed propagation and was undone. */
+        FAIL,
+        /** The placement was undone since the search below it failed. */
+        BACKTRACK,
+        /** The search started over; the argument is the new run. */
+        RESTART,
+        /** Every team is placed. */
+        SOLUTION
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final int NONE = 0xFF;
+
+    private final int capacity;
+    private final Map<Thread, Ring> rings = new ConcurrentHashMap<>();
+
+    public SearchTrace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /** Keep the last {@code capacity} records per thread, rounded up to a power of two. */
+    public SearchTrace(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    /** The calling thread's ring, created on first use. */
+    Ring ring() {
+        return rings.computeIfAbsent(Thread.currentThread(), t -> new Ring(t.getName(), capacity));
+    }
+
+    /** The rings recorded into so far, in no particular order. */
+    List<Ring> rings() {
+        return new ArrayList<>(rings.values());
+    }
+
+    static long pack(Kind kind, int depth, int slot, int team, int argument) {
+        return (long) kind.ordinal() << 56 | (long) (Math.min(depth, 0xFF) & 0xFF) << 48
+                | (long) (slot < 0 ? NONE : slot) << 40 | (long) (team < 0 ? NONE : team) << 32
+                | argument & 0xFFFFFFFFL;
+    }
+
+    static Kind kind(long record) {
+        return KINDS[(int) (record >>> 56)];
+    }
+
+    static int depth(long record) {
+        return (int) (record >>> 48) & 0xFF;
+    }
+
+    /** Slot id of the record, -1 for none. */
+    static int slot(long record) {
+        int slot = (int) (record >>> 40) & 0xFF;
+        return slot == NONE ? -1 : slot;
+    }
+
+    /** Team id of the record, -1 for none. */
+    static int team(long record) {
+        int team = (int) (record >>> 32) & 0xFF;
+        return team == NONE ? -1 : team;
+    }
+
+    static int argument(long record) {
+        return (int) record;
+    }
+
+    /** One thread's records; written by that thread only. */
+    static final class Ring {
+        private final String thread;
+        private final long[] records;
+        private final int mask;
+        private long written;
+        // depth of the placement being propagated, for the prunes it causes
+        int depth;
+
+        Ring(String thread, int capacity) {
+            this.thread = thread;
+            this.records = new long[capacity];
+            this.mask = capacity - 1;
+        }
+
+        void record(Kind kind, int depth, int slot, int team, int argument) {
+            records[(int) (written++ & mask)] = pack(kind, depth, slot, team, argument);
+        }
+
+        /**
+         * One record per team of {@code removed}, at the current depth, as
+         * if removed one by one down to {@code left} values.
+         */
+        void prunes(int slot, long removed, int left) {
+            int size = left + Long.bitCount(removed);
+            for (long m = removed; m != 0; m &= m - 1)
+                record(Kind.PRUNE, depth, slot, Long.numberOfTrailingZeros(m), --size);
+        }
+
+        String thread() {
+            return thread;
+        }
+
+        /** Records still held, oldest first. */
+        long[] records() {
+            int held = (int) Math.min(written, records.length);
+            long[] copy = new long[held];
+            long first = written - held;
+            for (int i = 0; i < held; i++)
+                copy[i] = records[(int) (first + i & mask)];
+            return copy;
+        }
+
+        /** Records overwritten once the ring was full. */
+        long dropped() {
+            return Math.max(0L, written - records.length);
+        }
+    }
+}
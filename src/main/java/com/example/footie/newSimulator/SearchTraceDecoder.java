@@ -0,0 +1,176 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the binary records of a {@link SearchTrace} back into slots and
+ * teams of the model the traced solves ran on, as nested maps (for a JSON
+ * response), as a JSON string, or as indented text.
+ *
+ * The text indents every event two spaces per search depth and folds the
+ * consecutive prunes of a slot into one line, in the form the solver's old
+ * console summary of domain changes used:
+ *
+ * <pre>
+ *   A2 &lt;- Spain(Europe)
+ *   B2: removed=Spain(Europe), Germany(Europe) (12-&gt;10)
+ *   A3 &lt;- Japan(Asia) failed
+ * </pre>
+ */
+public final class SearchTraceDecoder {
+
+    private final DrawModel model;
+
+    public SearchTraceDecoder(DrawModel model) {
+        this.model = model;
+    }
+
+    /**
+     * One map per recording thread, by thread name: {@code thread},
+     * {@code dropped} (records overwritten in its full ring) and
+     * {@code records}, each with {@code kind} and {@code depth} and, where
+     * they apply, {@code slot}, {@code team}, {@code size} (domain size after
+     * a prune) and {@code run} (of a restart).
+     */
+    public List<Map<String, Object>> toMaps(SearchTrace trace) {
+        List<Map<String, Object>> threads = new ArrayList<>();
+        for (SearchTrace.Ring ring : rings(trace)) {
+            List<Map<String, Object>> records = new ArrayList<>();
+            for (long record : ring.records()) {
+                Map<String, Object> r = new LinkedHashMap<>();
+                SearchTrace.Kind kind = SearchTrace.kind(record);
+                r.put("kind", kind.name());
+                r.put("depth", SearchTrace.depth(record));
+                int slot = SearchTrace.slot(record);
+                if (slot >= 0)
+                    r.put("slot", model.slot(slot).toString());
+                int team = SearchTrace.team(record);
+                if (team >= 0)
+                    r.put("team", model.team(team).getName());
+                if (kind == SearchTrace.Kind.PRUNE)
+                    r.put("size", SearchTrace.argument(record));
+                else if (kind == SearchTrace.Kind.RESTART)
+                    r.put("run", SearchTrace.argument(record));
+                records.add(r);
+            }
+            Map<String, Object> thread = new LinkedHashMap<>();
+            thread.put("thread", ring.thread());
+            thread.put("dropped", ring.dropped());
+            thread.put("records", records);
+            threads.add(thread);
+        }
+        return threads;
+    }
+
+    /** {@link #toMaps} written out as JSON. */
+    public String toJson(SearchTrace trace) {
+        StringBuilder sb = new StringBuilder();
+        appendJson(sb, toMaps(trace));
+        return sb.toString();
+    }
+
+    /** Indented text, a block per recording thread. */
+    public String toText(SearchTrace trace) {
+        StringBuilder sb = new StringBuilder();
+        for (SearchTrace.Ring ring : rings(trace)) {
+            sb.append('[').append(ring.thread()).append(']');
+            if (ring.dropped() > 0)
+                sb.append(" (").append(ring.dropped()).append(" earlier records dropped)");
+            sb.append('\n');
+            long[] records = ring.records();
+            for (int i = 0; i < records.length; i++) {
+                long record = records[i];
+                int depth = SearchTrace.depth(record);
+                sb.append("  ".repeat(depth));
+                switch (SearchTrace.kind(record)) {
+                    case ASSIGN:
+                        sb.append(slotName(record)).append(" <- ").append(teamName(record));
+                        break;
+                    case PRUNE: {
+                        int slot = SearchTrace.slot(record);
+                        int before = SearchTrace.argument(record) + 1;
+                        sb.append(slotName(record)).append(": removed=").append(teamName(record));
+                        while (i + 1 < records.length && SearchTrace.kind(records[i + 1]) == SearchTrace.Kind.PRUNE
+                                && SearchTrace.slot(records[i + 1]) == slot
+                                && SearchTrace.depth(records[i + 1]) == depth) {
+                            record = records[++i];
+                            sb.append(", ").append(teamName(record));
+                        }
+                        sb.append(" (").append(before).append("->").append(SearchTrace.argument(record)).append(')');
+                        break;
+                    }
+                    case FAIL:
+                        sb.append(slotName(record)).append(" <- ").append(teamName(record)).append(" failed");
+                        break;
+                    case BACKTRACK:
+                        sb.append(slotName(record)).append(" <- ").append(teamName(record)).append(" undone");
+                        break;
+                    case RESTART:
+                        sb.append("restart, run ").append(SearchTrace.argument(record));
+                        break;
+                    case SOLUTION:
+                        sb.append("solution");
+                        break;
+                }
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private String slotName(long record) {
+        return model.slot(SearchTrace.slot(record)).toString();
+    }
+
+    private String teamName(long record) {
+        return model.team(SearchTrace.team(record)).toString();
+    }
+
+    private static List<SearchTrace.Ring> rings(SearchTrace trace) {
+        List<SearchTrace.Ring> rings = trace.rings();
+        rings.sort(Comparator.comparing(SearchTrace.Ring::thread));
+        return rings;
+    }
+
+    private static void appendJson(StringBuilder sb, Object value) {
+        if (value instanceof Map<?, ?> map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                if (!first)
+                    sb.append(',');
+                first = false;
+                appendJson(sb, e.getKey().toString());
+                sb.append(':');
+                appendJson(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof List<?> list) {
+            sb.append('[');
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0)
+                    sb.append(',');
+                appendJson(sb, list.get(i));
+            }
+            sb.append(']');
+        } else if (value instanceof String s) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\')
+                    sb.append('\\').append(c);
+                else if (c < 0x20)
+                    sb.append(String.format("\\u%04x", (int) c));
+                else
+                    sb.append(c);
+            }
+            sb.append('"');
+        } else {
+            sb.append(value);
+        }
+    }
+}
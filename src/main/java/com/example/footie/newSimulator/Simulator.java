@@ -4,23 +4,31 @@ package com.example.footie.newSimulator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 import com.example.footie.newSimulator.constraint.ConstraintManager;
 
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
 public class Simulator {
     private final List<GroupSlot> drawOrder;
     private final Map<String, GroupSlot> slotsByKey;
+    private final DrawModel model;
     final AssignmentState state;
     private final ConstraintManager constraintManager;
     private final BacktrackingSolver backtrackingSolver;
     private final Map<String, Team> assignedTeams;
     private final List<Team> registeredTeams = new ArrayList<>();
+    private Random random = new Random();
+    // live ball-by-ball draw, created by the first drawBall
+    private FeasibilityOracle oracle;
 
     public Simulator(List<GroupSlot> slots, ConstraintManager cm, List<Team> teams) {
         this.drawOrder = slots;
@@ -28,7 +36,9 @@ public class Simulator {
                 .collect(Collectors.toMap(
                         s -> s.getGroupName() + s.getPosition(),
                         s -> s));
-        this.state = new AssignmentState(slots, teams);
+        // interned ids and attribute arrays, built once per draw
+        this.model = new DrawModel(slots, teams);
+        this.state = new AssignmentState(model);
         this.constraintManager = cm;
         this.assignedTeams = new HashMap<>(teams.stream()
                 .collect(Collectors.toMap(Team::getName, t -> t)));
@@ -39,13 +49,13 @@ public class Simulator {
     public void placeTeam(String teamName) {
         Team t = assignedTeams.get(teamName);
         if (t == null) {
-            System.out.println("Unknown team: " + teamName);
+            log.debug("Unknown team: {}", teamName);
             return;
         }
         if (state.isTeamUnassigned(t.getName())) {
             registeredTeams.add(t);
         } else {
-            System.out.println("Team already assigned, skipping registration: " + teamName);
+            log.debug("Team already assigned, skipping registration: {}", teamName);
         }
     }
 
@@ -53,27 +63,20 @@ public class Simulator {
      * Place all previously registered teams using a team-first backtracking solver.
      */
     public boolean makePlacements() throws RuntimeException {
-        if (registeredTeams.isEmpty()) {
-            System.out.println("No registered teams to place");
+        if (registeredTeams.isEmpty())
             return true;
-        }
         // filter out teams that have been assigned since registration
         List<Team> toPlace = registeredTeams.stream()
                 .filter(t -> state.isTeamUnassigned(t.getName()))
                 .collect(Collectors.toList());
         if (toPlace.isEmpty()) {
-            System.out.println("All registered teams are already assigned");
             registeredTeams.clear();
             return true;
         }
 
         boolean ok = backtrackingSolver.solveTeamFirst(this.state, new ArrayList<>(toPlace), 0);
-        if (ok) {
-            System.out.println("✅ Successfully placed registered teams");
+        if (ok)
             registeredTeams.clear();
-        } else {
-            System.out.println("❌ Failed to place all registered teams");
-        }
         return ok;
     }
 
@@ -81,6 +84,113 @@ public class Simulator {
         backtrackingSolver.setOnlyCheckDomainAfter(onlyCheckDomainAfter);
     }
 
+    /** Pick the consistency level per depth from measurements; null keeps the threshold. */
+    public void setConsistencyPolicy(ConsistencyPolicy consistencyPolicy) {
+        backtrackingSolver.setConsistencyPolicy(consistencyPolicy);
+    }
+
+    /** Measure the following solves in {@code stats}; see {@link SolverStats}. */
+    public void setStats(SolverStats stats) {
+        backtrackingSolver.setStats(stats);
+    }
+
+    public SolverStats getStats() {
+        return backtrackingSolver.getStats();
+    }
+
+    /** Record the following solves in {@code trace}; see {@link SearchTrace}. */
+    public void setTrace(SearchTrace trace) {
+        backtrackingSolver.setTrace(trace);
+    }
+
+    public void setVariableOrdering(VariableOrdering variableOrdering) {
+        backtrackingSolver.setVariableOrdering(variableOrdering);
+    }
+
+    public void setValueOrdering(ValueOrdering valueOrdering) {
+        backtrackingSolver.setValueOrdering(valueOrdering);
+    }
+
+    public void setRestartPolicy(RestartPolicy restartPolicy) {
+        backtrackingSolver.setRestartPolicy(restartPolicy);
+    }
+
+    /** Explore interchangeable groups once per node; on by default. */
+    public void setSymmetryBreaking(boolean symmetryBreaking) {
+        backtrackingSolver.setSymmetryBreaking(symmetryBreaking);
+    }
+
+    /**
+     * Shuffle the groups that were interchangeable after solving; off by
+     * default, since it drops the ceremony's lean towards the first groups.
+     */
+    public void setGroupRelabelling(boolean groupRelabelling) {
+        backtrackingSolver.setGroupRelabelling(groupRelabelling);
+    }
+
+    /** Jump back to the culprit of a wipeout and learn failed states; off by default. */
+    public void setBackjumping(boolean backjumping) {
+        backtrackingSolver.setBackjumping(backjumping);
+    }
+
+    /** Share known completable and failed states with other draws; see {@link FeasibilityCache}. */
+    public void setFeasibilityCache(FeasibilityCache feasibilityCache) {
+        backtrackingSolver.setFeasibilityCache(feasibilityCache);
+    }
+
+    /** Stop the solver at its next search node once this returns true. */
+    public void setCancellation(BooleanSupplier cancellation) {
+        backtrackingSolver.setCancellation(cancellation);
+    }
+
+    /** Total node limit across restarts; use <=0 to disable. */
+    public void setMaxNodes(long maxNodes) {
+        backtrackingSolver.setMaxNodes(maxNodes);
+    }
+
+    /**
+     * Source of the within-pot shuffles and the solver's restart seeds; pass a
+     * seeded instance to replay a draw.
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+        backtrackingSolver.setRandom(random);
+    }
+
+    /** Number of search nodes explored by the backtracking solver so far. */
+    public long getNodesVisited() {
+        return backtrackingSolver.getNodesVisited();
+    }
+
+    /** Number of solver restarts so far. */
+    public long getRestarts() {
+        return backtrackingSolver.getRestarts();
+    }
+
+    /** Number of placements the solver undid because the search below them failed. */
+    public long getBacktracks() {
+        return backtrackingSolver.getBacktracks();
+    }
+
+    /** Number of slots the solver skipped as symmetric to one already tried. */
+    public long getSymmetryPrunes() {
+        return backtrackingSolver.getSymmetryPrunes();
+    }
+
+    /** Number of search nodes abandoned by backjumps. */
+    public long getBackjumps() {
+        return backtrackingSolver.getBackjumps();
+    }
+
+    /** Number of search nodes cut by a learned nogood. */
+    public long getNogoodHits() {
+        return backtrackingSolver.getNogoodHits();
+    }
+
+    public DrawModel getModel() {
+        return model;
+    }
+
     public AssignmentState getState() {
         return state;
     }
@@ -97,14 +207,13 @@ public class Simulator {
     public boolean assignTeamToSlot(GroupSlot slot, Team team) {
         StringBuilder reason = new StringBuilder();
         if (!constraintManager.isAssignmentValid(state, slot, team, reason)) {
-            System.out.println("Assignment FAILED: " + slot + " -> " + team + "; reason="
-                    + (reason.length() > 0 ? reason.toString() : "unknown"));
+            log.debug("Assignment failed: {} -> {}; reason={}", slot, team,
+                    reason.length() > 0 ? reason : "unknown");
             return false;
         }
-        // Delegate assignment + forward-check + snapshot handling to assignWithSnapshot
-        AssignmentSnapshot snapshot = backtrackingSolver.assignWithSnapshot(this.state, slot, team, 0);
-        if (snapshot == null) {
-            System.out.println("Assignment FAILED (caused inconsistency): " + slot + " -> " + team);
+        // Delegate assignment + forward-check + rollback handling to assignWithTrail
+        if (!backtrackingSolver.assignWithTrail(this.state, slot, team, 0)) {
+            log.debug("Assignment failed (caused inconsistency): {} -> {}", slot, team);
             return false;
         }
 
@@ -113,7 +222,7 @@ public class Simulator {
 
     public boolean shuffleAndSolve() throws RuntimeException {
         List<Team> teams = assignedTeams.values().stream().collect(Collectors.toList());
-        Collections.shuffle(teams);
+        Collections.shuffle(teams, random);
         teams.stream().filter(t -> t.pot() == 1).forEach(t -> placeTeam(t.getName()));
         teams.stream().filter(t -> t.pot() == 2).forEach(t -> placeTeam(t.getName()));
         teams.stream().filter(t -> t.pot() == 3).forEach(t -> placeTeam(t.getName()));
@@ -127,7 +236,7 @@ public class Simulator {
         assignTeamToSlot("D1", "USA");
 
         List<Team> teams = assignedTeams.values().stream().collect(Collectors.toList());
-        Collections.shuffle(teams);
+        Collections.shuffle(teams, random);
         teams.stream().filter(t -> t.pot() == 1).forEach(t -> placeTeam(t.getName()));
         teams.stream().filter(t -> t.pot() == 2).forEach(t -> placeTeam(t.getName()));
         teams.stream().filter(t -> t.pot() == 3).forEach(t -> placeTeam(t.getName()));
@@ -148,6 +257,48 @@ public class Simulator {
                 .forEach((slot, team) -> System.out.println(slot + " -> " + (team != null ? team : "-")));
     }
 
+    /**
+     * Ceremony placement of one ball: put the team into the first group that
+     * leaves the draw completable, and return that group's name; null when
+     * the team is unknown, already placed or fits nowhere. Groups are tried
+     * by {@link DrawModel} group id, which follows the natural
+     * {@code String} order of the group names ("A" before "B", but also "10"
+     * before "2"). Completability is answered by a {@link FeasibilityOracle}
+     * kept for the whole session.
+     */
+    public String drawBall(String teamName) {
+        Team t = assignedTeams.get(teamName);
+        if (t == null) {
+            log.debug("Unknown team: {}", teamName);
+            return null;
+        }
+        int team = state.teamId(t);
+        if (state.assignedSlot(team) >= 0) {
+            log.debug("Team already assigned: {}", teamName);
+            return null;
+        }
+        if (oracle == null) {
+            FeasibilityCache cache = backtrackingSolver.getFeasibilityCache();
+            oracle = cache != null ? new FeasibilityOracle(constraintManager, cache)
+                    : new FeasibilityOracle(constraintManager);
+        }
+        for (int g = 0; g < model.groupCount(); g++) {
+            int slot = oracle.feasibleSlot(state, team, g);
+            if (slot < 0)
+                continue;
+            state.assign(slot, team);
+            constraintManager.forwardCheck(state, slot, team);
+            return model.groupName(g);
+        }
+        log.debug("No group keeps the draw completable for {}", teamName);
+        return null;
+    }
+
+    /** Oracle behind {@link #drawBall}, or null before the first ball. */
+    public FeasibilityOracle getOracle() {
+        return oracle;
+    }
+
     public boolean tryPlaceTeam(String teamName, int position) {
         // Find the team object
         Team teamToAssign = assignedTeams.get(teamName);
@@ -185,44 +336,4 @@ public class Simulator {
         PrettyPrinter.prettyPrint(unassignedDomains);
     }
 
-    // Summarize domain changes: print only slots whose domain changed
-    // (removed/added)
-    @SuppressWarnings("unused")
-    private void summarizeDomainChanges(Map<GroupSlot, Set<Team>> before, AssignmentState afterState, int depth) {
-        for (GroupSlot s : before.keySet()) {
-            Set<Team> beforeSet = before.getOrDefault(s, Set.of());
-            Set<Team> afterSet = afterState.getDomains().getOrDefault(s, Set.of());
-            // compute removed and added
-            Set<Team> removed = new HashSet<>(beforeSet);
-            removed.removeAll(afterSet);
-            Set<Team> added = new HashSet<>(afterSet);
-            added.removeAll(beforeSet);
-            if (removed.isEmpty() && added.isEmpty())
-                continue;
-            StringBuilder sb = new StringBuilder();
-            sb.append(s).append(": ");
-            if (!removed.isEmpty()) {
-                sb.append("removed=");
-                sb.append(removed.stream().map(Object::toString).collect(Collectors.joining(", ")));
-            }
-            if (!added.isEmpty()) {
-                if (!removed.isEmpty())
-                    sb.append("; ");
-                sb.append("added=");
-                sb.append(added.stream().map(Object::toString).collect(Collectors.joining(", ")));
-            }
-            sb.append(" (").append(beforeSet.size()).append("->").append(afterSet.size()).append(")");
-            log(depth, sb.toString());
-        }
-    }
-
-    // helper for visual backtrack logging
-    private void log(int depth, String msg) {
-        String indent = "";
-        if (depth > 0) {
-            indent = "  ".repeat(Math.max(0, depth));
-        }
-        System.out.println(indent + msg);
-    }
-
 }
@@ -0,0 +1,139 @@
+package com.example.footie.newSimulator;
+
+import java.util.Arrays;
+
+/**
+ * Maximum bipartite matching between the unassigned slots and the unassigned
+ * teams of an {@link AssignmentState}, kept alive across search nodes.
+ *
+ * The matching is repaired lazily: before each check only the edges that were
+ * broken since the last call (slot or team assigned, value pruned) are
+ * dropped, and the freed slots are re-matched with Hopcroft–Karp phases.
+ * Rolling back the trail only ever grows domains and frees slots/teams, so
+ * the surviving edges stay valid and no undo information is needed.
+ */
+final class SlotTeamMatching {
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final AssignmentState state;
+    private final int[] slotMate;
+    private final int[] teamMate;
+    private final int[] dist;
+    private final int[] queue;
+
+    SlotTeamMatching(AssignmentState state, int slotCount, int teamCount) {
+        this.state = state;
+        this.slotMate = new int[slotCount];
+        this.teamMate = new int[teamCount];
+        this.dist = new int[slotCount];
+        this.queue = new int[slotCount];
+        Arrays.fill(slotMate, -1);
+        Arrays.fill(teamMate, -1);
+    }
+
+    /**
+     * Bring the matching up to date and return true when it saturates the
+     * smaller side: every unassigned slot when there are at least as many
+     * unassigned teams, otherwise every unassigned team. With as many slots
+     * as teams (a full draw) this is a perfect matching, i.e. no Hall
+     * violation.
+     */
+    boolean saturates() {
+        long unassignedSlots = state.unassignedSlotBits();
+        long teams = state.unassignedTeamBits();
+        long free = repair(unassignedSlots, teams);
+
+        int slotCount = Long.bitCount(unassignedSlots);
+        int matched = slotCount - Long.bitCount(free);
+        int required = Math.min(slotCount, Long.bitCount(teams));
+
+        while (matched < required && free != 0 && layer(free, teams)) {
+            int before = matched;
+            for (long m = free; m != 0; m &= m - 1) {
+                int s = Long.numberOfTrailingZeros(m);
+                if (augment(s, teams)) {
+                    matched++;
+                    free &= ~(1L << s);
+                }
+            }
+            if (matched == before)
+                break;
+        }
+        return matched >= required;
+    }
+
+    /** Team matched to the slot by the last {@link #saturates()} call, or -1. */
+    int slotMate(int slotId) {
+        return slotMate[slotId];
+    }
+
+    /** Slot matched to the team by the last {@link #saturates()} call, or -1. */
+    int teamMate(int teamId) {
+        return teamMate[teamId];
+    }
+
+    /**
+     * Drop matched pairs whose edge no longer exists and return the
+     * unassigned slots left without a mate.
+     */
+    private long repair(long unassignedSlots, long teams) {
+        long free = 0L;
+        for (int s = 0; s < slotMate.length; s++) {
+            long slotBit = 1L << s;
+            int t = slotMate[s];
+            boolean open = (unassignedSlots & slotBit) != 0;
+            if (t >= 0 && (!open || (teams & state.domainBits(s) & (1L << t)) == 0)) {
+                if (teamMate[t] == s)
+                    teamMate[t] = -1;
+                slotMate[s] = t = -1;
+            }
+            if (open && t < 0)
+                free |= slotBit;
+        }
+        return free;
+    }
+
+    /**
+     * Hopcroft–Karp BFS: layer the alternating graph from the free slots.
+     * Returns true when some free team is reachable.
+     */
+    private boolean layer(long free, long teams) {
+        Arrays.fill(dist, INF);
+        int head = 0, tail = 0;
+        for (long m = free; m != 0; m &= m - 1) {
+            int s = Long.numberOfTrailingZeros(m);
+            dist[s] = 0;
+            queue[tail++] = s;
+        }
+
+        boolean found = false;
+        while (head < tail) {
+            int u = queue[head++];
+            for (long m = state.domainBits(u) & teams; m != 0; m &= m - 1) {
+                int w = teamMate[Long.numberOfTrailingZeros(m)];
+                if (w < 0) {
+                    found = true;
+                } else if (dist[w] == INF) {
+                    dist[w] = dist[u] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return found;
+    }
+
+    /** Hopcroft–Karp DFS along the layers; flips an augmenting path from u. */
+    private boolean augment(int u, long teams) {
+        for (long m = state.domainBits(u) & teams; m != 0; m &= m - 1) {
+            int t = Long.numberOfTrailingZeros(m);
+            int w = teamMate[t];
+            if (w < 0 || (dist[w] == dist[u] + 1 && augment(w, teams))) {
+                slotMate[u] = t;
+                teamMate[t] = u;
+                return true;
+            }
+        }
+        dist[u] = INF;
+        return false;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.footie.newSimulator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events of the search: a sampled {@code SearchNode},
+ * every {@code Backtrack}, and every {@code ConsistencyCheck} past forward
+ * checking with its duration and outcome.
+ *
+ * Whether any of them is enabled is looked up by {@link #enabled()} once
+ * per solve and per manual placement; while no recording asks for them the
+ * search only tests that flag, and the events are neither allocated nor
+ * filled in. A recording started during a solve is picked up by the next
+ * one. The parallel search is not recorded.
+ */
+final class SolverEvents {
+
+    /** One search node in this many is recorded. */
+    static final int NODE_SAMPLE = 64;
+
+    private static final EventType SEARCH_NODE = EventType.getEventType(SearchNode.class);
+    private static final EventType BACKTRACK = EventType.getEventType(Backtrack.class);
+    private static final EventType CONSISTENCY_CHECK = EventType.getEventType(ConsistencyCheck.class);
+
+    private SolverEvents() {
+    }
+
+    @Name("footie.SearchNode")
+    @Label("Search Node")
+    @Category({ "Footie", "Draw Solver" })
+    @Description("A search node, sampled one in " + NODE_SAMPLE)
+    @StackTrace(false)
+    static final class SearchNode extends Event {
+        @Label("Depth")
+        int depth;
+        @Label("Nodes Visited")
+        long nodes;
+        @Label("Teams Left")
+        int teamsLeft;
+    }
+
+    @Name("footie.Backtrack")
+    @Label("Backtrack")
+    @Category({ "Footie", "Draw Solver" })
+    @Description("A placement undone because the search below it failed")
+    @StackTrace(false)
+    static final class Backtrack extends Event {
+        @Label("Depth")
+        int depth;
+        @Label("Slot")
+        String slot;
+        @Label("Team")
+        String team;
+    }
+
+    @Name("footie.ConsistencyCheck")
+    @Label("Consistency Check")
+    @Category({ "Footie", "Draw Solver" })
+    @Description("A consistency check run after a placement")
+    @StackTrace(false)
+    static final class ConsistencyCheck extends Event {
+        @Label("Level")
+        String level;
+        @Label("Depth")
+        int depth;
+        @Label("Consistent")
+        boolean consistent;
+    }
+
+    /** True while a recording has any of the solver events enabled. */
+    static boolean enabled() {
+        return SEARCH_NODE.isEnabled() || BACKTRACK.isEnabled() || CONSISTENCY_CHECK.isEnabled();
+    }
+
+    static void searchNode(int depth, long nodes, long remaining) {
+        SearchNode event = new SearchNode();
+        if (event.shouldCommit()) {
+            event.depth = depth;
+            event.nodes = nodes;
+            event.teamsLeft = Long.bitCount(remaining);
+            event.commit();
+        }
+    }
+
+    static void backtrack(DrawModel model, int depth, int slot, int team) {
+        Backtrack event = new Backtrack();
+        if (event.shouldCommit()) {
+            event.depth = depth;
+            event.slot = model.slot(slot).toString();
+            event.team = model.team(team).getName();
+            event.commit();
+        }
+    }
+
+    /** A check event started now; finish it with {@link #endCheck}. */
+    static ConsistencyCheck beginCheck() {
+        ConsistencyCheck event = new ConsistencyCheck();
+        event.begin();
+        return event;
+    }
+
+    static void endCheck(ConsistencyCheck event, ConsistencyLevel level, int depth, boolean consistent) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.level = level.name();
+            event.depth = depth;
+            event.consistent = consistent;
+            event.commit();
+        }
+    }
+}
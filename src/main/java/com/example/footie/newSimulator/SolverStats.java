@@ -0,0 +1,133 @@
+package com.example.footie.newSimulator;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Where a solve spent its effort: search nodes, backtracks and restarts,
+ * the time of each consistency level, and per constraint how often it
+ * forward-checked or propagated, what it pruned and how long it took.
+ *
+ * Handed to {@link BacktrackingSolver#setStats} before a solve, which fills
+ * it and passes it on to its constraint manager. The level times do not
+ * overlap: {@link ConsistencyLevel#FORWARD_CHECK} is the forward checks,
+ * {@link ConsistencyLevel#ARC} the AC-3 revisions and the constraints'
+ * global propagators, {@link ConsistencyLevel#HALL} the matching checks,
+ * and {@link ConsistencyLevel#SINGLETON_ARC} what singleton arc consistency
+ * spends beyond the levels it runs. Constraints compiled into tables are
+ * reported under their own names, as uncompiled ones are.
+ *
+ * Measures the sequential search only, not {@link BacktrackingSolver#solveParallel}.
+ * Not thread-safe, one per solve.
+ */
+public final class SolverStats {
+
+    private long nodes;
+    private long backtracks;
+    private long restarts;
+    private final long[] levelNanos = new long[ConsistencyLevel.values().length];
+    private final Map<String, ConstraintStats> constraints = new LinkedHashMap<>();
+
+    public long nodes() {
+        return nodes;
+    }
+
+    /** Placements undone because the search below them failed. */
+    public long backtracks() {
+        return backtracks;
+    }
+
+    public long restarts() {
+        return restarts;
+    }
+
+    /** Nanoseconds spent at the level, not counting the cheaper levels it runs. */
+    public long nanos(ConsistencyLevel level) {
+        return levelNanos[level.ordinal()];
+    }
+
+    /** Per constraint class name, in order of first use. */
+    public Map<String, ConstraintStats> constraints() {
+        return Collections.unmodifiableMap(constraints);
+    }
+
+    /** Counters of the named constraint, created on first use. */
+    public ConstraintStats constraint(String name) {
+        return constraints.computeIfAbsent(name, k -> new ConstraintStats());
+    }
+
+    public void addNanos(ConsistencyLevel level, long nanos) {
+        levelNanos[level.ordinal()] += nanos;
+    }
+
+    void addSearch(long nodes, long backtracks, long restarts) {
+        this.nodes += nodes;
+        this.backtracks += backtracks;
+        this.restarts += restarts;
+    }
+
+    /** Nested maps of plain values, for a JSON response. */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("nodes", nodes);
+        map.put("backtracks", backtracks);
+        map.put("restarts", restarts);
+        Map<String, Object> levels = new LinkedHashMap<>();
+        for (ConsistencyLevel level : ConsistencyLevel.values())
+            levels.put(level.name(), levelNanos[level.ordinal()]);
+        map.put("levelNanos", levels);
+        Map<String, Object> byConstraint = new LinkedHashMap<>();
+        constraints.forEach((name, c) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("calls", c.calls);
+            entry.put("prunes", c.prunes);
+            entry.put("nanos", c.nanos);
+            byConstraint.put(name, entry);
+        });
+        map.put("constraints", byConstraint);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(nodes).append(" nodes, ").append(backtracks).append(" backtracks, ")
+                .append(restarts).append(" restarts");
+        for (ConsistencyLevel level : ConsistencyLevel.values())
+            sb.append(", ").append(level).append(' ').append(levelNanos[level.ordinal()] / 1_000).append("µs");
+        constraints.forEach((name, c) -> sb.append(", ").append(name).append(' ').append(c));
+        return sb.toString();
+    }
+
+    /** Calls, pruned values and time of one constraint's forward checks and propagators. */
+    public static final class ConstraintStats {
+        private long calls;
+        private long prunes;
+        private long nanos;
+
+        public void record(long nanos, long prunes) {
+            this.calls++;
+            this.prunes += prunes;
+            this.nanos += nanos;
+        }
+
+        public long calls() {
+            return calls;
+        }
+
+        /** Values removed from domains. */
+        public long prunes() {
+            return prunes;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return calls + " calls/" + prunes + " prunes/" + nanos / 1_000 + "µs";
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.footie.newSimulator;
+
+/** In which order {@link BacktrackingSolver#solveTeamFirst} tries a team's candidate slots. */
+public enum ValueOrdering {
+    /** Groups interleaved by rank, see {@link AssignmentState#nextSlotIds(long)}. */
+    GROUP_ORDER,
+    /**
+     * Least-constraining value: the slot whose forward check leaves the most
+     * candidates in the other domains first, group order breaking ties.
+     */
+    LEAST_CONSTRAINING
+}
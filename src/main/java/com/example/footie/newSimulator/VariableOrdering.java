@@ -0,0 +1,22 @@
+package com.example.footie.newSimulator;
+
+/**
+ * How {@link BacktrackingSolver#solveTeamFirst} picks the next team to place.
+ * Only {@link #INPUT_ORDER} follows the ceremony (pots in order, shuffled
+ * within a pot); the others trade that for fewer search nodes, which changes
+ * how likely each complete draw is.
+ */
+public enum VariableOrdering {
+    /** Teams in the order they were registered. */
+    INPUT_ORDER,
+    /** Minimum remaining values: the team with the fewest candidate slots. */
+    MRV,
+    /** MRV, ties broken by how many unplaced teams compete for the same slots. */
+    MRV_DEGREE,
+    /**
+     * Fewest candidate slots per conflict weight (dom/wdeg). A team's weight
+     * grows every time placing it fails propagation, and persists across
+     * searches of the same solver.
+     */
+    DOM_WDEG
+}
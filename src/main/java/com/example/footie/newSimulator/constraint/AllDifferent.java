@@ -1,11 +1,19 @@
 package com.example.footie.newSimulator.constraint;
 
+import java.util.Arrays;
+
 import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.DrawModel;
 import com.example.footie.newSimulator.GroupSlot;
 import com.example.footie.newSimulator.Team;
 
 /**
  * Enforces that each team may be assigned to at most one slot (global all-different).
+ *
+ * Forward checking only removes an assigned team from the other domains;
+ * {@link #propagate(AssignmentState)} additionally runs Régin's matching-based
+ * filtering, which removes every (slot, team) pair that cannot be part of any
+ * complete all-different assignment.
  */
 public class AllDifferent implements Constraint {
 
@@ -15,14 +23,202 @@ public class AllDifferent implements Constraint {
         return !state.isTeamAssigned(team);
     }
 
+    @Override
+    public boolean isAssignmentAllowed(AssignmentState state, int slotId, int teamId) {
+        return (state.unassignedTeamBits() & (1L << teamId)) != 0;
+    }
+
+    @Override
+    public boolean isPairAllowed(AssignmentState state, int slotI, int teamI, int slotJ, int teamJ) {
+        return teamI != teamJ && (state.unassignedTeamBits() & (1L << teamJ)) != 0;
+    }
+
+    @Override
+    public boolean compile(ConstraintTables tables) {
+        tables.allDifferent();
+        return true;
+    }
+
+    /** Régin's filtering in {@link #propagate} subsumes every pairwise arc. */
+    @Override
+    public ConstraintScope scope(DrawModel model) {
+        return ConstraintScope.none();
+    }
+
     @Override
     public void forwardCheck(AssignmentState state, GroupSlot slot, Team team) {
+        int s = state.slotId(slot);
+        int t = state.teamId(team);
+        if (s >= 0 && t >= 0)
+            forwardCheck(state, s, t);
+    }
+
+    @Override
+    public void forwardCheck(AssignmentState state, int slotId, int teamId) {
         // Remove the assigned team from domains of all other unassigned slots
-        for (GroupSlot s : state.getUnassignedSlots()) {
-            if (!s.equals(slot)) {
-                state.removeTeamFromDomain(s, team.getName());
+        long others = state.candidateSlotBits(teamId) & state.unassignedSlotBits() & ~(1L << slotId);
+        for (long m = others; m != 0; m &= m - 1)
+            state.removeFromDomain(Long.numberOfTrailingZeros(m), 1L << teamId);
+    }
+
+    /**
+     * Régin's filtering. Take the state's maximum matching M between
+     * unassigned slots and unassigned teams, orient matched edges slot -> team
+     * and every other domain edge team -> slot. A non-matching edge belongs
+     * to some maximum matching iff its ends share a strongly connected
+     * component (alternating cycle), or it lies on an alternating path that
+     * starts at a free team or ends at a free slot. All other edges are
+     * removed in one pass.
+     */
+    @Override
+    public boolean propagate(AssignmentState state) {
+        long slots = state.unassignedSlotBits();
+        long teams = state.unassignedTeamBits();
+
+        // assigned teams can never be used again
+        for (long m = slots; m != 0; m &= m - 1)
+            state.removeFromDomain(Long.numberOfTrailingZeros(m), ~teams);
+
+        if (!state.hasPerfectMatchingForUnassignedSlots())
+            return false;
+
+        new Regin(state, slots, teams).filter();
+        return true;
+    }
+
+    /** Working storage for one run of the filtering; vertex t + TEAM is team t. */
+    private static final class Regin {
+        private static final int TEAM = Long.SIZE;
+
+        private final AssignmentState state;
+        private final long slots;
+        private final long teams;
+
+        private final int[] index = new int[2 * TEAM];
+        private final int[] low = new int[2 * TEAM];
+        private final int[] component = new int[2 * TEAM];
+        private final int[] stack = new int[2 * TEAM];
+        private final boolean[] onStack = new boolean[2 * TEAM];
+        private int counter;
+        private int top;
+
+        Regin(AssignmentState state, long slots, long teams) {
+            this.state = state;
+            this.slots = slots;
+            this.teams = teams;
+        }
+
+        void filter() {
+            long matchedTeams = 0L;
+            long freeSlots = 0L;
+            for (long m = slots; m != 0; m &= m - 1) {
+                int s = Long.numberOfTrailingZeros(m);
+                int t = state.matchedTeam(s);
+                if (t >= 0)
+                    matchedTeams |= 1L << t;
+                else
+                    freeSlots |= 1L << s;
+            }
+            long teamsFromFree = reachableFromFreeTeams(teams & ~matchedTeams);
+            long slotsToFree = reachingFreeSlots(freeSlots);
+
+            Arrays.fill(index, -1);
+            for (long m = slots; m != 0; m &= m - 1) {
+                int s = Long.numberOfTrailingZeros(m);
+                if (index[s] < 0)
+                    strongConnect(s);
+            }
+
+            for (long m = slots; m != 0; m &= m - 1) {
+                int s = Long.numberOfTrailingZeros(m);
+                if ((slotsToFree & (1L << s)) != 0)
+                    continue;
+                int mate = state.matchedTeam(s);
+                long unsupported = 0L;
+                for (long d = state.domainBits(s) & teams & ~teamsFromFree; d != 0; d &= d - 1) {
+                    int t = Long.numberOfTrailingZeros(d);
+                    if (t != mate && component[s] != component[t + TEAM])
+                        unsupported |= 1L << t;
+                }
+                if (unsupported != 0)
+                    state.removeFromDomain(s, unsupported);
             }
         }
-    }
 
+        /** Teams reachable by alternating paths that start at a free team. */
+        private long reachableFromFreeTeams(long freeTeams) {
+            long seenTeams = freeTeams;
+            long frontier = freeTeams;
+            while (frontier != 0) {
+                long next = 0L;
+                for (long m = frontier; m != 0; m &= m - 1) {
+                    long toSlots = state.candidateSlotBits(Long.numberOfTrailingZeros(m)) & slots;
+                    for (long n = toSlots; n != 0; n &= n - 1) {
+                        int mate = state.matchedTeam(Long.numberOfTrailingZeros(n));
+                        if (mate >= 0 && (seenTeams & (1L << mate)) == 0)
+                            next |= 1L << mate;
+                    }
+                }
+                seenTeams |= next;
+                frontier = next;
+            }
+            return seenTeams;
+        }
+
+        /** Slots from which an alternating path leads to a free slot. */
+        private long reachingFreeSlots(long freeSlots) {
+            long seenSlots = freeSlots;
+            long frontier = freeSlots;
+            while (frontier != 0) {
+                long next = 0L;
+                for (long m = frontier; m != 0; m &= m - 1) {
+                    long fromTeams = state.domainBits(Long.numberOfTrailingZeros(m)) & teams;
+                    for (long n = fromTeams; n != 0; n &= n - 1) {
+                        int mate = state.matchedSlot(Long.numberOfTrailingZeros(n));
+                        if (mate >= 0 && (seenSlots & (1L << mate)) == 0)
+                            next |= 1L << mate;
+                    }
+                }
+                seenSlots |= next;
+                frontier = next;
+            }
+            return seenSlots;
+        }
+
+        /** Tarjan's SCC over the oriented matching graph. */
+        private void strongConnect(int v) {
+            index[v] = low[v] = counter++;
+            stack[top++] = v;
+            onStack[v] = true;
+
+            if (v < TEAM) {
+                int mate = state.matchedTeam(v);
+                if (mate >= 0)
+                    visit(v, mate + TEAM);
+            } else {
+                int t = v - TEAM;
+                long toSlots = state.candidateSlotBits(t) & slots & ~(1L << state.matchedSlot(t));
+                for (long m = toSlots; m != 0; m &= m - 1)
+                    visit(v, Long.numberOfTrailingZeros(m));
+            }
+
+            if (low[v] == index[v]) {
+                int w;
+                do {
+                    w = stack[--top];
+                    onStack[w] = false;
+                    component[w] = v;
+                } while (w != v);
+            }
+        }
+
+        private void visit(int v, int w) {
+            if (index[w] < 0) {
+                strongConnect(w);
+                low[v] = Math.min(low[v], low[w]);
+            } else if (onStack[w]) {
+                low[v] = Math.min(low[v], index[w]);
+            }
+        }
+    }
 }
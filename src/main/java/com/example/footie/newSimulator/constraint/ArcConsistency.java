@@ -0,0 +1,19 @@
+package com.example.footie.newSimulator.constraint;
+
+/**
+ * Which arcs {@link ConstraintManager#enforceArcConsistency} revises. Arcs
+ * always come from the constraints' declared {@link ConstraintScope}s;
+ * {@link AllDifferent} declares none because its propagator filters it
+ * completely.
+ */
+public enum ArcConsistency {
+    /** No pairwise arc consistency. */
+    NONE,
+    /**
+     * Only arcs between slots of the same group. Across groups the draw
+     * constraints only relate slots through all-different.
+     */
+    GROUP_LOCAL,
+    /** Every arc inside the declared scopes (classic AC-3 over the constraint graph). */
+    ALL_PAIRS
+}
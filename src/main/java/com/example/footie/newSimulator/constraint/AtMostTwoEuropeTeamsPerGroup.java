@@ -1,8 +1,7 @@
 package com.example.footie.newSimulator.constraint;
 
-import java.util.Map;
-
 import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.DrawModel;
 import com.example.footie.newSimulator.GroupSlot;
 import com.example.footie.newSimulator.Team;
 
@@ -15,42 +14,66 @@ public class AtMostTwoEuropeTeamsPerGroup implements Constraint {
         boolean candidateIsEurope = team.getContinents().stream().anyMatch(c -> "Europe".equalsIgnoreCase(c));
         if (!candidateIsEurope) return true;
 
-        // Count existing Europeans in the target group
-        int europeCount = 0;
-        for (Map.Entry<GroupSlot, Team> e : state.getAssignments().entrySet()) {
-            GroupSlot gs = e.getKey();
-            Team assigned = e.getValue();
-            if (assigned == null) continue;
-            if (!gs.getGroupName().equals(slot.getGroupName())) continue;
-            if (assigned.getContinents().stream().anyMatch(c -> "Europe".equalsIgnoreCase(c))) {
-                europeCount++;
-            }
-        }
+        int group = state.model().groupOf(slot);
+        return group < 0 || europeCount(state, group) < 2; // allow if less than 2 currently
+    }
+
+    @Override
+    public boolean isAssignmentAllowed(AssignmentState state, int slotId, int teamId) {
+        DrawModel model = state.model();
+        if ((model.teamContinents(teamId) & model.europeMask()) == 0) return true;
+        return europeCount(state, model.slotGroup(slotId)) < 2;
+    }
+
+    @Override
+    public boolean compile(ConstraintTables tables) {
+        tables.capContinent(tables.model().europeId(), 2);
+        return true;
+    }
+
+    @Override
+    public ConstraintScope scope(DrawModel model) {
+        return ConstraintScope.group();
+    }
+
+    @Override
+    public boolean isPairAllowed(AssignmentState state, int slotI, int teamI, int slotJ, int teamJ) {
+        DrawModel model = state.model();
+        long europe = model.europeMask();
+        if ((model.teamContinents(teamJ) & europe) == 0) return true;
+        int group = model.slotGroup(slotJ);
+        int count = europeCount(state, group);
+        if (group == model.slotGroup(slotI) && (model.teamContinents(teamI) & europe) != 0)
+            count++;
+        return count < 2;
+    }
 
-        return europeCount < 2; // allow if less than 2 currently
+    /** European teams already assigned to the group, from the state's group index. */
+    private static int europeCount(AssignmentState state, int group) {
+        int europe = state.model().europeId();
+        return europe < 0 ? 0 : state.groupContinentCount(group, europe);
     }
 
     @Override
     public void forwardCheck(AssignmentState state, GroupSlot slot, Team assignedTeam) {
-        // Recompute Europe count for the group after this assignment
-        int europeCount = 0;
-        for (Map.Entry<GroupSlot, Team> e : state.getAssignments().entrySet()) {
-            GroupSlot gs = e.getKey();
-            Team assigned = e.getValue();
-            if (assigned == null) continue;
-            if (!gs.getGroupName().equals(slot.getGroupName())) continue;
-            if (assigned.getContinents().stream().anyMatch(c -> "Europe".equalsIgnoreCase(c))) {
-                europeCount++;
-            }
-        }
-
-        for (GroupSlot s : state.getUnassignedSlots()) {
-            if (!s.getGroupName().equals(slot.getGroupName())) continue;
-            // If group already has 2 Europeans, remove European candidates
-            if (europeCount >= 2) {
-                state.removeIfFromDomain(s, candidate -> candidate.getContinents().stream()
-                        .anyMatch(c -> "Europe".equalsIgnoreCase(c)));
-            }
-        }
+        int group = state.model().groupOf(slot);
+        if (group >= 0)
+            pruneEuropeans(state, group);
+    }
+
+    @Override
+    public void forwardCheck(AssignmentState state, int slotId, int teamId) {
+        pruneEuropeans(state, state.model().slotGroup(slotId));
+    }
+
+    // Recompute Europe count for the group after this assignment; once it
+    // reaches 2, remove European candidates from the group's free slots
+    private static void pruneEuropeans(AssignmentState state, int group) {
+        if (europeCount(state, group) < 2) return;
+
+        DrawModel model = state.model();
+        long europeans = model.teamsWithAnyContinent(model.europeMask());
+        for (long m = model.groupSlots(group) & state.unassignedSlotBits(); m != 0; m &= m - 1)
+            state.removeFromDomain(Long.numberOfTrailingZeros(m), europeans);
     }
 }
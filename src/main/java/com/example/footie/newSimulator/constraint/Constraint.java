@@ -6,6 +6,7 @@
 package com.example.footie.newSimulator.constraint;
 
 import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.DrawModel;
 import com.example.footie.newSimulator.GroupSlot;
 import com.example.footie.newSimulator.Team;
 
@@ -15,4 +16,83 @@ public interface Constraint {
 
     public void forwardCheck(AssignmentState state, GroupSlot slot, Team team);
 
+    /**
+     * Dense-id form of {@link #isAssignmentAllowed(AssignmentState, GroupSlot, Team)}
+     * used by the solver's inner loops. Override to avoid the object lookups.
+     */
+    default boolean isAssignmentAllowed(AssignmentState state, int slotId, int teamId) {
+        return isAssignmentAllowed(state, state.slotById(slotId), state.teamById(teamId));
+    }
+
+    /** Dense-id form of {@link #forwardCheck(AssignmentState, GroupSlot, Team)}. */
+    default void forwardCheck(AssignmentState state, int slotId, int teamId) {
+        forwardCheck(state, state.slotById(slotId), state.teamById(teamId));
+    }
+
+    /**
+     * Whether {@code slotJ = teamJ} is allowed once {@code slotI = teamI} is
+     * added to the current assignment. Used by arc consistency to test
+     * supports without touching the state; override with a direct check
+     * (the default makes a temporary assignment on the trail).
+     */
+    default boolean isPairAllowed(AssignmentState state, int slotI, int teamI, int slotJ, int teamJ) {
+        int checkpoint = state.checkpoint();
+        state.assign(slotI, teamI);
+        boolean allowed = isAssignmentAllowed(state, slotJ, teamJ);
+        state.rollbackTo(checkpoint);
+        return allowed;
+    }
+
+    /**
+     * Which slots this constraint relates; arc consistency only revises arcs
+     * inside some constraint's scope. The default relates every pair.
+     */
+    default ConstraintScope scope(DrawModel model) {
+        return ConstraintScope.all();
+    }
+
+    /**
+     * Groups this constraint treats alike share a colour: two groups of equal
+     * colour whose assigned teams have the same pots and continents must
+     * allow the same future placements, slot for slot. The solver explores
+     * only one of such groups at each node. The default gives group-local
+     * constraints (which must only look at the pots and continents in a
+     * group) one colour and every group its own colour otherwise.
+     */
+    default int groupColour(DrawModel model, int groupId) {
+        return scope(model).isGroupLocal() ? 0 : groupId + 1;
+    }
+
+    /**
+     * Global propagation over the whole state, run by the consistency checks
+     * after forward checking. Returns false when the state is inconsistent.
+     */
+    default boolean propagate(AssignmentState state) {
+        return true;
+    }
+
+    /**
+     * Describe this constraint's placement rules in the manager's flat
+     * tables, which then stand in for {@code isAssignmentAllowed},
+     * {@code isPairAllowed} and {@code forwardCheck}; scope, colours and
+     * {@link #propagate} are still taken from the constraint. Return false,
+     * having added nothing, when the rules cannot be expressed there: the
+     * manager then keeps calling the constraint. The default compiles
+     * nothing.
+     */
+    default boolean compile(ConstraintTables tables) {
+        return false;
+    }
+
+    /**
+     * What tells this constraint apart from others of its type, for keys
+     * such as {@link ConstraintManager#configurationKey()}: two constraints
+     * with equal keys must allow the same placements. The default is the
+     * class name; constraints with parameters add them, in an order that
+     * does not depend on how their collections iterate.
+     */
+    default String configurationKey() {
+        return getClass().getName();
+    }
+
 }
@@ -1,23 +1,117 @@
 package com.example.footie.newSimulator.constraint;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.ConsistencyLevel;
+import com.example.footie.newSimulator.DrawModel;
 import com.example.footie.newSimulator.GroupSlot;
+import com.example.footie.newSimulator.Hashing;
+import com.example.footie.newSimulator.SolverStats;
 import com.example.footie.newSimulator.Team;
 
 public class ConstraintManager {
     private final List<Constraint> constraints = new ArrayList<>();
+    private ArcConsistency arcConsistency = ArcConsistency.ALL_PAIRS;
+    private boolean compiled = true;
+
+    // per-model compiled rules, see tables(); the constraints they do not
+    // cover are still called one by one
+    private ConstraintTables tables;
+    private final List<Constraint> uncompiled = new ArrayList<>();
+
+    // per-model working storage, see bind()
+    private DrawModel boundModel;
+    private final List<ConstraintScope> scopes = new ArrayList<>();
+    private int[] residues;
+    private long[] arcs;
+    private long revisions;
+
+    // state and filtering of the last arc-consistency fixpoint; the state's
+    // change record is only meaningful relative to it
+    private AssignmentState fixpointState;
+    private ArcConsistency fixpointConsistency;
+
+    // where the time goes; null while nobody measures
+    private SolverStats stats;
 
     public void addConstraint(Constraint c) {
         constraints.add(c);
+        boundModel = null;
+        tables = null;
+    }
+
+    /**
+     * A manager over the same constraints and arc consistency with working
+     * storage of its own, for propagating on another thread. The constraints
+     * themselves are shared and must be safe to call concurrently; the
+     * built-in ones only cache immutable per-model tables.
+     */
+    public ConstraintManager copy() {
+        ConstraintManager copy = new ConstraintManager();
+        copy.constraints.addAll(constraints);
+        copy.arcConsistency = arcConsistency;
+        copy.compiled = compiled;
+        return copy;
+    }
+
+    /**
+     * Whether the dense-id checks, forward checks and arc revisions go
+     * through the {@link ConstraintTables} the constraints compile into, on
+     * by default; off calls every constraint, as a reference.
+     */
+    public void setCompiled(boolean compiled) {
+        this.compiled = compiled;
+    }
+
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    /**
+     * Which slot pairs AC-3 revises in
+     * {@link #checkGlobalConsistency(AssignmentState)}. The draw configuration
+     * uses {@link ArcConsistency#GROUP_LOCAL} and leaves cross-group
+     * reasoning to the {@link AllDifferent} propagator.
+     */
+    public void setArcConsistency(ArcConsistency arcConsistency) {
+        this.arcConsistency = arcConsistency;
+    }
+
+    public ArcConsistency getArcConsistency() {
+        return arcConsistency;
+    }
+
+    /**
+     * The constraints' {@link Constraint#configurationKey() keys}, in order,
+     * the arc consistency and whether the rules are compiled: everything of
+     * the manager a seeded draw depends on.
+     */
+    public String configurationKey() {
+        StringBuilder key = new StringBuilder();
+        for (Constraint c : constraints)
+            key.append(c.configurationKey()).append(';');
+        return key.append(arcConsistency).append(';').append(compiled).toString();
+    }
+
+    /** 64-bit hash of {@link #configurationKey()}. */
+    public long configurationHash() {
+        return Hashing.of(configurationKey());
+    }
+
+    /**
+     * Record the dense-id forward checks, propagators and consistency
+     * checks in {@code stats}; null, the default, stops measuring. Not
+     * carried over by {@link #copy()}.
+     */
+    public void setStats(SolverStats stats) {
+        this.stats = stats;
+    }
+
+    public SolverStats getStats() {
+        return stats;
     }
 
     public boolean isAssignmentValid(AssignmentState state, GroupSlot slot, Team team) {
@@ -28,6 +122,21 @@ public class ConstraintManager {
         return true;
     }
 
+    /** Dense-id form of {@link #isAssignmentValid(AssignmentState, GroupSlot, Team)}. */
+    public boolean isAssignmentValid(AssignmentState state, int slotId, int teamId) {
+        List<Constraint> checked = constraints;
+        if (compiled) {
+            if (!tables(state.model()).isAllowed(state, slotId, teamId))
+                return false;
+            checked = uncompiled;
+        }
+        for (Constraint c : checked) {
+            if (!c.isAssignmentAllowed(state, slotId, teamId))
+                return false;
+        }
+        return true;
+    }
+
     /**
      * Like {@link #isAssignmentValid(AssignmentState,GroupSlot,Team)} but fills
      * the provided StringBuilder with a short reason when the assignment is
@@ -72,6 +181,41 @@ public class ConstraintManager {
         }
     }
 
+    /** Dense-id form of {@link #forwardCheck(AssignmentState, GroupSlot, Team)}. */
+    public void forwardCheck(AssignmentState state, int slotId, int teamId) {
+        if (stats != null) {
+            measuredForwardCheck(state, slotId, teamId);
+            return;
+        }
+        List<Constraint> checked = constraints;
+        if (compiled) {
+            tables(state.model()).forwardCheck(state, slotId, teamId);
+            checked = uncompiled;
+        }
+        for (Constraint c : checked) {
+            c.forwardCheck(state, slotId, teamId);
+        }
+    }
+
+    private void measuredForwardCheck(AssignmentState state, int slotId, int teamId) {
+        long start = System.nanoTime();
+        long mark = start;
+        List<Constraint> checked = constraints;
+        if (compiled) {
+            tables(state.model()).forwardCheck(state, slotId, teamId, stats);
+            mark = System.nanoTime();
+            checked = uncompiled;
+        }
+        for (Constraint c : checked) {
+            long pruned = state.prunedValues();
+            c.forwardCheck(state, slotId, teamId);
+            long now = System.nanoTime();
+            stats.constraint(c.getClass().getSimpleName()).record(now - mark, state.prunedValues() - pruned);
+            mark = now;
+        }
+        stats.addNanos(ConsistencyLevel.FORWARD_CHECK, mark - start);
+    }
+
     // team-removal is handled by the AllDifferent constraint implementation
 
     /**
@@ -79,109 +223,362 @@ public class ConstraintManager {
      * Returns true if no domain was emptied, false if some domain became empty.
      */
     public boolean enforceArcConsistency(AssignmentState state) {
-        List<GroupSlot> unassigned = state.getUnassignedSlots();
-        Deque<GroupSlot[]> queue = new ArrayDeque<>();
+        return enforceArcConsistency(state, ArcConsistency.ALL_PAIRS);
+    }
+
+    /**
+     * AC-3 over the arcs of the constraints' declared scopes, additionally
+     * restricted by {@code consistency}. Propagation starts from the slots
+     * whose domain or assignment changed since the last fixpoint reached on
+     * this state: slots that gained values or sit next to a newly
+     * (un)assigned slot are revised against their neighbours, and every
+     * slot whose domain shrank has its neighbours revised against it.
+     */
+    public boolean enforceArcConsistency(AssignmentState state, ArcConsistency consistency) {
+        if (stats == null)
+            return reviseToFixpoint(state, consistency);
+        long start = System.nanoTime();
+        try {
+            return reviseToFixpoint(state, consistency);
+        } finally {
+            stats.addNanos(ConsistencyLevel.ARC, System.nanoTime() - start);
+        }
+    }
+
+    private boolean reviseToFixpoint(AssignmentState state, ArcConsistency consistency) {
+        if (consistency == ArcConsistency.NONE)
+            return true;
+        bind(state.model());
+        long unassigned = state.unassignedSlotBits();
+        for (long m = unassigned; m != 0; m &= m - 1) {
+            int slot = Long.numberOfTrailingZeros(m);
+            arcs[slot] = related(state, consistency, slot) & unassigned;
+        }
 
-        for (GroupSlot xi : unassigned) {
-            for (GroupSlot xj : unassigned) {
-                if (!xi.equals(xj))
-                    queue.add(new GroupSlot[] { xi, xj });
+        long revise;
+        long queue;
+        if (fixpointState == state && fixpointConsistency == consistency) {
+            revise = state.grownDomainSlots();
+            for (long m = state.changedAssignmentSlots(); m != 0; m &= m - 1)
+                revise |= related(state, consistency, Long.numberOfTrailingZeros(m));
+            revise &= unassigned;
+            queue = state.changedDomainSlots() & unassigned;
+        } else {
+            revise = unassigned;
+            queue = unassigned;
+        }
+        fixpointState = null;
+
+        for (long m = revise; m != 0; m &= m - 1) {
+            int xi = Long.numberOfTrailingZeros(m);
+            for (long mj = arcs[xi]; mj != 0; mj &= mj - 1) {
+                if (revise(state, xi, Long.numberOfTrailingZeros(mj))) {
+                    if (state.domainBits(xi) == 0)
+                        return false;
+                    queue |= 1L << xi;
+                }
             }
         }
 
-        while (!queue.isEmpty()) {
-            GroupSlot[] pair = queue.removeFirst();
-            GroupSlot xi = pair[0];
-            GroupSlot xj = pair[1];
-            if (revise(state, xi, xj)) {
-                if (state.getDomains().get(xi).isEmpty())
-                    return false;
-                for (GroupSlot xk : unassigned) {
-                    if (!xk.equals(xi) && !xk.equals(xj)) {
-                        queue.add(new GroupSlot[] { xk, xi });
-                    }
+        // variable-oriented queue: revise the neighbours of every slot that shrank
+        while (queue != 0) {
+            int xj = Long.numberOfTrailingZeros(queue);
+            queue &= queue - 1;
+            for (long mk = arcs[xj]; mk != 0; mk &= mk - 1) {
+                int xk = Long.numberOfTrailingZeros(mk);
+                if (revise(state, xk, xj)) {
+                    if (state.domainBits(xk) == 0)
+                        return false;
+                    queue |= 1L << xk;
                 }
             }
         }
-        // final sanity check: ensure matching covers all unassigned slots
+
+        state.clearChangedSlots();
+        fixpointState = state;
+        fixpointConsistency = consistency;
+        return true;
+    }
+
+    /** Whether every constraint's scope stays inside a single group. */
+    public boolean isGroupLocal(DrawModel model) {
+        for (Constraint c : constraints) {
+            if (!c.scope(model).isGroupLocal())
+                return false;
+        }
         return true;
     }
 
     /**
-     * Revise xi's domain with respect to xj. Return true if xi's domain changed.
+     * Symmetry classes of the groups: groups with the same slot positions
+     * that every constraint gives the same {@link Constraint#groupColour
+     * colour}. Each group maps to the lowest group id of its class.
      */
-    private boolean revise(AssignmentState state, GroupSlot xi, GroupSlot xj) {
-        boolean revised = false;
-        Set<Team> domainXi = new HashSet<>(state.getDomains(xi));
-
-        for (Team vx : new HashSet<>(domainXi)) {
-            boolean hasSupport = false;
-            List<Team> originalXiDomain = new ArrayList<>(state.getDomains(xi));
-
-            // temporarily assign xi = vx and check if some value in xj's domain
-            // is consistent with that assignment
-            state.assign(xi, vx);
-            for (Team vy : new HashSet<>(state.getDomains(xj))) {
-                if (isAssignmentValid(state, xj, vy)) {
-                    hasSupport = true;
+    public int[] groupClasses(DrawModel model) {
+        int groups = model.groupCount();
+        int[][] colours = new int[groups][constraints.size()];
+        for (int g = 0; g < groups; g++)
+            for (int i = 0; i < constraints.size(); i++)
+                colours[g][i] = constraints.get(i).groupColour(model, g);
+
+        int[] classes = new int[groups];
+        for (int g = 0; g < groups; g++) {
+            classes[g] = g;
+            for (int h = 0; h < g; h++) {
+                if (classes[h] == h && Arrays.equals(colours[g], colours[h]) && sameLayout(model, g, h)) {
+                    classes[g] = h;
                     break;
                 }
             }
-            state.unassign(xi, originalXiDomain);
+        }
+        return classes;
+    }
 
-            if (!hasSupport) {
-                state.removeTeamFromDomain(xi, vx.getName());
-                revised = true;
-            }
+    private static boolean sameLayout(DrawModel model, int g, int h) {
+        long a = model.groupSlots(g);
+        long b = model.groupSlots(h);
+        if (Long.bitCount(a) != Long.bitCount(b))
+            return false;
+        for (; a != 0; a &= a - 1, b &= b - 1) {
+            if (model.slotPosition(Long.numberOfTrailingZeros(a)) != model.slotPosition(Long.numberOfTrailingZeros(b)))
+                return false;
         }
+        return true;
+    }
 
-        return revised;
+    /** Number of arc revisions performed by this manager so far. */
+    public long getRevisionCount() {
+        return revisions;
+    }
+
+    /** Slots sharing an arc with {@code slot}: the union of the scopes, filtered by {@code consistency}. */
+    private long related(AssignmentState state, ArcConsistency consistency, int slot) {
+        long related = 0L;
+        for (ConstraintScope scope : scopes)
+            related |= scope.neighbours(state, slot);
+        if (consistency == ArcConsistency.GROUP_LOCAL)
+            related &= state.model().groupSlots(state.model().slotGroup(slot));
+        return related;
     }
 
     /**
-     * Singleton Arc Consistency (SAC): for every unassigned variable xi and for
-     * every value v in its domain, temporarily assign xi=v and run AC-3. If
-     * a domain wipeout occurs, remove v from xi's domain. Returns false if a
-     * domain becomes empty during pruning.
-     *
-     * This is stronger (and much more expensive) than plain AC-3.
+     * Revise xi's domain with respect to xj (AC-3rm). For every value of xi the
+     * last support found in xj is remembered and tried first; when it is
+     * gone the scan resumes just after it and wraps around. Supports are
+     * tested with {@link Constraint#isPairAllowed}, so the state is never
+     * assigned temporarily, and residues are always re-validated because the
+     * relations depend on the current assignment. Return true if xi's domain
+     * changed.
      */
-    public boolean enforceSingletonArcConsistency(AssignmentState state) {
-        List<GroupSlot> unassigned = state.getUnassignedSlots();
+    private boolean revise(AssignmentState state, int xi, int xj) {
+        revisions++;
+        DrawModel model = state.model();
+        int teamCount = model.teamCount();
+        int slotCount = model.slotCount();
+        long dj = state.domainBits(xj);
+        long unsupported = 0L;
+
+        for (long mx = state.domainBits(xi); mx != 0; mx &= mx - 1) {
+            int vx = Long.numberOfTrailingZeros(mx);
+            int at = (xi * teamCount + vx) * slotCount + xj;
+            int residue = residues[at];
+            if (residue >= 0 && (dj & (1L << residue)) != 0
+                    && isPairValid(state, xi, vx, xj, residue))
+                continue;
+
+            int support = findSupport(state, xi, vx, xj, dj, residue);
+            if (support >= 0)
+                residues[at] = support;
+            else
+                unsupported |= 1L << vx;
+        }
 
-        for (GroupSlot xi : new ArrayList<>(unassigned)) {
-            Set<Team> domainCopy = new HashSet<>(state.getDomains(xi));
+        return state.removeFromDomain(xi, unsupported) != 0;
+    }
 
-            for (Team v : new HashSet<>(domainCopy)) {
-                // snapshot domains
-                Map<GroupSlot, Set<Team>> snapshot = new HashMap<>();
-                for (GroupSlot s : state.getUnassignedSlots()) {
-                    snapshot.put(s, new HashSet<>(state.getDomains().get(s)));
-                }
+    /** First value of xj after {@code from} (wrapping around) supporting xi = vx, or -1. */
+    private int findSupport(AssignmentState state, int xi, int vx, int xj, long dj, int from) {
+        long after = from >= 0 && from < Long.SIZE - 1 ? dj & (-1L << (from + 1)) : dj;
+        for (long my = after; my != 0; my &= my - 1) {
+            int vy = Long.numberOfTrailingZeros(my);
+            if (isPairValid(state, xi, vx, xj, vy))
+                return vy;
+        }
+        for (long my = dj & ~after; my != 0; my &= my - 1) {
+            int vy = Long.numberOfTrailingZeros(my);
+            if (isPairValid(state, xi, vx, xj, vy))
+                return vy;
+        }
+        return -1;
+    }
 
-                // temporarily assign and propagate
-                List<Team> originalDomainForXi = new ArrayList<>(snapshot.get(xi));
-                state.assign(xi, v);
-                forwardCheck(state, xi, v);
-                boolean ok = enforceArcConsistency(state);
+    private boolean isPairValid(AssignmentState state, int xi, int vx, int xj, int vy) {
+        List<Constraint> checked = constraints;
+        if (compiled) {
+            if (!tables(state.model()).isAllowed(state, xj, vy, xi, vx))
+                return false;
+            checked = uncompiled;
+        }
+        for (Constraint c : checked) {
+            if (!c.isPairAllowed(state, xi, vx, xj, vy))
+                return false;
+        }
+        return true;
+    }
 
-                // restore snapshot (do not keep pruning from the test)
-                for (GroupSlot s : snapshot.keySet()) {
-                    state.getDomains().put(s, new HashSet<>(snapshot.get(s)));
-                }
-                state.unassign(xi, originalDomainForXi);
+    /** The constraints compiled against the model, rebuilt when the model changes. */
+    private ConstraintTables tables(DrawModel model) {
+        ConstraintTables t = tables;
+        if (t != null && t.model() == model)
+            return t;
+        t = new ConstraintTables(model);
+        uncompiled.clear();
+        for (Constraint c : constraints) {
+            t.compiling(c.getClass().getSimpleName());
+            if (!c.compile(t))
+                uncompiled.add(c);
+        }
+        t.seal();
+        tables = t;
+        return t;
+    }
+
+    /**
+     * Size the per-model working storage. Residual supports, indexed by
+     * (xi, vx, xj) with -1 when none is known yet, are only hints, so they
+     * survive backtracking and are just reset for another model.
+     */
+    private void bind(DrawModel model) {
+        if (boundModel == model)
+            return;
+        if (compiled)
+            tables(model);
+        residues = new int[model.slotCount() * model.teamCount() * model.slotCount()];
+        Arrays.fill(residues, -1);
+        arcs = new long[model.slotCount()];
+        scopes.clear();
+        for (Constraint c : constraints)
+            scopes.add(c.scope(model));
+        boundModel = model;
+        fixpointState = null;
+    }
+
+    /**
+     * Singleton consistency over {@link #checkGlobalConsistency}: remove every
+     * value v of a slot x such that assigning x = v and propagating wipes
+     * something out. Returns false when a domain becomes empty; on true the
+     * state is at a fixpoint of the global checks as well.
+     *
+     * SAC-3 style (Lecoutre and Cardon): instead of probing every value from
+     * the same state, values are assigned one after another in a branch, each
+     * on top of the previous ones, while propagation keeps succeeding. A
+     * value that survives anywhere in a branch also survives on its own, so
+     * a branch proves many values for the price of one descent. The first
+     * failure ends the branch and starts the next one; only a value failing
+     * as the first of a branch is removed, and every removal starts another
+     * round, since it may break what was proved. Each probe's arc
+     * consistency starts from the changes of that probe alone: the trail
+     * restores the last fixpoint exactly, so it is marked as the fixpoint
+     * again after every rollback.
+     */
+    public boolean enforceSingletonArcConsistency(AssignmentState state) {
+        if (stats == null)
+            return singletonArcConsistency(state);
+        long start = System.nanoTime();
+        long levels = levelNanos();
+        try {
+            return singletonArcConsistency(state);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            stats.addNanos(ConsistencyLevel.SINGLETON_ARC, elapsed - (levelNanos() - levels));
+        }
+    }
+
+    /** Time the stats hold for the levels below singleton arc consistency. */
+    private long levelNanos() {
+        return stats.nanos(ConsistencyLevel.FORWARD_CHECK) + stats.nanos(ConsistencyLevel.HALL)
+                + stats.nanos(ConsistencyLevel.ARC);
+    }
 
-                if (!ok) {
-                    // prune v permanently
-                    state.removeTeamFromDomain(xi, v.getName());
-                    if (state.getDomains().get(xi).isEmpty())
+    private boolean singletonArcConsistency(AssignmentState state) {
+        if (!checkGlobalConsistency(state))
+            return false;
+        long[] pending = new long[state.model().slotCount()];
+        boolean removed;
+        do {
+            removed = false;
+            for (long m = state.unassignedSlotBits(); m != 0; m &= m - 1) {
+                int slot = Long.numberOfTrailingZeros(m);
+                pending[slot] = state.domainBits(slot);
+            }
+            int root = state.checkpoint();
+            // the value that ended the last branch opens the next one
+            int retrySlot = -1;
+            int retryTeam = -1;
+            while (true) {
+                int depth = 0;
+                while (true) {
+                    int slot = retrySlot;
+                    int team = retryTeam;
+                    retrySlot = -1;
+                    if (slot < 0 || (pending[slot] & state.domainBits(slot) & (1L << team)) == 0
+                            || (state.unassignedSlotBits() & (1L << slot)) == 0) {
+                        slot = nextPending(state, pending);
+                        if (slot < 0)
+                            break;
+                        team = Long.numberOfTrailingZeros(pending[slot] & state.domainBits(slot));
+                    }
+                    int checkpoint = state.checkpoint();
+                    state.assign(slot, team);
+                    forwardCheck(state, slot, team);
+                    if (checkGlobalConsistency(state)) {
+                        pending[slot] &= ~(1L << team);
+                        depth++;
+                        continue;
+                    }
+                    state.rollbackTo(checkpoint);
+                    markFixpoint(state);
+                    if (depth > 0) {
+                        retrySlot = slot;
+                        retryTeam = team;
+                        break;
+                    }
+                    // fails on its own: not singleton consistent
+                    pending[slot] &= ~(1L << team);
+                    state.removeFromDomain(slot, 1L << team);
+                    removed = true;
+                    if (!checkGlobalConsistency(state))
                         return false;
+                    // the removal stays when the branches are rolled back
+                    root = state.checkpoint();
                 }
+                state.rollbackTo(root);
+                markFixpoint(state);
+                if (depth == 0 && retrySlot < 0)
+                    break;
             }
+        } while (removed);
+        return true;
+    }
+
+    /** Lowest unassigned slot with a value still to prove in the current domains, or -1. */
+    private static int nextPending(AssignmentState state, long[] pending) {
+        for (long m = state.unassignedSlotBits(); m != 0; m &= m - 1) {
+            int slot = Long.numberOfTrailingZeros(m);
+            if ((pending[slot] & state.domainBits(slot)) != 0)
+                return slot;
         }
-        // final sanity check
+        return -1;
+    }
 
-        return true;
+    /**
+     * Declare the state an arc-consistency fixpoint again after a rollback
+     * to one, so the next run only revises around later changes.
+     */
+    private void markFixpoint(AssignmentState state) {
+        state.clearChangedSlots();
+        fixpointState = state;
+        fixpointConsistency = arcConsistency;
     }
 
     /**
@@ -189,13 +586,61 @@ public class ConstraintManager {
      * unassigned slots and unassigned teams (detects Hall violations).
      */
     public boolean hasPerfectMatching(AssignmentState state) {
-        return state.hasPerfectMatchingForUnassignedSlots();
+        if (stats == null)
+            return state.hasPerfectMatchingForUnassignedSlots();
+        long start = System.nanoTime();
+        boolean matched = state.hasPerfectMatchingForUnassignedSlots();
+        stats.addNanos(ConsistencyLevel.HALL, System.nanoTime() - start);
+        return matched;
+    }
+
+    /**
+     * Cheap subset of {@link #checkGlobalConsistency(AssignmentState)} that is
+     * run at every search depth: every unassigned team still has a candidate
+     * slot and the incremental slot/team matching has no Hall violation.
+     */
+    public boolean checkMatchingConsistency(AssignmentState state) {
+        if (state.hasUnassignedTeamWithoutCandidateSlot())
+            return false;
+        if (!hasPerfectMatching(state))
+            return false;
+        return propagate(state);
+    }
+
+    /** Run every constraint's global propagator; false on inconsistency. */
+    public boolean propagate(AssignmentState state) {
+        if (stats != null)
+            return measuredPropagate(state);
+        for (Constraint c : constraints) {
+            if (!c.propagate(state))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean measuredPropagate(AssignmentState state) {
+        long start = System.nanoTime();
+        long mark = start;
+        try {
+            for (Constraint c : constraints) {
+                long pruned = state.prunedValues();
+                boolean consistent = c.propagate(state);
+                long now = System.nanoTime();
+                stats.constraint(c.getClass().getSimpleName()).record(now - mark, state.prunedValues() - pruned);
+                mark = now;
+                if (!consistent)
+                    return false;
+            }
+            return true;
+        } finally {
+            stats.addNanos(ConsistencyLevel.ARC, mark - start);
+        }
     }
 
     /**
      * Run a set of global consistency checks on the current state after
-     * forward-checking. This includes (configurable) arc-consistency
-     * enforcement, Hall/matching check and simple domain/missing-team checks.
+     * forward-checking. This includes constraint propagators, (configurable)
+     * arc-consistency enforcement, Hall/matching check and simple domain/missing-team checks.
      * Returns true if the state remains potentially solvable, false if a
      * contradiction was detected (domain wipeout, Hall violation, or a team
      * with no candidate slot).
@@ -203,23 +648,26 @@ public class ConstraintManager {
      * Checks are ordered from least to most expensive for early failure detection.
      */
     public boolean checkGlobalConsistency(AssignmentState state) {
-        // 4. Most expensive: enforce arc-consistency (AC-3) - O(ed³) where e = edges, d = max domain size
-        // Note: AC-3 also calls hasPerfectMatching at the end, but we check it first to fail fast
-        if (!enforceArcConsistency(state))
-            return false;
-
-        // 1. Cheapest: detect domain wipeouts explicitly (O(n) where n = unassigned slots)
-        for (GroupSlot s : state.getUnassignedSlots()) {
-            Set<Team> dom = state.getDomains(s);
-            if (dom == null || dom.isEmpty())
+        // 0. Global propagators (Régin all-different) and AC-3 - O(ed³) where
+        // e = edges, d = max domain size - until neither prunes anything more
+        int mark;
+        do {
+            mark = state.checkpoint();
+            if (!propagate(state))
                 return false;
-        }
+            if (!enforceArcConsistency(state, arcConsistency))
+                return false;
+        } while (state.checkpoint() != mark && arcConsistency != ArcConsistency.NONE);
+
+        // 1. Cheapest: detect domain wipeouts explicitly (one word test per unassigned slot)
+        if (state.hasEmptyUnassignedDomain())
+            return false;
 
-        // 2. Cheap: ensure no unassigned teams have zero candidate slots (O(m) where m = unassigned teams)
-        List<String> missing = state.findUnassignedTeamsWithNoUnassignedCandidateSlot();
-        if (!missing.isEmpty())
+        // 2. Cheap: ensure no unassigned teams have zero candidate slots (one word test per unassigned team)
+        if (state.hasUnassignedTeamWithoutCandidateSlot())
             return false;
-        // 3. Medium: check for Hall violations via bipartite matching (O(n²m))
+        // 3. Medium: check for Hall violations; the matching is repaired
+        // incrementally, so only edges broken since the last check cost anything
 
         return hasPerfectMatching(state);
     }
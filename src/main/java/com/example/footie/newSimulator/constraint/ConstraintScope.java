@@ -0,0 +1,98 @@
+package com.example.footie.newSimulator.constraint;
+
+import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.DrawModel;
+
+/**
+ * The part of the draw a {@link Constraint} relates, used by
+ * {@link ConstraintManager} to build the arcs arc consistency revises: two
+ * slots share an arc only when some constraint's scope contains both.
+ */
+public final class ConstraintScope {
+
+    private enum Kind { NONE, GROUP, SLOTS, TEAMS, ALL }
+
+    private static final ConstraintScope NONE = new ConstraintScope(Kind.NONE, 0L);
+    private static final ConstraintScope GROUP = new ConstraintScope(Kind.GROUP, 0L);
+    private static final ConstraintScope ALL = new ConstraintScope(Kind.ALL, 0L);
+
+    private final Kind kind;
+    private final long mask;
+
+    private ConstraintScope(Kind kind, long mask) {
+        this.kind = kind;
+        this.mask = mask;
+    }
+
+    /** No arcs, for constraints whose propagator already enforces at least arc consistency. */
+    public static ConstraintScope none() {
+        return NONE;
+    }
+
+    /** Only slots of the same group are related. */
+    public static ConstraintScope group() {
+        return GROUP;
+    }
+
+    /** Only the given slot ids are related, with each other. */
+    public static ConstraintScope slots(long slotMask) {
+        return new ConstraintScope(Kind.SLOTS, slotMask);
+    }
+
+    /** Only the placement of the given team ids is constrained. */
+    public static ConstraintScope teams(long teamMask) {
+        return new ConstraintScope(Kind.TEAMS, teamMask);
+    }
+
+    /** Every pair of slots may be related. */
+    public static ConstraintScope all() {
+        return ALL;
+    }
+
+    /** Team scope from team names; names outside the model are ignored. */
+    public static ConstraintScope teams(DrawModel model, Iterable<String> teamNames) {
+        long teams = 0L;
+        for (String name : teamNames) {
+            int t = model.teamId(name);
+            if (t >= 0)
+                teams |= 1L << t;
+        }
+        return teams(teams);
+    }
+
+    /** Whether the scope stays inside a single group (or relates nothing). */
+    public boolean isGroupLocal() {
+        return kind == Kind.NONE || kind == Kind.GROUP;
+    }
+
+    /**
+     * Slots sharing an arc with {@code slot} under this scope, the slot
+     * itself excluded. Team scopes relate the slots that can still take one
+     * of the teams, so the result depends on the current domains.
+     */
+    long neighbours(AssignmentState state, int slot) {
+        DrawModel model = state.model();
+        long related;
+        switch (kind) {
+            case GROUP:
+                related = model.groupSlots(model.slotGroup(slot));
+                break;
+            case SLOTS:
+                related = (mask & (1L << slot)) != 0 ? mask : 0L;
+                break;
+            case TEAMS:
+                related = 0L;
+                if ((state.domainBits(slot) & mask) != 0) {
+                    for (long m = mask; m != 0; m &= m - 1)
+                        related |= state.candidateSlotBits(Long.numberOfTrailingZeros(m));
+                }
+                break;
+            case ALL:
+                related = model.allSlots();
+                break;
+            default:
+                related = 0L;
+        }
+        return related & ~(1L << slot);
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.footie.newSimulator.constraint;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.DrawModel;
+import com.example.footie.newSimulator.SolverStats;
+
+/**
+ * The declarative constraints of a {@link ConstraintManager}, compiled
+ * against one model into flat tables and evaluated by a single propagator
+ * instead of a virtual call per constraint.
+ *
+ * Constraints describe themselves in {@link Constraint#compile} through
+ * four kinds of entries:
+ * <ul>
+ * <li>all-different: a team takes at most one slot;</li>
+ * <li>pot separation: no two teams of a pot share a group;</li>
+ * <li>continent caps: at most so many teams of a continent per group,
+ * kept as per-team masks of the continents capped at one and at more;</li>
+ * <li>conditional slot masks: once a trigger team sits in one of some
+ * slots, the target teams may only take the allowed slots. Paired groups,
+ * triggers and bracket quarters all reduce to these, indexed by trigger
+ * and by target team.</li>
+ * </ul>
+ * Every entry remembers the constraint it was compiled from, so measured
+ * forward checks are reported per constraint as they are uncompiled.
+ * Immutable once sealed by the manager, so copies on other threads share it.
+ */
+public final class ConstraintTables {
+
+    private final DrawModel model;
+    // name of the constraint being compiled, given to the entries it adds
+    private String source;
+    private boolean allDifferent;
+    private String allDifferentSource;
+    private boolean separatePots;
+    private String separatePotsSource;
+    // per continent: most teams of it a group may hold, Integer.MAX_VALUE when uncapped
+    private final int[] continentCap;
+    private final String[] continentCapSource;
+
+    private int rules;
+    private String[] ruleSource = new String[8];
+    private int[] ruleTrigger = new int[8];
+    private long[] ruleTriggerSlots = new long[8];
+    private long[] ruleTargets = new long[8];
+    private long[] ruleAllowedSlots = new long[8];
+
+    // built by seal()
+    private long[] teamCappedAtOne;
+    private long[] teamCappedAtMore;
+    private int[][] rulesByTrigger;
+    private int[][] rulesByTarget;
+
+    ConstraintTables(DrawModel model) {
+        this.model = model;
+        this.continentCap = new int[model.continentCount()];
+        this.continentCapSource = new String[model.continentCount()];
+        Arrays.fill(continentCap, Integer.MAX_VALUE);
+    }
+
+    /** Name the entries added from now on are reported under. */
+    void compiling(String source) {
+        this.source = source;
+    }
+
+    /** Model the tables are compiled against. */
+    public DrawModel model() {
+        return model;
+    }
+
+    /** Every team takes at most one slot. */
+    public void allDifferent() {
+        allDifferent = true;
+        allDifferentSource = source;
+    }
+
+    /** No two teams of the same pot in a group. */
+    public void separatePots() {
+        separatePots = true;
+        separatePotsSource = source;
+    }
+
+    /** At most {@code cap} teams of the continent in a group; the lowest cap wins. */
+    public void capContinent(int continentId, int cap) {
+        if (continentId >= 0 && cap < continentCap[continentId]) {
+            continentCap[continentId] = cap;
+            continentCapSource[continentId] = source;
+        }
+    }
+
+    /**
+     * Once {@code trigger} is placed in one of {@code triggerSlots}, every
+     * team of {@code targets} may only take {@code allowedSlots}. A trigger
+     * outside the model (-1) adds nothing.
+     */
+    public void restrictWhen(int trigger, long triggerSlots, long targets, long allowedSlots) {
+        if (trigger < 0 || triggerSlots == 0 || targets == 0)
+            return;
+        if (rules == ruleTrigger.length) {
+            ruleSource = Arrays.copyOf(ruleSource, rules * 2);
+            ruleTrigger = Arrays.copyOf(ruleTrigger, rules * 2);
+            ruleTriggerSlots = Arrays.copyOf(ruleTriggerSlots, rules * 2);
+            ruleTargets = Arrays.copyOf(ruleTargets, rules * 2);
+            ruleAllowedSlots = Arrays.copyOf(ruleAllowedSlots, rules * 2);
+        }
+        ruleSource[rules] = source;
+        ruleTrigger[rules] = trigger;
+        ruleTriggerSlots[rules] = triggerSlots;
+        ruleTargets[rules] = targets & model.allTeams();
+        ruleAllowedSlots[rules] = allowedSlots;
+        rules++;
+    }
+
+    /** Build the per-team indexes; no entries may be added afterwards. */
+    void seal() {
+        int teams = model.teamCount();
+        teamCappedAtOne = new long[teams];
+        teamCappedAtMore = new long[teams];
+        for (int t = 0; t < teams; t++) {
+            for (long m = model.teamContinents(t); m != 0; m &= m - 1) {
+                int c = Long.numberOfTrailingZeros(m);
+                if (continentCap[c] <= 1)
+                    teamCappedAtOne[t] |= 1L << c;
+                else if (continentCap[c] != Integer.MAX_VALUE)
+                    teamCappedAtMore[t] |= 1L << c;
+            }
+        }
+
+        int[] byTrigger = new int[teams];
+        int[] byTarget = new int[teams];
+        for (int r = 0; r < rules; r++) {
+            byTrigger[ruleTrigger[r]]++;
+            for (long m = ruleTargets[r]; m != 0; m &= m - 1)
+                byTarget[Long.numberOfTrailingZeros(m)]++;
+        }
+        rulesByTrigger = new int[teams][];
+        rulesByTarget = new int[teams][];
+        for (int t = 0; t < teams; t++) {
+            rulesByTrigger[t] = new int[byTrigger[t]];
+            rulesByTarget[t] = new int[byTarget[t]];
+        }
+        Arrays.fill(byTrigger, 0);
+        Arrays.fill(byTarget, 0);
+        for (int r = 0; r < rules; r++) {
+            int trigger = ruleTrigger[r];
+            rulesByTrigger[trigger][byTrigger[trigger]++] = r;
+            for (long m = ruleTargets[r]; m != 0; m &= m - 1) {
+                int t = Long.numberOfTrailingZeros(m);
+                rulesByTarget[t][byTarget[t]++] = r;
+            }
+        }
+    }
+
+    /** Whether the team may take the slot in the current state. */
+    boolean isAllowed(AssignmentState state, int slot, int team) {
+        return isAllowed(state, slot, team, -1, -1);
+    }
+
+    /**
+     * Whether {@code slot = team} is allowed once {@code otherSlot =
+     * otherTeam} is added to the current assignment; -1 adds nothing.
+     */
+    boolean isAllowed(AssignmentState state, int slot, int team, int otherSlot, int otherTeam) {
+        if (allDifferent && (team == otherTeam || (state.unassignedTeamBits() & (1L << team)) == 0))
+            return false;
+
+        int group = model.slotGroup(slot);
+        boolean together = otherSlot >= 0 && model.slotGroup(otherSlot) == group;
+        if (separatePots) {
+            long pots = state.groupPotMask(group) | (together ? model.teamPotBit(otherTeam) : 0L);
+            if ((pots & model.teamPotBit(team)) != 0)
+                return false;
+        }
+        long one = teamCappedAtOne[team];
+        if (one != 0) {
+            long present = state.groupContinentMask(group) | (together ? model.teamContinents(otherTeam) : 0L);
+            if ((present & one) != 0)
+                return false;
+        }
+        for (long m = teamCappedAtMore[team]; m != 0; m &= m - 1) {
+            int c = Long.numberOfTrailingZeros(m);
+            int count = state.groupContinentCount(group, c);
+            if (together && (model.teamContinents(otherTeam) & (1L << c)) != 0)
+                count++;
+            if (count >= continentCap[c])
+                return false;
+        }
+
+        for (int r : rulesByTarget[team]) {
+            int trigger = ruleTrigger[r];
+            int at = trigger == otherTeam ? otherSlot : state.assignedSlot(trigger);
+            if (at >= 0 && (ruleTriggerSlots[r] & (1L << at)) != 0 && (ruleAllowedSlots[r] & (1L << slot)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /** Prune the domains after {@code slot = team} was assigned. */
+    void forwardCheck(AssignmentState state, int slot, int team) {
+        long free = state.unassignedSlotBits();
+        if (allDifferent)
+            removeFrom(state, state.candidateSlotBits(team) & free & ~(1L << slot), 1L << team);
+
+        int group = model.slotGroup(slot);
+        long groupFree = model.groupSlots(group) & free;
+        if (separatePots)
+            removeFrom(state, groupFree, model.teamsInPot(model.teamPot(team)));
+        long full = teamCappedAtOne[team];
+        for (long m = teamCappedAtMore[team]; m != 0; m &= m - 1) {
+            int c = Long.numberOfTrailingZeros(m);
+            if (state.groupContinentCount(group, c) >= continentCap[c])
+                full |= 1L << c;
+        }
+        if (full != 0)
+            removeFrom(state, groupFree, model.teamsWithAnyContinent(full));
+
+        for (int r : rulesByTrigger[team]) {
+            if ((ruleTriggerSlots[r] & (1L << slot)) == 0)
+                continue;
+            for (long m = ruleTargets[r]; m != 0; m &= m - 1) {
+                int t = Long.numberOfTrailingZeros(m);
+                removeFrom(state, state.candidateSlotBits(t) & free & ~ruleAllowedSlots[r], 1L << t);
+            }
+        }
+    }
+
+    /**
+     * {@link #forwardCheck(AssignmentState, int, int)} that records the time
+     * and prunes of each constraint's entries in {@code stats}, one call per
+     * constraint the placement concerns.
+     */
+    void forwardCheck(AssignmentState state, int slot, int team, SolverStats stats) {
+        Meter meter = new Meter(state, stats);
+        long free = state.unassignedSlotBits();
+        if (allDifferent) {
+            removeFrom(state, state.candidateSlotBits(team) & free & ~(1L << slot), 1L << team);
+            meter.record(allDifferentSource);
+        }
+
+        int group = model.slotGroup(slot);
+        long groupFree = model.groupSlots(group) & free;
+        if (separatePots) {
+            removeFrom(state, groupFree, model.teamsInPot(model.teamPot(team)));
+            meter.record(separatePotsSource);
+        }
+        // the team's capped continents, a constraint at a time
+        for (long capped = teamCappedAtOne[team] | teamCappedAtMore[team]; capped != 0;) {
+            String capSource = continentCapSource[Long.numberOfTrailingZeros(capped)];
+            long same = 0L;
+            long full = 0L;
+            for (long m = capped; m != 0; m &= m - 1) {
+                int c = Long.numberOfTrailingZeros(m);
+                if (!Objects.equals(capSource, continentCapSource[c]))
+                    continue;
+                same |= 1L << c;
+                if (state.groupContinentCount(group, c) >= continentCap[c])
+                    full |= 1L << c;
+            }
+            if (full != 0)
+                removeFrom(state, groupFree, model.teamsWithAnyContinent(full));
+            meter.record(capSource);
+            capped &= ~same;
+        }
+
+        // a constraint's rules are added together, so they come in runs
+        int[] triggered = rulesByTrigger[team];
+        int first = triggered.length > 0 ? triggered[0] : -1;
+        String ruleRun = null;
+        for (int r : triggered) {
+            if (r != first && !Objects.equals(ruleRun, ruleSource[r]))
+                meter.record(ruleRun);
+            ruleRun = ruleSource[r];
+            if ((ruleTriggerSlots[r] & (1L << slot)) == 0)
+                continue;
+            for (long m = ruleTargets[r]; m != 0; m &= m - 1) {
+                int t = Long.numberOfTrailingZeros(m);
+                removeFrom(state, state.candidateSlotBits(t) & free & ~ruleAllowedSlots[r], 1L << t);
+            }
+        }
+        if (first >= 0)
+            meter.record(ruleRun);
+    }
+
+    /** Time and prunes since the last record, charged to a constraint. */
+    private static final class Meter {
+        private final AssignmentState state;
+        private final SolverStats stats;
+        private long mark = System.nanoTime();
+        private long pruned;
+
+        Meter(AssignmentState state, SolverStats stats) {
+            this.state = state;
+            this.stats = stats;
+            this.pruned = state.prunedValues();
+        }
+
+        void record(String source) {
+            long now = System.nanoTime();
+            long prunedNow = state.prunedValues();
+            stats.constraint(source).record(now - mark, prunedNow - pruned);
+            mark = now;
+            pruned = prunedNow;
+        }
+    }
+
+    private static void removeFrom(AssignmentState state, long slots, long teams) {
+        for (long m = slots; m != 0; m &= m - 1)
+            state.removeFromDomain(Long.numberOfTrailingZeros(m), teams);
+    }
+}
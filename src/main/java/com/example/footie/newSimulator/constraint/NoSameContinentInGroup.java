@@ -1,8 +1,7 @@
 package com.example.footie.newSimulator.constraint;
 
-import java.util.Map;
-
 import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.DrawModel;
 import com.example.footie.newSimulator.GroupSlot;
 import com.example.footie.newSimulator.Team;
 
@@ -11,28 +10,58 @@ public class NoSameContinentInGroup implements Constraint {
 
     @Override
     public boolean isAssignmentAllowed(AssignmentState state, GroupSlot slot, Team team) {
-        // For the target group, ensure no already-assigned team shares any continent
-        for (Map.Entry<GroupSlot, Team> e : state.getAssignments().entrySet()) {
-            GroupSlot otherSlot = e.getKey();
-            Team assigned = e.getValue();
-            if (assigned == null) continue;
-            if (!otherSlot.getGroupName().equals(slot.getGroupName())) continue;
-
-            // if any continent overlaps, assignment is not allowed
-            for (String c : assigned.getContinents()) {
-                if (team.getContinents().contains(c)) return false;
-            }
-        }
+        DrawModel model = state.model();
+        int group = model.groupOf(slot);
+        return group < 0 || (model.continentsOf(team) & state.groupContinentMask(group)) == 0;
+    }
+
+    @Override
+    public boolean isAssignmentAllowed(AssignmentState state, int slotId, int teamId) {
+        // if any continent overlaps with a team already in the group, assignment is not allowed
+        DrawModel model = state.model();
+        return (model.teamContinents(teamId) & state.groupContinentMask(model.slotGroup(slotId))) == 0;
+    }
+
+    @Override
+    public boolean compile(ConstraintTables tables) {
+        for (int c = 0; c < tables.model().continentCount(); c++)
+            tables.capContinent(c, 1);
         return true;
     }
 
+    @Override
+    public ConstraintScope scope(DrawModel model) {
+        return ConstraintScope.group();
+    }
+
+    @Override
+    public boolean isPairAllowed(AssignmentState state, int slotI, int teamI, int slotJ, int teamJ) {
+        DrawModel model = state.model();
+        int group = model.slotGroup(slotJ);
+        long present = state.groupContinentMask(group);
+        if (group == model.slotGroup(slotI))
+            present |= model.teamContinents(teamI);
+        return (model.teamContinents(teamJ) & present) == 0;
+    }
+
     @Override
     public void forwardCheck(AssignmentState state, GroupSlot slot, Team assignedTeam) {
-        for (GroupSlot s : state.getUnassignedSlots()) {
-            if (s.getGroupName().equals(slot.getGroupName())) {
-                state.removeIfFromDomain(s, t -> t.getContinents().stream()
-                        .anyMatch(continent -> assignedTeam.getContinents().contains(continent)));
-            }
-        }
+        DrawModel model = state.model();
+        int group = model.groupOf(slot);
+        if (group >= 0)
+            removeContinents(state, group, model.continentsOf(assignedTeam));
+    }
+
+    @Override
+    public void forwardCheck(AssignmentState state, int slotId, int teamId) {
+        DrawModel model = state.model();
+        removeContinents(state, model.slotGroup(slotId), model.teamContinents(teamId));
+    }
+
+    private static void removeContinents(AssignmentState state, int group, long continents) {
+        DrawModel model = state.model();
+        long clashing = model.teamsWithAnyContinent(continents);
+        for (long m = model.groupSlots(group) & state.unassignedSlotBits(); m != 0; m &= m - 1)
+            state.removeFromDomain(Long.numberOfTrailingZeros(m), clashing);
     }
 }
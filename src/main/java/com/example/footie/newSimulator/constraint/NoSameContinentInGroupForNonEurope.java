@@ -1,8 +1,7 @@
 package com.example.footie.newSimulator.constraint;
 
-import java.util.Map;
-
 import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.DrawModel;
 import com.example.footie.newSimulator.GroupSlot;
 import com.example.footie.newSimulator.Team;
 
@@ -11,43 +10,69 @@ public class NoSameContinentInGroupForNonEurope implements Constraint {
 
     @Override
     public boolean isAssignmentAllowed(AssignmentState state, GroupSlot slot, Team team) {
+        DrawModel model = state.model();
+        int group = model.groupOf(slot);
+        return group < 0 || (model.continentsOf(team) & nonEuropeanContinentsIn(state, group)) == 0;
+    }
+
+    @Override
+    public boolean isAssignmentAllowed(AssignmentState state, int slotId, int teamId) {
         // For each non-European continent the candidate has, ensure it's not
         // already present in the group's assignments.
-        for (String continent : team.getContinents()) {
-            if ("Europe".equalsIgnoreCase(continent)) continue; // ignore Europe here
-
-            for (Map.Entry<GroupSlot, Team> e : state.getAssignments().entrySet()) {
-                GroupSlot gs = e.getKey();
-                Team assigned = e.getValue();
-                if (assigned == null) continue;
-                if (!gs.getGroupName().equals(slot.getGroupName())) continue;
-                if (assigned.getContinents().stream().anyMatch(c -> c.equalsIgnoreCase(continent))) {
-                    return false;
-                }
-            }
+        DrawModel model = state.model();
+        return (model.teamContinents(teamId) & nonEuropeanContinentsIn(state, model.slotGroup(slotId))) == 0;
+    }
+
+    @Override
+    public boolean compile(ConstraintTables tables) {
+        DrawModel model = tables.model();
+        for (int c = 0; c < model.continentCount(); c++) {
+            if (c != model.europeId())
+                tables.capContinent(c, 1);
         }
         return true;
     }
 
+    @Override
+    public ConstraintScope scope(DrawModel model) {
+        return ConstraintScope.group();
+    }
+
+    @Override
+    public boolean isPairAllowed(AssignmentState state, int slotI, int teamI, int slotJ, int teamJ) {
+        DrawModel model = state.model();
+        int group = model.slotGroup(slotJ);
+        long present = nonEuropeanContinentsIn(state, group);
+        if (group == model.slotGroup(slotI))
+            present |= model.teamContinents(teamI) & ~model.europeMask();
+        return (model.teamContinents(teamJ) & present) == 0;
+    }
+
+    /** Continent mask of the group's assigned teams, Europe excluded. */
+    private static long nonEuropeanContinentsIn(AssignmentState state, int group) {
+        return state.groupContinentMask(group) & ~state.model().europeMask();
+    }
+
     @Override
     public void forwardCheck(AssignmentState state, GroupSlot slot, Team assignedTeam) {
-        // For each continent present in the group (excluding Europe), remove
-        // candidates from that continent from other unassigned slots in the group.
-        java.util.Set<String> present = new java.util.HashSet<>();
-        for (Map.Entry<GroupSlot, Team> e : state.getAssignments().entrySet()) {
-            GroupSlot gs = e.getKey();
-            Team assigned = e.getValue();
-            if (assigned == null) continue;
-            if (!gs.getGroupName().equals(slot.getGroupName())) continue;
-            for (String c : assigned.getContinents()) {
-                if (!"Europe".equalsIgnoreCase(c)) present.add(c.toLowerCase());
-            }
-        }
+        int group = state.model().groupOf(slot);
+        if (group >= 0)
+            pruneClashingContinents(state, group);
+    }
 
-        for (GroupSlot s : state.getUnassignedSlots()) {
-                if (!s.getGroupName().equals(slot.getGroupName())) continue;
-                state.removeIfFromDomain(s, candidate -> candidate.getContinents().stream()
-                    .anyMatch(c -> present.contains(c.toLowerCase())));
-        }
+    @Override
+    public void forwardCheck(AssignmentState state, int slotId, int teamId) {
+        pruneClashingContinents(state, state.model().slotGroup(slotId));
+    }
+
+    // For each continent present in the group (excluding Europe), remove
+    // candidates from that continent from other unassigned slots in the group.
+    private static void pruneClashingContinents(AssignmentState state, int group) {
+        DrawModel model = state.model();
+        long clashing = model.teamsWithAnyContinent(nonEuropeanContinentsIn(state, group));
+        if (clashing == 0) return;
+
+        for (long m = model.groupSlots(group) & state.unassignedSlotBits(); m != 0; m &= m - 1)
+            state.removeFromDomain(Long.numberOfTrailingZeros(m), clashing);
     }
 }
@@ -1,8 +1,11 @@
 package com.example.footie.newSimulator.constraint;
 
+import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.DrawModel;
 import com.example.footie.newSimulator.GroupSlot;
 import com.example.footie.newSimulator.Team;
 
@@ -19,6 +22,8 @@ public class PairedGroupConstraint implements Constraint {
     private final String teamB;
     private final Set<String> groupsB;
     private final boolean symmetric;
+    // resolved lazily for the model of the state being checked
+    private volatile Bound bound;
 
     public PairedGroupConstraint(String teamA, Set<String> groupsA, String teamB, Set<String> groupsB,
             boolean symmetric) {
@@ -32,103 +37,145 @@ public class PairedGroupConstraint implements Constraint {
     @Override
     public boolean isAssignmentAllowed(AssignmentState state, GroupSlot slot, Team team) {
         String group = slot.getGroupName();
+        Bound b = bind(state.model());
 
-        // Helper to test one direction
-        if (team.getName().equals(teamA)) {
-            boolean inA = groupsA.contains(group);
-            Team partner = findAssigned(state, teamB);
-            if (partner != null) {
-                boolean partnerInB = groupsB.contains(findGroupOf(state, teamB));
-                if (inA && !partnerInB)
-                    return false;
-                if (symmetric && partnerInB && !inA)
-                    return false;
-            }
+        if (team.getName().equals(teamA))
+            return isAllowed(state, true, groupsA.contains(group), b.teamB, b.slotsB);
+        if (team.getName().equals(teamB))
+            return isAllowed(state, false, groupsB.contains(group), b.teamA, b.slotsA);
+
+        // Not relevant for other teams
+        return true;
+    }
+
+    @Override
+    public boolean isAssignmentAllowed(AssignmentState state, int slotId, int teamId) {
+        Bound b = bind(state.model());
+        long slotBit = 1L << slotId;
+        if (teamId == b.teamA)
+            return isAllowed(state, true, (b.slotsA & slotBit) != 0, b.teamB, b.slotsB);
+        if (teamId == b.teamB)
+            return isAllowed(state, false, (b.slotsB & slotBit) != 0, b.teamA, b.slotsA);
+        return true;
+    }
+
+    /**
+     * Whether the candidate's placement agrees with its partner's, given
+     * which of the two teams it is and whether it lands in its own groups.
+     */
+    private boolean isAllowed(AssignmentState state, boolean candidateIsA, boolean inOwnGroups, int partner,
+            long partnerSlots) {
+        int partnerSlot = partner >= 0 ? state.assignedSlot(partner) : -1;
+        if (partnerSlot < 0)
             return true;
-        }
+        boolean partnerInGroups = (partnerSlots & (1L << partnerSlot)) != 0;
+        boolean aInGroupsA = candidateIsA ? inOwnGroups : partnerInGroups;
+        boolean bInGroupsB = candidateIsA ? partnerInGroups : inOwnGroups;
+        return symmetric ? aInGroupsA == bInGroupsB : !aInGroupsA || bInGroupsB;
+    }
 
-        if (team.getName().equals(teamB)) {
-            boolean inB = groupsB.contains(group);
-            Team partner = findAssigned(state, teamA);
-            if (partner != null) {
-                boolean partnerInA = groupsA.contains(findGroupOf(state, teamA));
-                if (inB && !partnerInA)
-                    return false;
-                if (symmetric && partnerInA && !inB)
-                    return false;
-            }
+    @Override
+    public boolean compile(ConstraintTables tables) {
+        Bound b = bind(tables.model());
+        if (b.teamA < 0 || b.teamB < 0)
             return true;
+        long slots = tables.model().allSlots();
+        // teamA in groupsA sends teamB to groupsB; so teamB outside groupsB
+        // keeps teamA out of groupsA
+        tables.restrictWhen(b.teamA, b.slotsA, 1L << b.teamB, b.slotsB);
+        tables.restrictWhen(b.teamB, slots & ~b.slotsB, 1L << b.teamA, ~b.slotsA);
+        if (symmetric) {
+            tables.restrictWhen(b.teamA, slots & ~b.slotsA, 1L << b.teamB, ~b.slotsB);
+            tables.restrictWhen(b.teamB, b.slotsB, 1L << b.teamA, b.slotsA);
         }
-
-        // Not relevant for other teams
         return true;
     }
 
+    @Override
+    public String configurationKey() {
+        return getClass().getName() + "(" + teamA + new TreeSet<>(groupsA) + ", " + teamB + new TreeSet<>(groupsB)
+                + ", symmetric=" + symmetric + ")";
+    }
+
+    @Override
+    public ConstraintScope scope(DrawModel model) {
+        return ConstraintScope.teams(model, List.of(teamA, teamB));
+    }
+
+    /** Groups are told apart only by which of the two group sets they belong to. */
+    @Override
+    public int groupColour(DrawModel model, int groupId) {
+        Bound b = bind(model);
+        long slots = model.groupSlots(groupId);
+        return ((b.slotsA & slots) != 0 ? 1 : 0) | ((b.slotsB & slots) != 0 ? 2 : 0);
+    }
+
     @Override
     public void forwardCheck(AssignmentState state, GroupSlot slot, Team team) {
+        int s = state.slotId(slot);
+        int t = state.teamId(team);
+        if (s >= 0 && t >= 0)
+            forwardCheck(state, s, t);
+    }
+
+    @Override
+    public void forwardCheck(AssignmentState state, int slotId, int teamId) {
         // If teamA was placed into groupsA, prune teamB to groupsB; and vice-versa when
         // symmetric
-        if (team.getName().equals(this.teamA)) {
-            if (groupsA.contains(slot.getGroupName())) {
+        Bound b = bind(state.model());
+        long slotBit = 1L << slotId;
+        if (teamId == b.teamA) {
+            if ((b.slotsA & slotBit) != 0) {
                 // allow teamB only in groupsB
-                pruneTeamToGroups(state, teamB, groupsB);
-                System.out.println("Pruning teamB to groupsB: " + this.teamB + " -> " + this.groupsB);
+                pruneTeam(state, b.teamB, b.slotsB, false);
+            } else if (symmetric) {
+                // teamA outside groupsA: keep teamB out of groupsB
+                pruneTeam(state, b.teamB, b.slotsB, true);
             }
         }
 
-        if (team.getName().equals(this.teamB)) {
-            if (groupsB.contains(slot.getGroupName())) {
-                pruneTeamToGroups(state, teamA, groupsA);
-                System.out.println("Pruning teamA to groupsA: " + this.teamA + " -> " + this.groupsA);
-            }
-        }
-
-        // If symmetric, and the assigned team is in a group NOT in its allowed set,
-        // then prune the partner team to groups NOT in its allowed set
-        if (symmetric) {
-            if (team.getName().equals(this.teamA) && !groupsA.contains(slot.getGroupName())) {
-                // agent log
-                pruneTeamToGroupsExcluding(state, teamB, groupsB);
-                System.out.println("Symmetric pruning teamB excluding groupsB: " + this.teamB + " -> !" + this.groupsB);
-            } else if (team.getName().equals(this.teamB) && !groupsB.contains(slot.getGroupName())) {
-                // agent log
-                pruneTeamToGroupsExcluding(state, teamA, groupsA);
-                System.out.println("Symmetric pruning teamA excluding groupsA: " + this.teamA + " -> !" + this.groupsA);
+        if (teamId == b.teamB) {
+            if ((b.slotsB & slotBit) == 0) {
+                // teamB outside groupsB: teamA cannot be in groupsA either
+                pruneTeam(state, b.teamA, b.slotsA, true);
+            } else if (symmetric) {
+                pruneTeam(state, b.teamA, b.slotsA, false);
             }
         }
     }
 
-    private Team findAssigned(AssignmentState state, String teamName) {
-        for (var e : state.getAssignments().entrySet()) {
-            Team t = e.getValue();
-            if (t != null && t.getName().equals(teamName))
-                return t;
-        }
-        return null;
+    private static void pruneTeam(AssignmentState state, int t, long groupSlots, boolean removeInGroups) {
+        if (t < 0)
+            return;
+        long prune = removeInGroups ? groupSlots : ~groupSlots;
+        for (long m = state.candidateSlotBits(t) & state.unassignedSlotBits() & prune; m != 0; m &= m - 1)
+            state.removeFromDomain(Long.numberOfTrailingZeros(m), 1L << t);
     }
 
-    private String findGroupOf(AssignmentState state, String teamName) {
-        for (var e : state.getAssignments().entrySet()) {
-            Team t = e.getValue();
-            if (t != null && t.getName().equals(teamName))
-                return e.getKey().getGroupName();
-        }
-        return null;
-    }
+    /** Team ids and group slot masks resolved against one model. */
+    private static final class Bound {
+        final DrawModel model;
+        final int teamA;
+        final int teamB;
+        final long slotsA;
+        final long slotsB;
 
-    private void pruneTeamToGroups(AssignmentState state, String teamName, Set<String> allowedGroups) {
-        for (GroupSlot s : state.getUnassignedSlots()) {
-            state.getDomains().get(s)
-                    ;
-                    state.removeIfFromDomain(s, t -> t.getName().equals(teamName) && !allowedGroups.contains(s.getGroupName()));
+        Bound(DrawModel model, int teamA, int teamB, long slotsA, long slotsB) {
+            this.model = model;
+            this.teamA = teamA;
+            this.teamB = teamB;
+            this.slotsA = slotsA;
+            this.slotsB = slotsB;
         }
     }
 
-    private void pruneTeamToGroupsExcluding(AssignmentState state, String teamName, Set<String> excludedGroups) {
-        for (GroupSlot s : state.getUnassignedSlots()) {
-            state.getDomains().get(s)
-                    ;
-                    state.removeIfFromDomain(s, t -> t.getName().equals(teamName) && excludedGroups.contains(s.getGroupName()));
+    private Bound bind(DrawModel model) {
+        Bound b = bound;
+        if (b == null || b.model != model) {
+            b = new Bound(model, model.teamId(teamA), model.teamId(teamB),
+                    model.slotsInGroups(groupsA), model.slotsInGroups(groupsB));
+            bound = b;
         }
+        return b;
     }
 }
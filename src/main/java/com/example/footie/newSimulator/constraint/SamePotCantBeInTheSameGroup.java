@@ -1,9 +1,7 @@
 package com.example.footie.newSimulator.constraint;
 
-import java.util.Objects;
-import java.util.Set;
-
 import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.DrawModel;
 import com.example.footie.newSimulator.GroupSlot;
 import com.example.footie.newSimulator.Team;
 
@@ -15,30 +13,60 @@ public class SamePotCantBeInTheSameGroup implements Constraint {
             return true;
         }
 
-        return state.getAssignments().entrySet().stream()
-                .filter(e -> e.getKey() != null && e.getKey().getGroupName() != null)
-                .filter(e -> e.getKey().getGroupName().equals(slot.getGroupName()))
-                .map(e -> e.getValue())
-                .filter(Objects::nonNull)
-                .noneMatch(t -> t.pot() == team.pot());
+        DrawModel model = state.model();
+        int group = model.groupOf(slot);
+        return group < 0 || (state.groupPotMask(group) & model.potBit(team.pot())) == 0;
+    }
+
+    @Override
+    public boolean isAssignmentAllowed(AssignmentState state, int slotId, int teamId) {
+        DrawModel model = state.model();
+        return (state.groupPotMask(model.slotGroup(slotId)) & model.teamPotBit(teamId)) == 0;
+    }
+
+    @Override
+    public boolean compile(ConstraintTables tables) {
+        tables.separatePots();
+        return true;
+    }
+
+    @Override
+    public ConstraintScope scope(DrawModel model) {
+        return ConstraintScope.group();
+    }
+
+    @Override
+    public boolean isPairAllowed(AssignmentState state, int slotI, int teamI, int slotJ, int teamJ) {
+        DrawModel model = state.model();
+        int group = model.slotGroup(slotJ);
+        long pots = state.groupPotMask(group);
+        if (group == model.slotGroup(slotI))
+            pots |= model.teamPotBit(teamI);
+        return (pots & model.teamPotBit(teamJ)) == 0;
     }
 
     @Override
     public void forwardCheck(AssignmentState state, GroupSlot slot, Team team) {
-        // When a team is placed into a group, remove any teams from the same pot
-        // from the domains of other unassigned slots in the same group.
         if (slot == null || slot.getGroupName() == null || team == null) {
             return;
         }
+        int group = state.model().groupOf(slot);
+        if (group >= 0)
+            removePotFromGroup(state, group, team.pot());
+    }
 
-        state.getUnassignedSlots().stream()
-                .filter(s -> s != null && s.getGroupName() != null && s.getGroupName().equals(slot.getGroupName()))
-                .forEach(s -> {
-                    Set<Team> domain = state.getDomains(s);
-                    if (domain != null) {
-                        state.removeIfFromDomain(s, t -> t != null && t.pot() == team.pot());
-                    }
-                });
-    }   
+    @Override
+    public void forwardCheck(AssignmentState state, int slotId, int teamId) {
+        DrawModel model = state.model();
+        removePotFromGroup(state, model.slotGroup(slotId), model.teamPot(teamId));
+    }
+
+    // When a team is placed into a group, remove any teams from the same pot
+    // from the domains of other unassigned slots in the same group.
+    private static void removePotFromGroup(AssignmentState state, int group, int pot) {
+        long samePot = state.model().teamsInPot(pot);
+        for (long m = state.model().groupSlots(group) & state.unassignedSlotBits(); m != 0; m &= m - 1)
+            state.removeFromDomain(Long.numberOfTrailingZeros(m), samePot);
+    }
 
 }
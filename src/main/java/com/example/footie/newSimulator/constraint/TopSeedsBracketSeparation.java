@@ -1,10 +1,11 @@
 package com.example.footie.newSimulator.constraint;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.DrawModel;
 import com.example.footie.newSimulator.GroupSlot;
 import com.example.footie.newSimulator.Team;
 
@@ -29,6 +30,8 @@ public class TopSeedsBracketSeparation implements Constraint {
 
     // Pot 1 position rankings (assuming pot 1 teams are ranked 1-12, with top 4 being seeds 1-4)
     private final Map<String, Integer> teamRankings;
+    // resolved lazily for the model of the state being checked
+    private volatile Bound bound;
 
     public TopSeedsBracketSeparation(Map<String, Integer> teamRankings) {
         this.teamRankings = teamRankings;
@@ -36,38 +39,34 @@ public class TopSeedsBracketSeparation implements Constraint {
 
     @Override
     public boolean isAssignmentAllowed(AssignmentState state, GroupSlot slot, Team team) {
-        Integer rank = teamRankings.get(team.getName());
-        if (rank == null || rank > 4) {
+        int s = state.slotId(slot);
+        int t = state.teamId(team);
+        return s < 0 || t < 0 || isAssignmentAllowed(state, s, t);
+    }
+
+    @Override
+    public boolean isAssignmentAllowed(AssignmentState state, int slotId, int teamId) {
+        Bound b = bind(state.model());
+        int rank = b.teamRank[teamId];
+        if (rank == 0) {
             return true; // Only applies to top 4 seeds
         }
 
-        String group = slot.getGroupName();
-        int quarter = getQuarter(group);
-        int half = getHalf(group);
+        int quarter = b.slotQuarter[slotId];
+        int half = b.slotHalf[slotId];
 
         // Check constraints against already-assigned top seeds
-        for (Map.Entry<GroupSlot, Team> entry : state.getAssignments().entrySet()) {
-            if (entry.getValue() == null) continue;
-            
-            Integer otherRank = teamRankings.get(entry.getValue().getName());
-            if (otherRank == null || otherRank > 4) continue;
-            
-            String otherGroup = entry.getKey().getGroupName();
-            int otherQuarter = getQuarter(otherGroup);
-            int otherHalf = getHalf(otherGroup);
+        for (long m = b.seeds & ~state.unassignedTeamBits(); m != 0; m &= m - 1) {
+            int other = Long.numberOfTrailingZeros(m);
+            int otherSlot = state.assignedSlot(other);
 
             // All top 4 seeds must be in different quarters
-            if (quarter == otherQuarter) {
-                return false;
-            }
-
-            // Seeds 1-2 must be in opposite halves
-            if ((rank <= 2 && otherRank <= 2) && half == otherHalf) {
+            if (quarter != 0 && quarter == b.slotQuarter[otherSlot]) {
                 return false;
             }
 
-            // Seeds 3-4 must be in opposite halves
-            if ((rank >= 3 && rank <= 4) && (otherRank >= 3 && otherRank <= 4) && half == otherHalf) {
+            // Seeds 1-2 and seeds 3-4 must be in opposite halves
+            if (half != 0 && sameHalfPair(rank, b.teamRank[other]) && half == b.slotHalf[otherSlot]) {
                 return false;
             }
         }
@@ -76,52 +75,130 @@ public class TopSeedsBracketSeparation implements Constraint {
     }
 
     @Override
-    public void forwardCheck(AssignmentState state, GroupSlot slot, Team team) {
-        Integer rank = teamRankings.get(team.getName());
-        if (rank == null || rank > 4) {
-            return; // Only applies to top 4 seeds
-        }
-
-        String assignedGroup = slot.getGroupName();
-        int assignedQuarter = getQuarter(assignedGroup);
-        int assignedHalf = getHalf(assignedGroup);
+    public String configurationKey() {
+        return getClass().getName() + new TreeMap<>(teamRankings);
+    }
 
-        // Prune domains of other top seeds based on this assignment
-        for (String otherTeamName : teamRankings.keySet()) {
-            Integer otherRank = teamRankings.get(otherTeamName);
-            if (otherRank == null || otherRank > 4 || otherTeamName.equals(team.getName())) {
-                continue;
+    /**
+     * A seed in a quarter keeps the other seeds out of it, and out of its
+     * half when they are the other seed of its 1-2 or 3-4 pair.
+     */
+    @Override
+    public boolean compile(ConstraintTables tables) {
+        Bound b = bind(tables.model());
+        for (long m = b.seeds; m != 0; m &= m - 1) {
+            int seed = Long.numberOfTrailingZeros(m);
+            long others = b.seeds & ~(1L << seed);
+            long pair = 0L;
+            for (long n = others; n != 0; n &= n - 1) {
+                int other = Long.numberOfTrailingZeros(n);
+                if (sameHalfPair(b.teamRank[seed], b.teamRank[other]))
+                    pair |= 1L << other;
             }
+            for (int q = 1; q < b.quarterSlots.length; q++)
+                tables.restrictWhen(seed, b.quarterSlots[q], others, ~b.quarterSlots[q]);
+            for (int h = 1; h < b.halfSlots.length; h++)
+                tables.restrictWhen(seed, b.halfSlots[h], pair, ~b.halfSlots[h]);
+        }
+        return true;
+    }
 
-            if (state.isTeamAssigned(state.getAllTeams().get(otherTeamName))) {
-                continue; // Already assigned
-            }
+    /** Only the top four seeds are constrained. */
+    @Override
+    public ConstraintScope scope(DrawModel model) {
+        return ConstraintScope.teams(bind(model).seeds);
+    }
+
+    /** Groups of one quarter are interchangeable; the quarter also fixes the half. */
+    @Override
+    public int groupColour(DrawModel model, int groupId) {
+        Bound b = bind(model);
+        return b.seeds == 0 ? 0 : b.slotQuarter[Long.numberOfTrailingZeros(model.groupSlots(groupId))];
+    }
 
-            Set<String> forbiddenGroups = new HashSet<>();
+    @Override
+    public void forwardCheck(AssignmentState state, GroupSlot slot, Team team) {
+        int s = state.slotId(slot);
+        int t = state.teamId(team);
+        if (s >= 0 && t >= 0)
+            forwardCheck(state, s, t);
+    }
 
-            // Remove same quarter (all top 4 must be in different quarters)
-            forbiddenGroups.addAll(getQuarterGroups(assignedQuarter));
+    @Override
+    public void forwardCheck(AssignmentState state, int slotId, int teamId) {
+        Bound b = bind(state.model());
+        int rank = b.teamRank[teamId];
+        if (rank == 0) {
+            return; // Only applies to top 4 seeds
+        }
 
-            // If this is seed 1 or 2, and other is seed 1 or 2, remove same half
-            if (rank <= 2 && otherRank <= 2) {
-                forbiddenGroups.addAll(getHalfGroups(assignedHalf));
-            }
+        // Remove same quarter (all top 4 must be in different quarters), and
+        // the same half for the other seed of the 1-2 or 3-4 pair
+        long quarterSlots = b.quarterSlots[b.slotQuarter[slotId]];
+        long halfSlots = b.halfSlots[b.slotHalf[slotId]];
+        for (long m = b.seeds & state.unassignedTeamBits() & ~(1L << teamId); m != 0; m &= m - 1) {
+            int other = Long.numberOfTrailingZeros(m);
+            long forbidden = quarterSlots | (sameHalfPair(rank, b.teamRank[other]) ? halfSlots : 0L);
+            for (long n = state.candidateSlotBits(other) & state.unassignedSlotBits() & forbidden; n != 0; n &= n - 1)
+                state.removeFromDomain(Long.numberOfTrailingZeros(n), 1L << other);
+        }
+    }
 
-            // If this is seed 3 or 4, and other is seed 3 or 4, remove same half
-            if (rank >= 3 && rank <= 4 && otherRank >= 3 && otherRank <= 4) {
-                forbiddenGroups.addAll(getHalfGroups(assignedHalf));
-            }
+    private static boolean sameHalfPair(int rank, int otherRank) {
+        return (rank <= 2 && otherRank <= 2) || (rank >= 3 && otherRank >= 3);
+    }
 
-            // Prune domains
-            for (GroupSlot s : state.getUnassignedSlots()) {
-                if (forbiddenGroups.contains(s.getGroupName())) {
-                    state.removeTeamFromDomain(s, otherTeamName);
+    /**
+     * Seed ranks and bracket positions resolved against one model. Quarter
+     * and half 0 stand for groups outside the bracket, which forbid nothing.
+     */
+    private static final class Bound {
+        final DrawModel model;
+        final long seeds;
+        final int[] teamRank;
+        final int[] slotQuarter;
+        final int[] slotHalf;
+        final long[] quarterSlots = new long[5];
+        final long[] halfSlots = new long[3];
+
+        Bound(DrawModel model, Map<String, Integer> rankings) {
+            this.model = model;
+            this.teamRank = new int[model.teamCount()];
+            long seeds = 0L;
+            for (Map.Entry<String, Integer> e : rankings.entrySet()) {
+                int t = model.teamId(e.getKey());
+                Integer rank = e.getValue();
+                if (t >= 0 && rank != null && rank >= 1 && rank <= 4) {
+                    teamRank[t] = rank;
+                    seeds |= 1L << t;
                 }
             }
+            this.seeds = seeds;
+
+            this.slotQuarter = new int[model.slotCount()];
+            this.slotHalf = new int[model.slotCount()];
+            for (int s = 0; s < model.slotCount(); s++) {
+                String group = model.slot(s).getGroupName();
+                slotQuarter[s] = Math.max(0, getQuarter(group));
+                slotHalf[s] = Math.max(0, getHalf(group));
+                if (slotQuarter[s] > 0)
+                    quarterSlots[slotQuarter[s]] |= 1L << s;
+                if (slotHalf[s] > 0)
+                    halfSlots[slotHalf[s]] |= 1L << s;
+            }
+        }
+    }
+
+    private Bound bind(DrawModel model) {
+        Bound b = bound;
+        if (b == null || b.model != model) {
+            b = new Bound(model, teamRankings);
+            bound = b;
         }
+        return b;
     }
 
-    private int getQuarter(String group) {
+    private static int getQuarter(String group) {
         if (QUARTER_1.contains(group)) return 1;
         if (QUARTER_2.contains(group)) return 2;
         if (QUARTER_3.contains(group)) return 3;
@@ -129,23 +206,9 @@ public class TopSeedsBracketSeparation implements Constraint {
         return -1;
     }
 
-    private int getHalf(String group) {
+    private static int getHalf(String group) {
         if (HALF_1.contains(group)) return 1;
         if (HALF_2.contains(group)) return 2;
         return -1;
     }
-
-    private Set<String> getQuarterGroups(int quarter) {
-        return switch (quarter) {
-            case 1 -> QUARTER_1;
-            case 2 -> QUARTER_2;
-            case 3 -> QUARTER_3;
-            case 4 -> QUARTER_4;
-            default -> Set.of();
-        };
-    }
-
-    private Set<String> getHalfGroups(int half) {
-        return half == 1 ? HALF_1 : HALF_2;
-    }
 }
@@ -1,8 +1,11 @@
 package com.example.footie.newSimulator.constraint;
 
+import java.util.HashSet;
 import java.util.Set;
+import java.util.TreeSet;
 
 import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.DrawModel;
 import com.example.footie.newSimulator.GroupSlot;
 import com.example.footie.newSimulator.Team;
 
@@ -16,6 +19,8 @@ public class TriggerAnyTeamInGroupsConstraint implements Constraint {
     private final Set<String> triggerGroups;
     private final Set<String> requiredTeams;
     private final Set<String> requiredGroups;
+    // resolved lazily for the model of the state being checked
+    private volatile Bound bound;
 
     public TriggerAnyTeamInGroupsConstraint(String triggerTeam, Set<String> triggerGroups, Set<String> requiredTeams,
             Set<String> requiredGroups) {
@@ -27,45 +32,110 @@ public class TriggerAnyTeamInGroupsConstraint implements Constraint {
 
     @Override
     public boolean isAssignmentAllowed(AssignmentState state, GroupSlot slot, Team team) {
-        String group = slot.getGroupName();
-
         // If assigning a required team while trigger already placed in triggerGroups,
         // that required team must be assigned into requiredGroups.
-        if (requiredTeams.contains(team.getName())) {
-            String triggerGroup = findGroupOf(state, triggerTeam);
-            if (triggerGroup != null && triggerGroups.contains(triggerGroup)) {
-                // trigger active -> required team must be in requiredGroups
-                if (!requiredGroups.contains(group))
-                    return false;
-            }
-        }
+        if (requiredTeams.contains(team.getName()) && isTriggered(state, bind(state.model())))
+            return requiredGroups.contains(slot.getGroupName());
 
         // Assigning trigger team is allowed; forwardCheck will prune required teams'
         // domains
         return true;
     }
 
+    @Override
+    public boolean isAssignmentAllowed(AssignmentState state, int slotId, int teamId) {
+        Bound b = bind(state.model());
+        if ((b.requiredTeams & (1L << teamId)) != 0 && isTriggered(state, b))
+            return (b.requiredSlots & (1L << slotId)) != 0;
+        return true;
+    }
+
+    /** Whether the trigger team is already placed in one of the trigger groups. */
+    private static boolean isTriggered(AssignmentState state, Bound b) {
+        int slot = b.trigger >= 0 ? state.assignedSlot(b.trigger) : -1;
+        return slot >= 0 && (b.triggerSlots & (1L << slot)) != 0;
+    }
+
+    @Override
+    public boolean compile(ConstraintTables tables) {
+        Bound b = bind(tables.model());
+        tables.restrictWhen(b.trigger, b.triggerSlots, b.requiredTeams, b.requiredSlots);
+        return true;
+    }
+
+    @Override
+    public String configurationKey() {
+        return getClass().getName() + "(" + triggerTeam + new TreeSet<>(triggerGroups) + ", "
+                + new TreeSet<>(requiredTeams) + new TreeSet<>(requiredGroups) + ")";
+    }
+
+    @Override
+    public ConstraintScope scope(DrawModel model) {
+        Set<String> teams = new HashSet<>(requiredTeams);
+        teams.add(triggerTeam);
+        return ConstraintScope.teams(model, teams);
+    }
+
+    /** Groups are told apart only by membership of the trigger and required groups. */
+    @Override
+    public int groupColour(DrawModel model, int groupId) {
+        Bound b = bind(model);
+        long slots = model.groupSlots(groupId);
+        return ((b.triggerSlots & slots) != 0 ? 1 : 0) | ((b.requiredSlots & slots) != 0 ? 2 : 0);
+    }
+
     @Override
     public void forwardCheck(AssignmentState state, GroupSlot slot, Team team) {
+        int s = state.slotId(slot);
+        int t = state.teamId(team);
+        if (s >= 0 && t >= 0)
+            forwardCheck(state, s, t);
+    }
+
+    @Override
+    public void forwardCheck(AssignmentState state, int slotId, int teamId) {
         // If trigger team assigned into triggerGroups, prune domains of requiredTeams
-        if (!team.getName().equals(triggerTeam))
-            return;
-        if (!triggerGroups.contains(slot.getGroupName()))
+        Bound b = bind(state.model());
+        if (teamId != b.trigger || (b.triggerSlots & (1L << slotId)) == 0)
             return;
 
-        for (GroupSlot s : state.getUnassignedSlots()) {
-            state.getDomains().get(s)
-                    ;
-                    state.removeIfFromDomain(s, t -> requiredTeams.contains(t.getName()) && !requiredGroups.contains(s.getGroupName()));
+        for (long r = b.requiredTeams; r != 0; r &= r - 1) {
+            int t = Long.numberOfTrailingZeros(r);
+            for (long m = state.candidateSlotBits(t) & state.unassignedSlotBits() & ~b.requiredSlots; m != 0; m &= m - 1)
+                state.removeFromDomain(Long.numberOfTrailingZeros(m), 1L << t);
         }
     }
 
-    private String findGroupOf(AssignmentState state, String teamName) {
-        for (var e : state.getAssignments().entrySet()) {
-            Team t = e.getValue();
-            if (t != null && t.getName().equals(teamName))
-                return e.getKey().getGroupName();
+    /** Team ids and group slot masks resolved against one model. */
+    private static final class Bound {
+        final DrawModel model;
+        final int trigger;
+        final long triggerSlots;
+        final long requiredTeams;
+        final long requiredSlots;
+
+        Bound(DrawModel model, int trigger, long triggerSlots, long requiredTeams, long requiredSlots) {
+            this.model = model;
+            this.trigger = trigger;
+            this.triggerSlots = triggerSlots;
+            this.requiredTeams = requiredTeams;
+            this.requiredSlots = requiredSlots;
+        }
+    }
+
+    private Bound bind(DrawModel model) {
+        Bound b = bound;
+        if (b == null || b.model != model) {
+            long required = 0L;
+            for (String name : requiredTeams) {
+                int t = model.teamId(name);
+                if (t >= 0)
+                    required |= 1L << t;
+            }
+            b = new Bound(model, model.teamId(triggerTeam), model.slotsInGroups(triggerGroups),
+                    required, model.slotsInGroups(requiredGroups));
+            bound = b;
         }
-        return null;
+        return b;
     }
 }
@@ -6,84 +6,305 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 
 import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.BacktrackingSolver;
+import com.example.footie.newSimulator.DrawModel;
+import com.example.footie.newSimulator.DrawResultCache;
+import com.example.footie.newSimulator.FeasibilityCache;
 import com.example.footie.newSimulator.GroupSlot;
+import com.example.footie.newSimulator.Hashing;
+import com.example.footie.newSimulator.MonteCarloDraws;
+import com.example.footie.newSimulator.PortfolioSolver;
+import com.example.footie.newSimulator.RestartPolicy;
+import com.example.footie.newSimulator.SearchTrace;
+import com.example.footie.newSimulator.SearchTraceDecoder;
 import com.example.footie.newSimulator.Simulator;
+import com.example.footie.newSimulator.SolverStats;
 import com.example.footie.newSimulator.Team;
 import com.example.footie.newSimulator.TeamFactory;
+import com.example.footie.newSimulator.ValueOrdering;
+import com.example.footie.newSimulator.VariableOrdering;
 import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
 import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
 import com.example.footie.newSimulator.constraint.ConstraintManager;
 import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
 import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
 
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+@Slf4j
 @Service
 public class DrawService {
-    private final TeamService teamRepository;
+    /** Largest portfolio a single draw may ask for. */
+    public static final int MAX_PORTFOLIO = 16;
+    /** Largest number of draws a single Monte Carlo run may ask for. */
+    public static final long MAX_MONTE_CARLO_DRAWS = 10_000_000L;
 
-    public DrawService(TeamService teamRepository) {
+    private final TeamService teamRepository;
+    private final SolverMetrics solverMetrics;
+    // portfolio members and Monte Carlo workers of all requests share one
+    // thread per core; daemon threads, so a running draw does not hold up
+    // shutdown
+    private final ExecutorService solverPool;
+    // states known to complete or to fail, shared by every unseeded draw and
+    // portfolio member; they all use newConstraints()
+    private final FeasibilityCache feasibilityCache = new FeasibilityCache(1 << 17);
+    // seeded draws already solved, answered again on every repeated request
+    private final DrawResultCache<Map<String, List<Team>>> drawResults = new DrawResultCache<>(1024);
+
+    public DrawService(TeamService teamRepository, SolverMetrics solverMetrics) {
         this.teamRepository = teamRepository;
+        this.solverMetrics = solverMetrics;
+        AtomicInteger threads = new AtomicInteger();
+        this.solverPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "draw-solver-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     public Mono<Map<String, List<Team>>> runDraw() {
+        return runDraw(VariableOrdering.INPUT_ORDER, ValueOrdering.GROUP_ORDER);
+    }
+
+    /**
+     * Run a draw with the given search heuristics. The defaults follow the
+     * ceremony; see {@link VariableOrdering} for what the others change.
+     */
+    public Mono<Map<String, List<Team>>> runDraw(VariableOrdering variables, ValueOrdering values) {
+        return runDraw(variables, values, 1);
+    }
+
+    /**
+     * As {@link #runDraw(VariableOrdering, ValueOrdering)}, racing
+     * {@code portfolio} differently seeded solvers across the cores and
+     * keeping the first draw found; see {@link PortfolioSolver}. A portfolio
+     * of 1 is the plain single solver.
+     */
+    public Mono<Map<String, List<Team>>> runDraw(VariableOrdering variables, ValueOrdering values, int portfolio) {
+        return runDraw(variables, values, portfolio, null);
+    }
+
+    /**
+     * As {@link #runDraw(VariableOrdering, ValueOrdering, int)}; a non-null
+     * {@code seed} makes every random choice of the solver follow from it, so
+     * the same seed gives the same draw of the same teams. Seeded draws are
+     * kept in a {@link DrawResultCache} and repeated requests are answered
+     * from it. A seed needs a portfolio of 1: a race keeps whichever member
+     * finishes first, so the draw would depend on timing.
+     */
+    public Mono<Map<String, List<Team>>> runDraw(VariableOrdering variables, ValueOrdering values, int portfolio,
+            Long seed) {
         // Flux<Team> teams = this.teamRepository.getRandomWorldCupTeams(48);
         Flux<Team> teams = getWorldCupTeams();
 
         return teams.collectList()
                 .defaultIfEmpty(TeamFactory.createWorldCupTeams(4))
-                .flatMap(list -> Mono.fromCallable(() -> doRun(list)).subscribeOn(Schedulers.boundedElastic()));
+                .flatMap(list -> Mono.fromCallable(() -> doRun(list, variables, values, portfolio, seed))
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    /**
+     * As {@link #runDraw(VariableOrdering, ValueOrdering, int)}, answering
+     * the groups together with the {@link SolverStats} of the solver that
+     * found them: {@code groups} and {@code stats}, the latter null when no
+     * draw was found. With {@code trace} set the search is also recorded,
+     * see {@link SearchTrace}, and decoded under {@code trace}.
+     */
+    public Mono<Map<String, Object>> runDrawWithStats(VariableOrdering variables, ValueOrdering values,
+            int portfolio, boolean trace) {
+        return getWorldCupTeams().collectList()
+                .defaultIfEmpty(TeamFactory.createWorldCupTeams(4))
+                .flatMap(list -> Mono.fromCallable(() -> {
+                    List<GroupSlot> slots = buildWorldCupSlots();
+                    SearchTrace searchTrace = trace ? new SearchTrace() : null;
+                    Simulator simulator = solveDraw(list, slots, variables, values, portfolio, searchTrace, null);
+                    Map<String, Object> response = new LinkedHashMap<>();
+                    response.put("groups", groups(slots, simulator));
+                    response.put("stats", simulator != null ? simulator.getStats().toMap() : null);
+                    if (searchTrace != null)
+                        response.put("trace", new SearchTraceDecoder(new DrawModel(slots, list)).toMaps(searchTrace));
+                    return response;
+                }).subscribeOn(Schedulers.boundedElastic()));
     }
 
     public Mono<Map<String, List<Team>>> runDrawRandomTeams(List<Team> teams) {
+        return runDrawRandomTeams(teams, VariableOrdering.INPUT_ORDER, ValueOrdering.GROUP_ORDER);
+    }
+
+    public Mono<Map<String, List<Team>>> runDrawRandomTeams(List<Team> teams, VariableOrdering variables,
+            ValueOrdering values) {
+        return runDrawRandomTeams(teams, variables, values, 1);
+    }
+
+    public Mono<Map<String, List<Team>>> runDrawRandomTeams(List<Team> teams, VariableOrdering variables,
+            ValueOrdering values, int portfolio) {
+        return runDrawRandomTeams(teams, variables, values, portfolio, null);
+    }
+
+    /**
+     * As {@link #runDraw(VariableOrdering, ValueOrdering, int, Long)} on a
+     * random selection of teams; the seed drives the draw, not the selection.
+     */
+    public Mono<Map<String, List<Team>>> runDrawRandomTeams(List<Team> teams, VariableOrdering variables,
+            ValueOrdering values, int portfolio, Long seed) {
         Flux<Team> teamsFlux = teamRepository.getRandomWorldCupTeams(48, Math.random() < 0.5);
         return teamsFlux.collectList()
                 .defaultIfEmpty(TeamFactory.createWorldCupTeams(4))
-                .flatMap(list -> Mono.fromCallable(() -> doRun(list)).subscribeOn(Schedulers.boundedElastic()));
+                .flatMap(list -> Mono.fromCallable(() -> doRun(list, variables, values, portfolio, seed))
+                        .subscribeOn(Schedulers.boundedElastic()));
     }
 
-    private Map<String, List<Team>> doRun(List<Team> teams) {
-        System.out.println("Running draw with teams: "
-                + teams.stream().map(t -> t.getName() + " (" + t.pot() + ")").collect(Collectors.joining(", ")));
-        System.out.println("Total teams: " + teams.size());
-        List<GroupSlot> slots = buildWorldCupSlots();
+    /**
+     * Estimate team-in-group and same-group probabilities of the ceremony
+     * draw from {@code draws} complete draws, solved in parallel with one
+     * worker per core; see {@link MonteCarloDraws}. Progress is logged as the
+     * run goes.
+     */
+    public Mono<Map<String, Object>> runMonteCarlo(long draws) {
+        return getWorldCupTeams().collectList()
+                .defaultIfEmpty(TeamFactory.createWorldCupTeams(4))
+                .flatMap(list -> Mono.fromCallable(() -> doMonteCarlo(list, draws))
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
 
-        ConstraintManager cm = new ConstraintManager();
-        cm.addConstraint(new AllDifferent());
-        cm.addConstraint(new SamePotCantBeInTheSameGroup());
-        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
-        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
-        // cm.addConstraint(new TopSeedsBracketSeparation(Map.of(
-        // "Argentina", 1,
-        // "Spain", 2,
-        // "France", 3,
-        // "England", 4
-        // )));
+    private Map<String, Object> doMonteCarlo(List<Team> teams, long draws) throws InterruptedException {
+        DrawModel model = new DrawModel(buildWorldCupSlots(), teams);
+        Map<GroupSlot, Team> hosts = new LinkedHashMap<>();
+        Map<String, String> hostSlots = Map.of("Mexico", "A", "Canada", "B", "USA", "D");
+        for (Team t : teams) {
+            String group = hostSlots.get(t.getName());
+            if (group != null)
+                hosts.put(new GroupSlot(group, 1), t);
+        }
+        int workers = Runtime.getRuntime().availableProcessors();
+        MonteCarloDraws.Result result = new MonteCarloDraws(model, hosts, this::newSolver, solverPool)
+                .run(draws, workers, ThreadLocalRandom.current().nextLong(), Math.max(1_000L, draws / 10),
+                        r -> log.info(String.format("Monte Carlo: %d/%d draws, %d failed, %.0f draws/sec, max standard error %.5f",
+                                r.draws() + r.failed(), draws, r.failed(), r.drawsPerSecond(), r.maxStandardError())));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("draws", result.draws());
+        response.put("failed", result.failed());
+        response.put("drawsPerSecond", result.drawsPerSecond());
+        response.put("maxStandardError", result.maxStandardError());
+        response.put("groups", result.groupProbabilities());
+        response.put("together", result.togetherProbabilities());
+        return response;
+    }
 
-        Simulator simulator = new Simulator(slots, cm, teams);
-        simulator.setOnlyCheckDomainAfter(28);
+    private Map<String, List<Team>> doRun(List<Team> teams) throws InterruptedException {
+        return doRun(teams, VariableOrdering.INPUT_ORDER, ValueOrdering.GROUP_ORDER, 1, null);
+    }
 
-        boolean solved = false;
-        try {
-            solved = simulator.solveWorldCup2026Draw();
+    private Map<String, List<Team>> doRun(List<Team> teams, VariableOrdering variables, ValueOrdering values,
+            int portfolio, Long seed) throws InterruptedException {
+        if (seed != null && portfolio > 1)
+            throw new IllegalArgumentException("A seeded draw cannot race a portfolio: " + portfolio);
+        List<GroupSlot> slots = buildWorldCupSlots();
+        if (seed == null)
+            return groups(slots, solveDraw(teams, slots, variables, values, portfolio, null, null));
+
+        // the draw must not depend on the order the teams were loaded in
+        List<Team> ordered = DrawResultCache.canonicalOrder(teams);
+        DrawResultCache.Key key = new DrawResultCache.Key(seed, DrawResultCache.teamSetHash(ordered),
+                Hashing.of(newConstraints().configurationKey(), variables, values, portfolio));
+        Map<String, List<Team>> cached = drawResults.get(key);
+        if (cached != null) {
+            log.debug("Draw for seed {} served from the result cache", seed);
+            return cached;
+        }
+        Simulator simulator = solveDraw(ordered, slots, variables, values, portfolio, null, seed);
+        Map<String, List<Team>> grouped = groups(slots, simulator);
+        if (simulator == null)
+            return grouped;
+        // shared by every later request for the seed, so nobody may change it;
+        // positions left empty stay null, which List.copyOf would refuse
+        Map<String, List<Team>> frozen = new TreeMap<>();
+        grouped.forEach((group, teamsInGroup) -> frozen.put(group,
+                Collections.unmodifiableList(new ArrayList<>(teamsInGroup))));
+        cached = Collections.unmodifiableMap(frozen);
+        drawResults.put(key, cached);
+        return cached;
+    }
 
-        } catch (RuntimeException e) {
-            solved = simulator.solveWorldCup2026Draw();
-            System.out.println("Failed to set max nodes: " + e.getMessage());
+    /**
+     * Solve a draw, racing a portfolio when asked to; the solving simulator,
+     * or null when none found a draw. The stats of every solve, won, lost or
+     * failed, are published as metrics.
+     * Every solver records into {@code trace} unless it is null; a single
+     * solver draws from {@code seed} unless it is null. Emits the DrawRequested and
+     * DrawCompleted flight recorder events.
+     */
+    private Simulator solveDraw(List<Team> teams, List<GroupSlot> slots, VariableOrdering variables,
+            ValueOrdering values, int portfolio, SearchTrace trace, Long seed) throws InterruptedException {
+        if (log.isDebugEnabled())
+            log.debug("Running draw with {} teams: {}", teams.size(),
+                    teams.stream().map(t -> t.getName() + " (" + t.pot() + ")").collect(Collectors.joining(", ")));
+
+        FlightEvents.DrawRequested requested = new FlightEvents.DrawRequested();
+        if (requested.shouldCommit()) {
+            requested.teams = teams.size();
+            requested.portfolio = portfolio;
+            requested.variableOrdering = variables.name();
+            requested.valueOrdering = values.name();
+            requested.commit();
+        }
+        FlightEvents.DrawCompleted completed = new FlightEvents.DrawCompleted();
+        completed.begin();
+
+        Simulator simulator = null;
+        try {
+            if (portfolio > 1) {
+                // never seeded: see runDraw
+                simulator = new PortfolioSolver(solverPool).solve(portfolio,
+                        i -> newSimulator(slots, teams, variables, values, trace, null), this::solve,
+                        ThreadLocalRandom.current().nextLong());
+            } else {
+                simulator = newSimulator(slots, teams, variables, values, trace, seed);
+                if (!solve(simulator))
+                    simulator = null;
+            }
+            if (simulator != null)
+                log.debug("Draw solved: {}", simulator.getStats());
+            return simulator;
+        } finally {
+            completed.end();
+            if (completed.shouldCommit()) {
+                completed.solved = simulator != null;
+                completed.portfolio = portfolio;
+                if (simulator != null) {
+                    SolverStats stats = simulator.getStats();
+                    completed.nodes = stats.nodes();
+                    completed.backtracks = stats.backtracks();
+                    completed.restarts = stats.restarts();
+                }
+                completed.commit();
+            }
         }
+    }
 
+    /** Teams of every group by position; empty when there is no draw. */
+    private static Map<String, List<Team>> groups(List<GroupSlot> slots, Simulator simulator) {
         Map<String, List<Team>> grouped = new TreeMap<>();
-        if (!solved)
+        if (simulator == null)
             return grouped;
 
         AssignmentState state = simulator.getState();
@@ -116,6 +337,94 @@ public class DrawService {
         return grouped;
     }
 
+    /**
+     * A simulator configured like the ceremony draw, with its own constraint
+     * manager and state. A seeded one does not share the feasibility cache:
+     * what the other draws left in it changes which runs restart, and so the
+     * draw found.
+     */
+    private Simulator newSimulator(List<GroupSlot> slots, List<Team> teams, VariableOrdering variables,
+            ValueOrdering values, SearchTrace trace, Long seed) {
+        Simulator simulator = new Simulator(slots, newConstraints(), teams);
+        simulator.setOnlyCheckDomainAfter(28);
+        simulator.setVariableOrdering(variables);
+        simulator.setValueOrdering(values);
+        // a backtrack-free draw visits ~46 nodes; restart runs that take much
+        // longer instead of waiting out the heavy tail of a single search
+        simulator.setMaxNodes(0);
+        simulator.setRestartPolicy(RestartPolicy.luby(100, 64));
+        // skip straight back past placements a wipeout does not depend on,
+        // and keep the failed states for the next runs
+        simulator.setBackjumping(true);
+        if (seed != null)
+            simulator.setRandom(new Random(seed));
+        else
+            simulator.setFeasibilityCache(feasibilityCache);
+        simulator.setStats(new SolverStats());
+        simulator.setTrace(trace);
+        return simulator;
+    }
+
+    /**
+     * A solver configured like {@link #newSimulator}'s, for the Monte Carlo
+     * workers. Each has a feasibility cache of its own: like a seeded draw,
+     * a worker must not find other draws' states in it, or the tallies of a
+     * seed would depend on earlier traffic.
+     */
+    private BacktrackingSolver newSolver() {
+        BacktrackingSolver solver = new BacktrackingSolver(newConstraints());
+        solver.setOnlyCheckDomainAfter(28);
+        solver.setMaxNodes(0);
+        solver.setRestartPolicy(RestartPolicy.luby(100, 64));
+        solver.setBackjumping(true);
+        solver.setFeasibilityCache(new FeasibilityCache(1 << 14));
+        // the probabilities are those of the ceremony's group order; keep the
+        // search exactly as the ceremony-order solver runs it
+        solver.setSymmetryBreaking(false);
+        solver.setGroupRelabelling(false);
+        return solver;
+    }
+
+    private static ConstraintManager newConstraints() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        // cross-group pairs are covered by the Régin all-different propagator
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        // cm.addConstraint(new TopSeedsBracketSeparation(Map.of(
+        // "Argentina", 1,
+        // "Spain", 2,
+        // "France", 3,
+        // "England", 4
+        // )));
+        return cm;
+    }
+
+    /**
+     * Run the simulator's draw and publish its stats whatever came of it, on
+     * the thread that solved, so every portfolio member is counted once its
+     * search has stopped.
+     */
+    private boolean solve(Simulator simulator) {
+        SolverMetrics.Outcome outcome = SolverMetrics.Outcome.ERROR;
+        try {
+            boolean solved = simulator.solveWorldCup2026Draw();
+            outcome = solved ? SolverMetrics.Outcome.SOLVED : SolverMetrics.Outcome.FAILED;
+            return solved;
+        } catch (CancellationException e) {
+            // another portfolio member found a draw first
+            outcome = SolverMetrics.Outcome.CANCELLED;
+            return false;
+        } catch (RuntimeException e) {
+            log.warn("Draw failed after {} restarts: {}", simulator.getRestarts(), e.getMessage());
+            return false;
+        } finally {
+            solverMetrics.record(simulator.getStats(), outcome);
+        }
+    }
+
     private Flux<Team> getWorldCupTeams() {
         List<Team> teams = TeamFactory.createWorldCupTeams(4);
         return teamRepository.findAll().collectList()
@@ -180,7 +489,7 @@ public class DrawService {
     private List<Map<String, Object>> createGroups(Map<String, Team> teamsMap) {
         List<Map<String, Object>> groups = new ArrayList<>();
 
-        teamsMap.values().forEach(t -> System.out.println("Team in DB: " + t.getCode() + " - " + t.getName()));
+        teamsMap.values().forEach(t -> log.debug("Team in DB: {} - {}", t.getCode(), t.getName()));
         
         List<String> teamCodes = new ArrayList<>(teamsMap.keySet());
         int teamsPerGroup = 4;
@@ -0,0 +1,69 @@
+package com.example.footie.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events of the draw pipeline and the match simulation,
+ * next to the solver's own (footie.SearchNode, footie.Backtrack,
+ * footie.ConsistencyCheck). Each is created, checked with
+ * {@code shouldCommit()} and only then filled in, so a disabled event
+ * costs the check alone.
+ */
+final class FlightEvents {
+
+    private FlightEvents() {
+    }
+
+    @Name("footie.DrawRequested")
+    @Label("Draw Requested")
+    @Category({ "Footie", "Draw" })
+    @Description("A draw handed to the solver")
+    @StackTrace(false)
+    static final class DrawRequested extends Event {
+        @Label("Teams")
+        int teams;
+        @Label("Portfolio")
+        int portfolio;
+        @Label("Variable Ordering")
+        String variableOrdering;
+        @Label("Value Ordering")
+        String valueOrdering;
+    }
+
+    @Name("footie.DrawCompleted")
+    @Label("Draw Completed")
+    @Category({ "Footie", "Draw" })
+    @Description("A draw from request to solution or failure")
+    @StackTrace(false)
+    static final class DrawCompleted extends Event {
+        @Label("Solved")
+        boolean solved;
+        @Label("Portfolio")
+        int portfolio;
+        @Label("Nodes")
+        long nodes;
+        @Label("Backtracks")
+        long backtracks;
+        @Label("Restarts")
+        long restarts;
+    }
+
+    @Name("footie.MatchTick")
+    @Label("Match Tick")
+    @Category({ "Footie", "Match Simulation" })
+    @Description("One simulated minute of a match")
+    @StackTrace(false)
+    static final class MatchTick extends Event {
+        @Label("Match Id")
+        String matchId;
+        @Label("Minute")
+        int minute;
+        @Label("Events")
+        int events;
+    }
+}
@@ -62,6 +62,8 @@ public class MatchSimulationService {
                 .take(95) // 90 minutes + injury time
                 .flatMap(tick -> {
                     int minute = tick.intValue() + 1;
+                    FlightEvents.MatchTick tickEvent = new FlightEvents.MatchTick();
+                    tickEvent.begin();
                     matchState.setCurrentMinute(minute);
 
                     // Update match status based on minute
@@ -69,6 +71,7 @@ public class MatchSimulationService {
 
                     // Generate random events for this minute
                     List<MatchEvent> events = generateMinuteEvents(matchState, minute);
+                    commitTick(tickEvent, matchId, minute, events.size());
 
                     return Flux.fromIterable(events)
                             .flatMap(event -> {
@@ -96,9 +99,13 @@ public class MatchSimulationService {
         List<MatchEvent> allEvents = new ArrayList<>();
 
         for (int minute = 1; minute <= 90; minute++) {
+            FlightEvents.MatchTick tickEvent = new FlightEvents.MatchTick();
+            tickEvent.begin();
             matchState.setCurrentMinute(minute);
             updateMatchStatus(matchState, minute);
-            allEvents.addAll(generateMinuteEvents(matchState, minute));
+            List<MatchEvent> events = generateMinuteEvents(matchState, minute);
+            allEvents.addAll(events);
+            commitTick(tickEvent, matchId, minute, events.size());
         }
 
         matchState.setStatus(MatchStatus.FINISHED);
@@ -111,6 +118,17 @@ public class MatchSimulationService {
                 .delayElements(Duration.ofMillis(100)); // Small delay between events
     }
 
+    /** Ends a minute's MatchTick flight recorder event; filled in only when it is recorded. */
+    private static void commitTick(FlightEvents.MatchTick tickEvent, String matchId, int minute, int events) {
+        tickEvent.end();
+        if (tickEvent.shouldCommit()) {
+            tickEvent.matchId = matchId;
+            tickEvent.minute = minute;
+            tickEvent.events = events;
+            tickEvent.commit();
+        }
+    }
+
     private void updateMatchStatus(MatchState matchState, int minute) {
         if (minute == 1) {
             matchState.setStatus(MatchStatus.FIRST_HALF);
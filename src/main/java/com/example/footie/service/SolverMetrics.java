@@ -0,0 +1,73 @@
+package com.example.footie.service;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.example.footie.newSimulator.ConsistencyLevel;
+import com.example.footie.newSimulator.SolverStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Publishes the {@link SolverStats} of every solve as Micrometer meters, so
+ * the metrics endpoint shows which consistency level and which constraint
+ * the draws spend their time on. Every meter is tagged with the solve's
+ * {@link Outcome}, so the portfolio members that lost or failed are counted
+ * apart from the searches that found the draw:
+ * <ul>
+ * <li>a {@code draw.solver.solves} counter;</li>
+ * <li>{@code draw.solver.nodes}, {@code draw.solver.backtracks} and
+ * {@code draw.solver.restarts} counters;</li>
+ * <li>a {@code draw.solver.level} timer per {@code level}, one sample per
+ * draw;</li>
+ * <li>{@code draw.solver.constraint.calls} and
+ * {@code draw.solver.constraint.prunes} counters and a
+ * {@code draw.solver.constraint} timer per {@code constraint}.</li>
+ * </ul>
+ */
+@Component
+public class SolverMetrics {
+
+    /** How a solve ended. */
+    public enum Outcome {
+        /** Found a draw. */
+        SOLVED,
+        /** Proved there is none. */
+        FAILED,
+        /** Stopped because another portfolio member found a draw first. */
+        CANCELLED,
+        /** Stopped by a node limit or an error. */
+        ERROR;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final MeterRegistry registry;
+
+    public SolverMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void record(SolverStats stats, Outcome outcome) {
+        String o = outcome.tag();
+        registry.counter("draw.solver.solves", "outcome", o).increment();
+        registry.counter("draw.solver.nodes", "outcome", o).increment(stats.nodes());
+        registry.counter("draw.solver.backtracks", "outcome", o).increment(stats.backtracks());
+        registry.counter("draw.solver.restarts", "outcome", o).increment(stats.restarts());
+        for (ConsistencyLevel level : ConsistencyLevel.values()) {
+            registry.timer("draw.solver.level", "level", level.name().toLowerCase(Locale.ROOT), "outcome", o)
+                    .record(stats.nanos(level), TimeUnit.NANOSECONDS);
+        }
+        stats.constraints().forEach((name, c) -> {
+            registry.counter("draw.solver.constraint.calls", "constraint", name, "outcome", o).increment(c.calls());
+            registry.counter("draw.solver.constraint.prunes", "constraint", name, "outcome", o)
+                    .increment(c.prunes());
+            registry.timer("draw.solver.constraint", "constraint", name, "outcome", o)
+                    .record(c.nanos(), TimeUnit.NANOSECONDS);
+        });
+    }
+}
@@ -18,9 +18,11 @@ import com.example.footie.newSimulator.ConcreteTeam;
 import com.example.footie.newSimulator.Team;
 import com.example.footie.repository.TeamEntity;
 
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+@Slf4j
 @Service
 public class TeamService {
 
@@ -65,7 +67,7 @@ public class TeamService {
                 (key, value) -> value + 1);
         quotas.compute(List.of("SouthAmerica", "Asia", "NorthAmerica").get(ThreadLocalRandom.current().nextInt(3)),
                 (key, value) -> value + 1);
-        System.out.println("Using quotas for world cup draw: " + quotas);
+        log.debug("Using quotas for world cup draw: {}", quotas);
 
         var filter = nonNational
                 ? where("team_type").not("non_national")
@@ -3,6 +3,9 @@ package com.example.footie.newSimulator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
 public class AssignmentStateTest {
@@ -36,4 +39,146 @@ public class AssignmentStateTest {
 
         assertEquals(expected, next);
     }
+
+    @Test
+    public void domainAndCandidateViews_stayInSyncAfterPruning() {
+        GroupSlot a1 = new GroupSlot("A", 1);
+        GroupSlot a2 = new GroupSlot("A", 2);
+        Team t1 = new ConcreteTeam("T1", "Europe", 1);
+        Team t2 = new ConcreteTeam("T2", "Asia", 2);
+
+        AssignmentState state = new AssignmentState(List.of(a1, a2), List.of(t1, t2));
+
+        state.assign(a1, t1);
+        state.removeTeamFromDomain(a2, "T1");
+
+        assertEquals(1, state.getDomains(a1).size());
+        assertFalse(state.getDomains(a2).contains(t1));
+        assertFalse(state.getCandidateSlotsForTeam("T2").contains(a1));
+        assertTrue(state.getCandidateSlotsForTeam("T2").contains(a2));
+        assertFalse(state.hasEmptyUnassignedDomain());
+
+        state.removeIfFromDomain(a2, t -> t.pot() == 2);
+        assertTrue(state.hasEmptyUnassignedDomain());
+        assertTrue(state.hasUnassignedTeamWithoutCandidateSlot());
+    }
+
+    @Test
+    public void rollbackTo_undoesAssignmentsAndPruningSinceCheckpoint() {
+        GroupSlot a1 = new GroupSlot("A", 1);
+        GroupSlot a2 = new GroupSlot("A", 2);
+        Team t1 = new ConcreteTeam("T1", "Europe", 1);
+        Team t2 = new ConcreteTeam("T2", "Asia", 2);
+
+        AssignmentState state = new AssignmentState(List.of(a1, a2), List.of(t1, t2));
+        state.removeTeamFromDomain(a1, "T2");
+
+        int checkpoint = state.checkpoint();
+        state.assign(a2, t2);
+        state.removeTeamFromDomain(a1, "T1");
+        assertTrue(state.hasEmptyUnassignedDomain());
+
+        state.rollbackTo(checkpoint);
+
+        assertTrue(state.isTeamUnassigned("T2"));
+        assertEquals(2, state.getDomains(a2).size());
+        assertEquals(List.of(t1), List.copyOf(state.getDomains(a1)));
+        assertTrue(state.getCandidateSlotsForTeam("T1").contains(a1));
+        assertFalse(state.getCandidateSlotsForTeam("T2").contains(a1));
+    }
+
+    @Test
+    public void perfectMatching_detectsHallViolationAndRecoversOnRollback() {
+        GroupSlot a1 = new GroupSlot("A", 1);
+        GroupSlot a2 = new GroupSlot("A", 2);
+        GroupSlot a3 = new GroupSlot("A", 3);
+        Team t1 = new ConcreteTeam("T1", "Europe", 1);
+        Team t2 = new ConcreteTeam("T2", "Asia", 2);
+        Team t3 = new ConcreteTeam("T3", "Africa", 3);
+
+        AssignmentState state = new AssignmentState(List.of(a1, a2, a3), List.of(t1, t2, t3));
+        assertTrue(state.hasPerfectMatchingForUnassignedSlots());
+
+        int checkpoint = state.checkpoint();
+        // A2 and A3 both accept only T1: two slots competing for one team
+        state.removeIfFromDomain(a2, t -> t != t1);
+        state.removeIfFromDomain(a3, t -> t != t1);
+        assertFalse(state.hasPerfectMatchingForUnassignedSlots());
+
+        state.rollbackTo(checkpoint);
+        assertTrue(state.hasPerfectMatchingForUnassignedSlots());
+
+        state.assign(a1, t2);
+        assertTrue(state.hasPerfectMatchingForUnassignedSlots());
+        assertNotEquals(state.teamId(t2), state.matchedTeam(state.slotId(a2)));
+    }
+
+    @Test
+    public void groupAggregates_followAssignUnassignAndRollback() {
+        GroupSlot a1 = new GroupSlot("A", 1);
+        GroupSlot a2 = new GroupSlot("A", 2);
+        GroupSlot b1 = new GroupSlot("B", 1);
+        Team t1 = new ConcreteTeam("T1", "Europe", 1);
+        Team t2 = new ConcreteTeam("T2", "Europe", 2);
+        Team t3 = new ConcreteTeam("T3", "Asia", 2);
+
+        AssignmentState state = new AssignmentState(List.of(a1, a2, b1), List.of(t1, t2, t3));
+        DrawModel model = state.model();
+        int groupA = model.groupId("A");
+        int groupB = model.groupId("B");
+        int europe = model.europeId();
+        int asia = model.continentId("Asia");
+
+        state.assign(a1, t1);
+        int checkpoint = state.checkpoint();
+        state.assign(a2, t2);
+        state.assign(b1, t3);
+
+        assertEquals(model.potBit(1) | model.potBit(2), state.groupPotMask(groupA));
+        assertEquals(2, state.groupContinentCount(groupA, europe));
+        assertEquals(1L << europe, state.groupContinentMask(groupA));
+        assertEquals(1L << asia, state.groupContinentMask(groupB));
+        assertEquals(state.slotId(b1), state.assignedSlot(state.teamId(t3)));
+
+        state.unassign(a2, List.of(t2, t3));
+        assertEquals(model.potBit(1), state.groupPotMask(groupA));
+        assertEquals(1, state.groupContinentCount(groupA, europe));
+
+        state.rollbackTo(checkpoint);
+        assertEquals(model.potBit(1), state.groupPotMask(groupA));
+        assertEquals(1, state.groupContinentCount(groupA, europe));
+        assertEquals(0L, state.groupPotMask(groupB));
+        assertEquals(0L, state.groupContinentMask(groupB));
+        assertEquals(-1, state.assignedSlot(state.teamId(t3)));
+    }
+
+    @Test
+    public void copyForSearch_keepsAssignmentsAndPruningButNotTheTrail() {
+        GroupSlot a1 = new GroupSlot("A", 1);
+        GroupSlot a2 = new GroupSlot("A", 2);
+        GroupSlot b1 = new GroupSlot("B", 1);
+        Team t1 = new ConcreteTeam("T1", "Europe", 1);
+        Team t2 = new ConcreteTeam("T2", "Asia", 2);
+        Team t3 = new ConcreteTeam("T3", "Asia", 2);
+
+        AssignmentState state = new AssignmentState(List.of(a1, a2, b1), List.of(t1, t2, t3));
+        state.assign(a1, t1);
+        state.removeTeamFromDomain(b1, "T2");
+
+        AssignmentState copy = state.copyForSearch();
+        assertEquals(state.getAssignments(), copy.getAssignments());
+        assertEquals(state.unassignedTeamBits(), copy.unassignedTeamBits());
+        assertFalse(copy.getDomains(b1).contains(t2));
+        assertEquals(state.groupPotMask(state.model().groupId("A")), copy.groupPotMask(copy.model().groupId("A")));
+        assertEquals(0, copy.checkpoint());
+
+        // the two states evolve independently
+        copy.assign(a2, t2);
+        copy.rollbackTo(0);
+        copy.assign(b1, t3);
+        assertTrue(state.getDomains(b1).contains(t3));
+        assertEquals(-1, state.assignedSlot(state.teamId(t3)));
+        assertEquals(t1, copy.getAssigned(a1));
+        assertTrue(copy.hasPerfectMatchingForUnassignedSlots());
+    }
 }
@@ -0,0 +1,141 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+
+public class BacktrackingSolverTest {
+
+    private static final String[] CONTINENTS = { "Europe", "Asia", "Africa", "South America" };
+
+    @Test
+    public void countCompletions_matchesSequentialEnumeration() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Random random = new Random(5);
+            for (int round = 0; round < 20; round++) {
+                ConstraintManager cm = constraints();
+                AssignmentState state = new AssignmentState(slots(), teams(random));
+                prefill(state, cm, random);
+                List<Team> unplaced = unplaced(state);
+
+                BacktrackingSolver solver = new BacktrackingSolver(cm);
+                solver.setMaxNodes(0);
+                solver.setSplitDepth(round % 4);
+                long expected = enumerate(state, cm);
+                int checkpoint = state.checkpoint();
+
+                assertEquals(expected, solver.countCompletions(state, unplaced, pool), "round " + round);
+                assertEquals(checkpoint, state.checkpoint());
+                assertEquals(expected > 0, solver.solveParallel(state, unplaced, pool), "round " + round);
+                if (expected > 0) {
+                    assertEquals(0L, state.unassignedSlotBits());
+                    for (int s = 0; s < state.model().slotCount(); s++) {
+                        int t = state.assignedTeam(s);
+                        int mark = state.checkpoint();
+                        state.unassign(state.slotById(s), List.of(state.teamById(t)));
+                        assertTrue(cm.isAssignmentValid(state, s, t), "round " + round + " slot " + s);
+                        state.rollbackTo(mark);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void countCompletions_reportsTheCancellationPastTheNodeLimit() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            AssignmentState state = new AssignmentState(slots(), teams(new Random(5)));
+            BacktrackingSolver solver = new BacktrackingSolver(constraints());
+            solver.setMaxNodes(2);
+            solver.setSplitDepth(0);
+            // cancelled at the fifth node, with the count already past the limit
+            AtomicInteger polls = new AtomicInteger();
+            solver.setCancellation(() -> polls.incrementAndGet() > 4);
+            assertThrows(CancellationException.class, () -> solver.countCompletions(state, unplaced(state), pool));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Every completion, team by team in id order, slot by slot. */
+    private static long enumerate(AssignmentState state, ConstraintManager cm) {
+        long unassigned = state.unassignedTeamBits();
+        if (unassigned == 0)
+            return 1L;
+        int team = Long.numberOfTrailingZeros(unassigned);
+        long total = 0L;
+        for (long m = state.unassignedSlotBits(); m != 0; m &= m - 1) {
+            int slot = Long.numberOfTrailingZeros(m);
+            if (!cm.isAssignmentValid(state, slot, team))
+                continue;
+            int checkpoint = state.checkpoint();
+            state.assign(slot, team);
+            total += enumerate(state, cm);
+            state.rollbackTo(checkpoint);
+        }
+        return total;
+    }
+
+    private static void prefill(AssignmentState state, ConstraintManager cm, Random random) {
+        for (int i = 0; i < 4; i++) {
+            int slot = random.nextInt(state.model().slotCount());
+            int team = random.nextInt(state.model().teamCount());
+            if ((state.unassignedSlotBits() & (1L << slot)) != 0 && (state.unassignedTeamBits() & (1L << team)) != 0
+                    && cm.isAssignmentValid(state, slot, team)) {
+                state.assign(slot, team);
+                cm.forwardCheck(state, slot, team);
+            }
+        }
+    }
+
+    private static List<Team> unplaced(AssignmentState state) {
+        List<Team> teams = new ArrayList<>();
+        for (long m = state.unassignedTeamBits(); m != 0; m &= m - 1)
+            teams.add(state.teamById(Long.numberOfTrailingZeros(m)));
+        return teams;
+    }
+
+    private static List<GroupSlot> slots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'C'; g++)
+            for (int p = 1; p <= 3; p++)
+                slots.add(new GroupSlot(String.valueOf(g), p));
+        return slots;
+    }
+
+    private static List<Team> teams(Random random) {
+        List<Team> teams = new ArrayList<>();
+        for (int t = 0; t < 9; t++)
+            teams.add(new ConcreteTeam("T" + t, CONTINENTS[random.nextInt(CONTINENTS.length)], t / 3 + 1));
+        return teams;
+    }
+
+    private static ConstraintManager constraints() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        return cm;
+    }
+}
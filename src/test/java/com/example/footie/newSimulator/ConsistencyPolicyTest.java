@@ -0,0 +1,169 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+
+public class ConsistencyPolicyTest {
+
+    private static final String[] CONTINENTS = { "Europe", "Asia", "Africa", "South America" };
+
+    @Test
+    public void level_warmsUpThenKeepsWhatPaysAndProbesTheNext() {
+        ConsistencyPolicy policy = ConsistencyPolicy.adaptive();
+        for (int n = 1; n <= ConsistencyPolicy.WARMUP; n++) {
+            assertEquals(ConsistencyLevel.ARC, policy.level(5));
+            policy.recordNode(5, 1_000);
+            // Hall prunes ten nodes' worth, arc consistency nothing
+            policy.recordLevel(5, ConsistencyLevel.HALL, 2_000, 10);
+            policy.recordLevel(5, ConsistencyLevel.ARC, 50_000, 0);
+        }
+        assertEquals(ConsistencyLevel.HALL, policy.chosenLevel(5));
+        int probes = 0;
+        for (int n = 0; n < 4 * ConsistencyPolicy.PROBE_EVERY; n++) {
+            if (policy.level(5) == ConsistencyLevel.ARC)
+                probes++;
+        }
+        assertEquals(4, probes);
+        // nothing measured at other depths yet
+        assertEquals(ConsistencyLevel.ARC, policy.chosenLevel(6));
+    }
+
+    @Test
+    public void singletonArcConsistency_removesExactlyTheValuesThatFailOnTheirOwn() {
+        Random random = new Random(11);
+        for (int round = 0; round < 30; round++) {
+            ConstraintManager cm = constraints();
+            AssignmentState state = new AssignmentState(slots(), teams(random));
+            // a few random placements
+            for (int k = 0; k < 2; k++) {
+                int team = Long.numberOfTrailingZeros(state.unassignedTeamBits());
+                long free = state.candidateSlotBits(team) & state.unassignedSlotBits();
+                if (free == 0)
+                    break;
+                int slot = nthBit(free, random.nextInt(Long.bitCount(free)));
+                state.assign(slot, team);
+                cm.forwardCheck(state, slot, team);
+            }
+            int start = state.checkpoint();
+            boolean expected = naiveSingletonArcConsistency(cm, state);
+            long[] expectedDomains = domains(state);
+            state.rollbackTo(start);
+
+            assertEquals(expected, cm.enforceSingletonArcConsistency(state), "round " + round);
+            if (expected) {
+                long[] actual = domains(state);
+                for (int s = 0; s < actual.length; s++)
+                    assertEquals(expectedDomains[s], actual[s], "round " + round + " slot " + s);
+            }
+        }
+    }
+
+    @Test
+    public void adaptivePolicy_solvesValidWorldCupDraws() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'L'; g++)
+            for (int pos = 1; pos <= 4; pos++)
+                slots.add(new GroupSlot(String.valueOf(g), pos));
+        ConsistencyPolicy policy = ConsistencyPolicy.adaptive();
+        for (int i = 0; i < 10; i++) {
+            ConstraintManager cm = constraints();
+            Simulator simulator = new Simulator(slots, cm, TeamFactory.createWorldCupTeams(4));
+            simulator.setRandom(new Random(i));
+            simulator.setMaxNodes(0);
+            simulator.setRestartPolicy(RestartPolicy.luby(100, 64));
+            simulator.setConsistencyPolicy(policy);
+            assertTrue(simulator.solveWorldCup2026Draw(), "draw " + i);
+
+            AssignmentState state = simulator.getState();
+            assertEquals(0L, state.unassignedSlotBits());
+            for (int s = 0; s < state.model().slotCount(); s++) {
+                int t = state.assignedTeam(s);
+                int mark = state.checkpoint();
+                state.unassign(state.slotById(s), List.of(state.teamById(t)));
+                assertTrue(cm.isAssignmentValid(state, s, t), "draw " + i + " slot " + s);
+                state.rollbackTo(mark);
+            }
+        }
+        assertTrue(!policy.toString().isEmpty());
+    }
+
+    /** SAC by definition: drop every value whose assignment fails propagation, until none does. */
+    private static boolean naiveSingletonArcConsistency(ConstraintManager cm, AssignmentState state) {
+        if (!cm.checkGlobalConsistency(state))
+            return false;
+        boolean removed;
+        do {
+            removed = false;
+            for (long m = state.unassignedSlotBits(); m != 0; m &= m - 1) {
+                int slot = Long.numberOfTrailingZeros(m);
+                for (long d = state.domainBits(slot); d != 0; d &= d - 1) {
+                    int team = Long.numberOfTrailingZeros(d);
+                    int checkpoint = state.checkpoint();
+                    state.assign(slot, team);
+                    cm.forwardCheck(state, slot, team);
+                    boolean consistent = cm.checkGlobalConsistency(state);
+                    state.rollbackTo(checkpoint);
+                    if (!consistent) {
+                        state.removeFromDomain(slot, 1L << team);
+                        removed = true;
+                    }
+                }
+            }
+            if (removed && !cm.checkGlobalConsistency(state))
+                return false;
+        } while (removed);
+        return true;
+    }
+
+    private static long[] domains(AssignmentState state) {
+        long[] domains = new long[state.model().slotCount()];
+        for (long m = state.unassignedSlotBits(); m != 0; m &= m - 1) {
+            int slot = Long.numberOfTrailingZeros(m);
+            domains[slot] = state.domainBits(slot);
+        }
+        return domains;
+    }
+
+    private static int nthBit(long bits, int n) {
+        for (int i = 0; i < n; i++)
+            bits &= bits - 1;
+        return Long.numberOfTrailingZeros(bits);
+    }
+
+    private static List<GroupSlot> slots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'C'; g++)
+            for (int p = 1; p <= 3; p++)
+                slots.add(new GroupSlot(String.valueOf(g), p));
+        return slots;
+    }
+
+    private static List<Team> teams(Random random) {
+        List<Team> teams = new ArrayList<>();
+        for (int t = 0; t < 9; t++)
+            teams.add(new ConcreteTeam("T" + t, CONTINENTS[random.nextInt(CONTINENTS.length)], t / 3 + 1));
+        return teams;
+    }
+
+    private static ConstraintManager constraints() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        return cm;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.footie.newSimulator;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.PairedGroupConstraint;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+
+public class DrawCounterTest {
+
+    private static final String[] CONTINENTS = { "Europe", "Asia", "Africa", "South America" };
+
+    @Test
+    public void counts_matchBruteForceEnumeration() {
+        Random random = new Random(17);
+        for (int round = 0; round < 30; round++) {
+            ConstraintManager cm = constraints();
+            AssignmentState state = new AssignmentState(slots(), teams(random));
+            prefill(state, cm, random);
+
+            Map<String, Map<String, BigInteger>> expected = new HashMap<>();
+            BigInteger total = enumerate(state, cm, expected);
+            DrawCounter counter = new DrawCounter(cm);
+
+            assertEquals(total, counter.countCompletions(state), "round " + round);
+            Map<String, Map<String, BigInteger>> counts = counter.groupCounts(state);
+            for (Map.Entry<String, Map<String, BigInteger>> team : counts.entrySet()) {
+                for (Map.Entry<String, BigInteger> group : team.getValue().entrySet()) {
+                    BigInteger n = expected.getOrDefault(team.getKey(), Map.of())
+                            .getOrDefault(group.getKey(), BigInteger.ZERO);
+                    assertEquals(n, group.getValue(), "round " + round + " " + team.getKey() + " in " + group.getKey());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sampleCompletion_fillsEveryGroupValidly() {
+        Random random = new Random(4);
+        ConstraintManager cm = constraints();
+        AssignmentState state = new AssignmentState(slots(), teams(random));
+        DrawCounter counter = new DrawCounter(cm);
+        if (counter.countCompletions(state).signum() == 0)
+            return;
+
+        assertTrue(counter.sampleCompletion(state, random));
+        assertEquals(0L, state.unassignedSlotBits());
+        // every placement is still allowed with the rest of the draw in place
+        for (int s = 0; s < state.model().slotCount(); s++) {
+            int t = state.assignedTeam(s);
+            int checkpoint = state.checkpoint();
+            state.unassign(state.slotById(s), List.of(state.teamById(t)));
+            assertTrue(cm.isAssignmentValid(state, s, t), "slot " + s);
+            state.rollbackTo(checkpoint);
+        }
+    }
+
+    @Test
+    public void groupProbabilities_sumToOnePerTeam() {
+        Random random = new Random(8);
+        ConstraintManager cm = constraints();
+        AssignmentState state = new AssignmentState(slots(), teams(random));
+        prefill(state, cm, random);
+        DrawCounter counter = new DrawCounter(cm);
+        if (counter.countCompletions(state).signum() == 0) {
+            assertTrue(counter.groupProbabilities(state).isEmpty());
+            return;
+        }
+        for (Map<String, Double> perGroup : counter.groupProbabilities(state).values())
+            assertEquals(1.0, perGroup.values().stream().mapToDouble(Double::doubleValue).sum(), 1e-9);
+    }
+
+    @Test
+    public void rejectsConstraintsSpanningGroups() {
+        ConstraintManager cm = constraints();
+        cm.addConstraint(new PairedGroupConstraint("T0", Set.of("A"), "T1", Set.of("B"), true));
+        AssignmentState state = new AssignmentState(slots(), teams(new Random(1)));
+        assertThrows(IllegalArgumentException.class, () -> new DrawCounter(cm).countCompletions(state));
+        assertFalse(cm.isGroupLocal(state.model()));
+    }
+
+    /** Every completion, team by team in id order, into the lowest free slot of each group. */
+    private static BigInteger enumerate(AssignmentState state, ConstraintManager cm,
+            Map<String, Map<String, BigInteger>> perTeam) {
+        long unassigned = state.unassignedTeamBits();
+        DrawModel model = state.model();
+        if (unassigned == 0) {
+            for (int t = 0; t < model.teamCount(); t++) {
+                String group = model.groupName(model.slotGroup(state.assignedSlot(t)));
+                perTeam.computeIfAbsent(model.team(t).getName(), k -> new HashMap<>())
+                        .merge(group, BigInteger.ONE, BigInteger::add);
+            }
+            return BigInteger.ONE;
+        }
+        int team = Long.numberOfTrailingZeros(unassigned);
+        BigInteger total = BigInteger.ZERO;
+        for (int g = 0; g < model.groupCount(); g++) {
+            long free = model.groupSlots(g) & state.unassignedSlotBits();
+            if (free == 0)
+                continue;
+            int slot = Long.numberOfTrailingZeros(free);
+            if (!cm.isAssignmentValid(state, slot, team))
+                continue;
+            int checkpoint = state.checkpoint();
+            state.assign(slot, team);
+            total = total.add(enumerate(state, cm, perTeam));
+            state.rollbackTo(checkpoint);
+        }
+        return total;
+    }
+
+    private static void prefill(AssignmentState state, ConstraintManager cm, Random random) {
+        for (int i = 0; i < 3; i++) {
+            int slot = random.nextInt(state.model().slotCount());
+            int team = random.nextInt(state.model().teamCount());
+            if ((state.unassignedSlotBits() & (1L << slot)) != 0 && cm.isAssignmentValid(state, slot, team))
+                state.assign(slot, team);
+        }
+    }
+
+    private static List<GroupSlot> slots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'D'; g++)
+            for (int p = 1; p <= 3; p++)
+                slots.add(new GroupSlot(String.valueOf(g), p));
+        return slots;
+    }
+
+    private static List<Team> teams(Random random) {
+        List<Team> teams = new ArrayList<>();
+        for (int t = 0; t < 12; t++)
+            teams.add(new ConcreteTeam("T" + t, CONTINENTS[random.nextInt(CONTINENTS.length)], t / 4 + 1));
+        return teams;
+    }
+
+    private static ConstraintManager constraints() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        return cm;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.footie.newSimulator;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class DrawModelTest {
+
+    @Test
+    public void slotIds_followGroupThenPositionOrder() {
+        List<GroupSlot> slots = List.of(
+                new GroupSlot("B", 1),
+                new GroupSlot("A", 10),
+                new GroupSlot("A", 2));
+        DrawModel model = new DrawModel(slots, List.of());
+
+        assertEquals(new GroupSlot("A", 2), model.slot(0));
+        assertEquals(new GroupSlot("A", 10), model.slot(1));
+        assertEquals(new GroupSlot("B", 1), model.slot(2));
+        assertEquals(0b011L, model.groupSlots(model.groupId("A")));
+        assertEquals(1, model.slotGroup(2));
+        assertEquals(10, model.slotPosition(1));
+    }
+
+    @Test
+    public void continentsAndPots_areInternedIntoMasks() {
+        Team france = new ConcreteTeam("France", "Europe", 1);
+        Team japan = new ConcreteTeam("Japan", "Asia", 2);
+        Team playoff = new PlaceholderTeam("Playoff", Set.of("europe", "Asia"), "Playoff", 2);
+        DrawModel model = new DrawModel(List.of(new GroupSlot("A", 1)), List.of(france, japan, playoff));
+
+        assertEquals(model.continentId("EUROPE"), model.continentId("europe"));
+        assertEquals(model.europeMask(), model.teamContinents(model.teamId(france)));
+        assertEquals(0b101L, model.teamsWithAnyContinent(model.europeMask()));
+        assertEquals(0b110L, model.teamsInPot(2));
+        assertEquals(0L, model.teamsInPot(3));
+        assertTrue((model.continentsOf(new ConcreteTeam("Korea", "asia", 3)) & model.teamContinents(1)) != 0);
+    }
+}
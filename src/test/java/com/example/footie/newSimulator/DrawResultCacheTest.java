@@ -0,0 +1,125 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.Constraint;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.PairedGroupConstraint;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+import com.example.footie.newSimulator.constraint.TopSeedsBracketSeparation;
+import com.example.footie.newSimulator.constraint.TriggerAnyTeamInGroupsConstraint;
+
+public class DrawResultCacheTest {
+
+    @Test
+    public void cache_evictsTheLeastRecentlyUsedDraw() {
+        DrawResultCache<String> cache = new DrawResultCache<>(2);
+        DrawResultCache.Key a = new DrawResultCache.Key(1L, 10L, 100L);
+        DrawResultCache.Key b = new DrawResultCache.Key(2L, 10L, 100L);
+        DrawResultCache.Key c = new DrawResultCache.Key(1L, 10L, 101L);
+        cache.put(a, "a");
+        cache.put(b, "b");
+        assertEquals("a", cache.get(a));
+        cache.put(c, "c");
+
+        assertNull(cache.get(b));
+        assertEquals("a", cache.get(new DrawResultCache.Key(1L, 10L, 100L)));
+        assertEquals("c", cache.get(c));
+        assertEquals(1L, cache.evictions());
+        assertEquals(3L, cache.hits());
+        assertEquals(1L, cache.misses());
+    }
+
+    @Test
+    public void teamSetHash_ignoresOrderButNotTeams() {
+        List<Team> teams = TeamFactory.createWorldCupTeams(4);
+        List<Team> shuffled = new ArrayList<>(teams);
+        Collections.shuffle(shuffled, new Random(7));
+        assertEquals(DrawResultCache.teamSetHash(teams), DrawResultCache.teamSetHash(shuffled));
+        assertNotEquals(DrawResultCache.teamSetHash(teams), DrawResultCache.teamSetHash(teams.subList(1, teams.size())));
+
+        ConstraintManager compiled = constraints();
+        ConstraintManager uncompiled = constraints();
+        uncompiled.setCompiled(false);
+        assertEquals(constraints().configurationHash(), compiled.configurationHash());
+        assertNotEquals(compiled.configurationHash(), uncompiled.configurationHash());
+    }
+
+    @Test
+    public void configurationHash_tellsConstraintParametersApart() {
+        assertEquals(withConstraint(new TopSeedsBracketSeparation(Map.of("Spain", 1, "Argentina", 2))),
+                withConstraint(new TopSeedsBracketSeparation(new HashMap<>(Map.of("Argentina", 2, "Spain", 1)))));
+        assertNotEquals(withConstraint(new TopSeedsBracketSeparation(Map.of("Spain", 1, "Argentina", 2))),
+                withConstraint(new TopSeedsBracketSeparation(Map.of("Spain", 2, "Argentina", 1))));
+
+        assertEquals(withConstraint(new PairedGroupConstraint("Spain", Set.of("A", "B"), "Italy", Set.of("C"), false)),
+                withConstraint(new PairedGroupConstraint("Spain", Set.of("B", "A"), "Italy", Set.of("C"), false)));
+        assertNotEquals(withConstraint(new PairedGroupConstraint("Spain", Set.of("A"), "Italy", Set.of("C"), false)),
+                withConstraint(new PairedGroupConstraint("Spain", Set.of("A"), "Italy", Set.of("D"), false)));
+        assertNotEquals(withConstraint(new PairedGroupConstraint("Spain", Set.of("A"), "Italy", Set.of("C"), false)),
+                withConstraint(new PairedGroupConstraint("Spain", Set.of("A"), "Italy", Set.of("C"), true)));
+
+        assertNotEquals(withConstraint(new TriggerAnyTeamInGroupsConstraint("Spain", Set.of("A"), Set.of("Italy"),
+                Set.of("B"))),
+                withConstraint(new TriggerAnyTeamInGroupsConstraint("Spain", Set.of("A"), Set.of("Japan"),
+                        Set.of("B"))));
+    }
+
+    private static long withConstraint(Constraint constraint) {
+        ConstraintManager cm = constraints();
+        cm.addConstraint(constraint);
+        return cm.configurationHash();
+    }
+
+    @Test
+    public void sameSeed_givesTheSameDrawWhateverTheTeamOrder() {
+        List<Team> teams = TeamFactory.createWorldCupTeams(4);
+        List<Team> shuffled = new ArrayList<>(teams);
+        Collections.shuffle(shuffled, new Random(7));
+
+        String first = seededDraw(teams, 42L);
+        assertEquals(first, seededDraw(shuffled, 42L));
+        assertNotEquals(first, seededDraw(teams, 43L));
+    }
+
+    private static String seededDraw(List<Team> teams, long seed) {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'L'; g++)
+            for (int pos = 1; pos <= 4; pos++)
+                slots.add(new GroupSlot(String.valueOf(g), pos));
+        Simulator simulator = new Simulator(slots, constraints(), DrawResultCache.canonicalOrder(teams));
+        simulator.setRandom(new Random(seed));
+        simulator.setOnlyCheckDomainAfter(28);
+        simulator.setMaxNodes(0);
+        simulator.setRestartPolicy(RestartPolicy.luby(100, 64));
+        simulator.setBackjumping(true);
+        assertTrue(simulator.solveWorldCup2026Draw());
+        return simulator.getState().getAssignments().toString();
+    }
+
+    private static ConstraintManager constraints() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        return cm;
+    }
+}
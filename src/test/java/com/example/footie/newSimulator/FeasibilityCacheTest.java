@@ -0,0 +1,109 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+
+public class FeasibilityCacheTest {
+
+    @Test
+    public void key_isSharedByModelsOfTheSameLayoutOnly() {
+        FeasibilityCache cache = new FeasibilityCache(64);
+        AssignmentState a = new AssignmentState(slots(), teams("Europe", "Asia"));
+        AssignmentState b = new AssignmentState(slots(), teams("Europe", "Asia"));
+        AssignmentState other = new AssignmentState(slots(), teams("Europe", "Africa"));
+
+        cache.put(cache.key(a), true);
+        assertEquals(Boolean.TRUE, cache.get(cache.key(b)));
+        assertNull(cache.get(cache.key(other)));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(0.5, cache.hitRate(), 1e-12);
+    }
+
+    @Test
+    public void put_staysWithinCapacity() {
+        FeasibilityCache cache = new FeasibilityCache(16);
+        AssignmentState state = new AssignmentState(slots(), teams("Europe", "Asia"));
+        long[] key = cache.key(state);
+        for (long i = 0; i < 100; i++) {
+            long[] k = key.clone();
+            k[0] ^= i;
+            cache.put(k, i % 2 == 0);
+        }
+        assertEquals(16, cache.size());
+        assertEquals(84, cache.evictions());
+    }
+
+    @Test
+    public void solvers_shareSettledStatesAcrossThreads() throws Exception {
+        FeasibilityCache cache = new FeasibilityCache(1 << 12);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> draws = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                long seed = i;
+                draws.add(executor.submit(() -> {
+                    AssignmentState state = new AssignmentState(slots(), teams("Europe", "Asia"));
+                    BacktrackingSolver solver = new BacktrackingSolver(constraints());
+                    solver.setMaxNodes(0);
+                    solver.setRandom(new Random(seed));
+                    solver.setFeasibilityCache(cache);
+                    return solver.solveTeamFirst(state, state.model().getTeams(), 0);
+                }));
+            }
+            for (Future<Boolean> draw : draws)
+                assertTrue(draw.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertNotEquals(0, cache.size());
+        // the later draws start from states the earlier ones settled
+        assertTrue(cache.hits() > 0);
+
+        AssignmentState empty = new AssignmentState(slots(), teams("Europe", "Asia"));
+        assertEquals(Boolean.TRUE, cache.get(cache.key(empty)));
+    }
+
+    private static List<GroupSlot> slots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'D'; g++)
+            for (int p = 1; p <= 3; p++)
+                slots.add(new GroupSlot(String.valueOf(g), p));
+        return slots;
+    }
+
+    /** Four teams per pot; the last team of each pot is from {@code last}. */
+    private static List<Team> teams(String first, String last) {
+        List<Team> teams = new ArrayList<>();
+        for (int t = 0; t < 12; t++)
+            teams.add(new ConcreteTeam("T" + t, t % 4 == 3 ? last : t % 2 == 0 ? first : "South America", t / 4 + 1));
+        return teams;
+    }
+
+    private static ConstraintManager constraints() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        return cm;
+    }
+}
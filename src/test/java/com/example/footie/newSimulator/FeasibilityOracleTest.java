@@ -0,0 +1,168 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+import com.example.footie.newSimulator.constraint.TriggerAnyTeamInGroupsConstraint;
+
+public class FeasibilityOracleTest {
+
+    private static final String[] CONTINENTS = { "Europe", "Asia", "Africa", "South America" };
+
+    @Test
+    public void isFeasible_agreesWithEnumeration() {
+        Random random = new Random(3);
+        for (int round = 0; round < 20; round++) {
+            ConstraintManager cm = constraints();
+            AssignmentState state = new AssignmentState(slots(), teams(random));
+            FeasibilityOracle oracle = new FeasibilityOracle(cm);
+            // a ball at a time, as in a ceremony, so the witness gets used
+            while (state.unassignedTeamBits() != 0) {
+                int team = Long.numberOfTrailingZeros(state.unassignedTeamBits());
+                int chosen = -1;
+                for (long m = state.unassignedSlotBits(); m != 0; m &= m - 1) {
+                    int slot = Long.numberOfTrailingZeros(m);
+                    int checkpoint = state.checkpoint();
+                    boolean expected = cm.isAssignmentValid(state, slot, team) && completions(state, cm, slot, team) > 0;
+                    assertEquals(expected, oracle.isFeasible(state, slot, team), "round " + round + " slot " + slot);
+                    assertEquals(checkpoint, state.checkpoint());
+                    if (expected && (chosen < 0 || random.nextBoolean()))
+                        chosen = slot;
+                }
+                if (chosen < 0)
+                    break;
+                state.assign(chosen, team);
+                cm.forwardCheck(state, chosen, team);
+            }
+        }
+    }
+
+    @Test
+    public void drawBall_completesTheWorldCupDraw() {
+        ConstraintManager cm = constraints();
+        List<Team> teams = TeamFactory.createWorldCupTeams(4);
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'L'; g++)
+            for (int pos = 1; pos <= 4; pos++)
+                slots.add(new GroupSlot(String.valueOf(g), pos));
+        Simulator simulator = new Simulator(slots, cm, teams);
+        simulator.assignTeamToSlot("A1", "Mexico");
+        simulator.assignTeamToSlot("B1", "Canada");
+        simulator.assignTeamToSlot("D1", "USA");
+
+        List<Team> balls = new ArrayList<>(teams);
+        Collections.shuffle(balls, new Random(9));
+        balls.sort(Comparator.comparingInt(Team::pot));
+        for (Team team : balls) {
+            if (simulator.getState().isTeamUnassigned(team.getName()))
+                assertNotNull(simulator.drawBall(team.getName()), team.getName());
+        }
+
+        AssignmentState state = simulator.getState();
+        assertEquals(0L, state.unassignedSlotBits());
+        for (int s = 0; s < state.model().slotCount(); s++) {
+            int t = state.assignedTeam(s);
+            int mark = state.checkpoint();
+            state.unassign(state.slotById(s), List.of(state.teamById(t)));
+            assertTrue(cm.isAssignmentValid(state, s, t), "slot " + s);
+            state.rollbackTo(mark);
+        }
+        FeasibilityOracle oracle = simulator.getOracle();
+        assertTrue(oracle.getWitnessHits() + oracle.getRepairs() > 0);
+    }
+
+    @Test
+    public void repairWitness_rejectsASwapThatMovesATriggerInAfterItsRequiredTeam() {
+        // T3 in group A requires T0 in group A; T0 has the lower id
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new TriggerAnyTeamInGroupsConstraint("T3", Set.of("A"), Set.of("T0"), Set.of("A")));
+        List<Team> teams = List.of(new ConcreteTeam("T0", "Europe", 1), new ConcreteTeam("T1", "Asia", 1),
+                new ConcreteTeam("T2", "Africa", 2), new ConcreteTeam("T3", "South America", 2));
+        List<GroupSlot> slots = List.of(new GroupSlot("A", 1), new GroupSlot("A", 2), new GroupSlot("B", 1),
+                new GroupSlot("B", 2));
+        AssignmentState state = new AssignmentState(slots, teams);
+        DrawModel model = state.model();
+        int a1 = model.slotId(new GroupSlot("A", 1));
+        int a2 = model.slotId(new GroupSlot("A", 2));
+        int b1 = model.slotId(new GroupSlot("B", 1));
+        int b2 = model.slotId(new GroupSlot("B", 2));
+        FeasibilityOracle oracle = new FeasibilityOracle(cm);
+
+        // witness: T1 A1, T2 A2, T0 B1, T3 B2
+        int empty = state.checkpoint();
+        state.assign(a1, 1);
+        state.assign(a2, 2);
+        state.assign(b1, 0);
+        assertTrue(oracle.isFeasible(state, b2, 3));
+        state.rollbackTo(empty);
+
+        // swapping T2 to B2 moves T3 to A2 with T0 left in B1, which is no
+        // draw; the query goes to a search instead
+        assertTrue(oracle.isFeasible(state, b2, 2));
+        assertEquals(0L, oracle.getRepairs());
+        assertEquals(2L, oracle.getSearches());
+        assertEquals(empty, state.checkpoint());
+    }
+
+    /** Completions after placing the team, team by team in id order. */
+    private static long completions(AssignmentState state, ConstraintManager cm, int slot, int team) {
+        int checkpoint = state.checkpoint();
+        state.assign(slot, team);
+        long total = 0L;
+        long unassigned = state.unassignedTeamBits();
+        if (unassigned == 0) {
+            total = 1L;
+        } else {
+            int next = Long.numberOfTrailingZeros(unassigned);
+            for (long m = state.unassignedSlotBits(); m != 0 && total == 0; m &= m - 1) {
+                int s = Long.numberOfTrailingZeros(m);
+                if (cm.isAssignmentValid(state, s, next))
+                    total += completions(state, cm, s, next);
+            }
+        }
+        state.rollbackTo(checkpoint);
+        return total;
+    }
+
+    private static List<GroupSlot> slots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'C'; g++)
+            for (int p = 1; p <= 3; p++)
+                slots.add(new GroupSlot(String.valueOf(g), p));
+        return slots;
+    }
+
+    private static List<Team> teams(Random random) {
+        List<Team> teams = new ArrayList<>();
+        for (int t = 0; t < 9; t++)
+            teams.add(new ConcreteTeam("T" + t, CONTINENTS[random.nextInt(CONTINENTS.length)], t / 3 + 1));
+        return teams;
+    }
+
+    private static ConstraintManager constraints() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        return cm;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+
+public class MonteCarloDrawsTest {
+
+    private static final String[] CONTINENTS = { "Europe", "Europe", "Asia", "Africa" };
+
+    @Test
+    public void run_talliesEveryDrawAndIsReproducible() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            DrawModel model = new DrawModel(slots(), teams());
+            Team pinned = model.team(0);
+            MonteCarloDraws draws = new MonteCarloDraws(model, Map.of(new GroupSlot("A", 1), pinned),
+                    MonteCarloDrawsTest::solver, executor);
+            List<Long> reported = new ArrayList<>();
+            MonteCarloDraws.Result result = draws.run(3_000, 3, 11L, 1_000, r -> reported.add(r.draws() + r.failed()));
+
+            // 334 draws per worker and batch
+            assertEquals(List.of(1_002L, 2_004L, 3_000L), reported);
+            assertEquals(3_000, result.draws() + result.failed());
+            assertTrue(result.draws() > 0);
+            assertEquals(1.0, result.groupProbability(0, model.groupId("A")), 1e-12);
+            for (int t = 0; t < model.teamCount(); t++) {
+                double inGroups = 0.0;
+                double mates = 0.0;
+                for (int g = 0; g < model.groupCount(); g++)
+                    inGroups += result.groupProbability(t, g);
+                for (int u = 0; u < model.teamCount(); u++)
+                    mates += result.togetherProbability(t, u);
+                assertEquals(1.0, inGroups, 1e-9);
+                // every group holds three teams
+                assertEquals(2.0, mates, 1e-9);
+            }
+            assertTrue(result.maxStandardError() <= Math.sqrt(0.25 / result.draws()));
+
+            MonteCarloDraws.Result again = draws.run(3_000, 3, 11L, 3_000, null);
+            assertEquals(result.groupProbabilities(), again.groupProbabilities());
+            assertEquals(result.togetherProbabilities(), again.togetherProbabilities());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void worldCupRun_keepsTheCeremonyLeanTowardsTheFirstGroups() throws Exception {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'L'; g++)
+            for (int p = 1; p <= 4; p++)
+                slots.add(new GroupSlot(String.valueOf(g), p));
+        List<Team> teams = TeamFactory.createWorldCupTeams(4);
+        DrawModel model = new DrawModel(slots, teams);
+        Map<GroupSlot, Team> hosts = Map.of(
+                new GroupSlot("A", 1), model.team(model.teamId("Mexico")),
+                new GroupSlot("B", 1), model.team(model.teamId("Canada")),
+                new GroupSlot("D", 1), model.team(model.teamId("USA")));
+        int haiti = model.teamId("Haiti");
+
+        MonteCarloDraws.Result result;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            result = new MonteCarloDraws(model, hosts, MonteCarloDrawsTest::worldCupSolver, executor)
+                    .run(2_000, 4, 5L, 2_000, null);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the same draws made one by one, as the ceremony makes them
+        int reference = 800;
+        double[] ceremony = new double[model.groupCount()];
+        for (int seed = 0; seed < reference; seed++) {
+            Simulator simulator = new Simulator(slots, worldCupConstraints(), teams);
+            simulator.setRandom(new Random(seed));
+            simulator.setOnlyCheckDomainAfter(28);
+            simulator.setMaxNodes(0);
+            simulator.setRestartPolicy(RestartPolicy.luby(100, 64));
+            assertTrue(simulator.solveWorldCup2026Draw());
+            AssignmentState state = simulator.getState();
+            ceremony[model.slotGroup(state.assignedSlot(haiti))] += 1.0 / reference;
+        }
+        for (int g = 0; g < model.groupCount(); g++)
+            assertEquals(ceremony[g], result.groupProbability(haiti, g), 0.05, "group " + model.groupName(g));
+        // relabelling would spread Haiti evenly over the nine free groups
+        assertTrue(result.groupProbability(haiti, model.groupId("E")) > result.groupProbability(haiti,
+                model.groupId("J")) + 0.03);
+    }
+
+    /** Configured as DrawService's Monte Carlo workers. */
+    private static BacktrackingSolver worldCupSolver() {
+        BacktrackingSolver solver = new BacktrackingSolver(worldCupConstraints());
+        solver.setOnlyCheckDomainAfter(28);
+        solver.setMaxNodes(0);
+        solver.setRestartPolicy(RestartPolicy.luby(100, 64));
+        solver.setBackjumping(true);
+        solver.setFeasibilityCache(new FeasibilityCache(1 << 14));
+        solver.setSymmetryBreaking(false);
+        return solver;
+    }
+
+    private static ConstraintManager worldCupConstraints() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        return cm;
+    }
+
+    private static BacktrackingSolver solver() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        BacktrackingSolver solver = new BacktrackingSolver(cm);
+        solver.setMaxNodes(0);
+        solver.setRestartPolicy(RestartPolicy.luby(50, 16));
+        // one per worker, as DrawService gives them, so runs stay reproducible
+        solver.setFeasibilityCache(new FeasibilityCache(1 << 10));
+        return solver;
+    }
+
+    private static List<GroupSlot> slots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'D'; g++)
+            for (int p = 1; p <= 3; p++)
+                slots.add(new GroupSlot(String.valueOf(g), p));
+        return slots;
+    }
+
+    private static List<Team> teams() {
+        List<Team> teams = new ArrayList<>();
+        for (int t = 0; t < 12; t++)
+            teams.add(new ConcreteTeam("T" + t, CONTINENTS[t % CONTINENTS.length], t / 4 + 1));
+        return teams;
+    }
+}
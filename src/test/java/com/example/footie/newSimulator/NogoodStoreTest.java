@@ -0,0 +1,71 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class NogoodStoreTest {
+
+    @Test
+    public void signature_ignoresGroupLabelsAndTeamsOfOneType() {
+        NogoodStore store = new NogoodStore(16);
+        AssignmentState a = new AssignmentState(slots(), teams());
+        AssignmentState b = new AssignmentState(a.model());
+        // two Europeans of pot 1 in different groups, the same draw up to labels
+        a.assign(a.model().slotId(new GroupSlot("A", 1)), a.model().teamId("E1"));
+        b.assign(b.model().slotId(new GroupSlot("C", 2)), b.model().teamId("E2"));
+        assertArrayEquals(store.signature(a), store.signature(b));
+
+        store.add(store.signature(a));
+        assertTrue(store.contains(store.signature(b)));
+        assertEquals(1, store.hits());
+
+        b.assign(b.model().slotId(new GroupSlot("C", 1)), b.model().teamId("S1"));
+        assertFalse(store.contains(store.signature(b)));
+    }
+
+    @Test
+    public void add_evictsLeastRecentlyUsed() {
+        NogoodStore store = new NogoodStore(2);
+        AssignmentState state = new AssignmentState(slots(), teams());
+        long[] empty = store.signature(state);
+        state.assign(0, 0);
+        long[] one = store.signature(state);
+        state.assign(3, 1);
+        long[] two = store.signature(state);
+
+        store.add(empty);
+        store.add(one);
+        assertTrue(store.contains(empty));
+        store.add(two);
+        assertEquals(2, store.size());
+        assertEquals(1, store.evictions());
+        assertTrue(store.contains(empty));
+        assertFalse(store.contains(one));
+        assertTrue(store.contains(two));
+    }
+
+    private static List<GroupSlot> slots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'C'; g++)
+            for (int p = 1; p <= 2; p++)
+                slots.add(new GroupSlot(String.valueOf(g), p));
+        return slots;
+    }
+
+    private static List<Team> teams() {
+        List<Team> teams = new ArrayList<>();
+        teams.add(new ConcreteTeam("E1", "Europe", 1));
+        teams.add(new ConcreteTeam("E2", "Europe", 1));
+        teams.add(new ConcreteTeam("S1", "South America", 1));
+        teams.add(new ConcreteTeam("E3", "Europe", 2));
+        teams.add(new ConcreteTeam("A1", "Asia", 2));
+        teams.add(new ConcreteTeam("F1", "Africa", 2));
+        return teams;
+    }
+}
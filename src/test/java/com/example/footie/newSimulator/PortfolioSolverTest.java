@@ -0,0 +1,95 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+
+public class PortfolioSolverTest {
+
+    @Test
+    public void solve_returnsACompleteDrawAndStopsTheOthers() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Simulator> members = new ArrayList<>();
+            Simulator winner = new PortfolioSolver(executor).solve(4, i -> {
+                Simulator simulator = simulator();
+                members.add(simulator);
+                return simulator;
+            }, Simulator::solveWorldCup2026Draw, 7L);
+
+            assertNotNull(winner);
+            assertEquals(0L, winner.getState().unassignedSlotBits());
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            // the others finished a draw too, were rolled back to the hosts
+            // or never started
+            for (Simulator member : members) {
+                int left = Long.bitCount(member.getState().unassignedTeamBits());
+                assertTrue(left == 0 || left == 45 || left == 48, "unplaced teams: " + left);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void solve_returnsNullWhenEveryMemberFails() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertNull(new PortfolioSolver(executor).solve(3, i -> simulator(), s -> false, 1L));
+            assertNull(new PortfolioSolver(executor).solve(2, i -> simulator(), s -> {
+                throw new IllegalStateException("boom");
+            }, 1L));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancellation_rollsTheSearchBack() {
+        Simulator simulator = simulator();
+        simulator.setCancellation(() -> true);
+        assertThrows(CancellationException.class, simulator::solveWorldCup2026Draw);
+        // only the hosts, which are placed before the search starts
+        assertEquals(45, Long.bitCount(simulator.getState().unassignedTeamBits()));
+    }
+
+    private static Simulator simulator() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        Simulator simulator = new Simulator(slots(), cm, TeamFactory.createWorldCupTeams(4));
+        simulator.setOnlyCheckDomainAfter(28);
+        simulator.setMaxNodes(0);
+        simulator.setRestartPolicy(RestartPolicy.luby(100, 64));
+        return simulator;
+    }
+
+    private static List<GroupSlot> slots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'L'; g++)
+            for (int pos = 1; pos <= 4; pos++)
+                slots.add(new GroupSlot(String.valueOf(g), pos));
+        return slots;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.footie.newSimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class RestartPolicyTest {
+
+    @Test
+    public void luby_followsTheSequence() {
+        long[] expected = { 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, 1 };
+        for (int i = 0; i < expected.length; i++)
+            assertEquals(expected[i], RestartPolicy.luby(i), "run " + i);
+    }
+
+    @Test
+    public void budget_scalesBaseNodes() {
+        RestartPolicy policy = RestartPolicy.luby(100, 10);
+        assertEquals(100, policy.budget(0));
+        assertEquals(200, policy.budget(2));
+        assertEquals(400, policy.budget(6));
+        assertEquals(10, policy.maxRuns());
+        assertEquals(Long.MAX_VALUE, RestartPolicy.none().budget(0));
+        assertEquals(1, RestartPolicy.none().maxRuns());
+    }
+
+    @Test
+    public void luby_rejectsEmptyBudgets() {
+        assertThrows(IllegalArgumentException.class, () -> RestartPolicy.luby(0, 5));
+        assertThrows(IllegalArgumentException.class, () -> RestartPolicy.luby(10, 0));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+
+public class SearchTraceTest {
+
+    @Test
+    public void records_roundTripAndOverwriteTheOldest() {
+        long record = SearchTrace.pack(SearchTrace.Kind.PRUNE, 17, 63, 5, 12);
+        assertEquals(SearchTrace.Kind.PRUNE, SearchTrace.kind(record));
+        assertEquals(17, SearchTrace.depth(record));
+        assertEquals(63, SearchTrace.slot(record));
+        assertEquals(5, SearchTrace.team(record));
+        assertEquals(12, SearchTrace.argument(record));
+        long none = SearchTrace.pack(SearchTrace.Kind.RESTART, 0, -1, -1, 3);
+        assertEquals(-1, SearchTrace.slot(none));
+        assertEquals(-1, SearchTrace.team(none));
+
+        SearchTrace trace = new SearchTrace(3);
+        SearchTrace.Ring ring = trace.ring();
+        for (int i = 0; i < 6; i++)
+            ring.record(SearchTrace.Kind.ASSIGN, i, i, i, 0);
+        long[] records = ring.records();
+        assertEquals(4, records.length);
+        assertEquals(2, SearchTrace.depth(records[0]));
+        assertEquals(5, SearchTrace.depth(records[3]));
+        assertEquals(2L, ring.dropped());
+    }
+
+    @Test
+    public void tracedDraw_decodesToEveryPlacementOfTheSolution() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'L'; g++)
+            for (int pos = 1; pos <= 4; pos++)
+                slots.add(new GroupSlot(String.valueOf(g), pos));
+        Simulator simulator = new Simulator(slots, constraints(), TeamFactory.createWorldCupTeams(4));
+        simulator.setRandom(new Random(2));
+        simulator.setMaxNodes(0);
+        simulator.setRestartPolicy(RestartPolicy.luby(100, 64));
+        SearchTrace trace = new SearchTrace(1 << 16);
+        simulator.setTrace(trace);
+        assertTrue(simulator.solveWorldCup2026Draw());
+
+        SearchTraceDecoder decoder = new SearchTraceDecoder(simulator.getModel());
+        List<Map<String, Object>> threads = decoder.toMaps(trace);
+        assertEquals(1, threads.size());
+        assertEquals(0L, threads.get(0).get("dropped"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> records = (List<Map<String, Object>>) threads.get(0).get("records");
+        Set<String> assigned = new HashSet<>();
+        int solutions = 0;
+        for (Map<String, Object> r : records) {
+            if (r.get("kind").equals("ASSIGN"))
+                assigned.add(r.get("slot") + "=" + r.get("team"));
+            if (r.get("kind").equals("SOLUTION"))
+                solutions++;
+        }
+        assertEquals(1, solutions);
+        AssignmentState state = simulator.getState();
+        for (int s = 0; s < state.model().slotCount(); s++)
+            assertTrue(assigned.contains(state.model().slot(s) + "=" + state.model().team(state.assignedTeam(s)).getName()),
+                    "slot " + s);
+
+        String text = decoder.toText(trace);
+        assertTrue(text.contains("A1 <- Mexico("), text);
+        assertTrue(text.contains(": removed="));
+        assertTrue(decoder.toJson(trace).startsWith("[{\"thread\":"));
+    }
+
+    private static ConstraintManager constraints() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        return cm;
+    }
+}
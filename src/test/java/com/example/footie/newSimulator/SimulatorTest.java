@@ -2,20 +2,30 @@ package com.example.footie.newSimulator;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
 import com.example.footie.newSimulator.constraint.ConstraintManager;
 import com.example.footie.newSimulator.constraint.NoSameContinentInGroup;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
 
 @DisplayName("Simulator Tests - Forward Checking & Backtracking")
 class SimulatorTest {
@@ -48,6 +58,14 @@ class SimulatorTest {
         // constraintManager.addConstraint(new NoSameContinentInGroup());
     }
 
+    private static List<GroupSlot> buildWorldCup2026Slots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'L'; g++)
+            for (int pos = 1; pos <= 4; pos++)
+                slots.add(new GroupSlot(String.valueOf(g), pos));
+        return slots;
+    }
+
     private static List<GroupSlot> buildWorldCupSlots() {
         List<GroupSlot> slots = new ArrayList<>();
         for (char g = 'A'; g <= 'I'; g++) {
@@ -317,6 +335,230 @@ class SimulatorTest {
         }
     }
 
+    @Test
+    @DisplayName("Every variable ordering should complete a seeded World Cup draw")
+    void testVariableOrderingsCompleteDraw() {
+        for (VariableOrdering variables : VariableOrdering.values()) {
+            for (int seed = 0; seed < 5; seed++) {
+                ConstraintManager cm = new ConstraintManager();
+                cm.addConstraint(new AllDifferent());
+                cm.addConstraint(new SamePotCantBeInTheSameGroup());
+                cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+                cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+                cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+                Simulator simulator = new Simulator(buildWorldCup2026Slots(), cm, TeamFactory.createWorldCupTeams(4));
+                simulator.setOnlyCheckDomainAfter(28);
+                simulator.setVariableOrdering(variables);
+                simulator.setValueOrdering(ValueOrdering.LEAST_CONSTRAINING);
+                simulator.setRandom(new Random(seed));
+
+                assertTrue(simulator.solveWorldCup2026Draw(), variables + " seed " + seed);
+                AssignmentState state = simulator.getState();
+                assertTrue(state.getUnassignedSlots().isEmpty(), variables + " seed " + seed);
+                assertEquals(48, Set.copyOf(state.getAssignments().values()).size(), variables + " seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Restarts should resume from a clean state and stay reproducible per seed")
+    void testRestartsResetStateBetweenRuns() {
+        String previous = null;
+        for (int attempt = 0; attempt < 2; attempt++) {
+            ConstraintManager cm = new ConstraintManager();
+            cm.addConstraint(new AllDifferent());
+            cm.addConstraint(new SamePotCantBeInTheSameGroup());
+            cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+            cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+            cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+            Simulator simulator = new Simulator(buildWorldCup2026Slots(), cm, TeamFactory.createWorldCupTeams(4));
+            simulator.setOnlyCheckDomainAfter(28);
+            simulator.setMaxNodes(0);
+            // too small for a backtrack-free run at first, so the search must restart
+            simulator.setRestartPolicy(RestartPolicy.luby(12, 64));
+            simulator.setRandom(new Random(3));
+
+            assertTrue(simulator.solveWorldCup2026Draw());
+            assertTrue(simulator.getRestarts() > 0);
+            AssignmentState state = simulator.getState();
+            assertTrue(state.getUnassignedSlots().isEmpty());
+            assertEquals(48, Set.copyOf(state.getAssignments().values()).size());
+            if (previous != null)
+                assertEquals(previous, state.getAssignments().toString(), "same seed, same draw");
+            previous = state.getAssignments().toString();
+        }
+    }
+
+    @Test
+    @DisplayName("Running out of restarts should leave the state as it was")
+    void testExhaustedRestartsRollBack() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        Simulator simulator = new Simulator(buildWorldCup2026Slots(), cm, TeamFactory.createWorldCupTeams(4));
+        simulator.setMaxNodes(0);
+        simulator.setRestartPolicy(RestartPolicy.luby(2, 3));
+        simulator.setRandom(new Random(1));
+        assertTrue(simulator.assignTeamToSlot("A1", "Mexico"));
+
+        simulator.placeTeam("Spain");
+        simulator.placeTeam("Argentina");
+        simulator.placeTeam("France");
+        simulator.placeTeam("England");
+        simulator.placeTeam("Brazil");
+        simulator.placeTeam("Germany");
+        simulator.placeTeam("Portugal");
+        simulator.placeTeam("Netherlands");
+        // eight teams need nine nodes; runs of 2, 2 and 4 cannot finish
+        assertThrows(RuntimeException.class, simulator::makePlacements);
+
+        AssignmentState state = simulator.getState();
+        assertEquals(1, state.getAssignments().values().stream().filter(t -> t != null).count());
+        assertEquals(2, simulator.getRestarts());
+    }
+
+    @Test
+    @DisplayName("Symmetry breaking should never lose a solution")
+    void testSymmetryBreakingKeepsFeasibility() {
+        String[] continents = { "Europe", "Asia", "Africa", "South America" };
+        Random random = new Random(23);
+        for (int round = 0; round < 200; round++) {
+            List<GroupSlot> groupSlots = new ArrayList<>();
+            for (char g = 'A'; g <= 'D'; g++)
+                for (int pos = 1; pos <= 3; pos++)
+                    groupSlots.add(new GroupSlot(String.valueOf(g), pos));
+            List<Team> drawTeams = new ArrayList<>();
+            for (int t = 0; t < 12; t++)
+                drawTeams.add(new ConcreteTeam("T" + t, continents[random.nextInt(continents.length)], t / 4 + 1));
+            ConstraintManager cm = new ConstraintManager();
+            cm.addConstraint(new AllDifferent());
+            cm.addConstraint(new SamePotCantBeInTheSameGroup());
+            cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+            cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+
+            AssignmentState state = new AssignmentState(groupSlots, drawTeams);
+            for (int i = 0; i < 3; i++) {
+                int slot = random.nextInt(groupSlots.size());
+                int team = random.nextInt(drawTeams.size());
+                if (state.assignedTeam(slot) < 0 && state.assignedSlot(team) < 0
+                        && cm.isAssignmentValid(state, slot, team)) {
+                    state.assign(slot, team);
+                    cm.forwardCheck(state, slot, team);
+                }
+            }
+            boolean feasible = new DrawCounter(cm).countCompletions(state).signum() > 0;
+
+            BacktrackingSolver solver = new BacktrackingSolver(cm);
+            solver.setMaxNodes(0);
+            solver.setRandom(new Random(round));
+            List<Team> toPlace = new ArrayList<>();
+            for (int t = 0; t < drawTeams.size(); t++)
+                if (state.assignedSlot(t) < 0)
+                    toPlace.add(drawTeams.get(t));
+            assertEquals(feasible, solver.solveTeamFirst(state, toPlace, 0), "round " + round);
+            if (feasible)
+                assertEquals(0L, state.unassignedSlotBits(), "round " + round);
+        }
+    }
+
+    @Test
+    @DisplayName("Backjumping and learned nogoods should never lose a solution")
+    void testBackjumpingKeepsFeasibility() {
+        String[] continents = { "Europe", "Asia", "Africa", "South America" };
+        Random random = new Random(31);
+        for (int round = 0; round < 200; round++) {
+            List<GroupSlot> groupSlots = new ArrayList<>();
+            for (char g = 'A'; g <= 'D'; g++)
+                for (int pos = 1; pos <= 3; pos++)
+                    groupSlots.add(new GroupSlot(String.valueOf(g), pos));
+            List<Team> drawTeams = new ArrayList<>();
+            for (int t = 0; t < 12; t++)
+                drawTeams.add(new ConcreteTeam("T" + t, continents[random.nextInt(continents.length)], t / 4 + 1));
+            ConstraintManager cm = new ConstraintManager();
+            cm.addConstraint(new AllDifferent());
+            cm.addConstraint(new SamePotCantBeInTheSameGroup());
+            cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+            cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+            AssignmentState state = new AssignmentState(groupSlots, drawTeams);
+            boolean feasible = new DrawCounter(cm).countCompletions(state).signum() > 0;
+
+            BacktrackingSolver solver = new BacktrackingSolver(cm);
+            solver.setBackjumping(true);
+            solver.setMaxNodes(0);
+            // short runs, so later runs meet the nogoods of earlier ones
+            solver.setRestartPolicy(RestartPolicy.luby(4, 10_000));
+            solver.setRandom(new Random(round));
+            assertEquals(feasible, solver.solveTeamFirst(state, drawTeams, 0), "round " + round);
+            if (feasible)
+                assertEquals(0L, state.unassignedSlotBits(), "round " + round);
+        }
+    }
+
+    @Test
+    @DisplayName("Relabelling should spread a team over the interchangeable groups and keep pinned ones")
+    void testGroupRelabellingSpreadsGroups() {
+        Set<String> groups = new HashSet<>();
+        for (int seed = 0; seed < 40; seed++) {
+            ConstraintManager cm = new ConstraintManager();
+            cm.addConstraint(new AllDifferent());
+            cm.addConstraint(new SamePotCantBeInTheSameGroup());
+            Simulator simulator = new Simulator(buildWorldCup2026Slots(), cm, TeamFactory.createWorldCupTeams(4));
+            simulator.setRandom(new Random(seed));
+            simulator.setGroupRelabelling(true);
+            assertTrue(simulator.assignTeamToSlot("A1", "Mexico"));
+            assertTrue(simulator.assignTeamToSlot("B1", "Canada"));
+            assertTrue(simulator.assignTeamToSlot("D1", "USA"));
+
+            simulator.placeTeam("Spain");
+            assertTrue(simulator.makePlacements());
+            AssignmentState state = simulator.getState();
+            String group = state.slotById(state.assignedSlot(state.teamId("Spain"))).getGroupName();
+            assertFalse(Set.of("A", "B", "D").contains(group), "seed " + seed);
+            assertEquals("Mexico", state.getAssignments().get(state.slotById(0)).getName());
+            groups.add(group);
+        }
+        // without relabelling Spain would always land in the first free group
+        assertTrue(groups.size() > 4, "groups " + groups);
+    }
+
+    @Test
+    @DisplayName("Symmetry breaking should leave the team-in-group frequencies of the draw as they are")
+    void testSymmetryBreakingKeepsGroupFrequencies() {
+        int draws = 400;
+        Map<String, Integer> on = haitiGroups(draws, true);
+        Map<String, Integer> off = haitiGroups(draws, false);
+        for (char g = 'A'; g <= 'L'; g++) {
+            String group = String.valueOf(g);
+            assertEquals(off.getOrDefault(group, 0) / (double) draws, on.getOrDefault(group, 0) / (double) draws,
+                    0.02, "group " + group);
+        }
+        // the ceremony fills the first group that keeps the draw completable
+        assertTrue(on.getOrDefault("E", 0) > on.getOrDefault("J", 0), "groups " + on);
+    }
+
+    /** The groups Haiti (pot 4) is drawn into by the ceremony-order solver, one draw per seed. */
+    private static Map<String, Integer> haitiGroups(int draws, boolean symmetryBreaking) {
+        Map<String, Integer> groups = new HashMap<>();
+        for (int seed = 0; seed < draws; seed++) {
+            ConstraintManager cm = new ConstraintManager();
+            cm.addConstraint(new AllDifferent());
+            cm.addConstraint(new SamePotCantBeInTheSameGroup());
+            cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+            cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+            cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+            Simulator simulator = new Simulator(buildWorldCup2026Slots(), cm, TeamFactory.createWorldCupTeams(4));
+            simulator.setRandom(new Random(seed));
+            simulator.setOnlyCheckDomainAfter(28);
+            simulator.setMaxNodes(0);
+            simulator.setRestartPolicy(RestartPolicy.luby(100, 64));
+            simulator.setSymmetryBreaking(symmetryBreaking);
+            assertTrue(simulator.solveWorldCup2026Draw());
+            AssignmentState state = simulator.getState();
+            groups.merge(state.slotById(state.assignedSlot(state.teamId("Haiti"))).getGroupName(), 1, Integer::sum);
+        }
+        return groups;
+    }
+
     // Helper method to access private state (using reflection or package-private
     // access)
     private AssignmentState getState(Simulator simulator) {
@@ -0,0 +1,76 @@
+package com.example.footie.newSimulator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class SolverEventsTest {
+
+    @Test
+    public void recordedSolve_emitsSampledNodesBacktracksAndChecks() throws Exception {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'L'; g++)
+            for (int pos = 1; pos <= 4; pos++)
+                slots.add(new GroupSlot(String.valueOf(g), pos));
+        Simulator simulator = new Simulator(slots, constraints(), TeamFactory.createWorldCupTeams(4));
+        simulator.setRandom(new Random(3));
+        simulator.setOnlyCheckDomainAfter(28);
+        simulator.setMaxNodes(0);
+        simulator.setRestartPolicy(RestartPolicy.luby(100, 64));
+        SolverStats stats = new SolverStats();
+        simulator.setStats(stats);
+
+        Path file = Files.createTempFile("solver-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("footie.SearchNode");
+            recording.enable("footie.Backtrack");
+            recording.enable("footie.ConsistencyCheck");
+            recording.start();
+            assertTrue(simulator.solveWorldCup2026Draw());
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            String name = event.getEventType().getName();
+            counts.merge(name, 1, Integer::sum);
+            if (name.equals("footie.ConsistencyCheck"))
+                assertTrue(event.getString("level").equals("HALL") || event.getString("level").equals("ARC"));
+        }
+        Files.delete(file);
+
+        assertEquals(stats.nodes() / SolverEvents.NODE_SAMPLE, (long) counts.getOrDefault("footie.SearchNode", 0));
+        assertEquals(stats.backtracks(), (long) counts.getOrDefault("footie.Backtrack", 0));
+        assertTrue(counts.getOrDefault("footie.ConsistencyCheck", 0) > 0);
+    }
+
+    private static ConstraintManager constraints() {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        return cm;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.footie.newSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.constraint.AllDifferent;
+import com.example.footie.newSimulator.constraint.ArcConsistency;
+import com.example.footie.newSimulator.constraint.AtMostTwoEuropeTeamsPerGroup;
+import com.example.footie.newSimulator.constraint.ConstraintManager;
+import com.example.footie.newSimulator.constraint.NoSameContinentInGroupForNonEurope;
+import com.example.footie.newSimulator.constraint.PairedGroupConstraint;
+import com.example.footie.newSimulator.constraint.SamePotCantBeInTheSameGroup;
+
+public class SolverStatsTest {
+
+    @Test
+    public void solve_fillsSearchCountersAndLevelTimes() {
+        Simulator simulator = simulator(constraints(true));
+        SolverStats stats = new SolverStats();
+        simulator.setStats(stats);
+        assertTrue(simulator.solveWorldCup2026Draw());
+
+        assertEquals(simulator.getNodesVisited(), stats.nodes());
+        assertEquals(simulator.getBacktracks(), stats.backtracks());
+        assertEquals(simulator.getRestarts(), stats.restarts());
+        assertTrue(stats.nanos(ConsistencyLevel.FORWARD_CHECK) > 0);
+        assertTrue(stats.nanos(ConsistencyLevel.HALL) > 0);
+        assertEquals(0L, stats.nanos(ConsistencyLevel.SINGLETON_ARC));
+
+        SolverStats.ConstraintStats pots = stats.constraints().get("SamePotCantBeInTheSameGroup");
+        assertTrue(pots.calls() >= stats.nodes() - 1);
+        assertTrue(pots.prunes() > 0);
+        Map<String, Object> map = stats.toMap();
+        assertEquals(stats.nodes(), map.get("nodes"));
+    }
+
+    @Test
+    public void uncompiledConstraints_areReportedOneByOne() {
+        Simulator simulator = simulator(constraints(false));
+        SolverStats stats = new SolverStats();
+        simulator.setStats(stats);
+        assertTrue(simulator.solveWorldCup2026Draw());
+
+        for (String name : List.of("AllDifferent", "SamePotCantBeInTheSameGroup", "AtMostTwoEuropeTeamsPerGroup",
+                "NoSameContinentInGroupForNonEurope"))
+            assertTrue(stats.constraints().get(name).calls() > 0, name);
+        assertTrue(stats.constraints().get("SamePotCantBeInTheSameGroup").prunes() > 0);
+    }
+
+    @Test
+    public void compiledConstraints_areReportedUnderTheConstraintTheyCameFrom() {
+        ConstraintManager cm = constraints(true);
+        cm.addConstraint(new PairedGroupConstraint("Spain", Set.of("E", "F"), "Argentina", Set.of("J", "K"), true));
+        Simulator simulator = simulator(cm);
+        SolverStats stats = new SolverStats();
+        simulator.setStats(stats);
+        assertTrue(simulator.solveWorldCup2026Draw());
+
+        assertEquals(Set.of("AllDifferent", "SamePotCantBeInTheSameGroup", "AtMostTwoEuropeTeamsPerGroup",
+                "NoSameContinentInGroupForNonEurope", "PairedGroupConstraint"), stats.constraints().keySet());
+        // besides the propagation rounds every constraint takes part in, the
+        // paired rules are only called for placements of Spain or Argentina
+        long paired = stats.constraints().get("PairedGroupConstraint").calls();
+        assertTrue(paired > 0);
+        assertTrue(paired < stats.constraints().get("SamePotCantBeInTheSameGroup").calls());
+        assertTrue(stats.constraints().get("AllDifferent").prunes() > 0);
+    }
+
+    @Test
+    public void singletonArcConsistency_isTimedApartFromTheLevelsItRuns() {
+        ConstraintManager cm = constraints(true);
+        AssignmentState state = simulator(cm).getState();
+        SolverStats stats = new SolverStats();
+        cm.setStats(stats);
+        assertTrue(cm.enforceSingletonArcConsistency(state));
+        assertTrue(stats.nanos(ConsistencyLevel.SINGLETON_ARC) > 0);
+        assertTrue(stats.nanos(ConsistencyLevel.FORWARD_CHECK) > 0);
+        assertTrue(stats.nanos(ConsistencyLevel.ARC) > 0);
+    }
+
+    private static Simulator simulator(ConstraintManager cm) {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'L'; g++)
+            for (int pos = 1; pos <= 4; pos++)
+                slots.add(new GroupSlot(String.valueOf(g), pos));
+        Simulator simulator = new Simulator(slots, cm, TeamFactory.createWorldCupTeams(4));
+        simulator.setRandom(new Random(5));
+        simulator.setOnlyCheckDomainAfter(28);
+        simulator.setMaxNodes(0);
+        simulator.setRestartPolicy(RestartPolicy.luby(100, 64));
+        return simulator;
+    }
+
+    private static ConstraintManager constraints(boolean compiled) {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        cm.setCompiled(compiled);
+        return cm;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.footie.newSimulator.constraint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.ConcreteTeam;
+import com.example.footie.newSimulator.GroupSlot;
+import com.example.footie.newSimulator.Team;
+
+public class AllDifferentTest {
+
+    @Test
+    public void propagate_removesValuesOutsideEveryMatching() {
+        // A1 and A2 can only take T1/T2, so A3 must not use them
+        AssignmentState state = state(3, 3);
+        restrict(state, 0, 0b011L);
+        restrict(state, 1, 0b011L);
+
+        assertTrue(new AllDifferent().propagate(state));
+
+        assertEquals(0b100L, state.domainBits(2));
+        assertEquals(0b011L, state.domainBits(0));
+    }
+
+    @Test
+    public void propagate_detectsHallViolation() {
+        AssignmentState state = state(3, 3);
+        restrict(state, 0, 0b001L);
+        restrict(state, 1, 0b001L);
+
+        assertFalse(new AllDifferent().propagate(state));
+    }
+
+    @Test
+    public void propagate_matchesBruteForceSupports() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            int slots = 2 + random.nextInt(5);
+            int teams = slots + random.nextInt(3);
+            AssignmentState state = state(slots, teams);
+            for (int s = 0; s < slots; s++)
+                restrict(state, s, random.nextLong() & ((1L << teams) - 1));
+
+            long[] expected = new long[slots];
+            boolean feasible = supports(state, 0, 0L, new int[slots], expected);
+
+            boolean consistent = new AllDifferent().propagate(state);
+            assertEquals(feasible, consistent, "round " + round);
+            if (!feasible)
+                continue;
+            for (int s = 0; s < slots; s++)
+                assertEquals(expected[s], state.domainBits(s), "round " + round + " slot " + s);
+        }
+    }
+
+    /** Enumerate complete all-different assignments, OR-ing every used value. */
+    private static boolean supports(AssignmentState state, int slot, long used, int[] chosen, long[] out) {
+        if (slot == chosen.length) {
+            for (int s = 0; s < chosen.length; s++)
+                out[s] |= 1L << chosen[s];
+            return true;
+        }
+        boolean any = false;
+        for (long m = state.domainBits(slot) & ~used; m != 0; m &= m - 1) {
+            chosen[slot] = Long.numberOfTrailingZeros(m);
+            any |= supports(state, slot + 1, used | (1L << chosen[slot]), chosen, out);
+        }
+        return any;
+    }
+
+    private static AssignmentState state(int slotCount, int teamCount) {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (int s = 0; s < slotCount; s++)
+            slots.add(new GroupSlot("A", s + 1));
+        List<Team> teams = new ArrayList<>();
+        for (int t = 0; t < teamCount; t++)
+            teams.add(new ConcreteTeam("T" + (t + 1), "Europe", 1));
+        return new AssignmentState(slots, teams);
+    }
+
+    private static void restrict(AssignmentState state, int slot, long allowed) {
+        state.removeFromDomain(slot, ~allowed);
+    }
+}
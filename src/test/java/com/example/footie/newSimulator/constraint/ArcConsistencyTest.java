@@ -0,0 +1,173 @@
+package com.example.footie.newSimulator.constraint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.ConcreteTeam;
+import com.example.footie.newSimulator.DrawModel;
+import com.example.footie.newSimulator.GroupSlot;
+import com.example.footie.newSimulator.Team;
+
+public class ArcConsistencyTest {
+
+    private static final String[] CONTINENTS = { "Europe", "Asia", "Africa", "South America" };
+
+    @Test
+    public void residualSupports_matchTemporaryAssignmentRevision() {
+        Random random = new Random(11);
+        for (int round = 0; round < 100; round++) {
+            List<GroupSlot> slots = slots();
+            List<Team> teams = teams(random);
+            ConstraintManager fast = manager();
+            ConstraintManager reference = new ConstraintManager();
+            for (Constraint c : constraints())
+                reference.addConstraint(withoutPairCheck(c));
+
+            AssignmentState a = new AssignmentState(slots, teams);
+            AssignmentState b = new AssignmentState(slots, teams);
+            for (int step = 0; step < 6; step++) {
+                int slot = random.nextInt(16);
+                int team = random.nextInt(16);
+                if (!fast.isAssignmentValid(a, slot, team) || (a.domainBits(slot) & (1L << team)) == 0)
+                    continue;
+                a.assign(slot, team);
+                fast.forwardCheck(a, slot, team);
+                b.assign(slot, team);
+                reference.forwardCheck(b, slot, team);
+            }
+
+            assertEquals(reference.enforceArcConsistency(b), fast.enforceArcConsistency(a), "round " + round);
+            for (int s = 0; s < 16; s++)
+                assertEquals(b.domainBits(s), a.domainBits(s), "round " + round + " slot " + s);
+        }
+    }
+
+    @Test
+    public void changedSlotQueue_reachesSameFixpointAsFullPass() {
+        Random random = new Random(5);
+        for (int round = 0; round < 50; round++) {
+            List<GroupSlot> slots = slots();
+            List<Team> teams = teams(random);
+            ConstraintManager incremental = manager();
+            AssignmentState a = new AssignmentState(slots, teams);
+            AssignmentState b = new AssignmentState(slots, teams);
+            List<Integer> marks = new ArrayList<>();
+
+            for (int step = 0; step < 12; step++) {
+                if (!marks.isEmpty() && random.nextInt(3) == 0) {
+                    int mark = marks.remove(marks.size() - 1);
+                    a.rollbackTo(mark);
+                    b.rollbackTo(mark);
+                }
+                int slot = random.nextInt(16);
+                int team = random.nextInt(16);
+                if (!incremental.isAssignmentValid(a, slot, team) || (a.domainBits(slot) & (1L << team)) == 0)
+                    continue;
+                marks.add(a.checkpoint());
+                a.assign(slot, team);
+                incremental.forwardCheck(a, slot, team);
+                b.assign(slot, team);
+                incremental.forwardCheck(b, slot, team);
+
+                // a fresh manager has no fixpoint to start from and revises every arc
+                boolean full = manager().enforceArcConsistency(b);
+                assertEquals(full, incremental.enforceArcConsistency(a), "round " + round + " step " + step);
+                if (full) {
+                    for (int s = 0; s < 16; s++)
+                        assertEquals(b.domainBits(s), a.domainBits(s), "round " + round + " step " + step + " slot " + s);
+                } else {
+                    int mark = marks.remove(marks.size() - 1);
+                    a.rollbackTo(mark);
+                    b.rollbackTo(mark);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void assignmentRevisesArcsInsideItsScope() {
+        // A2 and A3 only hold European teams; placing a third European in A1
+        // changes the relation between them without pruning either domain
+        List<GroupSlot> slots = List.of(new GroupSlot("A", 1), new GroupSlot("A", 2), new GroupSlot("A", 3));
+        List<Team> teams = List.of(new ConcreteTeam("E1", "Europe", 1), new ConcreteTeam("E2", "Europe", 2),
+                new ConcreteTeam("E3", "Europe", 3));
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+        AssignmentState state = new AssignmentState(slots, teams);
+        state.removeFromDomain(1, ~0b010L);
+        state.removeFromDomain(2, ~0b100L);
+        assertTrue(cm.enforceArcConsistency(state));
+
+        state.assign(0, 0);
+        cm.forwardCheck(state, 0, 0);
+        assertEquals(0b010L, state.domainBits(1));
+        assertEquals(0b100L, state.domainBits(2));
+
+        assertFalse(cm.enforceArcConsistency(state));
+    }
+
+    private static List<GroupSlot> slots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'D'; g++)
+            for (int p = 1; p <= 4; p++)
+                slots.add(new GroupSlot(String.valueOf(g), p));
+        return slots;
+    }
+
+    private static List<Team> teams(Random random) {
+        List<Team> teams = new ArrayList<>();
+        for (int t = 0; t < 16; t++)
+            teams.add(new ConcreteTeam("T" + t, CONTINENTS[random.nextInt(CONTINENTS.length)], t / 4 + 1));
+        return teams;
+    }
+
+    private static List<Constraint> constraints() {
+        return List.of(new AllDifferent(), new SamePotCantBeInTheSameGroup(),
+                new AtMostTwoEuropeTeamsPerGroup(), new NoSameContinentInGroupForNonEurope());
+    }
+
+    private static ConstraintManager manager() {
+        ConstraintManager cm = new ConstraintManager();
+        for (Constraint c : constraints())
+            cm.addConstraint(c);
+        return cm;
+    }
+
+    /** Delegates everything but the pair check, so revision uses the trail fallback. */
+    private static Constraint withoutPairCheck(Constraint c) {
+        return new Constraint() {
+            @Override
+            public boolean isAssignmentAllowed(AssignmentState state, GroupSlot slot, Team team) {
+                return c.isAssignmentAllowed(state, slot, team);
+            }
+
+            @Override
+            public boolean isAssignmentAllowed(AssignmentState state, int slotId, int teamId) {
+                return c.isAssignmentAllowed(state, slotId, teamId);
+            }
+
+            @Override
+            public ConstraintScope scope(DrawModel model) {
+                return c.scope(model);
+            }
+
+            @Override
+            public void forwardCheck(AssignmentState state, GroupSlot slot, Team team) {
+                c.forwardCheck(state, slot, team);
+            }
+
+            @Override
+            public void forwardCheck(AssignmentState state, int slotId, int teamId) {
+                c.forwardCheck(state, slotId, teamId);
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.footie.newSimulator.constraint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import org.junit.jupiter.api.Test;
+
+import com.example.footie.newSimulator.AssignmentState;
+import com.example.footie.newSimulator.ConcreteTeam;
+import com.example.footie.newSimulator.GroupSlot;
+import com.example.footie.newSimulator.Team;
+
+public class ConstraintTablesTest {
+
+    private static final String[] CONTINENTS = { "Europe", "Europe", "Asia", "Africa", "South America" };
+
+    /** Keeps T0 out of group A; it does not compile, so the manager keeps calling it. */
+    private static final Constraint NOT_IN_A = new Constraint() {
+        @Override
+        public boolean isAssignmentAllowed(AssignmentState state, GroupSlot slot, Team team) {
+            return !(team.getName().equals("T0") && slot.getGroupName().equals("A"));
+        }
+
+        @Override
+        public void forwardCheck(AssignmentState state, GroupSlot slot, Team team) {
+        }
+    };
+
+    @Test
+    public void compiledTables_agreeWithTheConstraints() {
+        Random random = new Random(17);
+        for (int round = 0; round < 40; round++) {
+            List<Team> teams = teams(random);
+            ConstraintManager compiled = constraints(round);
+            ConstraintManager reference = constraints(round);
+            reference.setCompiled(false);
+            AssignmentState c = new AssignmentState(slots(), teams);
+            AssignmentState r = new AssignmentState(c.model());
+
+            for (int step = 0; step < 20 && c.unassignedSlotBits() != 0; step++) {
+                List<int[]> valid = new ArrayList<>();
+                for (long m = c.unassignedSlotBits(); m != 0; m &= m - 1) {
+                    int slot = Long.numberOfTrailingZeros(m);
+                    for (int team = 0; team < c.model().teamCount(); team++) {
+                        boolean expected = reference.isAssignmentValid(r, slot, team);
+                        assertEquals(expected, compiled.isAssignmentValid(c, slot, team),
+                                "round " + round + " step " + step + " slot " + slot + " team " + team);
+                        if (expected && (r.domainBits(slot) & (1L << team)) != 0)
+                            valid.add(new int[] { slot, team });
+                    }
+                }
+                if (valid.isEmpty())
+                    break;
+                int[] pick = valid.get(random.nextInt(valid.size()));
+                c.assign(pick[0], pick[1]);
+                r.assign(pick[0], pick[1]);
+                compiled.forwardCheck(c, pick[0], pick[1]);
+                reference.forwardCheck(r, pick[0], pick[1]);
+                assertDomains(r, c, "round " + round + " step " + step);
+
+                boolean consistent = reference.checkGlobalConsistency(r);
+                assertEquals(consistent, compiled.checkGlobalConsistency(c), "round " + round + " step " + step);
+                if (!consistent)
+                    break;
+                assertDomains(r, c, "round " + round + " step " + step);
+            }
+        }
+    }
+
+    @Test
+    public void uncompiledConstraints_areStillChecked() {
+        ConstraintManager cm = constraints(0);
+        AssignmentState state = new AssignmentState(slots(), teams(new Random(1)));
+        int team = state.model().teamId("T0");
+        assertFalse(cm.isAssignmentValid(state, state.model().slotId(new GroupSlot("A", 1)), team));
+    }
+
+    private static void assertDomains(AssignmentState expected, AssignmentState actual, String message) {
+        for (int s = 0; s < expected.model().slotCount(); s++)
+            assertEquals(expected.domainBits(s), actual.domainBits(s), message + " slot " + s);
+    }
+
+    /** The draw constraints plus, by round, the cross-group ones. */
+    private static ConstraintManager constraints(int round) {
+        ConstraintManager cm = new ConstraintManager();
+        cm.addConstraint(new AllDifferent());
+        cm.addConstraint(new SamePotCantBeInTheSameGroup());
+        if (round % 3 == 0) {
+            cm.addConstraint(new NoSameContinentInGroup());
+        } else {
+            cm.addConstraint(new AtMostTwoEuropeTeamsPerGroup());
+            cm.addConstraint(new NoSameContinentInGroupForNonEurope());
+        }
+        cm.addConstraint(new PairedGroupConstraint("T1", Set.of("A", "B", "C"), "T2", Set.of("D", "E"), round % 2 == 0));
+        cm.addConstraint(new TriggerAnyTeamInGroupsConstraint("T3", Set.of("F", "G"), Set.of("T4", "T5"),
+                Set.of("H", "I", "J")));
+        cm.addConstraint(new TopSeedsBracketSeparation(Map.of("T6", 1, "T7", 2, "T8", 3, "T9", 4)));
+        cm.addConstraint(NOT_IN_A);
+        cm.setArcConsistency(ArcConsistency.GROUP_LOCAL);
+        return cm;
+    }
+
+    private static List<GroupSlot> slots() {
+        List<GroupSlot> slots = new ArrayList<>();
+        for (char g = 'A'; g <= 'L'; g++)
+            for (int p = 1; p <= 3; p++)
+                slots.add(new GroupSlot(String.valueOf(g), p));
+        return slots;
+    }
+
+    private static List<Team> teams(Random random) {
+        List<Team> teams = new ArrayList<>();
+        for (int t = 0; t < 36; t++)
+            teams.add(new ConcreteTeam("T" + t, CONTINENTS[random.nextInt(CONTINENTS.length)], t % 3 + 1));
+        return teams;
+    }
+}
@@ -105,10 +105,10 @@ public class PairedGroupConstraintTest {
         Set<Team> domainOfTeamBInSlotC1 = state.getDomains().get(slotC1);
         assertTrue(domainOfTeamBInSlotC1.contains(teamB), "TeamB should still be in slot C1 (in groupsB).");
 
-        // Assign TeamA to C1 (a group NOT in groupsA). No pruning should occur for TeamB related to groupsB.
+        // Assign TeamA to C2 (a group NOT in groupsA). No pruning should occur for TeamB related to groupsB.
         setUp();
-        state.assign(slotC1, teamA);
-        constraint.forwardCheck(state, slotC1, teamA);
+        state.assign(slotC2, teamA);
+        constraint.forwardCheck(state, slotC2, teamA);
 
         domainOfTeamBInSlotA2 = state.getDomains().get(slotA2);
         assertTrue(domainOfTeamBInSlotA2.contains(teamB), "TeamB should NOT be pruned from slot A2 if TeamA is not in groupsA.");
@@ -117,6 +117,29 @@ public class PairedGroupConstraintTest {
         assertTrue(domainOfTeamBInSlotC1.contains(teamB), "TeamB should still be in slot C1.");
     }
 
+    @Test
+    void testNonSymmetricDoesNotEnforceTheReverse() {
+        PairedGroupConstraint constraint = new PairedGroupConstraint(teamA.getName(), groupsA, teamB.getName(), groupsB, false);
+
+        // TeamB in groupsB says nothing about TeamA: it may still go anywhere
+        state.assign(slotC1, teamB);
+        assertTrue(constraint.isAssignmentAllowed(state, slotC2, teamA), "TeamA may go outside groupsA.");
+        assertTrue(constraint.isAssignmentAllowed(state, slotA1, teamA), "TeamA may go to groupsA.");
+        constraint.forwardCheck(state, slotC1, teamB);
+        assertTrue(state.getDomains().get(slotC2).contains(teamA), "TeamA should NOT be pruned from slot C2.");
+        assertTrue(state.getDomains().get(slotA1).contains(teamA), "TeamA should still be in slot A1.");
+
+        // TeamB outside groupsB rules TeamA out of groupsA, which would send TeamB to groupsB
+        setUp();
+        state.assign(slotA2, teamB);
+        assertFalse(constraint.isAssignmentAllowed(state, slotA1, teamA), "TeamA may not go to groupsA.");
+        assertTrue(constraint.isAssignmentAllowed(state, slotC2, teamA), "TeamA may go outside groupsA.");
+        constraint.forwardCheck(state, slotA2, teamB);
+        assertFalse(state.getDomains().get(slotA1).contains(teamA), "TeamA should be pruned from slot A1 (groupsA).");
+        assertFalse(state.getDomains().get(slotB1).contains(teamA), "TeamA should be pruned from slot B1 (groupsA).");
+        assertTrue(state.getDomains().get(slotC2).contains(teamA), "TeamA should still be in slot C2.");
+    }
+
     @Test
     void testForwardCheckSymmetric() {
         PairedGroupConstraint constraint = new PairedGroupConstraint(teamA.getName(), groupsA, teamB.getName(), groupsB, true);